@@ -0,0 +1,497 @@
+// File: BulkLoader.java
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+
+/******************************************************************************
+* A <CODE>BulkLoader</CODE> reads files of name/number records, one record
+* per line in the form of <CODE>names.txt</CODE> (a name, a space and a
+* decimal number), and feeds them to hash tables keyed by the number.
+*
+* The file is read through a <CODE>FileChannel</CODE> in large blocks and
+* each line is parsed straight from the bytes: the number is accumulated
+* digit by digit and the only object made per record is the name's
+* <CODE>String</CODE>. There are no regular expressions, no
+* <CODE>String[ ]</CODE> per line and no <CODE>Integer.parseInt</CODE>.
+*
+* <CODE>forEach</CODE> hands the records to a callback in file order.
+* <CODE>load</CODE> collects them into batches for <CODE>putAll</CODE>;
+* given several tables and threads, it splits the file into byte ranges,
+* one per thread, and sends each record to the table that owns the hash
+* range of its key (see <CODE>partition</CODE>), so a multi-gigabyte file
+* is parsed on every core at once. After each call the number of records
+* and the time taken are available from <CODE>getLines</CODE>,
+* <CODE>getNanos</CODE> and <CODE>getLinesPerSecond</CODE>.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class BulkLoader
+{
+   // Invariant of the BulkLoader class:
+   //   1. Files are read bufferSize bytes at a time, and load hands tables
+   //      batches of at most batchSize records.
+   //   2. lines and nanos describe the most recent forEach or load.
+   private final int bufferSize;
+   private final int batchSize;
+   private long lines;
+   private long nanos;
+
+   /**
+   * The block size used when none is given to the constructor.
+   **/
+   public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+   /**
+   * The batch size used when none is given to the constructor.
+   **/
+   public static final int DEFAULT_BATCH_SIZE = 4096;
+
+   /**
+   * A <CODE>RecordHandler</CODE> receives the records of a file from
+   * <CODE>forEach</CODE>.
+   **/
+   public interface RecordHandler
+   {
+      /**
+      * Processes one record.
+      * @param <CODE>name</CODE>
+      *   the text before the first space of the line
+      * @param <CODE>number</CODE>
+      *   the number after the first space
+      **/
+      void record(String name, int number);
+   }
+
+   /**
+   * Initialize a loader with the default block and batch sizes.
+   * @param - none
+   **/
+   public BulkLoader( )
+   {
+      this(DEFAULT_BUFFER_SIZE, DEFAULT_BATCH_SIZE);
+   }
+
+
+   /**
+   * Initialize a loader with a specified block and batch size.
+   * @param <CODE>bufferSize</CODE>
+   *   the number of bytes read from the file at a time; lines longer than
+   *   this are still handled
+   * @param <CODE>batchSize</CODE>
+   *   the number of records collected for each <CODE>putAll</CODE>
+   * @exception IllegalArgumentException
+   *   Indicates that either size is not positive.
+   **/
+   public BulkLoader(int bufferSize, int batchSize)
+   {
+      if (bufferSize <= 0 || batchSize <= 0)
+         throw new IllegalArgumentException("Sizes must be positive");
+      this.bufferSize = bufferSize;
+      this.batchSize = batchSize;
+   }
+
+
+   /**
+   * Reads every record of a file, in order.
+   * @param <CODE>file</CODE>
+   *   the file to read
+   * @param <CODE>handler</CODE>
+   *   the callback that receives each record
+   * @return
+   *   the number of records read
+   * <dt><b>Postcondition:</b><dd>
+   *   <CODE>handler.record</CODE> has been called once for every non-blank
+   *   line of the file, in file order, on the calling thread. If the
+   *   handler throws an exception, reading stops and the exception is
+   *   passed on.
+   * @exception IOException
+   *   Indicates that the file could not be read or that a line is not a
+   *   name, a space and a number that fits in an <CODE>int</CODE>.
+   **/
+   public long forEach(Path file, RecordHandler handler) throws IOException
+   {
+      long start = System.nanoTime( );
+
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+         lines = parse(channel, 0, channel.size( ), handler);
+      }
+      nanos = System.nanoTime( ) - start;
+      return lines;
+   }
+
+
+   /**
+   * Loads every record of a file into a table, keyed by its number.
+   * @param <CODE>file</CODE>
+   *   the file to read
+   * @param <CODE>table</CODE>
+   *   the table to fill
+   * @return
+   *   the number of records read
+   * <dt><b>Postcondition:</b><dd>
+   *   The table is as if <CODE>put(number, name)</CODE> had been called for
+   *   every record in file order; the records are passed to
+   *   <CODE>putAll</CODE> in batches.
+   * @exception IOException
+   *   Indicates that the file could not be read or that a line is
+   *   malformed. Batches before the bad line may already be in the table.
+   **/
+   public long load(Path file, HashTable<Integer, String> table)
+      throws IOException
+   {
+      HashTable<Integer, String>[ ] partitions = newTableArray(1);
+
+      partitions[0] = table;
+      return load(file, partitions, 1);
+   }
+
+
+   /**
+   * Loads every record of a file into tables partitioned by hash range,
+   * using several threads.
+   * @param <CODE>file</CODE>
+   *   the file to read
+   * @param <CODE>partitions</CODE>
+   *   the tables to fill; a record with number <CODE>n</CODE> goes to
+   *   <CODE>partitions[partition(n, partitions.length)]</CODE>
+   * @param <CODE>threads</CODE>
+   *   the number of threads that read the file; each reads its own byte
+   *   range of about the same size
+   * @return
+   *   the number of records read
+   * <dt><b>Postcondition:</b><dd>
+   *   Every record is in its table. A table is only ever changed by one
+   *   thread at a time (the loader locks it for each batch), so the tables
+   *   need not be thread-safe. With more than one thread, the records of
+   *   different ranges reach a table in no particular order, so if a
+   *   number appears more than once it is not defined which name is kept.
+   * @exception IllegalArgumentException
+   *   Indicates that there are no partitions or that
+   *   <CODE>threads</CODE> is not positive.
+   * @exception IOException
+   *   Indicates that the file could not be read or that a line is
+   *   malformed. Batches before the bad line may already be in the tables.
+   **/
+   public long load(final Path file,
+                    final HashTable<Integer, String>[ ] partitions,
+                    int threads) throws IOException
+   {
+      if (partitions.length == 0)
+         throw new IllegalArgumentException("No partitions");
+      if (threads <= 0)
+         throw new IllegalArgumentException("Threads must be positive");
+
+      long start = System.nanoTime( );
+      final long size;
+      final long[ ] counts = new long[threads];
+      final Throwable[ ] failures = new Throwable[threads];
+      Thread[ ] workers = new Thread[threads];
+      long total = 0;
+      int t;
+
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+         size = channel.size( );
+      }
+      for (t = 0; t < threads; t++) {
+         final int id = t;
+         final long from = size * t / threads;
+         final long to = size * (t + 1) / threads;
+         workers[t] = new Thread(new Runnable( ) {
+            public void run( )
+            {
+               try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                  Batcher batcher = new Batcher(partitions, batchSize);
+                  counts[id] = parse(channel, from, to, batcher);
+                  batcher.flush( );
+               }
+               catch (Throwable e) {
+                  failures[id] = e;
+               }
+            }
+         });
+         workers[t].start( );
+      }
+      for (t = 0; t < threads; t++) {
+         try {
+            workers[t].join( );
+         }
+         catch (InterruptedException e) {
+            Thread.currentThread( ).interrupt( );
+            throw new IOException("Interrupted while loading " + file, e);
+         }
+      }
+      for (t = 0; t < threads; t++) {
+         if (failures[t] instanceof IOException)
+            throw (IOException) failures[t];
+         if (failures[t] instanceof RuntimeException)
+            throw (RuntimeException) failures[t];
+         if (failures[t] instanceof Error)
+            throw (Error) failures[t];
+         total += counts[t];
+      }
+      lines = total;
+      nanos = System.nanoTime( ) - start;
+      return lines;
+   }
+
+
+   /**
+   * Determines which of several hash-range partitions a key belongs to.
+   * @param <CODE>key</CODE>
+   *   the key
+   * @param <CODE>partitions</CODE>
+   *   the number of partitions
+   * @return
+   *   a partition between 0 and <CODE>partitions - 1</CODE>; the range of
+   *   hash codes with the sign bit cleared is cut into equal pieces, so
+   *   each partition owns one contiguous piece
+   **/
+   public static int partition(Object key, int partitions)
+   {
+      return (int) (((key.hashCode( ) & 0x7FFFFFFFL) * partitions) >>> 31);
+   }
+
+
+   private long parse(FileChannel channel, long from, long to,
+                      RecordHandler handler) throws IOException
+   // Postcondition: handler has been given every record whose line starts
+   // at a byte in [from, to), in file order. The return value is the
+   // number of records.
+   {
+      byte[ ] bytes = new byte[bufferSize];
+      long base = Math.max(from - 1, 0);  // file position of bytes[0]
+      long count = 0;
+      int limit = 0;                      // bytes[0..limit) hold file data
+      int next = 0;                       // start of the first unread line
+      int newline, read;
+      boolean eof = false;
+
+      // The line that straddles from belongs to the previous range, so skip
+      // up to the first newline at or after from - 1. If from starts a
+      // line, the byte before it is that newline and nothing is skipped.
+      boolean skip = (from > 0);
+
+      while (true) {
+         for (newline = next; newline < limit && bytes[newline] != '\n'; newline++)
+            ;
+         if (newline == limit) {
+            // no complete line left in the buffer
+            if (eof) {
+               if (!skip && next < limit && base + next < to)
+                  count += record(bytes, next, limit, base + next, handler);
+               return count;
+            }
+            if (skip)
+               next = limit;
+            System.arraycopy(bytes, next, bytes, 0, limit - next);
+            base += next;
+            limit -= next;
+            next = 0;
+            if (limit == bytes.length)
+               bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+            read = channel.read(ByteBuffer.wrap(bytes, limit, bytes.length - limit),
+                                base + limit);
+            if (read < 0)
+               eof = true;
+            else
+               limit += read;
+         }
+         else if (skip) {
+            skip = false;
+            next = newline + 1;
+         }
+         else if (base + next >= to)
+            return count;
+         else {
+            count += record(bytes, next, newline, base + next, handler);
+            next = newline + 1;
+         }
+      }
+   }
+
+
+   private static int record(byte[ ] bytes, int start, int end, long offset,
+                             RecordHandler handler) throws IOException
+   // Precondition: bytes[start..end) is one line, without its newline, that
+   // starts at byte offset of the file.
+   // Postcondition: If the line is blank, the return value is 0. Otherwise
+   // handler has been given its name and number and the return value is 1.
+   {
+      int space, i;
+      long number = 0;
+      boolean negative;
+
+      if (end > start && bytes[end - 1] == '\r')
+         end--;
+      if (end == start)
+         return 0;
+
+      for (space = start; space < end && bytes[space] != ' '; space++)
+         ;
+      i = space + 1;
+      negative = (i < end && bytes[i] == '-');
+      if (negative)
+         i++;
+      if (space == start || i >= end || bytes[i] < '0' || bytes[i] > '9')
+         throw new IOException("Malformed record at byte " + offset);
+      while (i < end && bytes[i] >= '0' && bytes[i] <= '9') {
+         number = 10 * number + (bytes[i] - '0');
+         if (number > Integer.MAX_VALUE + 1L)
+            throw new IOException("Number out of range at byte " + offset);
+         i++;
+      }
+      if (negative)
+         number = -number;
+      if (number > Integer.MAX_VALUE || (i < end && bytes[i] != ' '))
+         throw new IOException("Malformed record at byte " + offset);
+
+      handler.record(new String(bytes, start, space - start, StandardCharsets.UTF_8),
+                     (int) number);
+      return 1;
+   }
+
+
+   /**
+   * Determines how many records the last call read.
+   * @param - none
+   * @return
+   *   the number of records read by the most recent <CODE>forEach</CODE>
+   *   or <CODE>load</CODE>
+   **/
+   public long getLines( )
+   {
+      return lines;
+   }
+
+
+   /**
+   * Determines how long the last call took.
+   * @param - none
+   * @return
+   *   the elapsed time of the most recent <CODE>forEach</CODE> or
+   *   <CODE>load</CODE>, in nanoseconds
+   **/
+   public long getNanos( )
+   {
+      return nanos;
+   }
+
+
+   /**
+   * Determines the rate of the last call.
+   * @param - none
+   * @return
+   *   the records read per second by the most recent <CODE>forEach</CODE>
+   *   or <CODE>load</CODE>
+   **/
+   public double getLinesPerSecond( )
+   {
+      return nanos == 0 ? 0 : lines * 1e9 / nanos;
+   }
+
+
+   /**
+   * Loads a file and reports the rate.
+   * Usage: java BulkLoader file [threads [partitions]]
+   * @param <CODE>args</CODE>
+   *   the file to load, the number of threads (default: the number of
+   *   processors) and the number of tables (default: the number of threads)
+   * @exception IOException
+   *   Indicates that the file could not be read or is malformed.
+   **/
+   public static void main(String[ ] args) throws IOException
+   {
+      if (args.length < 1) {
+         System.out.println("Usage: java BulkLoader file [threads [partitions]]");
+         return;
+      }
+
+      int threads = args.length > 1 ? Integer.parseInt(args[1])
+                                    : Runtime.getRuntime( ).availableProcessors( );
+      int count = args.length > 2 ? Integer.parseInt(args[2]) : threads;
+      HashTable<Integer, String>[ ] partitions = newTableArray(count);
+      BulkLoader loader = new BulkLoader( );
+      int i;
+
+      for (i = 0; i < count; i++)
+         partitions[i] = new Table<Integer, String>(1021);
+      loader.load(Paths.get(args[0]), partitions, threads);
+      System.out.printf("%d lines in %.3f s: %.0f lines/s%n", loader.getLines( ),
+                        loader.getNanos( ) / 1e9, loader.getLinesPerSecond( ));
+   }
+
+
+   @SuppressWarnings("unchecked")
+   private static < K , E > HashTable<K, E>[ ] newTableArray(int length)
+   // The return value is a new array of length null tables. Java cannot
+   // create an array of a generic type directly, so an array of wildcard
+   // tables is created and cast, which is safe because it is empty.
+   {
+      return (HashTable<K, E>[ ]) new HashTable<?, ?>[length];
+   }
+
+
+   // Collects records into one batch per partition and hands each batch to
+   // its table's putAll, under the table's lock, when it is full.
+   private static final class Batcher implements RecordHandler
+   {
+      private final HashTable<Integer, String>[ ] partitions;
+      private final Integer[ ][ ] keys;
+      private final String[ ][ ] names;
+      private final int[ ] sizes;
+
+      Batcher(HashTable<Integer, String>[ ] partitions, int batchSize)
+      {
+         this.partitions = partitions;
+         keys = new Integer[partitions.length][batchSize];
+         names = new String[partitions.length][batchSize];
+         sizes = new int[partitions.length];
+      }
+
+      public void record(String name, int number)
+      {
+         Integer key = number;
+         int p = partitions.length == 1 ? 0 : partition(key, partitions.length);
+
+         keys[p][sizes[p]] = key;
+         names[p][sizes[p]] = name;
+         if (++sizes[p] == keys[p].length)
+            flush(p);
+      }
+
+      void flush( )
+      {
+         int p;
+
+         for (p = 0; p < partitions.length; p++)
+            flush(p);
+      }
+
+      private void flush(int p)
+      {
+         Integer[ ] batchKeys = keys[p];
+         String[ ] batchNames = names[p];
+
+         if (sizes[p] == 0)
+            return;
+         if (sizes[p] < batchKeys.length) {
+            batchKeys = Arrays.copyOf(batchKeys, sizes[p]);
+            batchNames = Arrays.copyOf(batchNames, sizes[p]);
+         }
+         synchronized (partitions[p]) {
+            partitions[p].putAll(batchKeys, batchNames);
+         }
+         Arrays.fill(keys[p], null);
+         Arrays.fill(names[p], null);
+         sizes[p] = 0;
+      }
+   }
+}
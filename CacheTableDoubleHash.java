@@ -0,0 +1,534 @@
+// File: CacheTableDoubleHash.java
+
+import java.util.concurrent.TimeUnit;
+
+
+/******************************************************************************
+* A <CODE>CacheTableDoubleHash</CODE> is an open-address hash table with
+* double hashing that holds at most a fixed number of elements, for use as
+* a cache in front of a slower store. Once it is full, putting a new key
+* evicts another one instead of growing the table or throwing.
+*
+* The victim is chosen by the CLOCK algorithm, an approximation of
+* least-recently-used eviction. Each slot has a reference bit in a
+* <CODE>boolean[ ]</CODE> beside the key and element arrays, so the
+* bookkeeping allocates nothing per entry. A successful <CODE>get</CODE>,
+* or a <CODE>put</CODE> that replaces an element, sets the bit. To evict, a
+* hand sweeps around the slots, clearing set bits, and takes the first
+* entry whose bit was already clear. A new entry starts with its bit clear,
+* so a key that is read only once is evicted before keys that are read
+* again, and a scan over many keys cannot flush out the ones in steady use.
+*
+* If a time to live is given, each entry also records when it expires, in
+* a <CODE>long[ ]</CODE>. An expired entry is never returned: a
+* <CODE>get</CODE> that finds one removes it and counts a miss, and the
+* hand evicts expired entries before anything else it passes. Until then
+* an expired entry still counts in <CODE>size</CODE>.
+*
+* It is a <CODE>TableDoubleHash</CODE> that never grows: the probing,
+* stored hashes, tombstones and rehashing are all that class's, and this
+* one adds only the reference bits, the expiry times and the counters. Its
+* capacity is the smallest prime that keeps it no more than
+* <CODE>LOAD_FACTOR</CODE> full. Evicted and removed entries leave
+* tombstones; when they build up, the table is rehashed at the same
+* capacity to clear them. The numbers of hits, misses, evictions and
+* expirations are kept and may be read or reset at any time.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class CacheTableDoubleHash< K , E > extends TableDoubleHash< K , E >
+{
+   // Invariant of the CacheTableDoubleHash class:
+   //   1. The keys and elements are kept by TableDoubleHash, whose maximum
+   //      load factor is MAX_USED and whose capacity never changes. The
+   //      cache holds size( ) elements, at most maxEntries.
+   //   2. referenced[i] is the reference bit of the entry at index i of the
+   //      table. The clock hand is at index hand.
+   //   3. If ttlNanos is positive, then expires[i] is the System.nanoTime at
+   //      which the entry at index i expires. Otherwise expires is null and
+   //      entries never expire.
+   //   4. While the table is rehashed, oldReferenced and oldExpires hold the
+   //      arrays from before, indexed as the old slots were; otherwise they
+   //      are null.
+   private final int maxEntries;
+   private boolean[ ] referenced;
+   private long[ ] expires;
+   private boolean[ ] oldReferenced;
+   private long[ ] oldExpires;
+   private final long ttlNanos;
+   private int hand;
+
+   /**
+   * The largest fraction of the slots that hold an element when the cache
+   * is full.
+   **/
+   public static final double LOAD_FACTOR = 0.75;
+
+   // the largest fraction of the slots that may hold an element or a
+   // tombstone before the tombstones are cleared
+   private static final double MAX_USED = 0.9;
+
+   // the counters of what has happened to the cache
+   private long hits;
+   private long misses;
+   private long evictions;
+   private long expirations;
+
+   /**
+   * Initialize an empty cache whose entries never expire.
+   * @param <CODE>maxEntries</CODE>
+   *   the largest number of elements the cache holds
+   * <dt><b>Postcondition:</b><dd>
+   *   This cache is empty and can hold <CODE>maxEntries</CODE> elements.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>maxEntries</CODE> is not positive or too large.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the cache.
+   **/
+   public CacheTableDoubleHash(int maxEntries)
+   {
+      this(maxEntries, 0, TimeUnit.NANOSECONDS, HashFunction.DEFAULT);
+   }
+
+
+   /**
+   * Initialize an empty cache whose entries expire a fixed time after
+   * they are put.
+   * @param <CODE>maxEntries</CODE>
+   *   the largest number of elements the cache holds
+   * @param <CODE>ttl</CODE>
+   *   how long an element stays in the cache after it is put, or zero if
+   *   elements never expire
+   * @param <CODE>unit</CODE>
+   *   the unit of <CODE>ttl</CODE>
+   * <dt><b>Postcondition:</b><dd>
+   *   This cache is empty and can hold <CODE>maxEntries</CODE> elements.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>maxEntries</CODE> is not positive or too large,
+   *   or that <CODE>ttl</CODE> is negative.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the cache.
+   **/
+   public CacheTableDoubleHash(int maxEntries, long ttl, TimeUnit unit)
+   {
+      this(maxEntries, ttl, unit, HashFunction.DEFAULT);
+   }
+
+
+   /**
+   * Initialize an empty cache with a time to live and a hash function.
+   * @param <CODE>maxEntries</CODE>
+   *   the largest number of elements the cache holds
+   * @param <CODE>ttl</CODE>
+   *   how long an element stays in the cache after it is put, or zero if
+   *   elements never expire
+   * @param <CODE>unit</CODE>
+   *   the unit of <CODE>ttl</CODE>
+   * @param <CODE>hashFunction</CODE>
+   *   the hash function that picks each key's place in the table
+   * <dt><b>Postcondition:</b><dd>
+   *   This cache is empty and can hold <CODE>maxEntries</CODE> elements.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>maxEntries</CODE> is not positive or too large,
+   *   or that <CODE>ttl</CODE> is negative.
+   * @exception NullPointerException
+   *   Indicates that <CODE>unit</CODE> or <CODE>hashFunction</CODE> is null.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the cache.
+   **/
+   public CacheTableDoubleHash(int maxEntries, long ttl, TimeUnit unit,
+                               HashFunction hashFunction)
+   {
+      super(leastCapacity(maxEntries), MAX_USED, hashFunction);
+      if (ttl < 0)
+         throw new IllegalArgumentException("Time to live is negative");
+      this.maxEntries = maxEntries;
+      this.ttlNanos = unit.toNanos(ttl);
+      referenced = new boolean[capacity( )];
+      if (ttlNanos > 0)
+         expires = new long[capacity( )];
+   }
+
+
+   private static int leastCapacity(int maxEntries)
+   // The return value is the least capacity that keeps maxEntries elements
+   // within LOAD_FACTOR of it, which TableDoubleHash rounds up to a prime.
+   // Throws: IllegalArgumentException if maxEntries is not positive or too
+   // large.
+   {
+      double least = Math.max(3, Math.ceil(maxEntries / LOAD_FACTOR));
+
+      if (maxEntries <= 0)
+         throw new IllegalArgumentException("Maximum entries must be positive");
+      if (least > Primes.MAX_CAPACITY)
+         throw new IllegalArgumentException("Too many entries for one table");
+      return (int) least;
+   }
+
+
+   /**
+   * Determines whether a specified key is in this cache. This does not
+   * count as a use of the entry, nor as a hit or miss.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   <CODE>true</CODE> (if this cache contains an unexpired object with
+   *   the specified key); <CODE>false</CODE> otherwise.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public boolean containsKey(K key)
+   {
+      return findUnexpired(key, hashOf(key)) != -1;
+   }
+
+
+   private int findUnexpired(Object key, int h)
+   // Precondition: h is the hash of key.
+   // Postcondition: If the specified key is found in the table with an
+   // unexpired element, then the return value is its index. If it is found
+   // but has expired, it has been removed. Otherwise, or then, the return
+   // value is -1.
+   {
+      int index = findIndex(key, h);
+
+      if (index != -1 && expires != null && expired(index, System.nanoTime( )))
+      {
+         expirations++;
+         removeAt(index);
+         return -1;
+      }
+      return index;
+   }
+
+
+   private boolean expired(int i, long now)
+   // Precondition: expires is not null and index i holds an entry.
+   // The return value is true if the entry at index i has expired by now.
+   {
+      return now - expires[i] >= 0;
+   }
+
+
+   /**
+   * Retrieves an object for a specified key, and marks it as recently used.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   a reference to the object with the specified <CODE>key</CODE> (if this
+   *   cache contains an unexpired object with that key); null otherwise.
+   *   The first case counts as a hit and the second as a miss.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E get(K key)
+   {
+      int index = findUnexpired(key, hashOf(key));
+
+      if (index == -1)
+      {
+         misses++;
+         return null;
+      }
+      hits++;
+      referenced[index] = true;
+      return elementAt(index);
+   }
+
+
+   /**
+   * Retrieves the objects for a batch of keys. This has the same effect,
+   * hits, misses and reference bits included, as calling <CODE>get</CODE>
+   * for each key in turn.
+   * @param <CODE>keys</CODE>
+   *   the non-null keys to look for
+   * @param <CODE>elements</CODE>
+   *   the array that receives the objects
+   * <dt><b>Postcondition:</b><dd>
+   *   <CODE>elements[i]</CODE> is what <CODE>get(keys[i])</CODE> returned,
+   *   for each index <CODE>i</CODE> of <CODE>keys</CODE>.
+   * @return
+   *   the number of keys that were found
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>elements</CODE> is shorter than
+   *   <CODE>keys</CODE>.
+   * @exception NullPointerException
+   *   Indicates that one of the keys is null.
+   **/
+   public int getAll(K[ ] keys, E[ ] elements)
+   {
+      int i;
+      int found = 0;
+
+      if (elements.length < keys.length)
+         throw new IllegalArgumentException("Elements array is shorter than keys");
+      for (i = 0; i < keys.length; i++)
+      {
+         elements[i] = get(keys[i]);
+         if (elements[i] != null)
+            found++;
+      }
+      return found;
+   }
+
+
+   /**
+   * Add a new element to this cache, using the specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to use for the new element
+   * @param <CODE>element</CODE>
+   *   the new element that's being added to this cache
+   * <dt><b>Postcondition:</b><dd>
+   *   If this cache already has an object with the specified
+   *   <CODE>key</CODE>, then that object is replaced by
+   *   <CODE>element</CODE>, the entry is marked as recently used, and the
+   *   return value is a reference to the replaced object. Otherwise, if the
+   *   cache is full, an entry has been evicted; the new
+   *   <CODE>element</CODE> is added, not yet marked as used, and the return
+   *   value is null. Either way the entry's time to live starts again.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> or <CODE>element</CODE> is null.
+   **/
+   public E put(K key, E element)
+   {
+      int h;
+      int index;
+
+      if (key == null || element == null)
+         throw new NullPointerException("Key or Element is null");
+      h = hashOf(key);
+      index = findUnexpired(key, h);
+      if (index != -1)
+      {  // The key is already in the cache.
+         referenced[index] = true;
+         if (expires != null)
+            expires[index] = System.nanoTime( ) + ttlNanos;
+         return replace(index, element);
+      }
+
+      if (size( ) == maxEntries)
+         evict( );
+      index = insert(key, element, h);
+      referenced[index] = false;
+      if (expires != null)
+         expires[index] = System.nanoTime( ) + ttlNanos;
+      return null;
+   }
+
+
+   /**
+   * Add a batch of new elements to this cache. This has the same effect as
+   * calling <CODE>put</CODE> for each pair in turn.
+   * @param <CODE>keys</CODE>
+   *   the non-null keys to use for the new elements
+   * @param <CODE>elements</CODE>
+   *   the new elements, where <CODE>elements[i]</CODE> goes with
+   *   <CODE>keys[i]</CODE>
+   * <dt><b>Postcondition:</b><dd>
+   *   The cache is as if <CODE>put(keys[i], elements[i])</CODE> had been
+   *   called for each <CODE>i</CODE> in increasing order.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>keys</CODE> and <CODE>elements</CODE> have
+   *   different lengths.
+   * @exception NullPointerException
+   *   Indicates that one of the keys or elements is null.
+   **/
+   public void putAll(K[ ] keys, E[ ] elements)
+   {
+      int i;
+
+      if (keys.length != elements.length)
+         throw new IllegalArgumentException("Keys and elements differ in length");
+      for (i = 0; i < keys.length; i++)
+         put(keys[i], elements[i]);
+   }
+
+
+   private void evict( )
+   // Precondition: The cache holds at least one entry.
+   // Postcondition: The hand has moved past one entry that was expired or
+   // had a clear reference bit, and that entry has been removed. Every
+   // entry the hand passed on the way has had its reference bit cleared.
+   {
+      long now = (expires != null) ? System.nanoTime( ) : 0;
+
+      // At most one full turn clears every bit, so the loop ends within two.
+      while (true)
+      {
+         int i = hand;
+
+         hand = (hand + 1 == capacity( )) ? 0 : hand + 1;
+         if (!isOccupied(i))
+            continue;
+         if (expires != null && expired(i, now))
+         {
+            expirations++;
+            removeAt(i);
+            return;
+         }
+         if (referenced[i])
+            referenced[i] = false;
+         else
+         {
+            evictions++;
+            removeAt(i);
+            return;
+         }
+      }
+   }
+
+
+   /**
+   * Removes an object for a specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * <dt><b>Postcondition:</b><dd>
+   *   If an unexpired object was found with the specified
+   *   <CODE>key</CODE>, then that object has been removed from this cache
+   *   and is returned; otherwise the return value is null.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E remove(K key)
+   {
+      int index = findUnexpired(key, hashOf(key));
+      E answer = null;
+
+      if (index != -1)
+         answer = removeAt(index);
+      return answer;
+   }
+
+
+   int grownCapacity( )
+   // The return value is the current capacity, since the cache evicts
+   // rather than grows; a rehash only clears the tombstones.
+   {
+      return capacity( );
+   }
+
+
+   void rehashStarted(int capacity)
+   // Postcondition: The reference bits and expiry times have been set aside
+   // in oldReferenced and oldExpires, and fresh arrays of length capacity
+   // made for them.
+   {
+      oldReferenced = referenced;
+      oldExpires = expires;
+      referenced = new boolean[capacity];
+      if (oldExpires != null)
+         expires = new long[capacity];
+   }
+
+
+   void slotMoved(int from, int to)
+   // Postcondition: The entry's reference bit and expiry time have moved
+   // with it from index from to index to.
+   {
+      referenced[to] = oldReferenced[from];
+      if (oldExpires != null)
+         expires[to] = oldExpires[from];
+   }
+
+
+   void rehashFinished( )
+   // Postcondition: The old arrays have been let go.
+   {
+      oldReferenced = null;
+      oldExpires = null;
+   }
+
+
+   /**
+   * Determines the largest number of elements this cache holds.
+   * @param - none
+   * @return
+   *   the maximum number of entries given to the constructor
+   **/
+   public int getMaxEntries( )
+   {
+      return maxEntries;
+   }
+
+
+   /**
+   * Determines the number of hits.
+   * @param - none
+   * @return
+   *   the number of calls to <CODE>get</CODE> that found an element since
+   *   the cache was made or the counters were reset
+   **/
+   public long getHits( )
+   {
+      return hits;
+   }
+
+
+   /**
+   * Determines the number of misses.
+   * @param - none
+   * @return
+   *   the number of calls to <CODE>get</CODE> that found no element since
+   *   the cache was made or the counters were reset
+   **/
+   public long getMisses( )
+   {
+      return misses;
+   }
+
+
+   /**
+   * Determines the number of evictions.
+   * @param - none
+   * @return
+   *   the number of unexpired entries removed to make room for new ones
+   *   since the cache was made or the counters were reset
+   **/
+   public long getEvictions( )
+   {
+      return evictions;
+   }
+
+
+   /**
+   * Determines the number of expirations.
+   * @param - none
+   * @return
+   *   the number of entries removed because their time to live had passed
+   *   since the cache was made or the counters were reset
+   **/
+   public long getExpirations( )
+   {
+      return expirations;
+   }
+
+
+   /**
+   * Determines the fraction of calls to <CODE>get</CODE> that hit.
+   * @param - none
+   * @return
+   *   hits divided by hits plus misses, or zero if there have been none
+   **/
+   public double getHitRate( )
+   {
+      long lookups = hits + misses;
+
+      return (lookups == 0) ? 0 : (double) hits / lookups;
+   }
+
+
+   /**
+   * Sets the hit, miss, eviction and expiration counters back to zero.
+   * @param - none
+   * <dt><b>Postcondition:</b><dd>
+   *   All four counters are zero. The cache's contents are unchanged.
+   **/
+   public void resetCounters( )
+   {
+      hits = 0;
+      misses = 0;
+      evictions = 0;
+      expirations = 0;
+   }
+}
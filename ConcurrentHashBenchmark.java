@@ -0,0 +1,269 @@
+/*
+ * Author: Ammaad Denmark, Tim Tabachuk
+ * Date: 10/17/26
+ * Filename: ConcurrentHashBenchmark.java
+ *
+ * Multi-threaded stress test and scaling benchmark for the concurrent
+ * tables.
+ *
+ * The stress test has every thread insert, read back and remove its own
+ * share of the keys while also reading everybody else's, checks that no
+ * get ever returns an element stored under a different key, and finally
+ * checks that the table holds exactly the keys that should be left.
+ *
+ * The benchmark fills a table with half of its keys and then runs a mix of
+ * gets, puts and removes of random keys from 1, 2, 4, ... threads for a
+ * fixed time, reporting total throughput and the speedup over one thread.
+ * "locked-chain", "locked-linear" and "locked-double" are TableChainHash,
+ * Table and TableDoubleHash behind a single lock, which is what the
+ * concurrent tables replace.
+ *
+ * Usage: java ConcurrentHashBenchmark [options]
+ *   -tables locked-chain,concurrent-chain,locked-linear,concurrent-linear,
+ *           locked-double,concurrent-double
+ *                                          tables to measure
+ *   -threads 1,2,4,8                       thread counts (default: powers
+ *                                          of two up to twice the number
+ *                                          of processors)
+ *   -keys 1000000                          number of distinct keys
+ *   -reads 90                              percentage of gets; the rest
+ *                                          are split between put and remove
+ *   -seconds 2                             length of each measurement
+ *   -stress true                           run the stress test first
+ *
+*/
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ConcurrentHashBenchmark {
+    static String[] tables = {"locked-chain", "concurrent-chain", "locked-linear", "concurrent-linear",
+                             "locked-double", "concurrent-double"};
+    static int[] threadCounts = defaultThreadCounts();
+    static int keyCount = 1000000;
+    static int readPercent = 90;
+    static double seconds = 2;
+    static boolean stress = true;
+
+    static volatile boolean running;
+    static volatile int sink;
+
+    public static void main(String[] args) throws Exception {
+        parseArgs(args);
+        Integer[] keys = new Integer[keyCount];
+        for (int i = 0; i < keyCount; i++)
+            keys[i] = i;
+
+        if (stress) {
+            for (String table : tables) {
+                int threads = threadCounts[threadCounts.length - 1];
+                stressTest(table, threads, keys);
+                System.out.println("stress " + table + " with " + threads + " threads: ok");
+            }
+            System.out.println();
+        }
+
+        System.out.printf("%-18s %8s %12s %8s%n", "table", "threads", "Mops/s", "speedup");
+        for (String table : tables) {
+            double single = 0;
+            for (int threads : threadCounts) {
+                measure(table, threads, keys, seconds / 2); // warmup
+                double mops = measure(table, threads, keys, seconds);
+                if (single == 0)
+                    single = mops / threads;
+                System.out.printf("%-18s %8d %12.2f %8.2f%n", table, threads, mops, mops / single);
+            }
+        }
+    }
+
+    static double measure(String name, int threads, Integer[] keys, double duration) throws Exception {
+        final HashTable<Integer, Integer> table = newTable(name, keys.length);
+        for (int i = 0; i < keys.length; i += 2)
+            table.put(keys[i], keys[i]);
+
+        final long[] counts = new long[threads];
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch done = new CountDownLatch(threads);
+        running = true;
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            new Thread(new Runnable() {
+                public void run() {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long ops = 0;
+                    int found = 0;
+                    ready.countDown();
+                    while (running) {
+                        Integer key = keys[random.nextInt(keys.length)];
+                        int dice = random.nextInt(100);
+                        if (dice < readPercent) {
+                            if (table.get(key) != null)
+                                found++;
+                        }
+                        else if ((dice & 1) == 0)
+                            table.put(key, key);
+                        else
+                            table.remove(key);
+                        ops++;
+                    }
+                    counts[id] = ops;
+                    sink += found;
+                    done.countDown();
+                }
+            }).start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        Thread.sleep((long) (duration * 1000));
+        running = false;
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        long total = 0;
+        for (long c : counts)
+            total += c;
+        return total * 1000.0 / elapsed;
+    }
+
+    static void stressTest(String name, final int threads, final Integer[] keys) throws Exception {
+        final HashTable<Integer, Integer> table = newTable(name, 16);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> workers = new ArrayList<Thread>();
+
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            Thread worker = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        // this thread owns the keys congruent to id
+                        for (int k = id; k < keys.length; k += threads) {
+                            table.put(keys[k], keys[k]);
+                            check(table.get(keys[k]) == keys[k], "own key missing after put");
+                            checkStranger(table, keys[random.nextInt(keys.length)]);
+                        }
+                        for (int k = id; k < keys.length; k += threads) {
+                            if ((k & 1) == 1)
+                                check(table.remove(keys[k]) == keys[k], "own key missing at remove");
+                            else
+                                table.put(keys[k], keys[k]);
+                            checkStranger(table, keys[random.nextInt(keys.length)]);
+                        }
+                    }
+                    catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+        if (failure.get() != null)
+            throw new IllegalStateException("Stress test of " + name + " failed", failure.get());
+
+        // every even key is left, every odd key is gone
+        check(table.size() == (keys.length + 1) / 2, "size is " + table.size());
+        for (int k = 0; k < keys.length; k++) {
+            Integer element = table.get(keys[k]);
+            if ((k & 1) == 0)
+                check(keys[k].equals(element), "key " + k + " lost");
+            else
+                check(element == null && !table.containsKey(keys[k]), "key " + k + " not removed");
+        }
+    }
+
+    static void checkStranger(HashTable<Integer, Integer> table, Integer key) {
+        // another thread's key is either absent or holds its own element
+        Integer element = table.get(key);
+        check(element == null || element.equals(key), "key " + key + " holds " + element);
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition)
+            throw new IllegalStateException(message);
+    }
+
+    static HashTable<Integer, Integer> newTable(String name, int capacity) {
+        switch (name) {
+            case "locked-chain":
+                return new SynchronizedTable<Integer, Integer>(new TableChainHash<Integer, Integer>(capacity));
+            case "concurrent-chain":
+                return new ConcurrentTableChainHash<Integer, Integer>(capacity);
+            case "locked-linear":
+                return new SynchronizedTable<Integer, Integer>(new Table<Integer, Integer>(capacity));
+            case "concurrent-linear":
+                return new ConcurrentTable<Integer, Integer>(capacity);
+            case "locked-double":
+                return new SynchronizedTable<Integer, Integer>(new TableDoubleHash<Integer, Integer>(capacity));
+            case "concurrent-double":
+                return new ConcurrentTableDoubleHash<Integer, Integer>(capacity);
+            default:
+                throw new IllegalArgumentException("Unknown table: " + name);
+        }
+    }
+
+    static int[] defaultThreadCounts() {
+        int limit = 2 * Runtime.getRuntime().availableProcessors();
+        List<Integer> counts = new ArrayList<Integer>();
+        for (int t = 1; t <= limit; t *= 2)
+            counts.add(t);
+        int[] result = new int[counts.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = counts.get(i);
+        return result;
+    }
+
+    static void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 == args.length)
+                throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            switch (option) {
+                case "-tables":
+                    tables = value.split(",");
+                    break;
+                case "-threads":
+                    String[] t = value.split(",");
+                    threadCounts = new int[t.length];
+                    for (int j = 0; j < t.length; j++)
+                        threadCounts[j] = Integer.parseInt(t[j]);
+                    break;
+                case "-keys":
+                    keyCount = Integer.parseInt(value);
+                    break;
+                case "-reads":
+                    readPercent = Integer.parseInt(value);
+                    break;
+                case "-seconds":
+                    seconds = Double.parseDouble(value);
+                    break;
+                case "-stress":
+                    stress = Boolean.parseBoolean(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+    }
+
+    // any HashTable behind one lock
+    static class SynchronizedTable<K, E> implements HashTable<K, E> {
+        private final HashTable<K, E> table;
+
+        SynchronizedTable(HashTable<K, E> table) {
+            this.table = table;
+        }
+
+        public synchronized boolean containsKey(K key) { return table.containsKey(key); }
+        public synchronized E get(K key) { return table.get(key); }
+        public synchronized E put(K key, E element) { return table.put(key, element); }
+        public synchronized E remove(K key) { return table.remove(key); }
+        public synchronized int size() { return table.size(); }
+        public synchronized int getCollisions() { return table.getCollisions(); }
+    }
+}
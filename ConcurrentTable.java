@@ -0,0 +1,500 @@
+// File: ConcurrentTable.java
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/******************************************************************************
+* A <CODE>ConcurrentTable</CODE> is an open-address hash table with linear
+* probing, like <CODE>Table</CODE>, that many threads can use at once
+* without any locks at all.
+*
+* Every slot is a key and an element side by side in one
+* <CODE>AtomicReferenceArray</CODE>, and every change is a single
+* compare-and-set on one of them. A key, once placed in a slot, stays there
+* until the table is resized; removing it only replaces its element with a
+* tombstone, and putting it back reuses the same slot. <CODE>get</CODE>
+* follows the same probe sequence as <CODE>Table</CODE> with plain volatile
+* reads and never retries, so it is wait-free. <CODE>put</CODE> and
+* <CODE>remove</CODE> retry only when another thread changed the same slot
+* first.
+*
+* When too many slots have been claimed, a larger array (or one of the same
+* size, if most of the claimed slots are tombstones) is allocated and linked
+* from the current one. Every writer that notices the link copies a block
+* of slots before carrying on, and the new array becomes the current one
+* once the last block is copied. A slot being copied is first frozen, so no
+* thread can change it in the old array; readers that find a slot already
+* copied follow the link and look in the new array.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class ConcurrentTable< K , E > implements HashTable< K , E >
+{
+   // Invariant of the ConcurrentTable class:
+   //   1. The current array is top. Each array may link to the next array
+   //      it is being copied into; top only moves to the next array once
+   //      every slot of the old one has been copied.
+   //   2. Slot i of an array is kvs[2i] (the key) and kvs[2i+1] (its value).
+   //      The preferred location for a key is hash(key); if that slot holds
+   //      another key, the search moves on with nextIndex, as in Table.
+   //   3. A key slot goes from null to a key or to SEALED and then never
+   //      changes. SEALED marks an empty slot that was closed because the
+   //      array is being copied, so a search that reaches it continues in
+   //      the next array.
+   //   4. A value goes from null to elements and TOMBSTONE (a removed key)
+   //      and back any number of times, then possibly to a Frozen copy of
+   //      its element (the slot is being copied), and finally to MOVED (the
+   //      slot has been copied). Frozen and MOVED never change back.
+   //   5. The number of elements in the table is the sum of manyItems.
+   private final AtomicReference<Chunk> top;
+   private final LongAdder manyItems = new LongAdder( );
+   private final double maxLoadFactor;
+
+   // collisions from the most recent put by any thread
+   private volatile int collisions;
+
+   // the key of a slot closed during a copy, the value of a removed key,
+   // and the value of a slot that has been copied to the next array
+   private static final Object SEALED = new Object( );
+   private static final Object TOMBSTONE = new Object( );
+   private static final Object MOVED = new Object( );
+
+   // the number of slots a writer copies each time it helps with a resize
+   private static final int COPY_BLOCK = 1024;
+
+   // the largest capacity whose keys and values fit in one array
+   private static final int MAX_CAPACITY = (Integer.MAX_VALUE - 8) / 2;
+
+   /**
+   * The maximum load factor used when none is given to the constructor.
+   **/
+   public static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+   /**
+   * Initialize an empty table with a specified capacity and the default
+   * maximum load factor.
+   * @param <CODE>capacity</CODE>
+   *   the capacity for this new open-address hash table
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has the specified capacity.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public ConcurrentTable(int capacity)
+   {
+      this(capacity, DEFAULT_LOAD_FACTOR);
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity and maximum load
+   * factor.
+   * @param <CODE>capacity</CODE>
+   *   the initial capacity for this new open-address hash table
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest fraction of the capacity whose slots may be claimed by
+   *   keys, including removed ones, before the table is resized
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has the specified capacity.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is not positive or too large, or
+   *   that <CODE>maxLoadFactor</CODE> is not in the range (0, 1].
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public ConcurrentTable(int capacity, double maxLoadFactor)
+   {
+      if (capacity <= 0 || capacity > MAX_CAPACITY)
+         throw new IllegalArgumentException("Capacity is out of range");
+      if (!(maxLoadFactor > 0 && maxLoadFactor <= 1))
+         throw new IllegalArgumentException("Load factor must be in (0, 1]");
+      this.maxLoadFactor = maxLoadFactor;
+      top = new AtomicReference<Chunk>(new Chunk(capacity));
+   }
+
+
+   /**
+   * Determines whether a specified key is in this table. This method never
+   * blocks or retries.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   <CODE>true</CODE> (if this table contains an object with the specified
+   *   key); <CODE>false</CODE> otherwise.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public boolean containsKey(K key)
+   {
+      return get(key) != null;
+   }
+
+
+   /** Retrieves an object for a specified key. This method never blocks or
+   * retries.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   a reference to the object with the specified <CODE>key</CODE> (if this
+   *   table contains an such an object);  null otherwise.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E get(K key)
+   {
+      int h = key.hashCode( );
+      Chunk t = top.get( );
+
+      while (t != null) {
+         AtomicReferenceArray<Object> kvs = t.kvs;
+         int i = hash(h, t.length);
+         int count;
+         Object k, v;
+
+         for (count = 0; count < t.length; count++) {
+            k = kvs.get(2*i);
+            if (k == null)
+               return null;
+            if (k == SEALED)
+               break;
+            if (k == key || key.equals(k)) {
+               v = kvs.get(2*i + 1);
+               if (v == MOVED)
+                  break;
+               if (v instanceof Frozen)
+                  return (E) ((Frozen) v).element;
+               if (v == null || v == TOMBSTONE)
+                  return null;
+               return (E) v;
+            }
+            i = nextIndex(i, t.length);
+         }
+         // the key is not in this array, or has been copied out of it
+         t = t.next.get( );
+      }
+      return null;
+   }
+
+
+   private static int hash(int h, int length)
+   // The return value is a valid slot index for an array of the given length.
+   // The index is calculated as the remainder when the hash code with its
+   // sign bit cleared is divided by the length.
+   {
+      return (h & 0x7FFFFFFF) % length;
+   }
+
+
+   private static int nextIndex(int i, int length)
+   // The return value is normally i+1. But if i+1 is length, then the
+   // return value is zero instead.
+   {
+      if (i+1 == length)
+         return 0;
+      else
+         return i+1;
+   }
+
+
+   /**
+   * Add a new element to this table, using the specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to use for the new element
+   * @param <CODE>element</CODE>
+   *   the new element that's being added to this table
+   * <dt><b>Precondition:</b><dd>
+   *   Neither <CODE>key</CODE> nor <CODE>element</CODE> is null.
+   * <dt><b>Postcondition:</b><dd>
+   *   If this table already has an object with the specified <CODE>key</CODE>,
+   *   then that object is replaced by <CODE>element</CODE>, and the return
+   *   value is a reference to the replaced object. Otherwise, the new
+   *   <CODE>element</CODE> is added with the specified <CODE>key</CODE>
+   *   and the return value is null. If the key needs a new slot and too
+   *   many have been claimed, the table is resized.
+   * @exception IllegalStateException
+   *   Indicates that the table is full and has reached its largest
+   *   possible capacity.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> or <CODE>element</CODE> is null.
+   **/
+   public E put(K key, E element)
+   {
+      if (element == null)
+         throw new NullPointerException("Element is null");
+      return (E) putValue(top.get( ), key, element, null);
+   }
+
+
+   /**
+   * Removes an object for a specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * <dt><b>Postcondition:</b><dd>
+   *   If an object was found with the specified <CODE>key</CODE>, then that
+   *   object has been removed from this table and a copy of the removed object
+   *   is returned; otherwise, this table is unchanged and the null reference
+   *   is returned.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E remove(K key)
+   {
+      return (E) putValue(top.get( ), key, TOMBSTONE, null);
+   }
+
+
+   private Object putValue(Chunk t, Object key, Object value, Frozen source)
+   // Precondition: value is an element or TOMBSTONE (to remove the key).
+   // Postcondition: The key's value is value in t or in an array that t is
+   // being copied into. The return value is the element that was replaced,
+   // or null if there was none. If source is not null, this is the copy of
+   // that frozen slot: the value is only stored if the key has never had one
+   // in the new array and the slot has not been copied by another thread in
+   // the meantime, and manyItems and collisions are left alone.
+   {
+      boolean copying = (source != null);
+      int h = key.hashCode( );
+
+      search:
+      while (true) {
+         // Once the source slot is MOVED, its element has been copied and
+         // may since have been removed and dropped by a later resize, so a
+         // late copy must not bring it back.
+         if (copying && source.kvs.get(source.index) != source)
+            return null;
+
+         AtomicReferenceArray<Object> kvs = t.kvs;
+         int i = hash(h, t.length);
+         int count;
+         Object k, v;
+
+         // find the key's slot, claiming an empty one if it is not there
+         for (count = 0; ; count++) {
+            if (count == t.length) {
+               // every slot on the probe sequence is taken
+               resize(t);
+               t = help(t);
+               continue search;
+            }
+            k = kvs.get(2*i);
+            if (k == null) {
+               if (value == TOMBSTONE)
+                  return null;
+               if (t.next.get( ) != null) {
+                  // Close this slot so nobody adds the key to this array
+                  // after we have added it to the next one.
+                  if (kvs.compareAndSet(2*i, null, SEALED)) {
+                     t = help(t);
+                     continue search;
+                  }
+               }
+               else if (kvs.compareAndSet(2*i, null, key)) {
+                  if (t.claimed.incrementAndGet( ) > maxLoadFactor * t.length)
+                     resize(t);
+                  break;
+               }
+               k = kvs.get(2*i);
+            }
+            if (k == SEALED) {
+               t = help(t);
+               continue search;
+            }
+            if (k == key || key.equals(k))
+               break;
+            i = nextIndex(i, t.length);
+         }
+         if (!copying && value != TOMBSTONE)
+            collisions = count;
+
+         // slot i holds the key; now change its value
+         while (true) {
+            v = kvs.get(2*i + 1);
+            if (v == MOVED || v instanceof Frozen || t.next.get( ) != null) {
+               copySlot(t, i);
+               t = help(t);
+               continue search;
+            }
+            if (copying ? v != null
+                        : value == TOMBSTONE && (v == null || v == TOMBSTONE))
+               return null;
+            if (kvs.compareAndSet(2*i + 1, v, value)) {
+               if (copying)
+                  return null;
+               if (v == null || v == TOMBSTONE) {
+                  if (value != TOMBSTONE)
+                     manyItems.increment( );
+                  return null;
+               }
+               if (value == TOMBSTONE)
+                  manyItems.decrement( );
+               return v;
+            }
+         }
+      }
+   }
+
+
+   private void resize(Chunk t)
+   // Postcondition: t links to a next array. If this thread allocated it,
+   // then its capacity was chosen as in Table: the current capacity if the
+   // table would be at most half full, otherwise the capacity is grown until
+   // it is.
+   {
+      if (t.next.get( ) != null)
+         return;
+
+      long needed = Math.max(manyItems.sum( ), 0) + 1;
+      int newCapacity = t.length;
+
+      while (2 * needed > maxLoadFactor * newCapacity && newCapacity < MAX_CAPACITY)
+         newCapacity = Math.min(Primes.growCapacity(newCapacity), MAX_CAPACITY);
+      if (needed > maxLoadFactor * newCapacity)
+         throw new IllegalStateException("Table is full.");
+      t.next.compareAndSet(null, new Chunk(newCapacity));
+   }
+
+
+   private Chunk help(Chunk t)
+   // Precondition: t links to a next array.
+   // Postcondition: If any of t's slots were not yet being copied, this
+   // thread has copied a block of them, and if that finished the copy of
+   // the current array, top has moved on. The return value is t's next array.
+   {
+      int start, end, i;
+
+      if (t.copyIndex.get( ) < t.length) {
+         start = t.copyIndex.getAndAdd(COPY_BLOCK);
+         if (start < t.length) {
+            end = Math.min(start + COPY_BLOCK, t.length);
+            for (i = start; i < end; i++)
+               copySlot(t, i);
+            t.copied.addAndGet(end - start);
+         }
+      }
+
+      Chunk current = top.get( );
+      while (current.next.get( ) != null && current.copied.get( ) == current.length) {
+         top.compareAndSet(current, current.next.get( ));
+         current = top.get( );
+      }
+      return t.next.get( );
+   }
+
+
+   private void copySlot(Chunk t, int i)
+   // Precondition: t links to a next array.
+   // Postcondition: Slot i of t can no longer change. Its key slot is SEALED
+   // or its value is MOVED, and any element it held is in the next array.
+   {
+      AtomicReferenceArray<Object> kvs = t.kvs;
+      Object k = kvs.get(2*i);
+      Object v;
+      Frozen frozen;
+
+      if (k == null) {
+         if (kvs.compareAndSet(2*i, null, SEALED))
+            return;
+         k = kvs.get(2*i);
+      }
+      if (k == SEALED)
+         return;
+
+      while (true) {
+         v = kvs.get(2*i + 1);
+         if (v == MOVED)
+            return;
+         if (v == null || v == TOMBSTONE) {
+            if (kvs.compareAndSet(2*i + 1, v, MOVED))
+               return;
+         }
+         else {
+            // freeze the element so nobody changes it while it is copied
+            frozen = (v instanceof Frozen) ? (Frozen) v : new Frozen(v, kvs, 2*i + 1);
+            if (frozen == v || kvs.compareAndSet(2*i + 1, v, frozen)) {
+               putValue(t.next.get( ), k, frozen.element, frozen);
+               kvs.compareAndSet(2*i + 1, frozen, MOVED);
+               return;
+            }
+         }
+      }
+   }
+
+
+   /**
+   * Determines the number of elements in this table. With concurrent
+   * writers the answer is only a snapshot.
+   * @param - none
+   * @return
+   *   the number of elements in this table
+   **/
+   public int size( )
+   {
+      return (int) Math.max(0, Math.min(manyItems.sum( ), Integer.MAX_VALUE));
+   }
+
+
+   /**
+   * Determines the current capacity of this table.
+   * @param - none
+   * @return
+   *   the number of slots in the current array; this grows as elements are
+   *   added
+   **/
+   public int capacity( )
+   {
+      return top.get( ).length;
+   }
+
+
+   /**
+   * returns the number of collisions from put method.
+   * @param
+   *     none
+   * @return
+   *     collisions - integer storing number of collisions
+   *                   from placing the element of the most recent put by
+   *                   any thread
+   **/
+   public int getCollisions() {
+      return collisions;
+   }
+
+
+   // One array of slots, with the counters used to resize it.
+   private static final class Chunk
+   {
+      final int length;
+      final AtomicReferenceArray<Object> kvs;
+      final AtomicInteger claimed = new AtomicInteger( );
+      final AtomicInteger copyIndex = new AtomicInteger( );
+      final AtomicInteger copied = new AtomicInteger( );
+      final AtomicReference<Chunk> next = new AtomicReference<Chunk>( );
+
+      Chunk(int length)
+      {
+         this.length = length;
+         kvs = new AtomicReferenceArray<Object>(2 * length);
+      }
+   }
+
+
+   // The value of a slot whose element is being copied to the next array,
+   // with the place it was frozen in.
+   private static final class Frozen
+   {
+      final Object element;
+      final AtomicReferenceArray<Object> kvs;
+      final int index;
+
+      Frozen(Object element, AtomicReferenceArray<Object> kvs, int index)
+      {
+         this.element = element;
+         this.kvs = kvs;
+         this.index = index;
+      }
+   }
+}
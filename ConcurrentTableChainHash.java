@@ -0,0 +1,441 @@
+// File: ConcurrentTableChainHash.java
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/******************************************************************************
+* A <CODE>ConcurrentTableChainHash</CODE> is a chained hash table that many
+* threads can use at once without any outside locking.
+*
+* The buckets are divided among a power-of-two number of segments, each
+* with its own bucket array and its own lock, and a key's segment is chosen
+* by the high bits of its hash code. Writers lock only the segment they
+* change, so writers to different segments proceed in parallel, and each
+* segment grows on its own when it passes the maximum load factor.
+*
+* Readers never lock. Every entry of a chain is immutable: a writer that
+* adds, replaces or removes an element builds the new front part of the
+* chain and then publishes it with a single volatile write to the bucket.
+* A reader therefore always walks either the old chain or the new one, and
+* <CODE>get</CODE> and <CODE>containsKey</CODE> never wait for a writer.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class ConcurrentTableChainHash< K , E > implements HashTable< K , E >
+{
+   // Invariant of the ConcurrentTableChainHash class:
+   //   1. A key with spread hash code h belongs to segment
+   //      segments[h >>> segmentShift]. Within that segment, its element is
+   //      stored in the chain for bucket (h & 0x7FFFFFFF) % buckets.length().
+   //   2. Chains are made of immutable Entry objects and are only replaced,
+   //      never changed in place. Every change to a segment (a new chain in
+   //      one of its buckets, or a new bucket array) is made while holding
+   //      that segment's lock.
+   //   3. The number of items in a segment is in its manyItems field, and
+   //      the number of items in the table is the sum over all segments.
+   //   4. Before a new key is added to a segment, its manyItems + 1 is at
+   //      most maxLoadFactor * buckets.length(), unless the segment cannot
+   //      grow any more.
+   private final Segment<K, E>[ ] segments;
+   private final int segmentShift;
+   private final double maxLoadFactor;
+
+   // collisions from the most recent put by any thread
+   private volatile int collisions;
+
+   /**
+   * The maximum load factor used when none is given to the constructor.
+   **/
+   public static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+   /**
+   * Initialize an empty table with a specified capacity, the default
+   * maximum load factor, and about four segments for every processor.
+   * @param <CODE>capacity</CODE>
+   *   the total number of buckets for this new table
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has at least the specified capacity.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public ConcurrentTableChainHash(int capacity)
+   {
+      this(capacity, DEFAULT_LOAD_FACTOR,
+           4 * Runtime.getRuntime( ).availableProcessors( ));
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity, maximum load factor
+   * and number of segments.
+   * @param <CODE>capacity</CODE>
+   *   the total number of buckets for this new table
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest average chain length allowed in a segment before it
+   *   grows; it may be larger than 1.0
+   * @param <CODE>concurrencyLevel</CODE>
+   *   the number of writers expected to change the table at the same time;
+   *   the number of segments is the smallest power of two that is at least
+   *   this large
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has at least the specified capacity.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE>, <CODE>maxLoadFactor</CODE> or
+   *   <CODE>concurrencyLevel</CODE> is not positive.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public ConcurrentTableChainHash(int capacity, double maxLoadFactor,
+                                   int concurrencyLevel)
+   {
+      if (capacity <= 0)
+         throw new IllegalArgumentException("Capacity is negative");
+      if (!(maxLoadFactor > 0))
+         throw new IllegalArgumentException("Load factor must be positive");
+      if (concurrencyLevel <= 0)
+         throw new IllegalArgumentException("Concurrency level must be positive");
+
+      int segmentCount = 1;
+      int bits = 0;
+      int i;
+
+      while (segmentCount < concurrencyLevel && segmentCount < (1 << 16)) {
+         segmentCount <<= 1;
+         bits++;
+      }
+      this.maxLoadFactor = maxLoadFactor;
+      segmentShift = 32 - bits;
+      segments = newSegmentArray(segmentCount);
+      for (i = 0; i < segmentCount; i++)
+         segments[i] = new Segment<K, E>(
+            Primes.nextPrime(Math.max(1, (capacity + segmentCount - 1) / segmentCount)));
+   }
+
+
+   /**
+   * Determines whether a specified key is in this table. This method never
+   * blocks.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   <CODE>true</CODE> (if this table contains an object with the specified
+   *   key); <CODE>false</CODE> otherwise.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public boolean containsKey(K key)
+   {
+      return get(key) != null;
+   }
+
+
+   /** Retrieves an object for a specified key. This method never blocks.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   a reference to the object with the specified <CODE>key</CODE> (if this
+   *   table contains an such an object);  null otherwise.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E get(K key)
+   {
+      int h = spread(key.hashCode( ));
+      AtomicReferenceArray<Entry<K, E>> buckets = segmentFor(h).buckets;
+      Entry<K, E> cursor = buckets.get(index(h, buckets.length( )));
+
+      while (cursor != null) {
+         if (cursor.hash == h && key.equals(cursor.key))
+            return cursor.element;
+         cursor = cursor.next;
+      }
+      return null;
+   }
+
+
+   /**
+   * Add a new element to this table, using the specified key. Only the
+   * segment that holds the key is locked.
+   * @param <CODE>key</CODE>
+   *   the non-null key to use for the new element
+   * @param <CODE>element</CODE>
+   *   the new element that's being added to this table
+   * <dt><b>Precondition:</b><dd>
+   *   Neither <CODE>key</CODE> nor <CODE>element</CODE> is null.
+   * <dt><b>Postcondition:</b><dd>
+   *   If this table already has an object with the specified <CODE>key</CODE>,
+   *   then that object is replaced by <CODE>element</CODE>, and the return
+   *   value is a reference to the replaced object. Otherwise, the new
+   *   <CODE>element</CODE> is added with the specified <CODE>key</CODE>
+   *   and the return value is null.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> or <CODE>element</CODE> is null.
+   **/
+   public E put(K key, E element)
+   {
+      if (element == null)
+         throw new NullPointerException("Element is null");
+
+      int h = spread(key.hashCode( ));
+      Segment<K, E> segment = segmentFor(h);
+
+      synchronized (segment)
+      {
+         AtomicReferenceArray<Entry<K, E>> buckets = segment.buckets;
+         int index = index(h, buckets.length( ));
+         Entry<K, E> head = buckets.get(index);
+         Entry<K, E> cursor;
+         int passed = 0;
+
+         // walk the chain, counting every entry we pass as a collision
+         for (cursor = head; cursor != null; cursor = cursor.next) {
+            if (cursor.hash == h && key.equals(cursor.key)) {
+               // new element replaces old
+               buckets.set(index, replace(head, cursor,
+                  new Entry<K, E>(key, h, element, cursor.next)));
+               collisions = passed;
+               return cursor.element;
+            }
+            passed++;
+         }
+
+         // The key is not yet in this table.
+         if (segment.manyItems + 1 > maxLoadFactor * buckets.length( )) {
+            segment.resize(Primes.growCapacity(buckets.length( )));
+            buckets = segment.buckets;
+            index = index(h, buckets.length( ));
+            head = buckets.get(index);
+            passed = 0;
+            for (cursor = head; cursor != null; cursor = cursor.next)
+               passed++;
+         }
+         buckets.set(index, new Entry<K, E>(key, h, element, head));
+         segment.manyItems++;
+         collisions = passed;
+         return null;
+      }
+   }
+
+
+   /**
+   * Removes an object for a specified key. Only the segment that holds the
+   * key is locked.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * <dt><b>Postcondition:</b><dd>
+   *   If an object was found with the specified <CODE>key</CODE>, then that
+   *   object has been removed from this table and a copy of the removed object
+   *   is returned; otherwise, this table is unchanged and the null reference
+   *   is returned.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E remove(K key)
+   {
+      int h = spread(key.hashCode( ));
+      Segment<K, E> segment = segmentFor(h);
+
+      synchronized (segment)
+      {
+         AtomicReferenceArray<Entry<K, E>> buckets = segment.buckets;
+         int index = index(h, buckets.length( ));
+         Entry<K, E> head = buckets.get(index);
+         Entry<K, E> cursor;
+
+         for (cursor = head; cursor != null; cursor = cursor.next) {
+            if (cursor.hash == h && key.equals(cursor.key)) {
+               buckets.set(index, replace(head, cursor, cursor.next));
+               segment.manyItems--;
+               return cursor.element;
+            }
+         }
+         return null;
+      }
+   }
+
+
+   /**
+   * Determines the number of elements in this table. Each segment is
+   * counted under its lock, but segments may change while the others are
+   * being counted, so with concurrent writers the answer is only a
+   * snapshot.
+   * @param - none
+   * @return
+   *   the number of elements in this table
+   **/
+   public int size( )
+   {
+      long total = 0;
+      int i;
+
+      for (i = 0; i < segments.length; i++) {
+         synchronized (segments[i]) {
+            total += segments[i].manyItems;
+         }
+      }
+      return (int) Math.min(total, Integer.MAX_VALUE);
+   }
+
+
+   /**
+   * Determines the current capacity of this table.
+   * @param - none
+   * @return
+   *   the total number of buckets in all of the segments
+   **/
+   public int capacity( )
+   {
+      long total = 0;
+      int i;
+
+      for (i = 0; i < segments.length; i++)
+         total += segments[i].buckets.length( );
+      return (int) Math.min(total, Integer.MAX_VALUE);
+   }
+
+
+   /**
+   * returns the number of collisions from put method.
+   * @param
+   *     none
+   * @return
+   *     collisions - integer storing number of collisions
+   *                   from placing the element of the most recent put by
+   *                   any thread
+   **/
+   public int getCollisions() {
+      return collisions;
+   }
+
+
+   private static int spread(int h)
+   // The return value is the hash code mixed so that every bit depends on
+   // the whole hash code. Both the segment (chosen by the high bits) and the
+   // bucket (chosen by the remainder) are then well spread, even for keys
+   // such as small Integers whose hash codes differ only in their low bits.
+   {
+      h ^= h >>> 16;
+      h *= 0x85EBCA6B;
+      return h ^ (h >>> 13);
+   }
+
+
+   private Segment<K, E> segmentFor(int h)
+   {
+      return segments[segmentShift == 32 ? 0 : h >>> segmentShift];
+   }
+
+
+   private static int index(int h, int length)
+   {
+      return (h & 0x7FFFFFFF) % length;
+   }
+
+
+   private static < K , E > Entry<K, E> replace(Entry<K, E> head,
+                                                 Entry<K, E> target,
+                                                 Entry<K, E> rest)
+   // Precondition: target is on the chain that starts at head.
+   // Postcondition: The return value is a new chain with the same entries as
+   // the one starting at head, except that target and everything after it
+   // have been replaced by rest. The entries before target are copied; the
+   // old chain is unchanged, so readers still walking it are unaffected.
+   {
+      Entry<K, E> cursor;
+      Entry<K, E>[ ] prefix;
+      int count = 0;
+      int i;
+
+      for (cursor = head; cursor != target; cursor = cursor.next)
+         count++;
+      prefix = newEntryArray(count);
+      for (i = 0, cursor = head; i < count; i++, cursor = cursor.next)
+         prefix[i] = cursor;
+
+      // copy the prefix back to front, so each copy can link to the next
+      for (i = count - 1; i >= 0; i--)
+         rest = new Entry<K, E>(prefix[i].key, prefix[i].hash,
+                                prefix[i].element, rest);
+      return rest;
+   }
+
+
+   @SuppressWarnings("unchecked")
+   private static < K , E > Segment<K, E>[ ] newSegmentArray(int length)
+   // The return value is a new array of length null segments. Java cannot
+   // create an array of a generic type directly, so an array of wildcard
+   // segments is created and cast, which is safe because it is empty.
+   {
+      return (Segment<K, E>[ ]) new Segment<?, ?>[length];
+   }
+
+
+   @SuppressWarnings("unchecked")
+   private static < K , E > Entry<K, E>[ ] newEntryArray(int length)
+   // The return value is a new array of length null entries, created as in
+   // newSegmentArray.
+   {
+      return (Entry<K, E>[ ]) new Entry<?, ?>[length];
+   }
+
+
+   // One entry of a chain. Entries are never changed once they are
+   // published, so a reader needs no lock to walk a chain.
+   private static final class Entry< K , E >
+   {
+      final K key;
+      final int hash;
+      final E element;
+      final Entry<K, E> next;
+
+      Entry(K key, int hash, E element, Entry<K, E> next)
+      {
+         this.key = key;
+         this.hash = hash;
+         this.element = element;
+         this.next = next;
+      }
+   }
+
+
+   // A group of buckets with its own lock (the Segment object itself).
+   // buckets is volatile so that readers see a resized array as soon as it
+   // is published; manyItems is only read or written under the lock.
+   private static final class Segment< K , E >
+   {
+      volatile AtomicReferenceArray<Entry<K, E>> buckets;
+      int manyItems;
+
+      Segment(int capacity)
+      {
+         buckets = new AtomicReferenceArray<Entry<K, E>>(capacity);
+      }
+
+      void resize(int newCapacity)
+      // Precondition: The caller holds the lock of this segment.
+      // Postcondition: If newCapacity is larger than the current number of
+      // buckets, then buckets has been replaced by a new array of that length
+      // holding the same entries. The old array and its chains are left
+      // alone for any reader still using them.
+      {
+         AtomicReferenceArray<Entry<K, E>> old = buckets;
+         if (newCapacity <= old.length( ))
+            return;
+
+         AtomicReferenceArray<Entry<K, E>> fresh =
+            new AtomicReferenceArray<Entry<K, E>>(newCapacity);
+         Entry<K, E> cursor;
+         int i, index;
+
+         for (i = 0; i < old.length( ); i++) {
+            for (cursor = old.get(i); cursor != null; cursor = cursor.next) {
+               index = index(cursor.hash, newCapacity);
+               fresh.set(index, new Entry<K, E>(cursor.key, cursor.hash,
+                                                cursor.element, fresh.get(index)));
+            }
+         }
+         buckets = fresh;
+      }
+   }
+}
@@ -0,0 +1,572 @@
+// File: ConcurrentTableDoubleHash.java
+
+import java.util.concurrent.locks.StampedLock;
+
+
+/******************************************************************************
+* A <CODE>ConcurrentTableDoubleHash</CODE> is an open-address hash table with
+* double hashing, like <CODE>TableDoubleHash</CODE>, that many threads can
+* use at once without any outside locking.
+*
+* The slots are divided among a power-of-two number of segments, each an
+* open-address table of its own with its own <CODE>StampedLock</CODE>, and a
+* key's segment is chosen by the high bits of its hash code. Writers take
+* the write lock of the segment they change, so writers to different
+* segments proceed in parallel, and each segment grows (or clears out its
+* tombstones) on its own without stopping the others.
+*
+* <CODE>get</CODE> and <CODE>containsKey</CODE> first search with an
+* optimistic read, which writes nothing to shared memory, so readers of the
+* same segment do not slow each other down. The stamp is validated before a
+* key found in the segment is compared with <CODE>equals</CODE> and before
+* an answer is returned; only if a writer changed the segment in the
+* meantime is the search repeated under the read lock.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class ConcurrentTableDoubleHash< K , E > implements HashTable< K , E >
+{
+   // Invariant of the ConcurrentTableDoubleHash class:
+   //   1. A key with spread hash code h belongs to segment
+   //      segments[h >>> segmentShift]. Within that segment, its preferred
+   //      location is index(h, n), where n is the segment's capacity; if
+   //      that slot holds another key, the search moves on by step(h, n)
+   //      slots at a time, as in TableDoubleHash.
+   //   2. Each segment's keys, data and slotHashes arrays have the same
+   //      prime length n of at least 3. A slot i that holds a key has its
+   //      element in data[i] and the key's spread hash code in
+   //      slotHashes[i]. A slot whose key was removed holds TOMBSTONE, so
+   //      that searches carry on past it; a slot that was never used holds
+   //      null, and a search that reaches it ends.
+   //   3. Every change to a segment (a slot, a counter, or its arrays) is
+   //      made while holding that segment's write lock.
+   //   4. The number of items in a segment is in its manyItems field, and
+   //      the number of items in the table is the sum over all segments.
+   //      Before a new key is added to a segment, its manyItems + 1 is at
+   //      most maxLoadFactor * n, unless the segment cannot grow any more.
+   private final Segment<K, E>[ ] segments;
+   private final int segmentShift;
+   private final double maxLoadFactor;
+
+   // collisions from the most recent put by any thread
+   private volatile int collisions;
+
+   // the key of a slot whose key has been removed, and the answer of an
+   // optimistic search that a writer interrupted
+   private static final Object TOMBSTONE = new Object( );
+   private static final Object RETRY = new Object( );
+
+   /**
+   * The maximum load factor used when none is given to the constructor.
+   **/
+   public static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+   /**
+   * Initialize an empty table with a specified capacity, the default
+   * maximum load factor, and about four segments for every processor.
+   * @param <CODE>capacity</CODE>
+   *   the total number of slots for this new table
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has at least the specified capacity.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public ConcurrentTableDoubleHash(int capacity)
+   {
+      this(capacity, DEFAULT_LOAD_FACTOR,
+           4 * Runtime.getRuntime( ).availableProcessors( ));
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity, maximum load factor
+   * and number of segments.
+   * @param <CODE>capacity</CODE>
+   *   the total number of slots for this new table
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest fraction of a segment's slots that may hold keys before
+   *   the segment grows
+   * @param <CODE>concurrencyLevel</CODE>
+   *   the number of writers expected to change the table at the same time;
+   *   the number of segments is the smallest power of two that is at least
+   *   this large
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has at least the specified capacity.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> or <CODE>concurrencyLevel</CODE>
+   *   is not positive, or that <CODE>maxLoadFactor</CODE> is not between 0
+   *   (exclusive) and 1 (inclusive).
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public ConcurrentTableDoubleHash(int capacity, double maxLoadFactor,
+                                    int concurrencyLevel)
+   {
+      if (capacity <= 0)
+         throw new IllegalArgumentException("Capacity is negative");
+      if (!(maxLoadFactor > 0 && maxLoadFactor <= 1))
+         throw new IllegalArgumentException("Load factor must be in (0, 1]");
+      if (concurrencyLevel <= 0)
+         throw new IllegalArgumentException("Concurrency level must be positive");
+
+      int segmentCount = 1;
+      int bits = 0;
+      int i;
+
+      while (segmentCount < concurrencyLevel && segmentCount < (1 << 16)) {
+         segmentCount <<= 1;
+         bits++;
+      }
+      this.maxLoadFactor = maxLoadFactor;
+      segmentShift = 32 - bits;
+      segments = newSegmentArray(segmentCount);
+      for (i = 0; i < segmentCount; i++)
+         segments[i] = new Segment<K, E>(
+            Primes.nextPrime(Math.max(3, (capacity + segmentCount - 1) / segmentCount)));
+   }
+
+
+   /**
+   * Determines whether a specified key is in this table. Unless a writer
+   * changes the key's segment during the search, this method takes no lock.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   <CODE>true</CODE> (if this table contains an object with the specified
+   *   key); <CODE>false</CODE> otherwise.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public boolean containsKey(K key)
+   {
+      return get(key) != null;
+   }
+
+
+   /** Retrieves an object for a specified key. Unless a writer changes the
+   * key's segment during the search, this method takes no lock.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   a reference to the object with the specified <CODE>key</CODE> (if this
+   *   table contains an such an object);  null otherwise.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E get(K key)
+   {
+      int h = spread(key.hashCode( ));
+      Segment<K, E> segment = segmentFor(h);
+      StampedLock lock = segment.lock;
+      long stamp = lock.tryOptimisticRead( );
+      Object answer;
+      int index;
+
+      if (stamp != 0) {
+         answer = optimisticGet(segment, stamp, key, h);
+         if (answer != RETRY)
+            return (E) answer;
+      }
+
+      // a writer got in the way, so search again under the read lock
+      stamp = lock.readLock( );
+      try {
+         index = segment.find(key, h);
+         return index == -1 ? null : (E) segment.data[index];
+      }
+      finally {
+         lock.unlockRead(stamp);
+      }
+   }
+
+
+   private static Object optimisticGet(Segment<?, ?> segment, long stamp,
+                                       Object key, int h)
+   // Precondition: stamp came from segment.lock.tryOptimisticRead, and h is
+   // the spread hash code of key.
+   // Postcondition: If no writer has held the segment's lock since stamp was
+   // issued, then the return value is the element of key in the segment, or
+   // null if it has none. Otherwise, the return value is RETRY. Nothing read
+   // from the segment is trusted until the stamp has been validated: the
+   // arrays are read once, their lengths are checked against each other, the
+   // search visits at most n slots, and equals is only called on a key
+   // after validating, so a search that races with a writer may give up but
+   // never goes wrong.
+   {
+      StampedLock lock = segment.lock;
+      Object[ ] keys = segment.keys;
+      Object[ ] data = segment.data;
+      int[ ] hashes = segment.slotHashes;
+      int n = keys.length;
+      int index, step, count;
+      Object candidate, element;
+
+      if (data.length != n || hashes.length != n)
+         return RETRY;
+
+      index = index(h, n);
+      step = step(h, n);
+      for (count = 0; count < n; count++) {
+         candidate = keys[index];
+         if (candidate == null)
+            break;
+         if (candidate != TOMBSTONE && hashes[index] == h) {
+            element = data[index];
+            if (!lock.validate(stamp))
+               return RETRY;
+            if (key.equals(candidate))
+               return element;
+         }
+         index = nextIndex(index, step, n);
+      }
+      return lock.validate(stamp) ? null : RETRY;
+   }
+
+
+   /**
+   * Add a new element to this table, using the specified key. Only the
+   * segment that holds the key is locked.
+   * @param <CODE>key</CODE>
+   *   the non-null key to use for the new element
+   * @param <CODE>element</CODE>
+   *   the new element that's being added to this table
+   * <dt><b>Precondition:</b><dd>
+   *   Neither <CODE>key</CODE> nor <CODE>element</CODE> is null.
+   * <dt><b>Postcondition:</b><dd>
+   *   If this table already has an object with the specified <CODE>key</CODE>,
+   *   then that object is replaced by <CODE>element</CODE>, and the return
+   *   value is a reference to the replaced object. Otherwise, the new
+   *   <CODE>element</CODE> is added with the specified <CODE>key</CODE>
+   *   and the return value is null. If adding the element would push the
+   *   key's segment past the maximum load factor, that segment first grows.
+   * @exception IllegalStateException
+   *   Indicates that the key's segment is full and has reached its largest
+   *   possible capacity.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> or <CODE>element</CODE> is null.
+   **/
+   public E put(K key, E element)
+   {
+      if (element == null)
+         throw new NullPointerException("Element is null");
+
+      int h = spread(key.hashCode( ));
+      Segment<K, E> segment = segmentFor(h);
+      long stamp = segment.lock.writeLock( );
+
+      try {
+         int index = segment.find(key, h);
+         int n = segment.keys.length;
+         E answer;
+
+         if (index != -1) {
+            // new element replaces old
+            answer = (E) segment.data[index];
+            segment.data[index] = element;
+            collisions = segment.probes(h, index);
+            return answer;
+         }
+
+         // The key is not yet in this segment.
+         if (segment.manyItems + 1 > maxLoadFactor * n)
+            segment.resize(Primes.growCapacity(n));
+         n = segment.keys.length;
+         if (segment.manyItems >= n)
+            throw new IllegalStateException("Table is full.");
+
+         index = segment.insertionIndex(h);
+         if (segment.keys[index] == null
+             && segment.manyItems + segment.tombstones + 1 > maxLoadFactor * n) {
+            // Claiming a never-used slot would leave too few of them to end
+            // searches, so clear out the tombstones, growing instead if the
+            // segment is more than half full even without them.
+            if (2 * (segment.manyItems + 1) > maxLoadFactor * n)
+               segment.resize(Primes.growCapacity(n));
+            else
+               segment.resize(n);
+            index = segment.insertionIndex(h);
+         }
+         if (segment.keys[index] == TOMBSTONE)
+            segment.tombstones--;
+         segment.keys[index] = key;
+         segment.data[index] = element;
+         segment.slotHashes[index] = h;
+         segment.manyItems++;
+         collisions = segment.passed;
+         return null;
+      }
+      finally {
+         segment.lock.unlockWrite(stamp);
+      }
+   }
+
+
+   /**
+   * Removes an object for a specified key. Only the segment that holds the
+   * key is locked.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * <dt><b>Postcondition:</b><dd>
+   *   If an object was found with the specified <CODE>key</CODE>, then that
+   *   object has been removed from this table and a copy of the removed object
+   *   is returned; otherwise, this table is unchanged and the null reference
+   *   is returned.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E remove(K key)
+   {
+      int h = spread(key.hashCode( ));
+      Segment<K, E> segment = segmentFor(h);
+      long stamp = segment.lock.writeLock( );
+
+      try {
+         int index = segment.find(key, h);
+         E answer;
+
+         if (index == -1)
+            return null;
+         answer = (E) segment.data[index];
+         segment.keys[index] = TOMBSTONE;
+         segment.data[index] = null;
+         segment.tombstones++;
+         segment.manyItems--;
+         if (2 * segment.tombstones > maxLoadFactor * segment.keys.length)
+            segment.resize(segment.keys.length);
+         return answer;
+      }
+      finally {
+         segment.lock.unlockWrite(stamp);
+      }
+   }
+
+
+   /**
+   * Determines the number of elements in this table. Each segment is
+   * counted under its read lock, but segments may change while the others
+   * are being counted, so with concurrent writers the answer is only a
+   * snapshot.
+   * @param - none
+   * @return
+   *   the number of elements in this table
+   **/
+   public int size( )
+   {
+      long total = 0;
+      long stamp;
+      int i;
+
+      for (i = 0; i < segments.length; i++) {
+         stamp = segments[i].lock.readLock( );
+         total += segments[i].manyItems;
+         segments[i].lock.unlockRead(stamp);
+      }
+      return (int) Math.min(total, Integer.MAX_VALUE);
+   }
+
+
+   /**
+   * Determines the current capacity of this table.
+   * @param - none
+   * @return
+   *   the total number of slots in all of the segments
+   **/
+   public int capacity( )
+   {
+      long total = 0;
+      long stamp;
+      int i;
+
+      for (i = 0; i < segments.length; i++) {
+         stamp = segments[i].lock.readLock( );
+         total += segments[i].keys.length;
+         segments[i].lock.unlockRead(stamp);
+      }
+      return (int) Math.min(total, Integer.MAX_VALUE);
+   }
+
+
+   /**
+   * returns the number of collisions from put method.
+   * @param
+   *     none
+   * @return
+   *     collisions - integer storing number of collisions
+   *                   from placing the element of the most recent put by
+   *                   any thread
+   **/
+   public int getCollisions() {
+      return collisions;
+   }
+
+
+   private static int spread(int h)
+   // The return value is the hash code mixed so that every bit depends on
+   // the whole hash code, as in ConcurrentTableChainHash.
+   {
+      h ^= h >>> 16;
+      h *= 0x85EBCA6B;
+      return h ^ (h >>> 13);
+   }
+
+
+   @SuppressWarnings("unchecked")
+   private static < K , E > Segment<K, E>[ ] newSegmentArray(int length)
+   // The return value is a new array of length null segments, created as
+   // in ConcurrentTableChainHash.
+   {
+      return (Segment<K, E>[ ]) new Segment<?, ?>[length];
+   }
+
+
+   private Segment<K, E> segmentFor(int h)
+   {
+      return segments[segmentShift == 32 ? 0 : h >>> segmentShift];
+   }
+
+
+   private static int index(int h, int n)
+   // The return value is the first slot of the probe sequence for spread
+   // hash code h in a segment of capacity n.
+   {
+      return (h & 0x7FFFFFFF) % n;
+   }
+
+
+   private static int step(int h, int n)
+   // Precondition: n is a prime of at least 3.
+   // The return value is the distance between slots of the probe sequence
+   // for spread hash code h, between 1 and n - 2. Since n is prime, the
+   // sequence visits every slot before repeating.
+   {
+      return 1 + (h & 0x7FFFFFFF) % (n - 2);
+   }
+
+
+   private static int nextIndex(int i, int step, int n)
+   {
+      return (int) (((long) i + step) % n);
+   }
+
+
+   // One open-address table with its own lock. The arrays and counters are
+   // plain fields: writers change them only under the write lock, and
+   // readers either hold the read lock or validate an optimistic stamp
+   // before trusting what they read.
+   private static final class Segment< K , E >
+   {
+      final StampedLock lock = new StampedLock( );
+      Object[ ] keys;
+      Object[ ] data;
+      int[ ] slotHashes;
+      int manyItems;
+      int tombstones;
+
+      // occupied slots passed by the most recent insertionIndex
+      int passed;
+
+      Segment(int capacity)
+      {
+         keys = new Object[capacity];
+         data = new Object[capacity];
+         slotHashes = new int[capacity];
+      }
+
+      int find(Object key, int h)
+      // Precondition: The caller holds this segment's read or write lock, and
+      // h is the spread hash code of key.
+      // Postcondition: If the key is in this segment, then the return value is
+      // its slot; otherwise it is -1. Only keys whose stored hash is h are
+      // compared with equals. Nothing is written, so readers holding the
+      // read lock together do not share any changes.
+      {
+         int n = keys.length;
+         int index = index(h, n);
+         int step = step(h, n);
+         int count;
+
+         for (count = 0; count < n && keys[index] != null; count++) {
+            if (keys[index] != TOMBSTONE && slotHashes[index] == h
+                && key.equals(keys[index]))
+               return index;
+            index = nextIndex(index, step, n);
+         }
+         return -1;
+      }
+
+      int probes(int h, int target)
+      // Precondition: target is a slot on the probe sequence of h that holds
+      // a key.
+      // Postcondition: The return value is the number of slots before target
+      // on that probe sequence.
+      {
+         int n = keys.length;
+         int index = index(h, n);
+         int step = step(h, n);
+         int count = 0;
+
+         while (index != target) {
+            index = nextIndex(index, step, n);
+            count++;
+         }
+         return count;
+      }
+
+      int insertionIndex(int h)
+      // Precondition: The caller holds this segment's write lock, and
+      // manyItems < keys.length.
+      // Postcondition: The return value is the first slot on the probe
+      // sequence of h that holds no key, which is either never used or a
+      // tombstone, and passed is the number of keys passed on the way.
+      {
+         int n = keys.length;
+         int index = index(h, n);
+         int step = step(h, n);
+
+         passed = 0;
+         while (keys[index] != null && keys[index] != TOMBSTONE) {
+            index = nextIndex(index, step, n);
+            passed++;
+         }
+         return index;
+      }
+
+      void resize(int newCapacity)
+      // Precondition: The caller holds this segment's write lock.
+      // Postcondition: If newCapacity is at least the current capacity, then
+      // the arrays have been replaced by arrays of length newCapacity (which
+      // is made prime) holding the same keys, and there are no tombstones.
+      // Each key is placed by its stored hash, so hashCode is not called.
+      // The old arrays are left alone; an optimistic reader still using them
+      // fails to validate and searches again.
+      {
+         Object[ ] oldKeys = keys;
+         if (newCapacity < oldKeys.length)
+            return;
+
+         int n = Primes.nextPrime(newCapacity);
+         Object[ ] freshKeys = new Object[n];
+         Object[ ] freshData = new Object[n];
+         int[ ] freshHashes = new int[n];
+         int i, h, index, step;
+
+         for (i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null && oldKeys[i] != TOMBSTONE) {
+               h = slotHashes[i];
+               index = index(h, n);
+               step = step(h, n);
+               while (freshKeys[index] != null)
+                  index = nextIndex(index, step, n);
+               freshKeys[index] = oldKeys[i];
+               freshData[index] = data[i];
+               freshHashes[index] = h;
+            }
+         }
+         keys = freshKeys;
+         data = freshData;
+         slotHashes = freshHashes;
+         tombstones = 0;
+      }
+   }
+}
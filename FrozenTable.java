@@ -0,0 +1,303 @@
+// File: FrozenTable.java
+
+
+/******************************************************************************
+* A <CODE>FrozenTable</CODE> is an unchanging copy of a hash table, made by
+* the <CODE>freeze</CODE> method of <CODE>Table</CODE>,
+* <CODE>TableDoubleHash</CODE> or <CODE>TableChainHash</CODE>, for tables
+* that are written once and then only read.
+*
+* It is an open-address table with linear probing, sized once so that it
+* is <CODE>LOAD_FACTOR</CODE> full, with each key stored next to its
+* element in a single array. The hash is mixed again before a key is
+* placed, so keys whose hash codes are regular (such as
+* <CODE>Integer</CODE>s from a narrow range with the default hash
+* function) are still spread evenly.
+*
+* Instead of a <CODE>hasBeenUsed</CODE> array each slot has two bytes in a
+* second array: an 8-bit fingerprint of the key's hash, zero for an empty
+* slot, and the key's distance from its home slot. A search steps through
+* these bytes, 32 slots to a cache line, and only calls
+* <CODE>equals</CODE> on a key whose fingerprint matches, so it seldom
+* reads a key other than the one it is looking for. The entries were
+* placed in Robin Hood order, so, as in <CODE>Table</CODE>'s Robin Hood
+* mode, a search for a missing key stops at the first key that is closer
+* to its home than the missing key would be, and seldom reads any key at
+* all. At about 13.5 bytes per entry (with 4-byte references) a frozen
+* table is smaller than the table it came from, which needs 17 or more at
+* a load of 0.75.
+*
+* Every field is final and nothing is changed after construction, so a
+* frozen table may be shared by any number of threads without
+* synchronization. <CODE>put</CODE> and <CODE>remove</CODE> throw
+* <CODE>UnsupportedOperationException</CODE>.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class FrozenTable< K , E > implements HashTable< K , E >
+{
+   // Invariant of the FrozenTable class:
+   //   1. The table has manyItems elements and slots slots, and at least
+   //      one slot is empty.
+   //   2. Slot i is empty if tags[2*i] is zero, and then entries[2*i] and
+   //      entries[2*i + 1] are null. Otherwise it holds the key entries[2*i],
+   //      whose fingerprint is tags[2*i], and that key's element
+   //      entries[2*i + 1].
+   //   3. A key's home slot is home(mix(hashFunction.hash(key))). Every slot
+   //      from a key's home slot forward to its own slot (wrapping around the
+   //      end of the arrays) is full, and no two keys are equal.
+   //   4. For a full slot i, tags[2*i + 1] is the number of slots between
+   //      its key's home slot and i, or MAX_DISTANCE if that number is
+   //      MAX_DISTANCE or more. Along the way from any home slot, the keys
+   //      were placed so that no key is further than one more than the key
+   //      before it from its own home (Robin Hood order).
+   private final int manyItems;
+   private final int slots;
+   private final byte[ ] tags;
+   private final Object[ ] entries;
+   private final HashFunction hashFunction;
+
+   // the largest distance from home that tags records exactly
+   private static final int MAX_DISTANCE = 255;
+
+   /**
+   * The fraction of the slots of a frozen table that are full, or a little
+   * less, since the number of slots is prime.
+   **/
+   public static final double LOAD_FACTOR = 0.75;
+
+   FrozenTable(Object[ ] keys, Object[ ] elements, HashFunction hashFunction)
+   // Precondition: keys and elements have the same length, and keys holds
+   // no null and no two equal keys.
+   // Postcondition: The table holds each key with the element of the same
+   // index. Each key was placed by Robin Hood insertion: whenever the key
+   // being placed was further from home than the key in a slot, the two
+   // swapped places.
+   {
+      int[ ] distances;
+      int i, j, h, distance, swapDistance;
+      byte fingerprint, swapFingerprint;
+      Object key, element, swap;
+
+      manyItems = keys.length;
+      slots = Primes.nextPrime(Math.max(keys.length + 1,
+                                        (int) Math.ceil(keys.length / LOAD_FACTOR)));
+      distances = new int[slots];
+      tags = new byte[2 * slots];
+      entries = new Object[2 * slots];
+      this.hashFunction = hashFunction;
+
+      for (j = 0; j < keys.length; j++)
+      {
+         key = keys[j];
+         element = elements[j];
+         h = mix(hashFunction.hash(key));
+         fingerprint = fingerprint(h);
+         distance = 0;
+         for (i = home(h); tags[2 * i] != 0; i = nextIndex(i))
+         {
+            if (distances[i] < distance)
+            {  // The key here is closer to home, so it gives up its slot.
+               swapFingerprint = tags[2 * i];
+               tags[2 * i] = fingerprint;
+               fingerprint = swapFingerprint;
+               swap = entries[2 * i];
+               entries[2 * i] = key;
+               key = swap;
+               swap = entries[2 * i + 1];
+               entries[2 * i + 1] = element;
+               element = swap;
+               swapDistance = distances[i];
+               distances[i] = distance;
+               distance = swapDistance;
+            }
+            distance++;
+         }
+         tags[2 * i] = fingerprint;
+         entries[2 * i] = key;
+         entries[2 * i + 1] = element;
+         distances[i] = distance;
+      }
+      for (i = 0; i < slots; i++)
+         tags[2 * i + 1] = (byte) Math.min(distances[i], MAX_DISTANCE);
+   }
+
+
+   private static int mix(int h)
+   // The return value is h passed through the MurmurHash3 finalizer, so
+   // that every bit of it depends on every bit of h.
+   {
+      h ^= h >>> 16;
+      h *= 0x85EBCA6B;
+      h ^= h >>> 13;
+      h *= 0xC2B2AE35;
+      return h ^ (h >>> 16);
+   }
+
+
+   private int home(int h)
+   // Precondition: h is a mixed hash.
+   // The return value is the home slot for h, taken from its high bits with
+   // a multiplication rather than a remainder.
+   {
+      return (int) (((h & 0xFFFFFFFFL) * slots) >>> 32);
+   }
+
+
+   private static byte fingerprint(int h)
+   // Precondition: h is a mixed hash.
+   // The return value is a non-zero 8-bit number from the low bits of h,
+   // which home does not use, so that it differs for most keys with the
+   // same home slot.
+   {
+      int f = h & 0xFF;
+
+      return (byte) (f == 0 ? 1 : f);
+   }
+
+
+   private int nextIndex(int i)
+   // The return value is normally i+1. But if i+1 is slots, then the return
+   // value is zero instead.
+   {
+      if (i+1 == slots)
+         return 0;
+      else
+         return i+1;
+   }
+
+
+   /**
+   * Determines whether a specified key is in this table.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   <CODE>true</CODE> (if this table contains an object with the specified
+   *   key); <CODE>false</CODE> otherwise.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public boolean containsKey(K key)
+   {
+      return findIndex(key) != -1;
+   }
+
+
+   private int findIndex(Object key)
+   // Postcondition: If the specified key is found in the table, then the return
+   // value is the index of its slot. Otherwise, the return value is -1.
+   {
+      int h = mix(hashFunction.hash(key));
+      byte fingerprint = fingerprint(h);
+      int i = home(h);
+      // Reading the home slot's key now, rather than after its fingerprint
+      // has matched, lets both cache misses be waited for at once.
+      Object home = entries[2 * i];
+      int distance, stored;
+
+      if (tags[2 * i] == fingerprint && key.equals(home))
+         return i;
+      for (distance = 0; tags[2 * i] != 0; distance++)
+      {
+         // Stop at the first key that is closer to home than this one would
+         // be, since this key would have taken its slot.
+         stored = tags[2 * i + 1] & 0xFF;
+         if (stored < distance && stored != MAX_DISTANCE)
+            return -1;
+         if (tags[2 * i] == fingerprint && key.equals(entries[2 * i]))
+            return i;
+         i = nextIndex(i);
+      }
+      return -1;
+   }
+
+
+   /**
+   * Retrieves an object for a specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   a reference to the object with the specified <CODE>key</CODE> (if this
+   *   table contains an such an object);  null otherwise.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E get(K key)
+   {
+      int i = findIndex(key);
+
+      if (i == -1)
+         return null;
+      else
+         return (E) entries[2 * i + 1];
+   }
+
+
+   /**
+   * A frozen table cannot be changed.
+   * @param <CODE>key</CODE>
+   *   ignored
+   * @param <CODE>element</CODE>
+   *   ignored
+   * @return
+   *   never returns
+   * @exception UnsupportedOperationException
+   *   Always.
+   **/
+   public E put(K key, E element)
+   {
+      throw new UnsupportedOperationException("Table is frozen");
+   }
+
+
+   /**
+   * A frozen table cannot be changed.
+   * @param <CODE>key</CODE>
+   *   ignored
+   * @return
+   *   never returns
+   * @exception UnsupportedOperationException
+   *   Always.
+   **/
+   public E remove(K key)
+   {
+      throw new UnsupportedOperationException("Table is frozen");
+   }
+
+
+   /**
+   * Determines the number of elements in this table.
+   * @param - none
+   * @return
+   *   the number of elements in this table
+   **/
+   public int size( )
+   {
+      return manyItems;
+   }
+
+
+   /**
+   * Determines the capacity of this table.
+   * @param - none
+   * @return
+   *   the number of slots, which is fixed when the table is frozen
+   **/
+   public int capacity( )
+   {
+      return slots;
+   }
+
+
+   /**
+   * A frozen table has no puts, so it has no collisions to report.
+   * @param - none
+   * @return
+   *   zero
+   **/
+   public int getCollisions( )
+   {
+      return 0;
+   }
+}
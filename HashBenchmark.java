@@ -0,0 +1,674 @@
+/*
+ * Author: Ammaad Denmark, Tim Tabachuk
+ * Date: 10/17/26
+ * Filename: HashBenchmark.java
+ *
+ * Throughput and latency benchmark for the three hashing methods, with
+ * java.util.HashMap as a baseline.
+ *
+ * Every combination of table, size, load factor and key distribution is
+ * measured for each operation: the table is given the requested size as
+ * its capacity (which the double-hashing tables round up to a prime),
+ * filled to the requested load (with a maximum load factor of 1.0 so it
+ * never grows during a run), and the operation is repeated over all of
+ * its keys. Each measurement runs several warmup passes before the timed
+ * passes, and by default every table is measured in a fresh JVM so the
+ * JIT only ever sees one table class per call site.
+ *
+ * Usage: java HashBenchmark [options]
+ *   -tables linear,double,chain,hashmap   tables to measure, from:
+ *             linear                      Table
+ *             robinhood                   Table in Robin Hood mode
+ *             double                      TableDoubleHash
+ *             chain                       TableChainHash
+ *             swiss                       TableSwissHash (group probing)
+ *             cuckoo                      TableCuckooHash
+ *             hopscotch                   TableHopscotchHash
+ *             interleaved-linear          TableInterleaved, keys and
+ *                                         elements side by side in one
+ *                                         array, with linear probing
+ *             interleaved-double          TableInterleaved with double
+ *                                         hashing
+ *             int-linear                  IntTable (primitive int keys)
+ *             int-double                  IntTableDoubleHash
+ *             int-chain                   IntTableChainHash
+ *             offheap-linear              OffHeapTable (native memory)
+ *             offheap-double              OffHeapTableDoubleHash
+ *             hashmap                     java.util.HashMap
+ *             name:hash                   linear, robinhood, double, chain,
+ *                                         hopscotch or an interleaved table
+ *                                         with the hash function default,
+ *                                         murmur3, xxhash, fibonacci or
+ *                                         seeded<n>, as in linear:murmur3
+ *   -sizes 241,10000,1000000              table sizes (up to 100000000;
+ *                                         give the JVM a large enough -Xmx)
+ *   -loads 0.25,0.5,0.75,0.9,0.95         fraction of each table filled
+ *   -dists sequential,uniform,zipfian,adversarial
+ *   -ops put,get,containsKey,remove       getAll and putAll measure the
+ *                                         batch operations, BATCH_SIZE keys
+ *                                         to a call, against get and put
+ *   -warmup 3 -iterations 5               untimed and timed passes
+ *   -forks 1                              JVMs per table; 0 runs in-process
+ *
+ * Output columns: table, capacity, load, keys, distribution, operation,
+ * throughput in millions of operations per second (mean and standard
+ * deviation over the timed passes), mean nanoseconds per operation, and
+ * the 50th, 99th and 99.9th percentile latency of individually timed
+ * operations. For getAll and putAll, each batch is timed and its time
+ * divided among its keys.
+ *
+*/
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+public class HashBenchmark {
+    // adversarial keys all share one home slot, so building a table of them
+    // is quadratic; they are capped to keep a run finite
+    static final int ADVERSARIAL_LIMIT = 4096;
+    // at most this many operations per pass are timed one at a time
+    static final int LATENCY_SAMPLES = 100000;
+    // fast passes are repeated until a pass takes about this long, so small
+    // tables are long enough to time reliably
+    static final long MIN_PASS_NANOS = 50000000L;
+    // keys given to each getAll and putAll call
+    static final int BATCH_SIZE = 1024;
+    static final double ZIPF_EXPONENT = 0.99;
+    static final long SEED = 42;
+
+    static String[] tables = {"linear", "double", "chain", "hashmap"};
+    static int[] sizes = {241, 10000, 1000000};
+    static double[] loads = {0.25, 0.5, 0.75, 0.9, 0.95};
+    static String[] dists = {"sequential", "uniform", "zipfian", "adversarial"};
+    static String[] ops = {"put", "get", "containsKey", "remove"};
+    static int warmup = 3;
+    static int iterations = 5;
+    static int forks = 1;
+    static boolean header = true;
+
+    // results are folded into this field so the JIT cannot drop the work
+    static volatile int sink;
+
+    public static void main(String[] args) throws Exception {
+        parseArgs(args);
+        if (header)
+            printHeader();
+
+        if (forks == 0) {
+            for (String table : tables)
+                for (int size : sizes)
+                    for (double load : loads)
+                        for (String dist : dists)
+                            measure(table, size, load, dist);
+            return;
+        }
+
+        // run each table in its own JVMs, with the same options otherwise
+        String java = System.getProperty("java.home") + "/bin/java";
+        for (String table : tables) {
+            for (int fork = 0; fork < forks; fork++) {
+                List<String> command = new ArrayList<String>();
+                command.add(java);
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add("HashBenchmark");
+                command.addAll(Arrays.asList(withoutForkOptions(args)));
+                command.addAll(Arrays.asList("-tables", table, "-forks", "0", "-noheader"));
+                Process process = new ProcessBuilder(command).inheritIO().start();
+                if (process.waitFor() != 0)
+                    throw new IllegalStateException("Benchmark fork for " + table + " failed");
+            }
+        }
+    }
+
+    static void measure(String table, int size, double load, String dist) {
+        int capacity = size;
+        int n = (int) Math.max(1, Math.round(capacity * load));
+        if (dist.equals("adversarial"))
+            n = Math.min(n, Math.min(ADVERSARIAL_LIMIT, Integer.MAX_VALUE / capacity));
+
+        Integer[] keys = makeKeys(dist, n, capacity, 0);
+        Integer[] misses = makeKeys(dist, n, capacity, n);
+        if (dist.equals("adversarial")) {
+            // a miss one past each key starts in the same cluster as the keys
+            for (int i = 0; i < n; i++)
+                misses[i] = keys[i] + 1;
+        }
+        int[] order = makeOrder(dist, n);
+
+        for (String op : ops) {
+            double[] mops = new double[iterations];
+            long totalNanos = 0;
+            int repeats = calibrate(table, capacity, op, keys, misses, order, n);
+            for (int pass = -warmup; pass < iterations; pass++) {
+                // put and remove change the table, so each repeat gets its own
+                boolean fresh = op.equals("put") || op.equals("putAll") || op.equals("remove");
+                List<HashTable<Integer, Integer>> prepared = new ArrayList<HashTable<Integer, Integer>>();
+                for (int r = 0; r < (fresh ? repeats : 1); r++)
+                    prepared.add(prepare(table, capacity, op, keys, n));
+
+                long start = System.nanoTime();
+                for (int r = 0; r < repeats; r++)
+                    sink += runPass(op, prepared.get(fresh ? r : 0), keys, misses, order, n);
+                long elapsed = System.nanoTime() - start;
+                if (pass >= 0) {
+                    mops[pass] = (double) n * repeats * 1000.0 / Math.max(1, elapsed);
+                    totalNanos += elapsed;
+                }
+            }
+            HashTable<Integer, Integer> t = prepare(table, capacity, op, keys, n);
+            long[] latencies = latencyPass(op, t, keys, misses, order, n);
+
+            System.out.printf("%-20s %10d %5.2f %9d %-12s %-12s %9.2f +- %-7.2f %9.1f %8d %8d %8d%n",
+                              table, capacity, load, n, dist, op, mean(mops), deviation(mops),
+                              (double) totalNanos / ((double) iterations * repeats * n),
+                              percentile(latencies, 0.50), percentile(latencies, 0.99),
+                              percentile(latencies, 0.999));
+        }
+    }
+
+    static int calibrate(String table, int capacity, String op, Integer[] keys, Integer[] misses, int[] order, int n) {
+        // the number of times a pass must be repeated to take MIN_PASS_NANOS
+        HashTable<Integer, Integer> t = prepare(table, capacity, op, keys, n);
+        long start = System.nanoTime();
+        sink += runPass(op, t, keys, misses, order, n);
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        return (int) Math.max(1, Math.min(10000, MIN_PASS_NANOS / elapsed));
+    }
+
+    static HashTable<Integer, Integer> prepare(String table, int capacity, String op, Integer[] keys, int n) {
+        HashTable<Integer, Integer> t = newTable(table, capacity);
+        if (!op.equals("put") && !op.equals("putAll")) {
+            for (int i = 0; i < n; i++)
+                t.put(keys[i], keys[i]);
+        }
+        return t;
+    }
+
+    static int runPass(String op, HashTable<Integer, Integer> t, Integer[] keys, Integer[] misses, int[] order, int n) {
+        int found = 0;
+        switch (op) {
+            case "put":
+                for (int i = 0; i < n; i++)
+                    t.put(keys[i], keys[i]);
+                return t.size();
+            case "get":
+                for (int i = 0; i < n; i++)
+                    if (t.get(keys[order[i]]) != null)
+                        found++;
+                return found;
+            case "containsKey":
+                // alternate hits and misses
+                for (int i = 0; i < n; i++)
+                    if (t.containsKey((i & 1) == 0 ? keys[order[i]] : misses[order[i]]))
+                        found++;
+                return found;
+            case "remove":
+                for (int i = 0; i < n; i++)
+                    if (t.remove(keys[i]) != null)
+                        found++;
+                return found;
+            case "getAll":
+            case "putAll":
+                // the same keys as get or put, in batches
+                boolean get = op.equals("getAll");
+                Integer[] batch = new Integer[BATCH_SIZE];
+                Integer[] results = new Integer[BATCH_SIZE];
+                for (int i = 0; i < n; i += BATCH_SIZE) {
+                    int length = Math.min(BATCH_SIZE, n - i);
+                    if (length < batch.length)
+                        batch = new Integer[length];
+                    for (int j = 0; j < length; j++)
+                        batch[j] = get ? keys[order[i + j]] : keys[i + j];
+                    if (get)
+                        found += t.getAll(batch, results);
+                    else
+                        t.putAll(batch, batch);
+                }
+                return get ? found : t.size();
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + op);
+        }
+    }
+
+    static long[] batchLatencyPass(String op, HashTable<Integer, Integer> t, Integer[] keys, int[] order, int n) {
+        long[] latencies = new long[(n + BATCH_SIZE - 1) / BATCH_SIZE];
+        Integer[] results = new Integer[BATCH_SIZE];
+        long overhead = timerOverhead();
+        int found = 0;
+        int sample = 0;
+        for (int i = 0; i < n; i += BATCH_SIZE) {
+            int length = Math.min(BATCH_SIZE, n - i);
+            Integer[] batch = new Integer[length];
+            for (int j = 0; j < length; j++)
+                batch[j] = op.equals("getAll") ? keys[order[i + j]] : keys[i + j];
+            long start = System.nanoTime();
+            if (op.equals("getAll"))
+                found += t.getAll(batch, results);
+            else
+                t.putAll(batch, batch);
+            long elapsed = System.nanoTime() - start;
+            latencies[sample++] = Math.max(0, elapsed - overhead) / length;
+        }
+        sink += found;
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    static long[] latencyPass(String op, HashTable<Integer, Integer> t, Integer[] keys, Integer[] misses, int[] order, int n) {
+        if (op.equals("getAll") || op.equals("putAll"))
+            return batchLatencyPass(op, t, keys, order, n);
+        int stride = Math.max(1, n / LATENCY_SAMPLES);
+        long[] latencies = new long[(n + stride - 1) / stride];
+        long overhead = timerOverhead();
+        int found = 0;
+        int sample = 0;
+        for (int i = 0; i < n; i++) {
+            long start = System.nanoTime();
+            switch (op) {
+                case "put":
+                    t.put(keys[i], keys[i]);
+                    break;
+                case "get":
+                    if (t.get(keys[order[i]]) != null)
+                        found++;
+                    break;
+                case "containsKey":
+                    if (t.containsKey((i & 1) == 0 ? keys[order[i]] : misses[order[i]]))
+                        found++;
+                    break;
+                case "remove":
+                    if (t.remove(keys[i]) != null)
+                        found++;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown operation: " + op);
+            }
+            long elapsed = System.nanoTime() - start;
+            if (i % stride == 0)
+                latencies[sample++] = Math.max(0, elapsed - overhead);
+        }
+        sink += found;
+        Arrays.sort(latencies, 0, sample);
+        return Arrays.copyOf(latencies, sample);
+    }
+
+    static long timerOverhead() {
+        // median cost of an empty pair of nanoTime calls
+        long[] samples = new long[1001];
+        for (int i = 0; i < samples.length; i++) {
+            long start = System.nanoTime();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2];
+    }
+
+    static HashTable<Integer, Integer> newTable(String name, int capacity) {
+        int colon = name.indexOf(':');
+        if (colon >= 0) {
+            HashFunction hash = HashFunction.forName(name.substring(colon + 1));
+            switch (name.substring(0, colon)) {
+                case "linear":
+                    return new Table<Integer, Integer>(capacity, 1.0, hash);
+                case "robinhood":
+                    return new Table<Integer, Integer>(capacity, 1.0, true, hash);
+                case "double":
+                    return new TableDoubleHash<Integer, Integer>(capacity, 1.0, hash);
+                case "chain":
+                    return new TableChainHash<Integer, Integer>(capacity, 1.0, hash);
+                case "interleaved-linear":
+                    return new TableInterleaved<Integer, Integer>(capacity, 1.0, false, hash);
+                case "interleaved-double":
+                    return new TableInterleaved<Integer, Integer>(capacity, 1.0, true, hash);
+                case "hopscotch":
+                    return new TableHopscotchHash<Integer, Integer>(capacity, 1.0, hash);
+                default:
+                    throw new IllegalArgumentException("No hash function choice for table: " + name);
+            }
+        }
+        switch (name) {
+            case "linear":
+                return new Table<Integer, Integer>(capacity, 1.0);
+            case "robinhood":
+                return new Table<Integer, Integer>(capacity, 1.0, true);
+            case "double":
+                return new TableDoubleHash<Integer, Integer>(capacity, 1.0);
+            case "chain":
+                return new TableChainHash<Integer, Integer>(capacity, 1.0);
+            case "swiss":
+                return new TableSwissHash<Integer, Integer>(capacity, 1.0);
+            case "cuckoo":
+                return new TableCuckooHash<Integer, Integer>(capacity, 1.0);
+            case "hopscotch":
+                return new TableHopscotchHash<Integer, Integer>(capacity, 1.0);
+            case "interleaved-linear":
+                return new TableInterleaved<Integer, Integer>(capacity, 1.0);
+            case "interleaved-double":
+                return new TableInterleaved<Integer, Integer>(capacity, 1.0, true, HashFunction.DEFAULT);
+            case "hashmap":
+                return new HashMapAdapter<Integer, Integer>(capacity);
+            case "int-linear":
+                return new IntTableAdapter<Integer>(new IntTable<Integer>(capacity, 1.0));
+            case "int-double":
+                return new IntTableDoubleHashAdapter<Integer>(new IntTableDoubleHash<Integer>(capacity, 1.0));
+            case "int-chain":
+                return new IntTableChainHashAdapter<Integer>(new IntTableChainHash<Integer>(capacity, 1.0));
+            case "offheap-linear":
+                return new OffHeapTableAdapter(new OffHeapTable(capacity, 1.0));
+            case "offheap-double":
+                return new OffHeapTableDoubleHashAdapter(new OffHeapTableDoubleHash(capacity, 1.0));
+            default:
+                throw new IllegalArgumentException("Unknown table: " + name);
+        }
+    }
+
+    static Integer[] makeKeys(String dist, int n, int capacity, int offset) {
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            switch (dist) {
+                case "sequential":
+                    keys[i] = offset + i;
+                    break;
+                case "uniform":
+                case "zipfian":
+                    keys[i] = scramble(offset + i);
+                    break;
+                case "adversarial":
+                    // every key is a multiple of the capacity, so all of them
+                    // have home index 0 in a table of exactly that capacity
+                    keys[i] = (offset + i) * capacity;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown distribution: " + dist);
+            }
+        }
+        return keys;
+    }
+
+    static int scramble(int x) {
+        // a bijection on the non-negative ints, so distinct inputs give
+        // distinct, evenly spread keys without a set to weed out repeats
+        final int mask = 0x7FFFFFFF;
+        x = (x * 0x2545F491 + 0x6A09E667) & mask;
+        x ^= x >>> 15;
+        x = (x * 0x5BD1E995) & mask;
+        x ^= x >>> 13;
+        x = (x * 0x27D4EB2F) & mask;
+        x ^= x >>> 16;
+        return x;
+    }
+
+    static int[] makeOrder(String dist, int n) {
+        // the sequence of key indexes used by get and containsKey
+        int[] order = new int[n];
+        Random random = new Random(SEED);
+        if (dist.equals("sequential")) {
+            for (int i = 0; i < n; i++)
+                order[i] = i;
+        }
+        else if (dist.equals("zipfian")) {
+            ZipfSampler zipf = new ZipfSampler(n, ZIPF_EXPONENT);
+            for (int i = 0; i < n; i++)
+                order[i] = zipf.sample(random) - 1;
+        }
+        else {
+            for (int i = 0; i < n; i++)
+                order[i] = random.nextInt(n);
+        }
+        return order;
+    }
+
+    static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values)
+            sum += v;
+        return sum / values.length;
+    }
+
+    static double deviation(double[] values) {
+        if (values.length < 2)
+            return 0;
+        double m = mean(values);
+        double sum = 0;
+        for (double v : values)
+            sum += (v - m) * (v - m);
+        return Math.sqrt(sum / (values.length - 1));
+    }
+
+    static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0)
+            return 0;
+        return sorted[(int) Math.min(sorted.length - 1, Math.floor(p * sorted.length))];
+    }
+
+    static void printHeader() {
+        System.out.printf("%-20s %10s %5s %9s %-12s %-12s %19s %9s %8s %8s %8s%n",
+                          "table", "capacity", "load", "keys", "dist", "op",
+                          "Mops/s", "ns/op", "p50", "p99", "p99.9");
+    }
+
+    static void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("-noheader")) {
+                header = false;
+                continue;
+            }
+            if (i + 1 == args.length)
+                throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            switch (option) {
+                case "-tables":
+                    tables = value.split(",");
+                    break;
+                case "-sizes":
+                    String[] s = value.split(",");
+                    sizes = new int[s.length];
+                    for (int j = 0; j < s.length; j++)
+                        sizes[j] = Integer.parseInt(s[j]);
+                    break;
+                case "-loads":
+                    String[] l = value.split(",");
+                    loads = new double[l.length];
+                    for (int j = 0; j < l.length; j++)
+                        loads[j] = Double.parseDouble(l[j]);
+                    break;
+                case "-dists":
+                    dists = value.split(",");
+                    break;
+                case "-ops":
+                    ops = value.split(",");
+                    break;
+                case "-warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "-iterations":
+                    iterations = Integer.parseInt(value);
+                    break;
+                case "-forks":
+                    forks = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+    }
+
+    static String[] withoutForkOptions(String[] args) {
+        List<String> kept = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-noheader"))
+                continue;
+            if (args[i].equals("-tables") || args[i].equals("-forks")) {
+                i++;
+                continue;
+            }
+            kept.add(args[i]);
+        }
+        return kept.toArray(new String[0]);
+    }
+
+    // Rejection-inversion sampling (Hormann and Derflinger) of ranks 1..n
+    // where rank k has probability proportional to k^-exponent. It needs no
+    // table of probabilities, so it works for the largest table sizes.
+    static class ZipfSampler {
+        private final int n;
+        private final double exponent;
+        private final double hIntegralX1;
+        private final double hIntegralN;
+        private final double s;
+
+        ZipfSampler(int n, double exponent) {
+            this.n = n;
+            this.exponent = exponent;
+            hIntegralX1 = hIntegral(1.5) - 1;
+            hIntegralN = hIntegral(n + 0.5);
+            s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+        }
+
+        int sample(Random random) {
+            while (true) {
+                double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+                double x = hIntegralInverse(u);
+                int k = (int) (x + 0.5);
+                if (k < 1)
+                    k = 1;
+                else if (k > n)
+                    k = n;
+                if (k - x <= s || u >= hIntegral(k + 0.5) - h(k))
+                    return k;
+            }
+        }
+
+        private double h(double x) {
+            return Math.exp(-exponent * Math.log(x));
+        }
+
+        private double hIntegral(double x) {
+            double logX = Math.log(x);
+            return helper2((1 - exponent) * logX) * logX;
+        }
+
+        private double hIntegralInverse(double x) {
+            double t = x * (1 - exponent);
+            if (t < -1)
+                t = -1;
+            return Math.exp(helper1(t) * x);
+        }
+
+        private static double helper1(double x) {
+            // log(1 + x) / x, accurate near zero
+            if (Math.abs(x) > 1e-8)
+                return Math.log1p(x) / x;
+            return 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+        }
+
+        private static double helper2(double x) {
+            // (exp(x) - 1) / x, accurate near zero
+            if (Math.abs(x) > 1e-8)
+                return Math.expm1(x) / x;
+            return 1 + x * 0.5 * (1 + x * (1.0 / 3) * (1 + 0.25 * x));
+        }
+    }
+
+    // java.util.HashMap as a HashTable, for the baseline
+    static class HashMapAdapter<K, E> implements HashTable<K, E> {
+        private final HashMap<K, E> map;
+
+        HashMapAdapter(int capacity) {
+            map = new HashMap<K, E>(capacity, 1.0f);
+        }
+
+        public boolean containsKey(K key) { return map.containsKey(key); }
+        public E get(K key) { return map.get(key); }
+        public E put(K key, E element) { return map.put(key, element); }
+        public E remove(K key) { return map.remove(key); }
+        public int size() { return map.size(); }
+        public int getCollisions() { return 0; }
+    }
+
+    // the primitive-key tables, unboxing the benchmark's Integer keys
+    static class IntTableAdapter<E> implements HashTable<Integer, E> {
+        private final IntTable<E> table;
+
+        IntTableAdapter(IntTable<E> table) {
+            this.table = table;
+        }
+
+        public boolean containsKey(Integer key) { return table.containsKey(key); }
+        public E get(Integer key) { return table.get(key); }
+        public E put(Integer key, E element) { return table.put(key, element); }
+        public E remove(Integer key) { return table.remove(key); }
+        public int size() { return table.size(); }
+        public int getCollisions() { return table.getCollisions(); }
+    }
+
+    static class IntTableDoubleHashAdapter<E> implements HashTable<Integer, E> {
+        private final IntTableDoubleHash<E> table;
+
+        IntTableDoubleHashAdapter(IntTableDoubleHash<E> table) {
+            this.table = table;
+        }
+
+        public boolean containsKey(Integer key) { return table.containsKey(key); }
+        public E get(Integer key) { return table.get(key); }
+        public E put(Integer key, E element) { return table.put(key, element); }
+        public E remove(Integer key) { return table.remove(key); }
+        public int size() { return table.size(); }
+        public int getCollisions() { return table.getCollisions(); }
+    }
+
+    static class IntTableChainHashAdapter<E> implements HashTable<Integer, E> {
+        private final IntTableChainHash<E> table;
+
+        IntTableChainHashAdapter(IntTableChainHash<E> table) {
+            this.table = table;
+        }
+
+        public boolean containsKey(Integer key) { return table.containsKey(key); }
+        public E get(Integer key) { return table.get(key); }
+        public E put(Integer key, E element) { return table.put(key, element); }
+        public E remove(Integer key) { return table.remove(key); }
+        public int size() { return table.size(); }
+        public int getCollisions() { return table.getCollisions(); }
+    }
+
+    // the off-heap tables, storing each Integer element as a long value
+    static class OffHeapTableAdapter implements HashTable<Integer, Integer> {
+        private static final long MISSING = Long.MIN_VALUE;
+        private final OffHeapTable table;
+
+        OffHeapTableAdapter(OffHeapTable table) {
+            this.table = table;
+        }
+
+        public boolean containsKey(Integer key) { return table.containsKey(key); }
+        public Integer get(Integer key) { return unbox(table.get(key, MISSING)); }
+        public Integer put(Integer key, Integer element) { return table.put(key, element) ? element : null; }
+        public Integer remove(Integer key) { return table.remove(key) ? key : null; }
+        public int size() { return table.size(); }
+        public int getCollisions() { return table.getCollisions(); }
+
+        static Integer unbox(long value) {
+            return value == MISSING ? null : Integer.valueOf((int) value);
+        }
+    }
+
+    static class OffHeapTableDoubleHashAdapter implements HashTable<Integer, Integer> {
+        private final OffHeapTableDoubleHash table;
+
+        OffHeapTableDoubleHashAdapter(OffHeapTableDoubleHash table) {
+            this.table = table;
+        }
+
+        public boolean containsKey(Integer key) { return table.containsKey(key); }
+        public Integer get(Integer key) { return OffHeapTableAdapter.unbox(table.get(key, OffHeapTableAdapter.MISSING)); }
+        public Integer put(Integer key, Integer element) { return table.put(key, element) ? element : null; }
+        public Integer remove(Integer key) { return table.remove(key) ? key : null; }
+        public int size() { return table.size(); }
+        public int getCollisions() { return table.getCollisions(); }
+    }
+}
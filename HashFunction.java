@@ -0,0 +1,192 @@
+// File: HashFunction.java
+
+
+/******************************************************************************
+* A <CODE>HashFunction</CODE> decides where a key goes in a hash table. It
+* turns the key into a 32-bit hash and then reduces the hash to an index of
+* an array of a given length. <CODE>Table</CODE>,
+* <CODE>TableDoubleHash</CODE> and <CODE>TableChainHash</CODE> take one in
+* their constructors, so a program can pick the function that is fastest
+* for its keys while still keeping collisions low.
+*
+* <CODE>DEFAULT</CODE> uses <CODE>hashCode</CODE> as it is, which is cheap
+* but leaves keys with regular hash codes (such as sequential
+* <CODE>Integer</CODE>s, whose hash code is their value) in long runs.
+* <CODE>MURMUR3</CODE> and <CODE>XXHASH</CODE> pass the hash code through
+* the finalizer of MurmurHash3 or xxHash32, after which every bit of the
+* hash depends on every bit of the hash code. <CODE>FIBONACCI</CODE>
+* multiplies by 2<sup>32</sup> divided by the golden ratio and takes the
+* index from the high bits of the product, with a multiplication instead
+* of a remainder; for a power-of-two length this is exactly Fibonacci
+* hashing. <CODE>seeded</CODE> gives a full MurmurHash3 of the hash code
+* with a chosen seed, so that keys picked to collide under one seed do not
+* collide under another.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public interface HashFunction
+{
+   /**
+   * Computes the hash of a key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to hash
+   * @return
+   *   a 32-bit hash of the key; keys that are equal have equal hashes
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   int hash(Object key);
+
+
+   /**
+   * Reduces a hash to an index of an array. The default implementation
+   * takes the remainder of the hash, with its sign bit cleared, divided by
+   * the length.
+   * @param <CODE>hash</CODE>
+   *   a hash computed by this function
+   * @param <CODE>length</CODE>
+   *   the length of the array
+   * <dt><b>Precondition:</b><dd>
+   *   <CODE>length</CODE> is positive.
+   * @return
+   *   an index from 0 to <CODE>length - 1</CODE>
+   **/
+   default int index(int hash, int length)
+   {
+      return (hash & 0x7FFFFFFF) % length;
+   }
+
+
+   /**
+   * The key's own hash code, reduced by a remainder.
+   **/
+   HashFunction DEFAULT = new HashFunction( )
+   {
+      public int hash(Object key)
+      {
+         return key.hashCode( );
+      }
+   };
+
+   /**
+   * The hash code mixed by the MurmurHash3 finalizer.
+   **/
+   HashFunction MURMUR3 = new HashFunction( )
+   {
+      public int hash(Object key)
+      {
+         int h = key.hashCode( );
+
+         h ^= h >>> 16;
+         h *= 0x85EBCA6B;
+         h ^= h >>> 13;
+         h *= 0xC2B2AE35;
+         h ^= h >>> 16;
+         return h;
+      }
+   };
+
+   /**
+   * The hash code mixed by the xxHash32 finalizer.
+   **/
+   HashFunction XXHASH = new HashFunction( )
+   {
+      public int hash(Object key)
+      {
+         int h = key.hashCode( );
+
+         h ^= h >>> 15;
+         h *= 0x85EBCA77;
+         h ^= h >>> 13;
+         h *= 0xC2B2AE3D;
+         h ^= h >>> 16;
+         return h;
+      }
+   };
+
+   /**
+   * The hash code multiplied by the golden ratio, reduced by taking the
+   * high bits of the hash times the length.
+   **/
+   HashFunction FIBONACCI = new HashFunction( )
+   {
+      public int hash(Object key)
+      {
+         return key.hashCode( ) * 0x9E3779B9;
+      }
+
+      public int index(int hash, int length)
+      {
+         return (int) (((hash & 0xFFFFFFFFL) * length) >>> 32);
+      }
+   };
+
+
+   /**
+   * Creates a hash function that runs MurmurHash3 over the key's hash code
+   * with a given seed.
+   * @param <CODE>seed</CODE>
+   *   the seed; different seeds give unrelated hashes for the same key
+   * @return
+   *   a hash function equal to the 32-bit MurmurHash3 of the four bytes of
+   *   the hash code
+   **/
+   static HashFunction seeded(final int seed)
+   {
+      return new HashFunction( )
+      {
+         public int hash(Object key)
+         {
+            int k = key.hashCode( ) * 0xCC9E2D51;
+            int h;
+
+            k = Integer.rotateLeft(k, 15) * 0x1B873593;
+            h = Integer.rotateLeft(seed ^ k, 13) * 5 + 0xE6546B64;
+            h ^= 4;
+            h ^= h >>> 16;
+            h *= 0x85EBCA6B;
+            h ^= h >>> 13;
+            h *= 0xC2B2AE35;
+            h ^= h >>> 16;
+            return h;
+         }
+      };
+   }
+
+
+   /**
+   * Finds a hash function by name, for programs that take it as an option.
+   * @param <CODE>name</CODE>
+   *   <CODE>default</CODE>, <CODE>murmur3</CODE>, <CODE>xxhash</CODE>,
+   *   <CODE>fibonacci</CODE>, or <CODE>seeded</CODE> followed by a decimal
+   *   seed (for example <CODE>seeded42</CODE>)
+   * @return
+   *   the hash function with that name
+   * @exception IllegalArgumentException
+   *   Indicates that there is no hash function with that name.
+   **/
+   static HashFunction forName(String name)
+   {
+      switch (name) {
+         case "default":
+            return DEFAULT;
+         case "murmur3":
+            return MURMUR3;
+         case "xxhash":
+            return XXHASH;
+         case "fibonacci":
+            return FIBONACCI;
+         default:
+            if (name.startsWith("seeded")) {
+               try {
+                  return seeded(Integer.parseInt(name.substring(6)));
+               }
+               catch (NumberFormatException e) {
+                  // fall through to the error below
+               }
+            }
+            throw new IllegalArgumentException("Unknown hash function: " + name);
+      }
+   }
+}
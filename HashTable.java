@@ -0,0 +1,152 @@
+// File: HashTable.java
+
+
+/******************************************************************************
+* A <CODE>HashTable</CODE> is the set of operations that every table in this
+* project supports, whatever hashing method it uses. It lets a program such
+* as <CODE>HashBenchmark</CODE> run the same workload against
+* <CODE>Table</CODE>, <CODE>TableDoubleHash</CODE> and
+* <CODE>TableChainHash</CODE> (or against <CODE>java.util.HashMap</CODE>,
+* through a small adapter) and compare the results.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public interface HashTable< K , E >
+{
+   /**
+   * Determines whether a specified key is in this table.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   <CODE>true</CODE> (if this table contains an object with the specified
+   *   key); <CODE>false</CODE> otherwise.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   boolean containsKey(K key);
+
+
+   /**
+   * Retrieves an object for a specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   a reference to the object with the specified <CODE>key</CODE> (if this
+   *   table contains an such an object);  null otherwise.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   E get(K key);
+
+
+   /**
+   * Add a new element to this table, using the specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to use for the new element
+   * @param <CODE>element</CODE>
+   *   the new, non-null element that's being added to this table
+   * @return
+   *   the object that was replaced, if this table already had an object with
+   *   the specified <CODE>key</CODE>; null otherwise.
+   **/
+   E put(K key, E element);
+
+
+   /**
+   * Retrieves the objects for a batch of keys. The default implementation
+   * simply calls <CODE>get</CODE> for each key in turn; a table can do
+   * better by working on the whole batch at once.
+   * @param <CODE>keys</CODE>
+   *   the non-null keys to look for
+   * @param <CODE>elements</CODE>
+   *   the array that receives the objects
+   * <dt><b>Postcondition:</b><dd>
+   *   <CODE>elements[i]</CODE> is <CODE>get(keys[i])</CODE> for each
+   *   index <CODE>i</CODE> of <CODE>keys</CODE>. Any further entries of
+   *   <CODE>elements</CODE> are unchanged.
+   * @return
+   *   the number of keys that were found
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>elements</CODE> is shorter than
+   *   <CODE>keys</CODE>.
+   * @exception NullPointerException
+   *   Indicates that one of the keys is null.
+   **/
+   default int getAll(K[ ] keys, E[ ] elements)
+   {
+      if (elements.length < keys.length)
+         throw new IllegalArgumentException("Elements array is shorter than keys");
+
+      int i;
+      int found = 0;
+
+      for (i = 0; i < keys.length; i++)
+      {
+         elements[i] = get(keys[i]);
+         if (elements[i] != null)
+            found++;
+      }
+      return found;
+   }
+
+
+   /**
+   * Add a batch of new elements to this table. The default implementation
+   * simply calls <CODE>put</CODE> for each pair in turn; a table can do
+   * better by working on the whole batch at once.
+   * @param <CODE>keys</CODE>
+   *   the non-null keys to use for the new elements
+   * @param <CODE>elements</CODE>
+   *   the new, non-null elements, where <CODE>elements[i]</CODE> goes with
+   *   <CODE>keys[i]</CODE>
+   * <dt><b>Postcondition:</b><dd>
+   *   The table is as if <CODE>put(keys[i], elements[i])</CODE> had been
+   *   called for each <CODE>i</CODE> in increasing order, and
+   *   <CODE>getCollisions</CODE> reports the last of those puts.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>keys</CODE> and <CODE>elements</CODE> have
+   *   different lengths.
+   **/
+   default void putAll(K[ ] keys, E[ ] elements)
+   {
+      if (keys.length != elements.length)
+         throw new IllegalArgumentException("Keys and elements differ in length");
+
+      int i;
+
+      for (i = 0; i < keys.length; i++)
+         put(keys[i], elements[i]);
+   }
+
+
+   /**
+   * Removes an object for a specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   the removed object, if an object was found with the specified
+   *   <CODE>key</CODE>; null otherwise.
+   **/
+   E remove(K key);
+
+
+   /**
+   * Determines the number of elements in this table.
+   * @param - none
+   * @return
+   *   the number of elements in this table
+   **/
+   int size( );
+
+
+   /**
+   * returns the number of collisions from put method.
+   * @param
+   *     none
+   * @return
+   *     collisions - integer storing number of collisions
+   *                   from placing current element
+   **/
+   int getCollisions( );
+}
@@ -3,70 +3,80 @@
  * Date: 12/10/22
  * Filename: HashTesting.java
  * 
- * Analysis of three different hashing methods
+ * Analysis of five different hashing methods
  * 
 */
-import java.util.Scanner;
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 
 public class HashTesting {
     public static void main(String[] args) {
         final int ARRAY_SIZE = 241;
         final int NAMES = 200;
-        // create a 3 tables for 3 different hashing methods
-        Table<Integer, String> linearTable = new Table<Integer, String>(ARRAY_SIZE);
-        TableDoubleHash<Integer, String> doubleTable = new TableDoubleHash<Integer, String>(ARRAY_SIZE);
-        TableChainHash<Integer, String> chainTable = new TableChainHash<Integer, String>(ARRAY_SIZE);
+        // create 4 tables for 4 different hashing methods; a load factor
+        // of 1.0 keeps each table at ARRAY_SIZE for the whole experiment.
+        // The 5th, a perfect hash table, is built once the keys are known.
+        final Table<Integer, String> linearTable = new Table<Integer, String>(ARRAY_SIZE, 1.0);
+        final TableDoubleHash<Integer, String> doubleTable = new TableDoubleHash<Integer, String>(ARRAY_SIZE, 1.0);
+        final TableChainHash<Integer, String> chainTable = new TableChainHash<Integer, String>(ARRAY_SIZE, 1.0);
+        final TableHopscotchHash<Integer, String> hopscotchTable = new TableHopscotchHash<Integer, String>(ARRAY_SIZE, 1.0);
+
+        // the tables' statistics add up the collisions of every put
+        TableStatistics linearStats = linearTable.enableStatistics();
+        TableStatistics doubleStats = doubleTable.enableStatistics();
+        TableStatistics chainStats = chainTable.enableStatistics();
 
-        // get input from names file
-        File inFile = new File("names.txt");
-        Scanner scanner = null;
-        try {
-            scanner = new Scanner(inFile);
-        }
-        catch (FileNotFoundException e) {
-            System.out.println(e.getMessage());
-        }
-        
-        // scan all lines in file and add to Hash Table
-        String[] tokens;
-        String name;
-        int number;
-        int attempt = 1;
-        double linearTotal = 0.0;
-        double doubleTotal = 0.0;
-        double chainTotal = 0.0;
-        
         System.out.println();
         System.out.println("Collisions per Attempted placement in Tables: ");
-        System.out.println("Attempt \t Linear \t Double \t Chain");
-        while(scanner.hasNextLine()) {
-            tokens = scanner.nextLine().split(" ");
-            name = tokens[0];
-            number = Integer.parseInt(tokens[1]);
-            try {
+        System.out.println("Attempt \t Linear \t Double \t Chain \t\t Perfect \t Hopscotch");
+
+        // read the names file, build a perfect hash table for its numbers,
+        // and add every line to the Hash Tables
+        final ArrayList<String> names = new ArrayList<String>();
+        final ArrayList<Integer> numbers = new ArrayList<Integer>();
+        long perfectCollisions = 0;
+        long hopscotchCollisions = 0;
+        try {
+            new BulkLoader().forEach(Paths.get("names.txt"), new BulkLoader.RecordHandler() {
+                public void record(String name, int number) {
+                    names.add(name);
+                    numbers.add(number);
+                }
+            });
+            PerfectHashTable<Integer, String> perfectTable =
+                new PerfectHashTable<Integer, String>(numbers.toArray(new Integer[0]));
+
+            for (int i = 0; i < names.size(); i++) {
+                int number = numbers.get(i);
+                String name = names.get(i);
                 linearTable.put(number, name);
                 doubleTable.put(number, name);
                 chainTable.put(number, name);
-            } 
-            catch (IllegalStateException e) {
-                System.out.println(e.getMessage());
-                break;
+                perfectTable.put(number, name);
+                perfectCollisions += perfectTable.getCollisions();
+                hopscotchTable.put(number, name);
+                hopscotchCollisions += hopscotchTable.getCollisions();
+                System.out.print("\t" + (i + 1) + "\t\t");
+                System.out.print("\t" + linearTable.getCollisions() + "\t\t");
+                System.out.print("\t" + doubleTable.getCollisions() + "\t\t");
+                System.out.print("\t" + chainTable.getCollisions() + "\t\t");
+                System.out.print("\t" + perfectTable.getCollisions() + "\t\t");
+                System.out.println("\t" + hopscotchTable.getCollisions() + "\t\t");
             }
-            System.out.print("\t" + attempt + "\t\t");
-            System.out.print("\t" + linearTable.getCollisions() + "\t\t");
-            System.out.print("\t" + doubleTable.getCollisions() + "\t\t");
-            System.out.println("\t" + chainTable.getCollisions() + "\t\t");
-            linearTotal += (double) linearTable.getCollisions() / NAMES;
-            doubleTotal += (double) doubleTable.getCollisions() / NAMES;
-            chainTotal += ((double) chainTable.getCollisions()) / NAMES;
-            attempt++;
+        }
+        catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+        catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
         }
 
         System.out.println("---------------");
-        System.out.printf("%.3f \n", linearTotal);
-        System.out.printf("%.3f \n", doubleTotal);
-        System.out.printf("%.3f \n", chainTotal);
+        System.out.printf("%.3f \n", (double) linearStats.getPutCollisions() / NAMES);
+        System.out.printf("%.3f \n", (double) doubleStats.getPutCollisions() / NAMES);
+        System.out.printf("%.3f \n", (double) chainStats.getPutCollisions() / NAMES);
+        System.out.printf("%.3f \n", (double) perfectCollisions / NAMES);
+        System.out.printf("%.3f \n", (double) hopscotchCollisions / NAMES);
     }
 }
\ No newline at end of file
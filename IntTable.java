@@ -0,0 +1,367 @@
+// File: IntTable.java
+
+
+/******************************************************************************
+* An <CODE>IntTable</CODE> is an open-address hash table with linear probing
+* whose keys are primitive <CODE>int</CODE> values. It has the same
+* operations as <CODE>Table</CODE>, but the keys live in an
+* <CODE>int[ ]</CODE>, so no key is ever boxed into an <CODE>Integer</CODE>
+* and a search compares keys with <CODE>==</CODE> instead of calling
+* <CODE>equals</CODE>.
+*
+* Like <CODE>Table</CODE>, the table grows to a prime roughly twice its size
+* when the maximum load factor would be exceeded, and removed elements leave
+* tombstones that are reused by later insertions and cleared by a rehash
+* once there are too many of them.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class IntTable< E >
+{
+   // Invariant of the IntTable class:
+   //   1. The number of items in the table is in the instance variable manyItems.
+   //   2. The preferred location for an element with a given key is at index
+   //      hash(key). If a collision occurs, then nextIndex is used to search
+   //      forward to find the next open address. When an open address is found
+   //      at an index i, then the element itself is placed in data[i] and the
+   //      element's key is placed at keys[i].
+   //   3. An index i that is not currently used has data[i] set to null (the
+   //      value of keys[i] does not matter).
+   //   4. If an index i has been used at some point (now or in the past), then
+   //      hasBeenUsed[i] is true; otherwise it is false.
+   //   5. Before a new key is added, manyItems + 1 is at most
+   //      maxLoadFactor * data.length, unless the table cannot grow any more.
+   //   6. An index i with hasBeenUsed[i] true but data[i] null is a tombstone.
+   //      The number of tombstones is in the instance variable tombstones,
+   //      and manyItems + tombstones is at most maxLoadFactor * data.length
+   //      (or data.length if the table cannot grow).
+   private int manyItems;
+   private int tombstones;
+   private int[ ] keys;
+   private Object[ ] data;
+   private boolean[ ] hasBeenUsed;
+   private double maxLoadFactor;
+
+   /**
+   * The maximum load factor used when none is given to the constructor.
+   **/
+   public static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+   // instance variables to calculate collision frequency
+   private int collisions;
+
+   /**
+   * Initialize an empty table with a specified capacity and the default
+   * maximum load factor.
+   * @param <CODE>capacity</CODE>
+   *   the capacity for this new open-address hash table
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has the specified capacity.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public IntTable(int capacity)
+   {
+      this(capacity, DEFAULT_LOAD_FACTOR);
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity and maximum load
+   * factor.
+   * @param <CODE>capacity</CODE>
+   *   the initial capacity for this new open-address hash table
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest fraction of the capacity that may be filled before the
+   *   table grows; 1.0 means the table only grows when it is full
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has the specified capacity.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is not positive or that
+   *   <CODE>maxLoadFactor</CODE> is not in the range (0, 1].
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public IntTable(int capacity, double maxLoadFactor)
+   {
+      if (capacity <= 0)
+         throw new IllegalArgumentException("Capacity is negative");
+      if (!(maxLoadFactor > 0 && maxLoadFactor <= 1))
+         throw new IllegalArgumentException("Load factor must be in (0, 1]");
+      this.maxLoadFactor = maxLoadFactor;
+      keys = new int[capacity];
+      data = new Object[capacity];
+      hasBeenUsed = new boolean[capacity];
+   }
+
+
+   /**
+   * Determines whether a specified key is in this table.
+   * @param <CODE>key</CODE>
+   *   the key to look for
+   * @return
+   *   <CODE>true</CODE> (if this table contains an object with the specified
+   *   key); <CODE>false</CODE> otherwise.
+   **/
+   public boolean containsKey(int key)
+   {
+      return findIndex(key) != -1;
+   }
+
+
+   private int findIndex(int key)
+   // Postcondition: If the specified key is found in the table, then the return
+   // value is the index of the specified key. Otherwise, the return value is -1.
+   {
+      int count = 0;
+      int i = hash(key);
+
+      while (count < data.length && hasBeenUsed[i])
+      {
+         if (keys[i] == key && data[i] != null)
+            return i;
+         count++;
+         i = nextIndex(i);
+      }
+
+      return -1;
+   }
+
+
+   /** Retrieves an object for a specified key.
+   * @param <CODE>key</CODE>
+   *   the key to look for
+   * @return
+   *   a reference to the object with the specified <CODE>key</CODE> (if this
+   *   table contains an such an object);  null otherwise.
+   **/
+   public E get(int key)
+   {
+      int index = findIndex(key);
+
+      if (index == -1)
+         return null;
+      else
+         return (E) data[index];
+   }
+
+
+   private int hash(int key)
+   // The return value is a valid index of the table's arrays. The index is
+   // calculated as the remainder when the key with its sign bit cleared is
+   // divided by the size of the table's arrays. For non-negative keys this
+   // is the same index that Table computes for an Integer key.
+   {
+      return (key & 0x7FFFFFFF) % data.length;
+   }
+
+
+   private int nextIndex(int i)
+   // The return value is normally i+1. But if i+1 is data.length, then the
+   // return value is zero instead.
+   {
+      if (i+1 == data.length)
+         return 0;
+      else
+         return i+1;
+   }
+
+
+   /**
+   * Add a new element to this table, using the specified key.
+   * @param <CODE>key</CODE>
+   *   the key to use for the new element
+   * @param <CODE>element</CODE>
+   *   the new element that's being added to this table
+   * <dt><b>Precondition:</b><dd>
+   *   <CODE>element</CODE> is not null.
+   * <dt><b>Postcondition:</b><dd>
+   *   If this table already has an object with the specified <CODE>key</CODE>,
+   *   then that object is replaced by <CODE>element</CODE>, and the return
+   *   value is a reference to the replaced object. Otherwise, the new
+   *   <CODE>element</CODE> is added with the specified <CODE>key</CODE>
+   *   and the return value is null. If adding the element would push the
+   *   table past its maximum load factor, the table first grows.
+   * @exception IllegalStateException
+   *   Indicates that the table is full and has reached its largest
+   *   possible capacity.
+   * @exception NullPointerException
+   *   Indicates that <CODE>element</CODE> is null.
+   **/
+   public E put(int key, E element)
+   {
+      collisions = 0;
+      if (element == null)
+         throw new NullPointerException("Element is null");
+
+      int index = findIndex(key);
+      E answer;
+
+      if (index != -1)
+      {  // The key is already in the table.
+         answer = (E) data[index];
+         data[index] = element;
+         return answer;
+      }
+
+      if (manyItems + 1 > maxLoadFactor * data.length)
+         resize(Primes.growCapacity(data.length));
+
+      if (manyItems < data.length)
+      {  // The key is not yet in this table.
+         index = insertionIndex(key);
+         if (!hasBeenUsed[index]
+             && manyItems + tombstones + 1 > maxLoadFactor * data.length)
+         {  // Clear out the tombstones, or grow if the table is more than
+            // half full even without them.
+            if (2 * (manyItems + 1) > maxLoadFactor * data.length)
+               resize(Primes.growCapacity(data.length));
+            else
+               resize(data.length);
+            index = insertionIndex(key);
+         }
+         if (hasBeenUsed[index])
+            tombstones--;
+         keys[index] = key;
+         data[index] = element;
+         hasBeenUsed[index] = true;
+         manyItems++;
+         return null;
+      }
+      else
+      {  // The table is full.
+         throw new IllegalStateException("Table is full.");
+      }
+   }
+
+
+   /**
+   * Removes an object for a specified key.
+   * @param <CODE>key</CODE>
+   *   the key to look for
+   * <dt><b>Postcondition:</b><dd>
+   *   If an object was found with the specified <CODE>key</CODE>, then that
+   *   object has been removed from this table and a copy of the removed object
+   *   is returned; otherwise, this table is unchanged and the null reference
+   *   is returned.
+   **/
+   public E remove(int key)
+   {
+      int index = findIndex(key);
+      E answer = null;
+
+      if (index != -1)
+      {
+         answer = (E) data[index];
+         data[index] = null;
+         tombstones++;
+         manyItems--;
+         if (2 * tombstones > maxLoadFactor * data.length)
+            resize(data.length);
+      }
+
+      return answer;
+   }
+
+
+   private int insertionIndex(int key)
+   // Precondition: manyItems < data.length.
+   // Postcondition: The return value is the first index on the key's probe
+   // sequence that holds no element, which is either never used or a
+   // tombstone. The collisions instance variable is the number of occupied
+   // slots that were passed over on the way.
+   {
+      int index = hash(key);
+
+      collisions = 0;
+      while (data[index] != null) {
+         index = nextIndex(index);
+         collisions++;
+      }
+      return index;
+   }
+
+
+   private void resize(int newCapacity)
+   // Postcondition: If newCapacity is at least the current capacity, then
+   // the three arrays have been replaced by arrays of length newCapacity and
+   // every element has been rehashed into them. Tombstones are not carried
+   // over.
+   {
+      if (newCapacity < data.length)
+         return;
+
+      int[ ] oldKeys = keys;
+      Object[ ] oldData = data;
+      int i, index;
+
+      keys = new int[newCapacity];
+      data = new Object[newCapacity];
+      hasBeenUsed = new boolean[newCapacity];
+      tombstones = 0;
+      for (i = 0; i < oldData.length; i++)
+      {
+         if (oldData[i] != null)
+         {
+            index = hash(oldKeys[i]);
+            while (data[index] != null)
+               index = nextIndex(index);
+            keys[index] = oldKeys[i];
+            data[index] = oldData[i];
+            hasBeenUsed[index] = true;
+         }
+      }
+   }
+
+
+   /**
+   * Determines the number of elements in this table.
+   * @param - none
+   * @return
+   *   the number of elements in this table
+   **/
+   public int size( )
+   {
+      return manyItems;
+   }
+
+
+   /**
+   * Determines the current capacity of this table.
+   * @param - none
+   * @return
+   *   the length of the table's arrays; this grows as elements are added
+   **/
+   public int capacity( )
+   {
+      return data.length;
+   }
+
+
+   /**
+   * Determines the number of tombstones in this table.
+   * @param - none
+   * @return
+   *   the number of slots that held an element which has since been removed
+   *   and that have not yet been reused or cleared by a rehash
+   **/
+   public int getTombstones( )
+   {
+      return tombstones;
+   }
+
+
+   /**
+   * returns the number of collisions from put method.
+   * @param
+   *     none
+   * @return
+   *     collisions - integer storing number of collisions
+   *                   from placing current element
+   **/
+   public int getCollisions() {
+      return collisions;
+   }
+
+}
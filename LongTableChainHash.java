@@ -0,0 +1,370 @@
+// File: LongTableChainHash.java
+
+
+/******************************************************************************
+* A <CODE>LongTableChainHash</CODE> is a chained hash table whose keys are
+* primitive <CODE>long</CODE> values. It has the same operations as
+* <CODE>TableChainHash</CODE>, and the same layout: instead of linked
+* lists of node objects, every entry lives in a slot of a
+* preallocated pool of parallel arrays: the key in a <CODE>long[ ]</CODE>,
+* the element in an <CODE>Object[ ]</CODE> and the index of the next entry
+* of the same chain in another <CODE>int[ ]</CODE>. Removed slots go on a
+* free list and are reused by later insertions, so a table that is not
+* growing allocates nothing.
+*
+* When the number of items would exceed the maximum load factor times the
+* number of buckets, the table grows to a prime roughly twice its size and
+* relinks every entry into the new buckets.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class LongTableChainHash< E >
+{
+   // Invariant of the LongTableChainHash class:
+   //   1. The number of items in the table is in the instance variable manyItems.
+   //   2. An element with a given key is stored in some pool slot e with
+   //      keys[e] equal to the key and data[e] equal to the element. Slot e
+   //      is on the chain for bucket hash(key): the chain starts at
+   //      heads[hash(key)] and continues through next[e], ending with -1.
+   //   3. A bucket that holds no elements has heads[b] set to -1.
+   //   4. The pool slots 0 through poolUsed-1 have been handed out at some
+   //      point. Those that are not currently on a chain form the free list,
+   //      which starts at freeSlot and continues through next[e], and have
+   //      data[e] set to null. Slots from poolUsed on have never been used.
+   //   5. Before a new key is added, manyItems + 1 is at most
+   //      maxLoadFactor * heads.length, unless the table cannot grow any more.
+   private int manyItems;
+   private double maxLoadFactor;
+
+   private int[ ] heads;
+   private long[ ] keys;
+   private Object[ ] data;
+   private int[ ] next;
+   private int poolUsed;
+   private int freeSlot;
+   private int collisions;
+
+   /**
+   * The maximum load factor used when none is given to the constructor.
+   **/
+   public static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+   /**
+   * Initialize an empty table with a specified capacity and the default
+   * maximum load factor.
+   * @param <CODE>capacity</CODE>
+   *   the number of buckets for this new chained hash table
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has the specified capacity.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public LongTableChainHash(int capacity)
+   {
+      this(capacity, DEFAULT_LOAD_FACTOR);
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity and maximum load
+   * factor.
+   * @param <CODE>capacity</CODE>
+   *   the initial number of buckets for this new chained hash table
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest average chain length allowed before the table grows; it
+   *   may be larger than 1.0
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has the specified capacity. The entry pool
+   *   has room for as many entries as the table can hold before it grows.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> or <CODE>maxLoadFactor</CODE> is
+   *   not positive.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public LongTableChainHash(int capacity, double maxLoadFactor)
+   {
+      if (capacity <= 0)
+         throw new IllegalArgumentException("Capacity is negative");
+      if (!(maxLoadFactor > 0))
+         throw new IllegalArgumentException("Load factor must be positive");
+      this.maxLoadFactor = maxLoadFactor;
+      heads = new int[capacity];
+      java.util.Arrays.fill(heads, -1);
+      allocatePool(poolCapacity(capacity));
+      freeSlot = -1;
+   }
+
+
+   /**
+   * Determines whether a specified key is in this table.
+   * @param <CODE>key</CODE>
+   *   the key to look for
+   * @return
+   *   <CODE>true</CODE> (if this table contains an object with the specified
+   *   key); <CODE>false</CODE> otherwise.
+   **/
+   public boolean containsKey(long key)
+   {
+      return findSlot(key) != -1;
+   }
+
+
+   private int findSlot(long key)
+   // Postcondition: If the specified key is found in the table, then the return
+   // value is the pool slot that holds it. Otherwise, the return value is -1.
+   {
+      int e = heads[hash(key)];
+
+      while (e != -1 && keys[e] != key)
+         e = next[e];
+      return e;
+   }
+
+
+   /** Retrieves an object for a specified key.
+   * @param <CODE>key</CODE>
+   *   the key to look for
+   * @return
+   *   a reference to the object with the specified <CODE>key</CODE> (if this
+   *   table contains an such an object);  null otherwise.
+   **/
+   public E get(long key)
+   {
+      int e = findSlot(key);
+
+      if (e == -1)
+         return null;
+      else
+         return (E) data[e];
+   }
+
+
+   private static int hashCode(long key)
+   // The return value is the same hash code that Long.hashCode computes: the
+   // exclusive or of the upper and lower halves of the key.
+   {
+      return (int) (key ^ (key >>> 32));
+   }
+
+
+   private int hash(long key)
+   // The return value is a valid index of the heads array. The index is
+   // calculated as the remainder when the key's hash code with its sign bit
+   // cleared is divided by the number of buckets. Whenever
+   // that hash code is not negative, this is the same bucket that
+   // TableChainHash computes for a Long key.
+   {
+      return (hashCode(key) & 0x7FFFFFFF) % heads.length;
+   }
+
+
+   /**
+   * Add a new element to this table, using the specified key.
+   * @param <CODE>key</CODE>
+   *   the key to use for the new element
+   * @param <CODE>element</CODE>
+   *   the new element that's being added to this table
+   * <dt><b>Precondition:</b><dd>
+   *   <CODE>element</CODE> is not null.
+   * <dt><b>Postcondition:</b><dd>
+   *   If this table already has an object with the specified <CODE>key</CODE>,
+   *   then that object is replaced by <CODE>element</CODE>, and the return
+   *   value is a reference to the replaced object. Otherwise, the new
+   *   <CODE>element</CODE> is added with the specified <CODE>key</CODE>
+   *   and the return value is null. If adding the element would push the
+   *   table past its maximum load factor, the table first grows.
+   * @exception NullPointerException
+   *   Indicates that <CODE>element</CODE> is null.
+   **/
+   public E put(long key, E element)
+   {
+      collisions = 0;
+      if (element == null)
+         throw new NullPointerException("Element is null");
+
+      int index = hash(key);
+      int e = heads[index];
+      E answer;
+
+      // walk the chain, counting every entry we pass as a collision
+      while (e != -1) {
+         if (keys[e] == key) {
+            // new element replaces old
+            answer = (E) data[e];
+            data[e] = element;
+            return answer;
+         }
+         collisions++;
+         e = next[e];
+      }
+
+      // The key is not yet in this table.
+      if (manyItems + 1 > maxLoadFactor * heads.length) {
+         resize(Primes.growCapacity(heads.length));
+         index = hash(key);
+         collisions = 0;
+         for (e = heads[index]; e != -1; e = next[e])
+            collisions++;
+      }
+
+      // take a slot from the pool and link it at the front of the chain
+      e = takeSlot( );
+      keys[e] = key;
+      data[e] = element;
+      next[e] = heads[index];
+      heads[index] = e;
+      manyItems++;
+      return null;
+   }
+
+
+   /**
+   * Removes an object for a specified key.
+   * @param <CODE>key</CODE>
+   *   the key to look for
+   * <dt><b>Postcondition:</b><dd>
+   *   If an object was found with the specified <CODE>key</CODE>, then that
+   *   object has been removed from this table and a copy of the removed object
+   *   is returned; otherwise, this table is unchanged and the null reference
+   *   is returned.
+   **/
+   public E remove(long key)
+   {
+      int index = hash(key);
+      int parent = -1;
+      int e = heads[index];
+      E answer;
+
+      while (e != -1 && keys[e] != key) {
+         parent = e;
+         e = next[e];
+      }
+      if (e == -1)
+         return null;
+
+      // unlink the entry and put its slot on the free list
+      if (parent == -1)
+         heads[index] = next[e];
+      else
+         next[parent] = next[e];
+      answer = (E) data[e];
+      data[e] = null;
+      next[e] = freeSlot;
+      freeSlot = e;
+      manyItems--;
+      return answer;
+   }
+
+
+   private int takeSlot( )
+   // Postcondition: The return value is a pool slot that is not on any chain.
+   // It comes from the free list if that is not empty; otherwise it is the
+   // next never-used slot, and the pool has been enlarged if necessary.
+   {
+      int e;
+
+      if (freeSlot != -1) {
+         e = freeSlot;
+         freeSlot = next[e];
+         return e;
+      }
+      if (poolUsed == keys.length)
+         allocatePool(Math.max(poolCapacity(heads.length), keys.length + 1));
+      return poolUsed++;
+   }
+
+
+   private int poolCapacity(int buckets)
+   // The return value is the number of entries the table can hold with the
+   // given number of buckets before it has to grow.
+   {
+      return (int) Math.min(Primes.MAX_CAPACITY,
+                            Math.max(1, (long) (maxLoadFactor * buckets) + 1));
+   }
+
+
+   private void allocatePool(int poolCapacity)
+   // Postcondition: The three pool arrays have length poolCapacity (which is
+   // at least their current length) and keep their current contents.
+   {
+      if (keys == null) {
+         keys = new long[poolCapacity];
+         data = new Object[poolCapacity];
+         next = new int[poolCapacity];
+      }
+      else if (poolCapacity > keys.length) {
+         keys = java.util.Arrays.copyOf(keys, poolCapacity);
+         data = java.util.Arrays.copyOf(data, poolCapacity);
+         next = java.util.Arrays.copyOf(next, poolCapacity);
+      }
+   }
+
+
+   private void resize(int newCapacity)
+   // Postcondition: If newCapacity is larger than the current number of
+   // buckets, then heads has been replaced by an array of length newCapacity
+   // and every entry has been linked into the front of its new bucket. The
+   // entries stay in their pool slots.
+   {
+      if (newCapacity <= heads.length)
+         return;
+
+      int[ ] oldHeads = heads;
+      int i, e, following, index;
+
+      heads = new int[newCapacity];
+      java.util.Arrays.fill(heads, -1);
+      for (i = 0; i < oldHeads.length; i++)
+      {
+         for (e = oldHeads[i]; e != -1; e = following)
+         {
+            following = next[e];
+            index = hash(keys[e]);
+            next[e] = heads[index];
+            heads[index] = e;
+         }
+      }
+      allocatePool(poolCapacity(newCapacity));
+   }
+
+
+   /**
+   * Determines the number of elements in this table.
+   * @param - none
+   * @return
+   *   the number of elements in this table
+   **/
+   public int size( )
+   {
+      return manyItems;
+   }
+
+
+   /**
+   * Determines the current number of buckets in this table.
+   * @param - none
+   * @return
+   *   the length of the table's bucket array; this grows as elements are
+   *   added
+   **/
+   public int capacity( )
+   {
+      return heads.length;
+   }
+
+
+   /**
+   * returns the number of collisions from put method.
+   * @param
+   *     none
+   * @return
+   *     collisions - integer storing number of collisions
+   *                   from placing current element
+   **/
+   public int getCollisions() {
+      return collisions;
+   }
+
+}
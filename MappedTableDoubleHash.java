@@ -0,0 +1,646 @@
+// File: MappedTableDoubleHash.java
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+
+/******************************************************************************
+* A <CODE>MappedTableDoubleHash</CODE> is an open-address hash table with
+* double hashing, like <CODE>OffHeapTableDoubleHash</CODE>, whose slots live
+* in a memory-mapped file. Closing the table leaves a file that a later
+* process can reopen in the time it takes to map it: nothing is read or
+* rebuilt, and lookups are served straight from the page cache.
+*
+* The file starts with a header that records a magic number, the format
+* version, the probing strategy, the capacity, the number of elements and
+* tombstones, the maximum load factor and the hash seed, followed by the
+* slots in little-endian order. Keys are <CODE>long</CODE>s; a table of
+* strings can store a 64-bit fingerprint of each string, and each value can
+* be the offset of the full record in another file.
+*
+* Growing the table builds a new file next to the old one and renames it
+* into place, so the old file stays intact until the new one is complete.
+* A table that was not closed is marked in its header, and reopening it
+* recounts its elements and tombstones from the slots.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class MappedTableDoubleHash implements Closeable
+{
+   // Invariant of the MappedTableDoubleHash class:
+   //   1. The number of items in the table is in the instance variable
+   //      manyItems, and the number of tombstones in tombstones. While the
+   //      table is open the header holds them only as of the last force.
+   //   2. The preferred location for an element with a given key is at slot
+   //      hash(key). If a collision occurs, then nextIndex steps forward by
+   //      doubleHash(key) to find the next open address. The slots are kept
+   //      the same way as in OffHeapTableDoubleHash.
+   //   3. Before a new key is added, manyItems + 1 is at most
+   //      maxLoadFactor * slots.capacity( ), and manyItems + tombstones is
+   //      at most that too (unless the table cannot grow any more).
+   //   4. The file at path has the header mapped in header, followed by
+   //      the slots mapped in slots. Its CLEAN field is 0 while it is open.
+   //   5. After close, channel, header and slots are null.
+   private int manyItems;
+   private int tombstones;
+   private double maxLoadFactor;
+   private long seed;
+   private Path path;
+   private FileChannel channel;
+   private MappedByteBuffer header;
+   private OffHeapSlots slots;
+
+   // instance variables to calculate collision frequency
+   private int collisions;
+
+   /**
+   * The format version written by this class.
+   **/
+   public static final int VERSION = 1;
+
+   /**
+   * The probing strategy recorded for double hashing.
+   **/
+   public static final int STRATEGY_DOUBLE_HASH = 1;
+
+   /**
+   * The maximum load factor used when none is given to <CODE>create</CODE>.
+   **/
+   public static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+   // the header fields and their byte offsets; the slots start a page in
+   private static final int MAGIC = 0x48544448;   // "HTDH"
+   private static final int MAGIC_AT = 0;
+   private static final int VERSION_AT = 4;
+   private static final int STRATEGY_AT = 8;
+   private static final int CLEAN_AT = 12;
+   private static final int CAPACITY_AT = 16;
+   private static final int MANY_ITEMS_AT = 20;
+   private static final int TOMBSTONES_AT = 24;
+   private static final int SEED_AT = 32;
+   private static final int LOAD_FACTOR_AT = 40;
+   private static final int HEADER_BYTES = 4096;
+
+   private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+
+   private MappedTableDoubleHash( )
+   {
+   }
+
+
+   /**
+   * Create a new, empty table in a file with the default maximum load
+   * factor and a hash seed of zero.
+   * @param <CODE>path</CODE>
+   *   the file to create; an existing file is replaced
+   * @param <CODE>capacity</CODE>
+   *   the capacity for the new table, rounded up to a prime
+   * @return
+   *   the new table, open for reading and writing
+   * @exception IOException
+   *   Indicates that the file could not be created or mapped.
+   **/
+   public static MappedTableDoubleHash create(Path path, int capacity)
+      throws IOException
+   {
+      return create(path, capacity, DEFAULT_LOAD_FACTOR, 0);
+   }
+
+
+   /**
+   * Create a new, empty table in a file.
+   * @param <CODE>path</CODE>
+   *   the file to create; an existing file is replaced
+   * @param <CODE>capacity</CODE>
+   *   the capacity for the new table, rounded up to a prime
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest fraction of the capacity that may be filled before the
+   *   table grows; 1.0 means the table only grows when it is full
+   * @param <CODE>seed</CODE>
+   *   a value mixed into every key before it is hashed; zero gives the same
+   *   slots as <CODE>OffHeapTableDoubleHash</CODE>
+   * @return
+   *   the new table, open for reading and writing
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is less than 3 or that
+   *   <CODE>maxLoadFactor</CODE> is not in the range (0, 1].
+   * @exception IOException
+   *   Indicates that the file could not be created or mapped.
+   **/
+   public static MappedTableDoubleHash create(Path path, int capacity,
+                                              double maxLoadFactor, long seed)
+      throws IOException
+   {
+      if (capacity < 3)
+         throw new IllegalArgumentException("Capacity must be at least 3");
+      if (!(maxLoadFactor > 0 && maxLoadFactor <= 1))
+         throw new IllegalArgumentException("Load factor must be in (0, 1]");
+      capacity = Primes.nextPrime(capacity);
+
+      MappedTableDoubleHash table = new MappedTableDoubleHash( );
+
+      table.path = path;
+      table.maxLoadFactor = maxLoadFactor;
+      table.seed = seed;
+      table.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                                       StandardOpenOption.TRUNCATE_EXISTING,
+                                       StandardOpenOption.READ,
+                                       StandardOpenOption.WRITE);
+      try {
+         table.map(capacity);
+         table.header.putInt(MAGIC_AT, MAGIC);
+         table.header.putInt(VERSION_AT, VERSION);
+         table.header.putInt(STRATEGY_AT, STRATEGY_DOUBLE_HASH);
+         table.header.putInt(CLEAN_AT, 0);
+         table.header.putInt(CAPACITY_AT, capacity);
+         table.header.putLong(SEED_AT, seed);
+         table.header.putDouble(LOAD_FACTOR_AT, maxLoadFactor);
+         table.writeCounts( );
+      }
+      catch (IOException | RuntimeException e) {
+         table.channel.close( );
+         throw e;
+      }
+      return table;
+   }
+
+
+   /**
+   * Reopen a table that was created by <CODE>create</CODE>.
+   * @param <CODE>path</CODE>
+   *   the table's file
+   * @return
+   *   the table, open for reading and writing, with every element it held
+   *   when it was last closed or forced
+   * @exception IOException
+   *   Indicates that the file could not be read or mapped, or that it is
+   *   not a table of a version and strategy this class understands.
+   **/
+   public static MappedTableDoubleHash open(Path path) throws IOException
+   {
+      MappedTableDoubleHash table = new MappedTableDoubleHash( );
+      ByteBuffer fields = ByteBuffer.allocate(HEADER_BYTES).order(ORDER);
+      int capacity;
+
+      table.path = path;
+      table.channel = FileChannel.open(path, StandardOpenOption.READ,
+                                       StandardOpenOption.WRITE);
+      try {
+         while (fields.hasRemaining( ) && table.channel.read(fields) >= 0)
+            ;
+         if (fields.hasRemaining( ) || fields.getInt(MAGIC_AT) != MAGIC)
+            throw new IOException(path + " is not a hash table file");
+         if (fields.getInt(VERSION_AT) != VERSION)
+            throw new IOException("Unsupported table version "
+                                  + fields.getInt(VERSION_AT));
+         if (fields.getInt(STRATEGY_AT) != STRATEGY_DOUBLE_HASH)
+            throw new IOException("Unsupported probing strategy "
+                                  + fields.getInt(STRATEGY_AT));
+         capacity = fields.getInt(CAPACITY_AT);
+         if (capacity < 3 || table.channel.size( ) < fileSize(capacity))
+            throw new IOException(path + " is truncated");
+
+         table.seed = fields.getLong(SEED_AT);
+         table.maxLoadFactor = fields.getDouble(LOAD_FACTOR_AT);
+         table.map(capacity);
+         if (fields.getInt(CLEAN_AT) != 0) {
+            table.manyItems = fields.getInt(MANY_ITEMS_AT);
+            table.tombstones = fields.getInt(TOMBSTONES_AT);
+         }
+         else
+            table.recount( );
+         table.header.putInt(CLEAN_AT, 0);
+         table.header.force( );
+      }
+      catch (IOException | RuntimeException e) {
+         table.channel.close( );
+         throw e;
+      }
+      return table;
+   }
+
+
+   private static long fileSize(int capacity)
+   // The return value is the length of the file for a table of this capacity.
+   {
+      return HEADER_BYTES + (long) capacity * OffHeapSlots.SLOT_BYTES;
+   }
+
+
+   private void map(int capacity) throws IOException
+   // Postcondition: header and slots map the header and capacity slots of
+   // the file, which has been extended to fileSize(capacity) if necessary.
+   {
+      ByteBuffer[ ] chunks = new ByteBuffer[OffHeapSlots.chunkCount(capacity)];
+      long position = HEADER_BYTES;
+      int i, bytes;
+
+      header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+      header.order(ORDER);
+      for (i = 0; i < chunks.length; i++) {
+         bytes = OffHeapSlots.chunkBytes(capacity, i);
+         chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, bytes)
+                            .order(ORDER);
+         position += bytes;
+      }
+      slots = new OffHeapSlots(capacity, chunks);
+   }
+
+
+   private void recount( )
+   // Postcondition: manyItems and tombstones have been counted from the
+   // slots, for a file that was not closed cleanly.
+   {
+      int i;
+
+      manyItems = 0;
+      tombstones = 0;
+      for (i = 0; i < slots.capacity( ); i++) {
+         if (slots.state(i) == OffHeapSlots.FULL)
+            manyItems++;
+         else if (slots.state(i) == OffHeapSlots.TOMBSTONE)
+            tombstones++;
+      }
+   }
+
+
+   private void writeCounts( )
+   // Postcondition: The header holds the current manyItems and tombstones.
+   {
+      header.putInt(MANY_ITEMS_AT, manyItems);
+      header.putInt(TOMBSTONES_AT, tombstones);
+   }
+
+
+   /**
+   * Determines whether a specified key is in this table.
+   * @param <CODE>key</CODE>
+   *   the key to look for
+   * @return
+   *   <CODE>true</CODE> (if this table contains an element with the specified
+   *   key); <CODE>false</CODE> otherwise.
+   **/
+   public boolean containsKey(long key)
+   {
+      return findIndex(key) != -1;
+   }
+
+
+   private int findIndex(long key)
+   // Postcondition: If the specified key is found in the table, then the return
+   // value is the index of the specified key. Otherwise, the return value is -1.
+   {
+      int count = 0;
+      int i = hash(key);
+      byte state = slots.state(i);
+
+      while (count < slots.capacity( ) && state != OffHeapSlots.EMPTY)
+      {
+         if (state == OffHeapSlots.FULL && slots.key(i) == key)
+            return i;
+         count++;
+         i = nextIndex(i, key);
+         state = slots.state(i);
+      }
+
+      return -1;
+   }
+
+
+   /** Retrieves the value for a specified key.
+   * @param <CODE>key</CODE>
+   *   the key to look for
+   * @param <CODE>missing</CODE>
+   *   the value to return if the key is not in this table
+   * @return
+   *   the value stored with the specified <CODE>key</CODE> (if this table
+   *   contains such an element); <CODE>missing</CODE> otherwise.
+   **/
+   public long get(long key, long missing)
+   {
+      int index = findIndex(key);
+
+      if (index == -1)
+         return missing;
+      else
+         return slots.value(index);
+   }
+
+
+   private int hashCode(long key)
+   // The return value is the hash code that Long.hashCode computes for the
+   // key mixed with the seed: the exclusive or of the upper and lower halves.
+   {
+      key ^= seed;
+      return (int) (key ^ (key >>> 32));
+   }
+
+
+   private int hash(long key)
+   // The return value is a valid slot index. The index is calculated as the
+   // remainder when the key's hash code with its sign bit cleared is divided
+   // by the number of slots.
+   {
+      return (hashCode(key) & 0x7FFFFFFF) % slots.capacity( );
+   }
+
+
+   private int doubleHash(long key)
+   // This method is a second hash function. This function
+   // is called if a collision occurs from placing an element
+   // in the table. Method returns int calculated by 1 + mod capacity - 2
+   {
+      return 1 + (hashCode(key) & 0x7FFFFFFF) % (slots.capacity( ) - 2);
+   }
+
+
+   private int nextIndex(int i, long key)
+   // determine where to place the next element based
+   // on the value returned by the second hash function
+   {
+      // ensure that index does not exceed the number of slots
+      return (int) (((long) i + doubleHash(key)) % slots.capacity( ));
+   }
+
+
+   /**
+   * Add a new element to this table, using the specified key.
+   * @param <CODE>key</CODE>
+   *   the key to use for the new element
+   * @param <CODE>value</CODE>
+   *   the value to store with the key
+   * <dt><b>Postcondition:</b><dd>
+   *   If this table already has an element with the specified
+   *   <CODE>key</CODE>, then its value is replaced by <CODE>value</CODE>
+   *   and the return value is true. Otherwise, the new element is added and
+   *   the return value is false. If adding the element would push the table
+   *   past its maximum load factor, the table first grows into a new file.
+   * @exception IllegalStateException
+   *   Indicates that the table is full and has reached its largest
+   *   possible capacity.
+   * @exception IOException
+   *   Indicates that the table needed to grow and the new file could not be
+   *   written; the table is unchanged.
+   **/
+   public boolean put(long key, long value) throws IOException
+   {
+      collisions = 0;
+      int index = findIndex(key);
+
+      if (index != -1)
+      {  // The key is already in the table.
+         slots.setValue(index, value);
+         return true;
+      }
+
+      if (manyItems + 1 > maxLoadFactor * slots.capacity( ))
+         resize(Primes.growCapacity(slots.capacity( )));
+
+      if (manyItems < slots.capacity( ))
+      {  // The key is not yet in this table.
+         index = insertionIndex(key);
+         if (slots.state(index) == OffHeapSlots.EMPTY
+             && manyItems + tombstones + 1 > maxLoadFactor * slots.capacity( ))
+         {  // Clear out the tombstones, or grow if the table is more than
+            // half full even without them.
+            if (2 * (manyItems + 1) > maxLoadFactor * slots.capacity( ))
+               resize(Primes.growCapacity(slots.capacity( )));
+            else
+               resize(slots.capacity( ));
+            index = insertionIndex(key);
+         }
+         if (slots.state(index) == OffHeapSlots.TOMBSTONE)
+            tombstones--;
+         slots.set(index, key, value);
+         manyItems++;
+         return false;
+      }
+      else
+      {  // The table is full.
+         throw new IllegalStateException("Table is full.");
+      }
+   }
+
+
+   /**
+   * Removes the element with a specified key.
+   * @param <CODE>key</CODE>
+   *   the key to look for
+   * <dt><b>Postcondition:</b><dd>
+   *   If an element was found with the specified <CODE>key</CODE>, then it
+   *   has been removed from this table and the return value is true;
+   *   otherwise, this table is unchanged and the return value is false.
+   * @exception IOException
+   *   Indicates that the table needed to clear its tombstones and the new
+   *   file could not be written; the element has still been removed.
+   **/
+   public boolean remove(long key) throws IOException
+   {
+      int index = findIndex(key);
+
+      if (index == -1)
+         return false;
+
+      slots.setState(index, OffHeapSlots.TOMBSTONE);
+      tombstones++;
+      manyItems--;
+      if (2 * tombstones > maxLoadFactor * slots.capacity( ))
+         resize(slots.capacity( ));
+      return true;
+   }
+
+
+   private int insertionIndex(long key)
+   // Precondition: manyItems < slots.capacity( ).
+   // Postcondition: The return value is the first index on the key's probe
+   // sequence that holds no element, which is either EMPTY or a tombstone.
+   // The collisions instance variable is the number of occupied slots that
+   // were passed over on the way.
+   {
+      int index = hash(key);
+
+      collisions = 0;
+      while (slots.state(index) == OffHeapSlots.FULL) {
+         index = nextIndex(index, key);
+         collisions++;
+      }
+      return index;
+   }
+
+
+   private void resize(int newCapacity) throws IOException
+   // Postcondition: If newCapacity is at least the current capacity, then
+   // every element has been rehashed into a new file of newCapacity slots,
+   // which has replaced the old file at path. Tombstones are not carried
+   // over. If an IOException is thrown, the table still uses the old file.
+   {
+      if (newCapacity < slots.capacity( ))
+         return;
+
+      Path newPath = path.resolveSibling(path.getFileName( ) + ".resize");
+      MappedTableDoubleHash fresh =
+         create(newPath, newCapacity, maxLoadFactor, seed);
+      OffHeapSlots newSlots = fresh.slots;
+      int i, index;
+      long key;
+
+      try {
+         for (i = 0; i < slots.capacity( ); i++)
+         {
+            if (slots.state(i) == OffHeapSlots.FULL)
+            {
+               key = slots.key(i);
+               index = fresh.hash(key);
+               while (newSlots.state(index) != OffHeapSlots.EMPTY)
+                  index = fresh.nextIndex(index, key);
+               newSlots.set(index, key, slots.value(i));
+            }
+         }
+         fresh.manyItems = manyItems;
+         fresh.force( );
+         Files.move(newPath, path, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (IOException | RuntimeException e) {
+         fresh.close( );
+         Files.deleteIfExists(newPath);
+         throw e;
+      }
+
+      // the mappings stay valid after the rename; release the old file
+      unmap( );
+      channel.close( );
+      channel = fresh.channel;
+      header = fresh.header;
+      slots = newSlots;
+      tombstones = 0;
+   }
+
+
+   /**
+   * Writes every change to this table out to its file.
+   * @param - none
+   * <dt><b>Postcondition:</b><dd>
+   *   The file holds the current contents and counts of this table, so a
+   *   crash from now on loses no element that was added before the call.
+   * @exception IOException
+   *   Indicates that the file could not be written.
+   **/
+   public void force( ) throws IOException
+   {
+      writeCounts( );
+      slots.force( );
+      header.force( );
+      channel.force(false);
+   }
+
+
+   /**
+   * Writes every change to this table out to its file and closes it.
+   * @param - none
+   * <dt><b>Postcondition:</b><dd>
+   *   The file is marked as closed cleanly, so <CODE>open</CODE> can trust
+   *   its counts, and this table may no longer be used. Closing a table
+   *   that is already closed has no effect.
+   * @exception IOException
+   *   Indicates that the file could not be written.
+   **/
+   public void close( ) throws IOException
+   {
+      if (channel == null)
+         return;
+      try {
+         force( );
+         header.putInt(CLEAN_AT, 1);
+         header.force( );
+      }
+      finally {
+         unmap( );
+         channel.close( );
+         channel = null;
+      }
+   }
+
+
+   private void unmap( )
+   // Postcondition: header and slots have been unmapped and set to null.
+   {
+      slots.free( );
+      OffHeapSlots.release(header);
+      slots = null;
+      header = null;
+   }
+
+
+   /**
+   * Determines the number of elements in this table.
+   * @param - none
+   * @return
+   *   the number of elements in this table
+   **/
+   public int size( )
+   {
+      return manyItems;
+   }
+
+
+   /**
+   * Determines the current capacity of this table.
+   * @param - none
+   * @return
+   *   the number of slots; this grows as elements are added
+   **/
+   public int capacity( )
+   {
+      return slots.capacity( );
+   }
+
+
+   /**
+   * Determines the number of tombstones in this table.
+   * @param - none
+   * @return
+   *   the number of slots that held an element which has since been removed
+   *   and that have not yet been reused or cleared by a rehash
+   **/
+   public int getTombstones( )
+   {
+      return tombstones;
+   }
+
+
+   /**
+   * Determines the seed this table mixes into its keys.
+   * @param - none
+   * @return
+   *   the seed the table was created with
+   **/
+   public long getSeed( )
+   {
+      return seed;
+   }
+
+
+   /**
+   * returns the number of collisions from put method.
+   * @param
+   *     none
+   * @return
+   *     collisions - integer storing number of collisions
+   *                   from placing current element
+   **/
+   public int getCollisions() {
+      return collisions;
+   }
+
+}
@@ -0,0 +1,332 @@
+// File: OffHeapSlots.java
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+
+
+/******************************************************************************
+* An <CODE>OffHeapSlots</CODE> is the slot array of an open-address hash
+* table kept in native memory instead of on the Java heap. Each slot holds a
+* <CODE>long</CODE> key, a <CODE>long</CODE> value and a state byte that
+* says whether the slot has never been used, holds an element, or is a
+* tombstone. It replaces the <CODE>keys</CODE>, <CODE>data</CODE> and
+* <CODE>hasBeenUsed</CODE> arrays of <CODE>Table</CODE> and
+* <CODE>TableDoubleHash</CODE> for <CODE>OffHeapTable</CODE> and
+* <CODE>OffHeapTableDoubleHash</CODE>, and holds the mapped slots of a
+* <CODE>MappedTableDoubleHash</CODE>.
+*
+* The slots are spread over direct <CODE>ByteBuffer</CODE>s of at most
+* 2<sup>20</sup> slots each, so a table may be larger than the 2 GB a single
+* buffer can address, and the heap only ever holds the few buffer objects.
+* A table that replaces its slots calls <CODE>free</CODE> on the old ones
+* so their native memory is returned at once; otherwise it is only returned
+* when the buffers are garbage collected, which may not happen for a long
+* time when the heap itself is nearly empty.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class OffHeapSlots
+{
+   // Invariant of the OffHeapSlots class:
+   //   1. The number of slots is in the instance variable capacity.
+   //   2. Slot i lives in chunks[i >>> CHUNK_SHIFT], starting at byte
+   //      (i & CHUNK_MASK) * SLOT_BYTES. Its state byte is at offset 0, its
+   //      key at offset 8 and its value at offset 16, in the byte order of
+   //      the buffers (native order for memory this class allocates).
+   //   3. Every chunk but the last holds exactly 1 << CHUNK_SHIFT slots.
+   //   4. After free has been called, every chunk is null.
+   private final ByteBuffer[ ] chunks;
+   private final int capacity;
+
+   /**
+   * The state of a slot that has never held an element. Newly allocated
+   * memory is zero, so every slot starts out <CODE>EMPTY</CODE>.
+   **/
+   public static final byte EMPTY = 0;
+
+   /**
+   * The state of a slot that holds an element.
+   **/
+   public static final byte FULL = 1;
+
+   /**
+   * The state of a slot whose element has been removed.
+   **/
+   public static final byte TOMBSTONE = 2;
+
+   /**
+   * The number of bytes each slot takes.
+   **/
+   public static final int SLOT_BYTES = 24;
+
+   static final int CHUNK_SHIFT = 20;
+   static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+   private static final int KEY_OFFSET = 8;
+   private static final int VALUE_OFFSET = 16;
+
+   // sun.misc.Unsafe and its invokeCleaner method, which frees a direct
+   // buffer's memory immediately; both are null if they are not available
+   private static final Object UNSAFE;
+   private static final Method INVOKE_CLEANER;
+
+   static
+   {
+      Object unsafe = null;
+      Method invokeCleaner = null;
+
+      try {
+         Class<?> type = Class.forName("sun.misc.Unsafe");
+         Field field = type.getDeclaredField("theUnsafe");
+         field.setAccessible(true);
+         unsafe = field.get(null);
+         invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+      }
+      catch (ReflectiveOperationException | RuntimeException e) {
+         unsafe = null;
+         invokeCleaner = null;
+      }
+      UNSAFE = unsafe;
+      INVOKE_CLEANER = invokeCleaner;
+   }
+
+   /**
+   * Initialize a slot array in native memory.
+   * @param <CODE>capacity</CODE>
+   *   the number of slots
+   * <dt><b>Postcondition:</b><dd>
+   *   Every slot is <CODE>EMPTY</CODE>.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is not positive.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient native memory for the specified capacity.
+   **/
+   public OffHeapSlots(int capacity)
+   {
+      this(capacity, allocate(capacity));
+   }
+
+
+   OffHeapSlots(int capacity, ByteBuffer[ ] chunks)
+   // Precondition: chunks has chunkCount(capacity) buffers, each at least
+   // as large as the slots it holds (chunkBytes), and set to the byte order
+   // the slots are kept in.
+   // Postcondition: The slot array uses those buffers as they are.
+   {
+      this.capacity = capacity;
+      this.chunks = chunks;
+   }
+
+
+   private static ByteBuffer[ ] allocate(int capacity)
+   // The return value is a fresh, zeroed set of direct buffers in native byte
+   // order for the given number of slots.
+   {
+      if (capacity <= 0)
+         throw new IllegalArgumentException("Capacity is negative");
+
+      ByteBuffer[ ] chunks = new ByteBuffer[chunkCount(capacity)];
+      int i;
+
+      for (i = 0; i < chunks.length; i++)
+         chunks[i] = ByteBuffer.allocateDirect(chunkBytes(capacity, i))
+                               .order(ByteOrder.nativeOrder( ));
+      return chunks;
+   }
+
+
+   static int chunkCount(int capacity)
+   // The return value is the number of chunks needed for capacity slots.
+   {
+      return (int) (((long) capacity + CHUNK_MASK) >>> CHUNK_SHIFT);
+   }
+
+
+   static int chunkBytes(int capacity, int chunk)
+   // The return value is the number of bytes in the given chunk of a slot
+   // array with capacity slots.
+   {
+      int first = chunk << CHUNK_SHIFT;
+      return Math.min(capacity - first, 1 << CHUNK_SHIFT) * SLOT_BYTES;
+   }
+
+
+   /**
+   * Determines the number of slots.
+   * @param - none
+   * @return
+   *   the number of slots in this array
+   **/
+   public int capacity( )
+   {
+      return capacity;
+   }
+
+
+   private static int offset(int i)
+   // The return value is the byte offset of slot i within its chunk.
+   {
+      return (i & CHUNK_MASK) * SLOT_BYTES;
+   }
+
+
+   /**
+   * Determines the state of a slot.
+   * @param <CODE>i</CODE>
+   *   the index of the slot
+   * <dt><b>Precondition:</b><dd>
+   *   <CODE>0 &lt;= i &lt; capacity( )</CODE>.
+   * @return
+   *   <CODE>EMPTY</CODE>, <CODE>FULL</CODE> or <CODE>TOMBSTONE</CODE>
+   **/
+   public byte state(int i)
+   {
+      return chunks[i >>> CHUNK_SHIFT].get(offset(i));
+   }
+
+
+   /**
+   * Reads the key of a slot.
+   * @param <CODE>i</CODE>
+   *   the index of the slot
+   * <dt><b>Precondition:</b><dd>
+   *   <CODE>0 &lt;= i &lt; capacity( )</CODE>.
+   * @return
+   *   the key last stored in slot <CODE>i</CODE>
+   **/
+   public long key(int i)
+   {
+      return chunks[i >>> CHUNK_SHIFT].getLong(offset(i) + KEY_OFFSET);
+   }
+
+
+   /**
+   * Reads the value of a slot.
+   * @param <CODE>i</CODE>
+   *   the index of the slot
+   * <dt><b>Precondition:</b><dd>
+   *   <CODE>0 &lt;= i &lt; capacity( )</CODE>.
+   * @return
+   *   the value last stored in slot <CODE>i</CODE>
+   **/
+   public long value(int i)
+   {
+      return chunks[i >>> CHUNK_SHIFT].getLong(offset(i) + VALUE_OFFSET);
+   }
+
+
+   /**
+   * Stores an element in a slot.
+   * @param <CODE>i</CODE>
+   *   the index of the slot
+   * @param <CODE>key</CODE>
+   *   the element's key
+   * @param <CODE>value</CODE>
+   *   the element's value
+   * <dt><b>Precondition:</b><dd>
+   *   <CODE>0 &lt;= i &lt; capacity( )</CODE>.
+   * <dt><b>Postcondition:</b><dd>
+   *   Slot <CODE>i</CODE> is <CODE>FULL</CODE> and holds the key and value.
+   **/
+   public void set(int i, long key, long value)
+   {
+      ByteBuffer chunk = chunks[i >>> CHUNK_SHIFT];
+      int offset = offset(i);
+
+      chunk.putLong(offset + KEY_OFFSET, key);
+      chunk.putLong(offset + VALUE_OFFSET, value);
+      chunk.put(offset, FULL);
+   }
+
+
+   /**
+   * Replaces the value of a slot.
+   * @param <CODE>i</CODE>
+   *   the index of the slot
+   * @param <CODE>value</CODE>
+   *   the new value
+   * <dt><b>Precondition:</b><dd>
+   *   <CODE>0 &lt;= i &lt; capacity( )</CODE>.
+   * <dt><b>Postcondition:</b><dd>
+   *   Slot <CODE>i</CODE> holds the new value; its key and state are
+   *   unchanged.
+   **/
+   public void setValue(int i, long value)
+   {
+      chunks[i >>> CHUNK_SHIFT].putLong(offset(i) + VALUE_OFFSET, value);
+   }
+
+
+   /**
+   * Changes the state of a slot.
+   * @param <CODE>i</CODE>
+   *   the index of the slot
+   * @param <CODE>state</CODE>
+   *   <CODE>EMPTY</CODE>, <CODE>FULL</CODE> or <CODE>TOMBSTONE</CODE>
+   * <dt><b>Precondition:</b><dd>
+   *   <CODE>0 &lt;= i &lt; capacity( )</CODE>.
+   * <dt><b>Postcondition:</b><dd>
+   *   Slot <CODE>i</CODE> has the new state; its key and value are
+   *   unchanged.
+   **/
+   public void setState(int i, byte state)
+   {
+      chunks[i >>> CHUNK_SHIFT].put(offset(i), state);
+   }
+
+
+   /**
+   * Writes the slots out to their file, if they are mapped from one.
+   * @param - none
+   * <dt><b>Postcondition:</b><dd>
+   *   Every change to a slot of a mapped slot array has been written to the
+   *   storage device. For slots in plain native memory this does nothing.
+   **/
+   public void force( )
+   {
+      int i;
+
+      for (i = 0; i < chunks.length; i++) {
+         if (chunks[i] instanceof MappedByteBuffer)
+            ((MappedByteBuffer) chunks[i]).force( );
+      }
+   }
+
+
+   /**
+   * Releases the native memory of this slot array.
+   * @param - none
+   * <dt><b>Postcondition:</b><dd>
+   *   The buffers have been freed (or unmapped), if the virtual machine
+   *   allows it, and this slot array may no longer be used.
+   **/
+   public void free( )
+   {
+      int i;
+
+      for (i = 0; i < chunks.length; i++) {
+         release(chunks[i]);
+         chunks[i] = null;
+      }
+   }
+
+
+   static void release(ByteBuffer buffer)
+   // Postcondition: If buffer is a direct or mapped buffer and the virtual
+   // machine allows it, its memory has been freed (or unmapped) and buffer
+   // must not be used again. Otherwise it is left to the garbage collector.
+   {
+      if (INVOKE_CLEANER != null && buffer != null && buffer.isDirect( )) {
+         try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+         }
+         catch (ReflectiveOperationException | RuntimeException e) {
+            // leave this buffer to the garbage collector
+         }
+      }
+   }
+}
@@ -0,0 +1,368 @@
+// File: OffHeapTableDoubleHash.java
+
+
+/******************************************************************************
+* An <CODE>OffHeapTableDoubleHash</CODE> is an open-address hash table with
+* double hashing whose keys and values are <CODE>long</CODE>s stored in
+* native memory. It probes, grows and handles tombstones exactly like
+* <CODE>TableDoubleHash</CODE>, but its slots live in an
+* <CODE>OffHeapSlots</CODE> instead of three Java arrays, so a table with
+* tens of millions of entries adds nothing to the heap for the garbage
+* collector to scan. A value can be the element itself or the offset of a
+* larger record kept elsewhere.
+*
+* Since a value may be any <CODE>long</CODE>, <CODE>get</CODE> takes the
+* value to return for a missing key, and <CODE>put</CODE> and
+* <CODE>remove</CODE> report whether the key was there.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class OffHeapTableDoubleHash
+{
+   // Invariant of the OffHeapTableDoubleHash class:
+   //   1. The number of items in the table is in the instance variable manyItems.
+   //   2. The preferred location for an element with a given key is at slot
+   //      hash(key). If a collision occurs, then nextIndex steps forward by
+   //      doubleHash(key) to find the next open address. When an open address is
+   //      found at a slot i, then the key and value are stored there and the
+   //      slot's state becomes FULL.
+   //   3. A slot that has never been used is EMPTY; a slot whose element
+   //      has been removed is a TOMBSTONE. The number of tombstones is in
+   //      the instance variable tombstones.
+   //   4. Before a new key is added, manyItems + 1 is at most
+   //      maxLoadFactor * slots.capacity( ), and manyItems + tombstones is
+   //      at most that too (unless the table cannot grow any more), so every
+   //      search for a missing key ends at an EMPTY slot.
+   private int manyItems;
+   private int tombstones;
+   private OffHeapSlots slots;
+   private double maxLoadFactor;
+
+   /**
+   * The maximum load factor used when none is given to the constructor.
+   **/
+   public static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+   // instance variables to calculate collision frequency
+   private int collisions;
+
+   /**
+   * Initialize an empty table with a specified capacity and the default
+   * maximum load factor.
+   * @param <CODE>capacity</CODE>
+   *   the capacity for this new open-address hash table, rounded up to a
+   *   prime of at least 3
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty, and its capacity is the smallest prime that is at
+   *   least <CODE>capacity</CODE> and at least 3.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient native memory for the specified capacity.
+   **/
+   public OffHeapTableDoubleHash(int capacity)
+   {
+      this(capacity, DEFAULT_LOAD_FACTOR);
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity and maximum load
+   * factor.
+   * @param <CODE>capacity</CODE>
+   *   the initial capacity for this new open-address hash table, rounded
+   *   up to a prime of at least 3
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest fraction of the capacity that may be filled before the
+   *   table grows; 1.0 means the table only grows when it is full
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty, and its capacity is the smallest prime that is at
+   *   least <CODE>capacity</CODE> and at least 3.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is not positive or that
+   *   <CODE>maxLoadFactor</CODE> is not in the range (0, 1].
+   * @exception OutOfMemoryError
+   *   Indicates insufficient native memory for the specified capacity.
+   **/
+   public OffHeapTableDoubleHash(int capacity, double maxLoadFactor)
+   {
+      if (capacity <= 0)
+         throw new IllegalArgumentException("Capacity is negative");
+      if (!(maxLoadFactor > 0 && maxLoadFactor <= 1))
+         throw new IllegalArgumentException("Load factor must be in (0, 1]");
+      this.maxLoadFactor = maxLoadFactor;
+      capacity = Primes.nextPrime(Math.max(3, capacity));
+      slots = new OffHeapSlots(capacity);
+   }
+
+
+   /**
+   * Determines whether a specified key is in this table.
+   * @param <CODE>key</CODE>
+   *   the key to look for
+   * @return
+   *   <CODE>true</CODE> (if this table contains an element with the specified
+   *   key); <CODE>false</CODE> otherwise.
+   **/
+   public boolean containsKey(long key)
+   {
+      return findIndex(key) != -1;
+   }
+
+
+   private int findIndex(long key)
+   // Postcondition: If the specified key is found in the table, then the return
+   // value is the index of the specified key. Otherwise, the return value is -1.
+   {
+      int count = 0;
+      int i = hash(key);
+      byte state = slots.state(i);
+
+      while (count < slots.capacity( ) && state != OffHeapSlots.EMPTY)
+      {
+         if (state == OffHeapSlots.FULL && slots.key(i) == key)
+            return i;
+         count++;
+         i = nextIndex(i, key);
+         state = slots.state(i);
+      }
+
+      return -1;
+   }
+
+
+   /** Retrieves the value for a specified key.
+   * @param <CODE>key</CODE>
+   *   the key to look for
+   * @param <CODE>missing</CODE>
+   *   the value to return if the key is not in this table
+   * @return
+   *   the value stored with the specified <CODE>key</CODE> (if this table
+   *   contains such an element); <CODE>missing</CODE> otherwise.
+   **/
+   public long get(long key, long missing)
+   {
+      int index = findIndex(key);
+
+      if (index == -1)
+         return missing;
+      else
+         return slots.value(index);
+   }
+
+
+   private static int hashCode(long key)
+   // The return value is the same hash code that Long.hashCode computes: the
+   // exclusive or of the upper and lower halves of the key.
+   {
+      return (int) (key ^ (key >>> 32));
+   }
+
+
+   private int hash(long key)
+   // The return value is a valid slot index. The index is calculated as the
+   // remainder when the key's hash code with its sign bit cleared is divided
+   // by the number of slots.
+   {
+      return (hashCode(key) & 0x7FFFFFFF) % slots.capacity( );
+   }
+
+
+   private int doubleHash(long key)
+   // This method is a second hash function. This function
+   // is called if a collision occurs from placing an element
+   // in the table. Method returns int calculated by 1 + mod capacity - 2
+   {
+      return 1 + (hashCode(key) & 0x7FFFFFFF) % (slots.capacity( ) - 2);
+   }
+
+
+   private int nextIndex(int i, long key)
+   // determine where to place the next element based
+   // on the value returned by the second hash function
+   {
+      // ensure that index does not exceed the number of slots
+      return (int) (((long) i + doubleHash(key)) % slots.capacity( ));
+   }
+
+
+   /**
+   * Add a new element to this table, using the specified key.
+   * @param <CODE>key</CODE>
+   *   the key to use for the new element
+   * @param <CODE>value</CODE>
+   *   the value to store with the key
+   * <dt><b>Postcondition:</b><dd>
+   *   If this table already has an element with the specified
+   *   <CODE>key</CODE>, then its value is replaced by <CODE>value</CODE>
+   *   and the return value is true. Otherwise, the new element is added and
+   *   the return value is false. If adding the element would push the table
+   *   past its maximum load factor, the table first grows.
+   * @exception IllegalStateException
+   *   Indicates that the table is full and has reached its largest
+   *   possible capacity.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient native memory to grow the table.
+   **/
+   public boolean put(long key, long value)
+   {
+      collisions = 0;
+      int index = findIndex(key);
+
+      if (index != -1)
+      {  // The key is already in the table.
+         slots.setValue(index, value);
+         return true;
+      }
+
+      if (manyItems + 1 > maxLoadFactor * slots.capacity( ))
+         resize(Primes.growCapacity(slots.capacity( )));
+
+      if (manyItems < slots.capacity( ))
+      {  // The key is not yet in this table.
+         index = insertionIndex(key);
+         if (slots.state(index) == OffHeapSlots.EMPTY
+             && manyItems + tombstones + 1 > maxLoadFactor * slots.capacity( ))
+         {  // Clear out the tombstones, or grow if the table is more than
+            // half full even without them.
+            if (2 * (manyItems + 1) > maxLoadFactor * slots.capacity( ))
+               resize(Primes.growCapacity(slots.capacity( )));
+            else
+               resize(slots.capacity( ));
+            index = insertionIndex(key);
+         }
+         if (slots.state(index) == OffHeapSlots.TOMBSTONE)
+            tombstones--;
+         slots.set(index, key, value);
+         manyItems++;
+         return false;
+      }
+      else
+      {  // The table is full.
+         throw new IllegalStateException("Table is full.");
+      }
+   }
+
+
+   /**
+   * Removes the element with a specified key.
+   * @param <CODE>key</CODE>
+   *   the key to look for
+   * <dt><b>Postcondition:</b><dd>
+   *   If an element was found with the specified <CODE>key</CODE>, then it
+   *   has been removed from this table and the return value is true;
+   *   otherwise, this table is unchanged and the return value is false.
+   **/
+   public boolean remove(long key)
+   {
+      int index = findIndex(key);
+
+      if (index == -1)
+         return false;
+
+      slots.setState(index, OffHeapSlots.TOMBSTONE);
+      tombstones++;
+      manyItems--;
+      if (2 * tombstones > maxLoadFactor * slots.capacity( ))
+         resize(slots.capacity( ));
+      return true;
+   }
+
+
+   private int insertionIndex(long key)
+   // Precondition: manyItems < slots.capacity( ).
+   // Postcondition: The return value is the first index on the key's probe
+   // sequence that holds no element, which is either EMPTY or a tombstone.
+   // The collisions instance variable is the number of occupied slots that
+   // were passed over on the way.
+   {
+      int index = hash(key);
+
+      collisions = 0;
+      while (slots.state(index) == OffHeapSlots.FULL) {
+         index = nextIndex(index, key);
+         collisions++;
+      }
+      return index;
+   }
+
+
+   private void resize(int newCapacity)
+   // Postcondition: If newCapacity is at least the current capacity, then
+   // the slots have been replaced by newCapacity fresh slots and every
+   // element has been rehashed into them. Tombstones are not carried over,
+   // and the old slots are freed.
+   {
+      if (newCapacity < slots.capacity( ))
+         return;
+
+      OffHeapSlots oldSlots = slots;
+      int i, index;
+      long key;
+
+      slots = new OffHeapSlots(newCapacity);
+      tombstones = 0;
+      for (i = 0; i < oldSlots.capacity( ); i++)
+      {
+         if (oldSlots.state(i) == OffHeapSlots.FULL)
+         {
+            key = oldSlots.key(i);
+            index = hash(key);
+            while (slots.state(index) != OffHeapSlots.EMPTY)
+               index = nextIndex(index, key);
+            slots.set(index, key, oldSlots.value(i));
+         }
+      }
+      oldSlots.free( );
+   }
+
+
+   /**
+   * Determines the number of elements in this table.
+   * @param - none
+   * @return
+   *   the number of elements in this table
+   **/
+   public int size( )
+   {
+      return manyItems;
+   }
+
+
+   /**
+   * Determines the current capacity of this table.
+   * @param - none
+   * @return
+   *   the number of slots; this grows as elements are added
+   **/
+   public int capacity( )
+   {
+      return slots.capacity( );
+   }
+
+
+   /**
+   * Determines the number of tombstones in this table.
+   * @param - none
+   * @return
+   *   the number of slots that held an element which has since been removed
+   *   and that have not yet been reused or cleared by a rehash
+   **/
+   public int getTombstones( )
+   {
+      return tombstones;
+   }
+
+
+   /**
+   * returns the number of collisions from put method.
+   * @param
+   *     none
+   * @return
+   *     collisions - integer storing number of collisions
+   *                   from placing current element
+   **/
+   public int getCollisions() {
+      return collisions;
+   }
+
+}
@@ -0,0 +1,222 @@
+// File: ParallelBuild.java
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+
+/******************************************************************************
+* The <CODE>ParallelBuild</CODE> class does the work that the
+* <CODE>build</CODE> methods of <CODE>Table</CODE>,
+* <CODE>TableDoubleHash</CODE> and <CODE>TableChainHash</CODE> share. Each
+* of those methods fills a new table from arrays of keys and elements on
+* several threads at once.
+*
+* The keys are hashed in parallel and then grouped into partitions by a
+* parallel counting sort. The partition of a key is the leading part of its
+* home index, so each partition owns a contiguous range of the table's
+* slots or buckets. Every copy of a key falls in the same partition, in the
+* order the copies had in the array. A <CODE>ForkJoinPool</CODE> then fills
+* all the partitions at once. A chained table only ever changes the buckets
+* of the partition being filled. In an open-address table a probe may run
+* past the end of its range, so slots are claimed with a compare-and-set,
+* and a slot never goes to two keys.
+*
+* Besides the table itself, a build needs two <CODE>int</CODE>s of working
+* memory for each key.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class ParallelBuild
+{
+   // the number of partitions made for each thread, so that a thread that
+   // finishes early can take on another partition
+   private static final int PARTITIONS_PER_THREAD = 4;
+
+   // the number of keys each task hashes, counts and places in the
+   // partitioning passes
+   private static final int CHUNK = 1 << 16;
+
+   private static final VarHandle SLOTS =
+      MethodHandles.arrayElementVarHandle(Object[ ].class);
+
+   /**
+   * A <CODE>Filler</CODE> puts the keys of one partition into a table.
+   **/
+   interface Filler
+   {
+      /**
+      * Adds one partition of the keys to the table, in order.
+      * @param <CODE>hashes</CODE>
+      *   <CODE>hashes[i]</CODE> is the hash of key number <CODE>i</CODE>
+      * @param <CODE>order</CODE>
+      *   the key numbers, grouped by partition
+      * @param <CODE>from</CODE>
+      *   the position in <CODE>order</CODE> of the partition's first key
+      * @param <CODE>to</CODE>
+      *   the position in <CODE>order</CODE> just after its last key
+      * @return
+      *   the number of keys that were not already in the table
+      **/
+      int fill(int[ ] hashes, int[ ] order, int from, int to);
+   }
+
+   // the body of a loop that runs its iterations as separate tasks
+   private interface Task
+   {
+      void run(int i);
+   }
+
+   private ParallelBuild( )
+   {
+   }
+
+
+   static int capacity(int n, double maxLoadFactor)
+   // Precondition: maxLoadFactor is positive.
+   // The return value is the smallest prime capacity, and at least 3, that
+   // holds n keys without going past maxLoadFactor.
+   // Throws IllegalStateException if that is more than Primes.MAX_CAPACITY.
+   {
+      double least = Math.max(3, Math.ceil(n / maxLoadFactor));
+
+      if (least > Primes.MAX_CAPACITY)
+         throw new IllegalStateException("Too many keys for one table");
+      return Primes.nextPrime((int) least);
+   }
+
+
+   static Object claim(Object[ ] slots, int index, Object key)
+   // Postcondition: If slots[index] was null, it has been atomically set to
+   // key and the return value is null. Otherwise, slots[index] is unchanged
+   // and the return value is the key it holds.
+   {
+      return SLOTS.compareAndExchange(slots, index, (Object) null, key);
+   }
+
+
+   static int fill(final Object[ ] keys, final HashFunction hashFunction,
+                   final int capacity, int parallelism, final Filler filler)
+   // Precondition: parallelism is positive.
+   // Postcondition: The keys have been hashed, split into parallelism
+   // * PARTITIONS_PER_THREAD partitions by home index (hashFunction.index
+   // of the hash and capacity), and every partition has been handed to
+   // filler on a pool of parallelism threads. The return value is the sum
+   // of what filler returned.
+   // Throws NullPointerException if one of the keys is null; any exception
+   // thrown by filler is passed on.
+   {
+      final int n = keys.length;
+      final int partitions = parallelism * PARTITIONS_PER_THREAD;
+      final int chunks = (n + CHUNK - 1) / CHUNK;
+      final int[ ] hashes = new int[n];
+      final int[ ] order = new int[n];
+      final int[ ][ ] offsets = new int[chunks][partitions];
+      final int[ ] starts = new int[partitions + 1];
+      final int[ ] added = new int[partitions];
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      int c, p, count, total;
+
+      try {
+         // hash each key and count the keys of each chunk in each partition
+         invokeAll(pool, chunks, new Task( )
+         {
+            public void run(int c)
+            {
+               int i;
+
+               for (i = c * CHUNK; i < Math.min(n, (c + 1) * CHUNK); i++)
+               {
+                  hashes[i] = hashFunction.hash(keys[i]);
+                  offsets[c][partition(hashFunction, hashes[i], capacity, partitions)]++;
+               }
+            }
+         });
+
+         // turn the counts into the place in order where each chunk's keys
+         // of each partition begin
+         total = 0;
+         for (p = 0; p < partitions; p++)
+         {
+            starts[p] = total;
+            for (c = 0; c < chunks; c++)
+            {
+               count = offsets[c][p];
+               offsets[c][p] = total;
+               total += count;
+            }
+         }
+         starts[partitions] = total;
+
+         // list the keys of each partition, keeping their order
+         invokeAll(pool, chunks, new Task( )
+         {
+            public void run(int c)
+            {
+               int i;
+
+               for (i = c * CHUNK; i < Math.min(n, (c + 1) * CHUNK); i++)
+                  order[offsets[c][partition(hashFunction, hashes[i], capacity, partitions)]++] = i;
+            }
+         });
+
+         invokeAll(pool, partitions, new Task( )
+         {
+            public void run(int p)
+            {
+               added[p] = filler.fill(hashes, order, starts[p], starts[p + 1]);
+            }
+         });
+      }
+      finally {
+         pool.shutdown( );
+      }
+
+      total = 0;
+      for (p = 0; p < partitions; p++)
+         total += added[p];
+      return total;
+   }
+
+
+   private static int partition(HashFunction hashFunction, int hash,
+                                int capacity, int partitions)
+   // The return value is the partition of a key with the given hash: the
+   // leading part of its home index, from 0 to partitions - 1.
+   {
+      return (int) ((long) hashFunction.index(hash, capacity) * partitions / capacity);
+   }
+
+
+   private static void invokeAll(ForkJoinPool pool, int count, final Task body)
+   // Postcondition: body.run(i) has been called for each i from 0 to
+   // count - 1, as separate tasks in the pool. If any of them threw an
+   // exception, one such exception has been passed on.
+   {
+      final RecursiveAction[ ] tasks = new RecursiveAction[count];
+      int i;
+
+      for (i = 0; i < count; i++)
+      {
+         final int index = i;
+
+         tasks[i] = new RecursiveAction( )
+         {
+            protected void compute( )
+            {
+               body.run(index);
+            }
+         };
+      }
+      pool.invoke(new RecursiveAction( )
+      {
+         protected void compute( )
+         {
+            ForkJoinTask.invokeAll(tasks);
+         }
+      });
+   }
+}
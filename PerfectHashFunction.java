@@ -0,0 +1,440 @@
+// File: PerfectHashFunction.java
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+
+/******************************************************************************
+* A <CODE>PerfectHashFunction</CODE> maps each key of a fixed set of
+* <I>n</I> keys to its own number from 0 to <I>n</I> - 1, with no
+* collisions, in about 2.6 bits per key. It is built with the BDZ method
+* of Botelho, Pagh and Ziviani.
+*
+* Each key is given a 64-bit hash that depends on a seed, and from it
+* three vertices, one in each third of about
+* <CODE>VERTICES_PER_KEY</CODE> times <I>n</I> vertices, so the keys are
+* the edges of a random 3-hypergraph. At that size the hypergraph can
+* almost always be peeled: some vertex belongs to only one edge, that edge
+* is removed, and so on until no edges are left. Each key is then given
+* the vertex it was peeled from, and a value from 0 to 2 is stored for that
+* vertex such that the sum of the values of the key's three vertices,
+* modulo 3, picks it out. Vertices that belong to no key are marked unused
+* (value 3), and a key's number is the number of used vertices before its
+* own, counted from a table of running totals and a few population counts.
+* If two keys get the same hash, or peeling fails, the keys are hashed
+* again with another seed.
+*
+* A <CODE>String</CODE> is hashed from its characters and a
+* <CODE>Long</CODE> from its value, so sets of millions of them, which
+* are sure to hold equal hash codes, can be used. Any other key is hashed
+* from its <CODE>hashCode</CODE>, so no two such keys may have equal hash
+* codes. For a key outside the set the function returns some number in
+* range, which a table must check by comparing keys.
+* <CODE>writeTo</CODE> and <CODE>readFrom</CODE> store a function in a
+* compact binary form, so it can be built once and loaded by later runs.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class PerfectHashFunction
+{
+   // Invariant of the PerfectHashFunction class:
+   //   1. The function was built for size keys. There are 3 * partSize
+   //      vertices; vertex(key, j) is in part j, from j * partSize to
+   //      (j+1) * partSize - 1, and depends on hash(key, seed).
+   //   2. values packs two bits per vertex, 32 vertices to a long, lowest
+   //      bits first. Unused vertices, and the padding after the last
+   //      vertex, have the value 3.
+   //   3. For each key, the vertex vertex(key, s), where s is the sum of the
+   //      values of its three vertices modulo 3, is used, and no two keys
+   //      pick the same vertex.
+   //   4. ranks[b] is the number of used vertices before vertex
+   //      b * RANK_BLOCK.
+   private final int size;
+   private final int partSize;
+   private final long seed;
+   private final long[ ] values;
+   private final int[ ] ranks;
+
+   /**
+   * The number of vertices for each key. The hypergraph of a large set can
+   * be peeled with high probability when this is more than about 1.222.
+   **/
+   public static final double VERTICES_PER_KEY = 1.23;
+
+   // the number of seeds tried before giving up, and the number of seeds in
+   // a row that may give two keys the same hash
+   private static final int MAX_ATTEMPTS = 100;
+   private static final int MAX_COLLISIONS = 3;
+
+   // the number of vertices counted by each entry of ranks
+   private static final int RANK_BLOCK = 256;
+
+   // the first int of the binary form
+   private static final int MAGIC = 0x42445A32;
+
+   // the value of an unused vertex, and every value's low bits
+   private static final int UNUSED = 3;
+   private static final long LOW_BITS = 0x5555555555555555L;
+
+   private PerfectHashFunction(int size, int partSize, long seed, long[ ] values)
+   // Postcondition: The function has the given parts, and ranks has been
+   // computed from values.
+   {
+      int b, w, count = 0;
+
+      this.size = size;
+      this.partSize = partSize;
+      this.seed = seed;
+      this.values = values;
+      ranks = new int[(3 * partSize + RANK_BLOCK - 1) / RANK_BLOCK + 1];
+      for (b = 0; b < ranks.length; b++)
+      {
+         ranks[b] = count;
+         for (w = b * (RANK_BLOCK / 32); w < Math.min(values.length, (b + 1) * (RANK_BLOCK / 32)); w++)
+            count += 32 - Long.bitCount(values[w] & (values[w] >>> 1) & LOW_BITS);
+      }
+   }
+
+
+   /**
+   * Builds a minimal perfect hash function for a set of keys. Each part
+   * has one vertex more than <CODE>VERTICES_PER_KEY</CODE> asks for, which
+   * matters only for very small sets.
+   * @param <CODE>keys</CODE>
+   *   the keys, no two of which are equal, and no two of which have equal
+   *   hash codes unless they are <CODE>String</CODE>s or
+   *   <CODE>Long</CODE>s
+   * @return
+   *   a function that maps the keys one to one onto the numbers from 0 to
+   *   <CODE>keys.length - 1</CODE>
+   * @exception IllegalArgumentException
+   *   Indicates that two of the keys got the same hash under several seeds
+   *   in a row, as keys with equal hash codes that are hashed through
+   *   <CODE>hashCode</CODE> always do.
+   * @exception IllegalStateException
+   *   Indicates that no seed gave a hypergraph that could be peeled, which
+   *   for distinct keys is vanishingly unlikely.
+   * @exception NullPointerException
+   *   Indicates that one of the keys is null.
+   **/
+   public static PerfectHashFunction build(Object[ ] keys)
+   {
+      int n = keys.length;
+      long[ ] hashes = new long[n];
+      long[ ] sorted = new long[n];
+      int partSize = (int) Math.ceil(VERTICES_PER_KEY * n / 3) + 1;
+      int[ ] edges = new int[3 * n];
+      int[ ] stack = new int[n];
+      long seed = 0x2545F4914F6CDD1DL;
+      long[ ] values;
+      int i, attempt, collisions = 0;
+
+      for (attempt = 0; attempt < MAX_ATTEMPTS; attempt++)
+      {
+         seed += 0x9E3779B97F4A7C15L;
+         for (i = 0; i < n; i++)
+            hashes[i] = hash(keys[i], seed);
+
+         // Two keys with the same hash would be the same edge, which can
+         // never be peeled, so try the next seed at once.
+         System.arraycopy(hashes, 0, sorted, 0, n);
+         Arrays.sort(sorted);
+         for (i = 1; i < n && sorted[i] != sorted[i - 1]; i++)
+            ;
+         if (i < n)
+         {
+            if (++collisions == MAX_COLLISIONS)
+               throw new IllegalArgumentException("Two keys have the same hash under every seed");
+            continue;
+         }
+         collisions = 0;
+
+         for (i = 0; i < n; i++)
+         {
+            edges[3 * i] = vertex(hashes[i], seed, partSize, 0);
+            edges[3 * i + 1] = vertex(hashes[i], seed, partSize, 1);
+            edges[3 * i + 2] = vertex(hashes[i], seed, partSize, 2);
+         }
+         if (peel(edges, 3 * partSize, stack))
+         {
+            values = assign(edges, 3 * partSize, stack);
+            return new PerfectHashFunction(n, partSize, seed, values);
+         }
+      }
+      throw new IllegalStateException("No perfect hash function found");
+   }
+
+
+   private static long hash(Object key, long seed)
+   // The return value is a 64-bit hash of key that depends on seed. A
+   // String's characters are folded in one at a time, with a shift after
+   // each multiplication so that the hash is not a polynomial that strings
+   // can be built to collide in. A Long's value is used whole. Any other
+   // key contributes only its 32-bit hash code.
+   {
+      long h;
+      String s;
+      int i;
+
+      if (key instanceof String)
+      {
+         s = (String) key;
+         h = seed ^ s.length( );
+         for (i = 0; i < s.length( ); i++)
+         {
+            h = (h ^ s.charAt(i)) * 0x9E3779B97F4A7C15L;
+            h ^= h >>> 32;
+         }
+      }
+      else if (key instanceof Long)
+         h = seed ^ (Long) key;
+      else
+         h = seed ^ (key.hashCode( ) & 0xFFFFFFFFL);
+      return mix(h);
+   }
+
+
+   private static int vertex(long h, long seed, int partSize, int j)
+   // The return value is the vertex in part j for a key with the 64-bit
+   // hash h. The first two parts take the low and high halves of h, and the
+   // third part takes MurmurHash3's 64-bit finalizer of h and the seed.
+   {
+      int x;
+
+      if (j == 0)
+         x = (int) h;
+      else if (j == 1)
+         x = (int) (h >>> 32);
+      else
+         x = (int) mix(h ^ seed);
+      return j * partSize + (int) (((x & 0xFFFFFFFFL) * partSize) >>> 32);
+   }
+
+
+   private static long mix(long z)
+   // The return value is z run through the MurmurHash3 finalizer, after
+   // which every bit depends on every bit of z.
+   {
+      z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+      z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+      return z ^ (z >>> 33);
+   }
+
+
+   private static boolean peel(int[ ] edges, int vertices, int[ ] stack)
+   // Postcondition: If the hypergraph whose edge e has the vertices
+   // edges[3e] through edges[3e + 2] can be peeled, the return value is true
+   // and stack holds 4 * e + j for each edge e in the order it was removed,
+   // where edges[3e + j] is the vertex it was removed from. Otherwise, the
+   // return value is false.
+   {
+      int n = edges.length / 3;
+      int[ ] degree = new int[vertices];
+      int[ ] incident = new int[vertices];
+      int[ ] queue = new int[vertices];
+      int head = 0, tail = 0, peeled = 0;
+      int i, v, e, j, w;
+
+      // incident[v] is the exclusive or of the edges at v, which is the
+      // edge itself once only one is left
+      for (e = 0; e < n; e++)
+      {
+         for (j = 0; j < 3; j++)
+         {
+            degree[edges[3 * e + j]]++;
+            incident[edges[3 * e + j]] ^= e;
+         }
+      }
+      for (v = 0; v < vertices; v++)
+      {
+         if (degree[v] == 1)
+            queue[tail++] = v;
+      }
+      while (head < tail)
+      {
+         v = queue[head++];
+         if (degree[v] != 1)
+            continue;
+         e = incident[v];
+         for (j = 0; edges[3 * e + j] != v; j++)
+            ;
+         stack[peeled++] = 4 * e + j;
+         for (i = 0; i < 3; i++)
+         {
+            w = edges[3 * e + i];
+            degree[w]--;
+            incident[w] ^= e;
+            if (degree[w] == 1)
+               queue[tail++] = w;
+         }
+      }
+      return peeled == n;
+   }
+
+
+   private static long[ ] assign(int[ ] edges, int vertices, int[ ] stack)
+   // Precondition: stack holds a peeling order of the hypergraph.
+   // Postcondition: The return value holds two bits for each vertex, such
+   // that each edge's values sum, modulo 3, to the position of the vertex
+   // it was peeled from. Going through the edges in the reverse order
+   // works because no edge peeled later changes a vertex of an earlier one.
+   {
+      long[ ] values = new long[(vertices + 31) / 32];
+      int i, e, j, k, sum;
+
+      Arrays.fill(values, -1L);
+      for (i = stack.length - 1; i >= 0; i--)
+      {
+         e = stack[i] >>> 2;
+         j = stack[i] & 3;
+         sum = 0;
+         for (k = 0; k < 3; k++)
+         {
+            if (k != j)
+               sum += value(values, edges[3 * e + k]);
+         }
+         set(values, edges[3 * e + j], ((j - sum) % 3 + 3) % 3);
+      }
+      return values;
+   }
+
+
+   private static int value(long[ ] values, int v)
+   // The return value is the two-bit value of vertex v.
+   {
+      return (int) (values[v >>> 5] >>> ((v & 31) << 1)) & 3;
+   }
+
+
+   private static void set(long[ ] values, int v, int value)
+   // Postcondition: The two-bit value of vertex v is value.
+   {
+      int shift = (v & 31) << 1;
+
+      values[v >>> 5] = (values[v >>> 5] & ~(3L << shift)) | ((long) value << shift);
+   }
+
+
+   /**
+   * Computes the number of a key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look up
+   * <dt><b>Precondition:</b><dd>
+   *   <CODE>size( )</CODE> is positive.
+   * @return
+   *   the key's own number from 0 to <CODE>size( ) - 1</CODE> if it is one
+   *   of the keys the function was built for; some number in that range
+   *   otherwise
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public int index(Object key)
+   {
+      long h = hash(key, seed);
+      int v0 = vertex(h, seed, partSize, 0);
+      int v1 = vertex(h, seed, partSize, 1);
+      int v2 = vertex(h, seed, partSize, 2);
+      int s = (value(values, v0) + value(values, v1) + value(values, v2)) % 3;
+      int v = (s == 0) ? v0 : (s == 1) ? v1 : v2;
+      int answer = rank(v);
+
+      // A key outside the set may land on an unused vertex past the last
+      // used one.
+      return Math.min(answer, size - 1);
+   }
+
+
+   private int rank(int v)
+   // The return value is the number of used vertices before vertex v.
+   {
+      int answer = ranks[v / RANK_BLOCK];
+      int w;
+      long partial;
+
+      for (w = (v / RANK_BLOCK) * (RANK_BLOCK / 32); w < (v >>> 5); w++)
+         answer += 32 - Long.bitCount(values[w] & (values[w] >>> 1) & LOW_BITS);
+      partial = values[v >>> 5] & ((1L << ((v & 31) << 1)) - 1);
+      return answer + (v & 31) - Long.bitCount(partial & (partial >>> 1) & LOW_BITS);
+   }
+
+
+   /**
+   * Determines the number of keys this function was built for.
+   * @param - none
+   * @return
+   *   the number of keys, which is also one more than the largest number
+   *   the function returns
+   **/
+   public int size( )
+   {
+      return size;
+   }
+
+
+   /**
+   * Determines the space this function takes.
+   * @param - none
+   * @return
+   *   the number of bits in its vertex values and running totals
+   **/
+   public long bits( )
+   {
+      return 64L * values.length + 32L * ranks.length;
+   }
+
+
+   /**
+   * Writes this function in binary.
+   * @param <CODE>out</CODE>
+   *   the stream to write to
+   * <dt><b>Postcondition:</b><dd>
+   *   The function has been written so that <CODE>readFrom</CODE> can read
+   *   it back. The running totals are not written; they are computed again.
+   * @exception IOException
+   *   Indicates that the stream could not be written.
+   **/
+   public void writeTo(DataOutput out) throws IOException
+   {
+      int w;
+
+      out.writeInt(MAGIC);
+      out.writeInt(size);
+      out.writeInt(partSize);
+      out.writeLong(seed);
+      for (w = 0; w < values.length; w++)
+         out.writeLong(values[w]);
+   }
+
+
+   /**
+   * Reads a function written by <CODE>writeTo</CODE>.
+   * @param <CODE>in</CODE>
+   *   the stream to read from
+   * @return
+   *   a function equal to the one that was written
+   * @exception IOException
+   *   Indicates that the stream could not be read or does not hold a
+   *   perfect hash function.
+   **/
+   public static PerfectHashFunction readFrom(DataInput in) throws IOException
+   {
+      int size, partSize, w;
+      long seed;
+      long[ ] values;
+
+      if (in.readInt( ) != MAGIC)
+         throw new IOException("Not a perfect hash function");
+      size = in.readInt( );
+      partSize = in.readInt( );
+      seed = in.readLong( );
+      if (size < 0 || partSize < 1 || partSize > Integer.MAX_VALUE / 3)
+         throw new IOException("Bad perfect hash function header");
+      values = new long[(3 * partSize + 31) / 32];
+      for (w = 0; w < values.length; w++)
+         values[w] = in.readLong( );
+      return new PerfectHashFunction(size, partSize, seed, values);
+   }
+}
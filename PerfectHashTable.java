@@ -0,0 +1,273 @@
+// File: PerfectHashTable.java
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+
+/******************************************************************************
+* A <CODE>PerfectHashTable</CODE> is a hash table for a key set that is
+* known in advance, such as the numbers in <CODE>names.txt</CODE>. The keys
+* are given to the constructor, which builds a
+* <CODE>PerfectHashFunction</CODE> that sends each of them to its own slot,
+* so there are exactly as many slots as keys and no put or search ever
+* collides.
+*
+* Elements may then be put, replaced and removed for any key of the set.
+* A search computes the key's slot and compares the key stored there, so a
+* key outside the set is reported missing after one call to
+* <CODE>equals</CODE>; putting one throws
+* <CODE>IllegalArgumentException</CODE>. Besides the key and element arrays
+* the index takes about 2.6 bits per key.
+*
+* The table is <CODE>Serializable</CODE> if its keys and elements are; the
+* function is written in its compact binary form rather than as objects.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class PerfectHashTable< K , E > implements HashTable< K , E >, Serializable
+{
+   // Invariant of the PerfectHashTable class:
+   //   1. keys holds the distinct keys of the set, and keys[i] is the key
+   //      whose function.index is i.
+   //   2. data[i] is the element of keys[i], or null if it has none.
+   //   3. manyItems is the number of non-null entries in data.
+   private transient PerfectHashFunction function;
+   private Object[ ] keys;
+   private Object[ ] data;
+   private int manyItems;
+
+   private static final long serialVersionUID = 1L;
+
+   /**
+   * Initialize an empty table for a fixed set of keys.
+   * @param <CODE>keys</CODE>
+   *   the keys this table may hold; repeated keys are counted once
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty, and can hold an element for each of the keys.
+   * @exception IllegalArgumentException
+   *   Indicates that two different keys have equal hash codes and are
+   *   neither <CODE>String</CODE>s nor <CODE>Long</CODE>s.
+   * @exception NullPointerException
+   *   Indicates that one of the keys is null.
+   **/
+   public PerfectHashTable(K[ ] keys)
+   {
+      java.util.LinkedHashSet< Object > distinct = new java.util.LinkedHashSet< Object >( );
+      Object[ ] set;
+      int j;
+
+      for (j = 0; j < keys.length; j++)
+      {
+         if (keys[j] == null)
+            throw new NullPointerException("Key is null");
+         distinct.add(keys[j]);
+      }
+      set = distinct.toArray( );
+      function = PerfectHashFunction.build(set);
+      this.keys = new Object[set.length];
+      data = new Object[set.length];
+      for (j = 0; j < set.length; j++)
+         this.keys[function.index(set[j])] = set[j];
+   }
+
+
+   private int findIndex(Object key)
+   // Postcondition: If the specified key is in the key set, then the return
+   // value is its slot. Otherwise, the return value is -1.
+   {
+      int i;
+
+      if (keys.length == 0)
+      {
+         key.hashCode( );
+         return -1;
+      }
+      i = function.index(key);
+      if (key.equals(keys[i]))
+         return i;
+      else
+         return -1;
+   }
+
+
+   /**
+   * Determines whether a specified key has an element in this table.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   <CODE>true</CODE> (if this table contains an object with the specified
+   *   key); <CODE>false</CODE> otherwise.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public boolean containsKey(K key)
+   {
+      int i = findIndex(key);
+
+      return i != -1 && data[i] != null;
+   }
+
+
+   /**
+   * Determines whether a specified key is one this table was built for.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   <CODE>true</CODE> (if <CODE>key</CODE> is in the fixed key set, with
+   *   or without an element); <CODE>false</CODE> otherwise.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public boolean inKeySet(K key)
+   {
+      return findIndex(key) != -1;
+   }
+
+
+   /**
+   * Retrieves an object for a specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   a reference to the object with the specified <CODE>key</CODE> (if this
+   *   table contains an such an object);  null otherwise.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E get(K key)
+   {
+      int i = findIndex(key);
+
+      if (i == -1)
+         return null;
+      else
+         return (E) data[i];
+   }
+
+
+   /**
+   * Add a new element to this table, using the specified key.
+   * @param <CODE>key</CODE>
+   *   a key of the fixed key set
+   * @param <CODE>element</CODE>
+   *   the non-null element to store with the key
+   * <dt><b>Postcondition:</b><dd>
+   *   <CODE>element</CODE> has been stored with <CODE>key</CODE>. The return
+   *   value is the element that was stored with it before, or null.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>key</CODE> is not in the key set.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> or <CODE>element</CODE> is null.
+   **/
+   public E put(K key, E element)
+   {
+      int i;
+      E answer;
+
+      if (element == null)
+         throw new NullPointerException("Key or Element is null");
+      i = findIndex(key);
+      if (i == -1)
+         throw new IllegalArgumentException("Key is not in the key set: " + key);
+      answer = (E) data[i];
+      if (answer == null)
+         manyItems++;
+      data[i] = element;
+      return answer;
+   }
+
+
+   /**
+   * Removes an object for a specified key. The key stays in the key set.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * <dt><b>Postcondition:</b><dd>
+   *   If an object was stored with the specified key, then that object has
+   *   been removed and returned; otherwise the return value is null.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E remove(K key)
+   {
+      int i = findIndex(key);
+      E answer;
+
+      if (i == -1)
+         return null;
+      answer = (E) data[i];
+      if (answer != null)
+         manyItems--;
+      data[i] = null;
+      return answer;
+   }
+
+
+   /**
+   * Determines the number of elements in this table.
+   * @param - none
+   * @return
+   *   the number of keys that have an element
+   **/
+   public int size( )
+   {
+      return manyItems;
+   }
+
+
+   /**
+   * Determines the capacity of this table.
+   * @param - none
+   * @return
+   *   the number of keys in the key set, which is also the number of slots
+   **/
+   public int capacity( )
+   {
+      return keys.length;
+   }
+
+
+   /**
+   * Determines the size of the index.
+   * @param - none
+   * @return
+   *   the number of bits the perfect hash function takes
+   **/
+   public long indexBits( )
+   {
+      return function.bits( );
+   }
+
+
+   /**
+   * Every key has a slot of its own, so there are never collisions.
+   * @param - none
+   * @return
+   *   zero
+   **/
+   public int getCollisions( )
+   {
+      return 0;
+   }
+
+
+   private void writeObject(ObjectOutputStream out) throws IOException
+   // Postcondition: The keys, elements and count have been written, followed
+   // by the function in its binary form.
+   {
+      out.defaultWriteObject( );
+      function.writeTo(out);
+   }
+
+
+   private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+   // Postcondition: The fields written by writeObject have been read back.
+   {
+      in.defaultReadObject( );
+      function = PerfectHashFunction.readFrom(in);
+      if (function.size( ) != keys.length || keys.length != data.length)
+         throw new java.io.InvalidObjectException("Perfect hash function does not match its keys");
+   }
+}
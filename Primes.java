@@ -0,0 +1,89 @@
+// File: Primes.java
+
+
+/******************************************************************************
+* The <CODE>Primes</CODE> class provides the capacity arithmetic shared by the
+* hash tables. Open-address tables that reduce a hash code with
+* <CODE>% data.length</CODE> spread keys best when the length is prime, and
+* double hashing needs a prime length so that every probe step is relatively
+* prime to the table size (and therefore visits every slot).
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class Primes
+{
+   /**
+   * The largest capacity any of the tables will grow to. Some virtual
+   * machines reserve a few header words in an array, so the largest safe
+   * array length is slightly smaller than <CODE>Integer.MAX_VALUE</CODE>.
+   **/
+   public static final int MAX_CAPACITY = 2147483629; // largest prime < MAX_VALUE - 8
+
+   private Primes( )
+   {
+   }
+
+
+   /**
+   * Determines whether a number is prime.
+   * @param <CODE>n</CODE>
+   *   the number to test
+   * @return
+   *   <CODE>true</CODE> if <CODE>n</CODE> is prime; <CODE>false</CODE>
+   *   otherwise.
+   **/
+   public static boolean isPrime(int n)
+   {
+      if (n < 2)
+         return false;
+      if (n < 4)
+         return true;
+      if (n % 2 == 0 || n % 3 == 0)
+         return false;
+      for (long i = 5; i * i <= n; i += 6)
+      {
+         if (n % i == 0 || n % (i + 2) == 0)
+            return false;
+      }
+      return true;
+   }
+
+
+   /**
+   * Finds the smallest prime that is at least a specified number.
+   * @param <CODE>n</CODE>
+   *   the lower bound
+   * @return
+   *   the smallest prime that is greater than or equal to <CODE>n</CODE>,
+   *   or <CODE>MAX_CAPACITY</CODE> if there is no such prime below it.
+   **/
+   public static int nextPrime(int n)
+   {
+      if (n <= 2)
+         return 2;
+      if (n >= MAX_CAPACITY)
+         return MAX_CAPACITY;
+      if (n % 2 == 0)
+         n++;
+      while (!isPrime(n))
+         n += 2;
+      return n;
+   }
+
+
+   /**
+   * Computes the capacity a table should grow to when it is too full.
+   * @param <CODE>capacity</CODE>
+   *   the current capacity of the table
+   * @return
+   *   a prime roughly twice <CODE>capacity</CODE>, or the current capacity
+   *   if the table cannot grow any further.
+   **/
+   public static int growCapacity(int capacity)
+   {
+      if (capacity >= MAX_CAPACITY / 2)
+         return Math.max(capacity, MAX_CAPACITY);
+      return nextPrime(2 * capacity + 1);
+   }
+}
@@ -4,11 +4,63 @@
 
 
 /******************************************************************************
-* A <CODE>Table</CODE> is an open-address hash table with a fixed capacity.
+* A <CODE>Table</CODE> is an open-address hash table that grows as needed.
 * The purpose is to show students how an open-address hash table is
 * implemented. Programs should generally use java.util.Hashtable
 * rather than this hash table.
 *
+* When the number of items would exceed the maximum load factor times the
+* capacity, the table grows to a prime roughly twice its size and rehashes
+* every element, so <CODE>put</CODE> only fails once the table has reached
+* the largest capacity an array can have.
+*
+* Removing an element leaves a tombstone so that searches for other keys
+* keep probing past it. Tombstones are reused by later insertions and count
+* towards the load factor; once there are too many of them the table is
+* rehashed at its current capacity to clear them, so the cost of a search
+* for a missing key stays constant under a steady stream of puts and
+* removes.
+*
+* A table built in Robin Hood mode keeps its probe runs short enough to be
+* filled to 90% and beyond. Each slot records how far its key is from the
+* key's home index, and an insertion that reaches a slot whose key is
+* closer to home than the new one takes that slot and carries on placing
+* the key it displaced. The keys of a run are then ordered by distance, so
+* a search for a missing key stops as soon as it reaches a key that is
+* closer to home than the search has come, and removal shifts the rest of
+* the run back one slot instead of leaving a tombstone. Both modes report
+* the longest and the average probe distance of the current elements.
+*
+* Keys are placed by a <CODE>HashFunction</CODE>, which may be given to the
+* constructor; the default uses each key's hash code as it is.
+*
+* Each slot also keeps the full 32-bit hash of its key. A search compares
+* those <CODE>int</CODE>s first and only calls <CODE>equals</CODE> on a key
+* whose hash matches, which is almost always the key it is looking for, and
+* a rehash places every key by its stored hash without calling
+* <CODE>hashCode</CODE> again. This matters most for keys such as long
+* strings, whose <CODE>equals</CODE> and <CODE>hashCode</CODE> are slow.
+*
+* <CODE>getAll</CODE> works on many keys at once. It hashes
+* <CODE>BATCH</CODE> keys and reads the first slot of each probe sequence
+* before searching for any of them, so the cache misses of a batch overlap
+* rather than each search waiting for its own. A key found in that slot is
+* settled from what was read; only the others are searched again.
+* <CODE>putAll</CODE> hashes all of its keys before putting any of them,
+* and grows the table once, up front, instead of doubling it step by step
+* as the batch goes in.
+*
+* <CODE>build</CODE> makes a table from arrays of keys and elements on
+* several threads, as described in <CODE>ParallelBuild</CODE>. The table
+* is just large enough for the keys and has no tombstones.
+*
+* <CODE>freeze</CODE> makes a compact, unchanging copy for tables that
+* are only read from then on (see <CODE>FrozenTable</CODE>).
+*
+* Calling <CODE>enableStatistics</CODE> makes the table keep cumulative
+* <CODE>TableStatistics</CODE>: probe-length histograms for searches that
+* hit and miss, total collisions, and the number and duration of rehashes.
+*
 * <dt><b>Java Source Code for this class:</b><dd>
 *   <A HREF="../../../../edu/colorado/collections/Table.java">
 *   http://www.cs.colorado.edu/~main/edu/colorado/collections/Table.java
@@ -18,7 +70,7 @@
 *   <A HREF="mailto:main@colorado.edu"> (main@colorado.edu) </A>
 *
 ******************************************************************************/
-public class Table< K , E >
+public class Table< K , E > implements HashTable< K , E >
 {
    // Invariant of the Table class:
    //   1. The number of items in the table is in the instance variable manyItems.
@@ -31,16 +83,55 @@ public class Table< K , E >
    //      null.
    //   4. If an index i has been used at some point (now or in the past), then
    //      hasBeenUsed[i] is true; otherwise it is false.
+   //   5. Before a new key is added, manyItems + 1 is at most
+   //      maxLoadFactor * data.length, unless the table cannot grow any more.
+   //   6. An index i with hasBeenUsed[i] true but keys[i] null is a tombstone
+   //      left behind by remove. The number of tombstones is in the instance
+   //      variable tombstones, and manyItems + tombstones is at most
+   //      maxLoadFactor * data.length (or data.length if the table cannot
+   //      grow), so every search for a missing key ends at a never-used slot.
+   //   7. If robinHood is true, then probes[i] is the number of slots between
+   //      the home index of keys[i] and i for every index i that holds a
+   //      key, and when
+   //      two neighbouring slots both hold keys, the probe distance of the
+   //      second is at most one more than that of the first. There
+   //      are no tombstones, so hasBeenUsed[i] is true exactly when keys[i]
+   //      is not null. If robinHood is false, then probes is null.
+   //   8. For every index i that holds a key, slotHashes[i] is
+   //      hashFunction.hash(keys[i]), and the key's home index is
+   //      homeIndex(slotHashes[i]).
    private int manyItems;
+   private int tombstones;
    private Object[ ] keys;
    private Object[ ] data;
    private boolean[ ] hasBeenUsed;
+   private int[ ] slotHashes;
+   private int[ ] probes;
+   private double maxLoadFactor;
+   private final boolean robinHood;
+   private final HashFunction hashFunction;
+
+   /**
+   * The maximum load factor used when none is given to the constructor.
+   **/
+   public static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+   /**
+   * The number of keys that <CODE>getAll</CODE> hashes, and whose first
+   * slots it loads, before searching for any of them.
+   **/
+   public static final int BATCH = 16;
 
    // instance variables to calculate collision frequency
    private int collisions;
 
+   // statistics about the searches, puts and rehashes, or null if none are
+   // being kept
+   private TableStatistics stats;
+
    /**
-   * Initialize an empty table with a specified capacity.
+   * Initialize an empty table with a specified capacity and the default
+   * maximum load factor.
    * @param <CODE>capacity</CODE>
    *   the capacity for this new open-address hash table
    * <dt><b>Postcondition:</b><dd>
@@ -49,6 +140,110 @@ public class Table< K , E >
    *   Indicates insufficient memory for the specified capacity. 
    **/   
    public Table(int capacity)
+   {
+      this(capacity, DEFAULT_LOAD_FACTOR);
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity and maximum load
+   * factor.
+   * @param <CODE>capacity</CODE>
+   *   the initial capacity for this new open-address hash table
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest fraction of the capacity that may be filled before the
+   *   table grows; 1.0 means the table only grows when it is full
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has the specified capacity.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is not positive or that
+   *   <CODE>maxLoadFactor</CODE> is not in the range (0, 1].
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity. 
+   **/   
+   public Table(int capacity, double maxLoadFactor)
+   {
+      this(capacity, maxLoadFactor, false, HashFunction.DEFAULT);
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity, maximum load
+   * factor and hash function.
+   * @param <CODE>capacity</CODE>
+   *   the initial capacity for this new open-address hash table
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest fraction of the capacity that may be filled before the
+   *   table grows; 1.0 means the table only grows when it is full
+   * @param <CODE>hashFunction</CODE>
+   *   the hash function that picks each key's place in the table
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has the specified capacity.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is not positive or that
+   *   <CODE>maxLoadFactor</CODE> is not in the range (0, 1].
+   * @exception NullPointerException
+   *   Indicates that <CODE>hashFunction</CODE> is null.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public Table(int capacity, double maxLoadFactor, HashFunction hashFunction)
+   {
+      this(capacity, maxLoadFactor, false, hashFunction);
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity and maximum load
+   * factor, choosing whether it uses Robin Hood insertion.
+   * @param <CODE>capacity</CODE>
+   *   the initial capacity for this new open-address hash table
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest fraction of the capacity that may be filled before the
+   *   table grows; 1.0 means the table only grows when it is full
+   * @param <CODE>robinHood</CODE>
+   *   <CODE>true</CODE> to keep every probe run ordered by distance from
+   *   home, which allows load factors of 0.9 and more; <CODE>false</CODE>
+   *   for plain linear probing with tombstones
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has the specified capacity.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is not positive or that
+   *   <CODE>maxLoadFactor</CODE> is not in the range (0, 1].
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public Table(int capacity, double maxLoadFactor, boolean robinHood)
+   {
+      this(capacity, maxLoadFactor, robinHood, HashFunction.DEFAULT);
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity, maximum load
+   * factor, insertion mode and hash function.
+   * @param <CODE>capacity</CODE>
+   *   the initial capacity for this new open-address hash table
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest fraction of the capacity that may be filled before the
+   *   table grows; 1.0 means the table only grows when it is full
+   * @param <CODE>robinHood</CODE>
+   *   <CODE>true</CODE> for Robin Hood insertion; <CODE>false</CODE> for
+   *   plain linear probing with tombstones
+   * @param <CODE>hashFunction</CODE>
+   *   the hash function that picks each key's place in the table
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has the specified capacity.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is not positive or that
+   *   <CODE>maxLoadFactor</CODE> is not in the range (0, 1].
+   * @exception NullPointerException
+   *   Indicates that <CODE>hashFunction</CODE> is null.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public Table(int capacity, double maxLoadFactor, boolean robinHood,
+                HashFunction hashFunction)
    {
       // The manyItems instance variable is automatically set to zero.
       // which is the correct initial value. The three arrays are allocated to
@@ -57,9 +252,149 @@ public class Table< K , E >
       // initialized to all null.
       if (capacity <= 0)
          throw new IllegalArgumentException("Capacity is negative");
+      if (!(maxLoadFactor > 0 && maxLoadFactor <= 1))
+         throw new IllegalArgumentException("Load factor must be in (0, 1]");
+      if (hashFunction == null)
+         throw new NullPointerException("Hash function is null");
+      this.maxLoadFactor = maxLoadFactor;
+      this.robinHood = robinHood;
+      this.hashFunction = hashFunction;
       keys = new Object[capacity];
       data = new Object[capacity];
       hasBeenUsed = new boolean[capacity];
+      slotHashes = new int[capacity];
+      if (robinHood)
+         probes = new int[capacity];
+   }
+
+
+   /**
+   * Builds a table from arrays of keys and elements, using several threads.
+   * The table has the default maximum load factor and hash function.
+   * @param <CODE>keys</CODE>
+   *   the non-null keys
+   * @param <CODE>elements</CODE>
+   *   the elements, where <CODE>elements[i]</CODE> goes with
+   *   <CODE>keys[i]</CODE>
+   * @param <CODE>parallelism</CODE>
+   *   the number of threads to use
+   * @return
+   *   a table with the smallest prime capacity that holds the keys within
+   *   the default maximum load factor. It is as if
+   *   <CODE>put(keys[i], elements[i])</CODE> had been called for each
+   *   <CODE>i</CODE> in increasing order, so for a key given more than once
+   *   the last element is kept.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>keys</CODE> and <CODE>elements</CODE> have
+   *   different lengths, or that <CODE>parallelism</CODE> is not positive.
+   * @exception IllegalStateException
+   *   Indicates that there are too many keys for one table.
+   * @exception NullPointerException
+   *   Indicates that one of the keys is null.
+   **/
+   public static < K , E > Table< K , E > build(K[ ] keys, E[ ] elements,
+                                               int parallelism)
+   {
+      return build(keys, elements, parallelism, DEFAULT_LOAD_FACTOR,
+                   HashFunction.DEFAULT);
+   }
+
+
+   /**
+   * Builds a table from arrays of keys and elements, using several threads
+   * and a specified maximum load factor and hash function.
+   * @param <CODE>keys</CODE>
+   *   the non-null keys
+   * @param <CODE>elements</CODE>
+   *   the elements, where <CODE>elements[i]</CODE> goes with
+   *   <CODE>keys[i]</CODE>
+   * @param <CODE>parallelism</CODE>
+   *   the number of threads to use
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the maximum load factor of the table
+   * @param <CODE>hashFunction</CODE>
+   *   the hash function that picks each key's place in the table
+   * @return
+   *   a table with the smallest prime capacity that holds the keys within
+   *   <CODE>maxLoadFactor</CODE>, using linear probing. It is as if
+   *   <CODE>put(keys[i], elements[i])</CODE> had been called for each
+   *   <CODE>i</CODE> in increasing order, so for a key given more than once
+   *   the last element is kept.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>keys</CODE> and <CODE>elements</CODE> have
+   *   different lengths, that <CODE>parallelism</CODE> is not positive, or
+   *   that <CODE>maxLoadFactor</CODE> is not in the range (0, 1].
+   * @exception IllegalStateException
+   *   Indicates that there are too many keys for one table.
+   * @exception NullPointerException
+   *   Indicates that one of the keys, or <CODE>hashFunction</CODE>, is null.
+   **/
+   public static < K , E > Table< K , E > build(K[ ] keys, E[ ] elements,
+                                               int parallelism,
+                                               double maxLoadFactor,
+                                               HashFunction hashFunction)
+   {
+      if (keys.length != elements.length)
+         throw new IllegalArgumentException("Keys and elements differ in length");
+      if (parallelism <= 0)
+         throw new IllegalArgumentException("Parallelism must be positive");
+      if (!(maxLoadFactor > 0 && maxLoadFactor <= 1))
+         throw new IllegalArgumentException("Load factor must be in (0, 1]");
+
+      Table< K , E > answer =
+         new Table< K , E >(ParallelBuild.capacity(keys.length, maxLoadFactor),
+                            maxLoadFactor, false, hashFunction);
+
+      answer.fill(keys, elements, parallelism);
+      return answer;
+   }
+
+
+   private void fill(final Object[ ] sourceKeys, final Object[ ] sourceElements,
+                     int parallelism)
+   // Precondition: The table is empty and not in Robin Hood mode, and its
+   // capacity is at least the number of keys.
+   // Postcondition: The keys and elements have been added as by put, on
+   // parallelism threads. Each thread claims the slots it fills with a
+   // compare-and-set, since a probe may run into a range of slots that
+   // another thread is filling.
+   {
+      manyItems = ParallelBuild.fill(sourceKeys, hashFunction, data.length,
+                                     parallelism, new ParallelBuild.Filler( )
+      {
+         public int fill(int[ ] hashes, int[ ] order, int from, int to)
+         {
+            int j, i, index;
+            Object existing;
+            int added = 0;
+
+            for (j = from; j < to; j++)
+            {
+               i = order[j];
+               for (index = hashFunction.index(hashes[i], data.length); ;
+                    index = nextIndex(index))
+               {
+                  existing = keys[index];
+                  if (existing == null)
+                     existing = ParallelBuild.claim(keys, index, sourceKeys[i]);
+                  if (existing == null)
+                  {  // The slot is now this key's.
+                     data[index] = sourceElements[i];
+                     slotHashes[index] = hashes[i];
+                     hasBeenUsed[index] = true;
+                     added++;
+                     break;
+                  }
+                  if (sourceKeys[i].equals(existing))
+                  {  // An earlier copy of the key, which only this thread adds
+                     data[index] = sourceElements[i];
+                     break;
+                  }
+               }
+            }
+            return added;
+         }
+      });
    }
    
 
@@ -86,19 +421,42 @@ public class Table< K , E >
    private int findIndex(K key)
    // Postcondition: If the specified key is found in the table, then the return
    // value is the index of the specified key. Otherwise, the return value is -1.
+   {
+      return findIndex(key, hashFunction.hash(key));
+   }
+
+
+   private int findIndex(Object key, int h)
+   // Precondition: h is hashFunction.hash(key).
+   // Postcondition: If the specified key is found in the table, then the return
+   // value is the index of the specified key. Otherwise, the return value is -1.
+   // Only keys whose stored hash is h are compared with equals.
    {
       int count = 0;
-      int i = hash(key);
-      
+      int i = homeIndex(h);
+
+      if (robinHood)
+      {  // Stop at the first slot whose key is closer to home than this one
+         // would be, since the key would have taken that slot.
+         while (keys[i] != null && probes[i] >= count)
+         {
+            if (slotHashes[i] == h && key.equals(keys[i]))
+               return searched(i, count);
+            count++;
+            i = nextIndex(i);
+         }
+         return searched(-1, count);
+      }
+
       while (count < data.length && hasBeenUsed[i])
       {
-         if (key.equals(keys[i]))
-            return i;
+         if (slotHashes[i] == h && key.equals(keys[i]))
+            return searched(i, count);
          count++;
          i = nextIndex(i);
       }
       
-      return -1;
+      return searched(-1, count);
    }
       
    
@@ -126,12 +484,153 @@ public class Table< K , E >
    }
    
    
-   private int hash(Object key)
-   // The return value is a valid index of the table�s arrays. The index is
-   // calculated as the remainder when the absolute value of the key�s
-   // hash code is divided by the size of the table�s arrays.
+   /**
+   * Retrieves the objects for a batch of keys.
+   * @param <CODE>keys</CODE>
+   *   the non-null keys to look for
+   * @param <CODE>elements</CODE>
+   *   the array that receives the objects
+   * <dt><b>Postcondition:</b><dd>
+   *   <CODE>elements[i]</CODE> is <CODE>get(keys[i])</CODE> for each
+   *   index <CODE>i</CODE> of <CODE>keys</CODE>. Any further entries of
+   *   <CODE>elements</CODE> are unchanged.
+   * @return
+   *   the number of keys that were found
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>elements</CODE> is shorter than
+   *   <CODE>keys</CODE>.
+   * @exception NullPointerException
+   *   Indicates that one of the keys is null.
+   **/
+   public int getAll(K[ ] keys, E[ ] elements)
+   {
+      if (elements.length < keys.length)
+         throw new IllegalArgumentException("Elements array is shorter than keys");
+
+      int[ ] hashes = new int[BATCH];
+      int[ ] homes = new int[BATCH];
+      int[ ] loadedHashes = new int[BATCH];
+      Object[ ] loaded = new Object[2 * BATCH];
+      int start, end, i, j, index;
+      int found = 0;
+
+      for (start = 0; start < keys.length; start += BATCH)
+      {
+         end = Math.min(start + BATCH, keys.length);
+         loadBatch(keys, start, end, hashes, homes, loadedHashes, loaded);
+         for (i = start; i < end; i++)
+         {
+            j = i - start;
+            if (loaded[2 * j] != null && loadedHashes[j] == hashes[j]
+                && keys[i].equals(loaded[2 * j]))
+            {  // The key is in its home slot.
+               searched(homes[j], 0);
+               elements[i] = (E) loaded[2 * j + 1];
+               found++;
+            }
+            else
+            {
+               index = findIndex(keys[i], hashes[j]);
+               if (index == -1)
+                  elements[i] = null;
+               else
+               {
+                  elements[i] = (E) data[index];
+                  found++;
+               }
+            }
+         }
+      }
+      return found;
+   }
+
+
+   /**
+   * Add a batch of new elements to this table. This has the same effect as
+   * calling <CODE>put</CODE> for each pair in turn, but every key is hashed
+   * before any is put, and the table grows at most once, up front, to the
+   * capacity the whole batch would need if none of its keys were in the
+   * table already.
+   * @param <CODE>keys</CODE>
+   *   the non-null keys to use for the new elements
+   * @param <CODE>elements</CODE>
+   *   the new elements, where <CODE>elements[i]</CODE> goes with
+   *   <CODE>keys[i]</CODE>
+   * <dt><b>Postcondition:</b><dd>
+   *   The table is as if <CODE>put(keys[i], elements[i])</CODE> had been
+   *   called for each <CODE>i</CODE> in increasing order, and
+   *   <CODE>getCollisions</CODE> reports the last of those puts.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>keys</CODE> and <CODE>elements</CODE> have
+   *   different lengths.
+   * @exception IllegalStateException
+   *   Indicates that the table is full and has reached its largest
+   *   possible capacity.
+   * @exception NullPointerException
+   *   Indicates that one of the keys is null.
+   **/
+   public void putAll(K[ ] keys, E[ ] elements)
+   {
+      if (keys.length != elements.length)
+         throw new IllegalArgumentException("Keys and elements differ in length");
+
+      int[ ] hashes = new int[keys.length];
+      int i;
+
+      for (i = 0; i < keys.length; i++)
+         hashes[i] = hashFunction.hash(keys[i]);
+      growFor((long) manyItems + keys.length);
+      for (i = 0; i < keys.length; i++)
+         put(keys[i], elements[i], hashes[i]);
+   }
+
+
+   private void growFor(long items)
+   // Postcondition: If items would push the table past its maximum load
+   // factor, then it has grown, through the same capacities that one put
+   // after another would have taken it, to the first that holds that many
+   // items (or the largest there is), with a single rehash.
+   {
+      int capacity = data.length;
+
+      while (items > maxLoadFactor * capacity && capacity < Primes.MAX_CAPACITY)
+         capacity = Primes.growCapacity(capacity);
+      if (capacity > data.length)
+         resize(capacity);
+   }
+
+
+   private void loadBatch(Object[ ] batch, int start, int end, int[ ] hashes,
+                          int[ ] homes, int[ ] loadedHashes, Object[ ] loaded)
+   // Postcondition: For each i from start to end - 1, with j = i - start,
+   // hashes[j] is the hash of batch[i] and homes[j] is the first slot of its
+   // probe sequence, and that slot's stored hash, key and element have been
+   // read into loadedHashes[j], loaded[2j] and loaded[2j + 1]. The reads for
+   // different keys do not depend on each other, so the processor can wait
+   // for all of their cache misses at the same time, and getAll settles a
+   // key found in its home slot without reading the table again.
    {
-      return Math.abs(key.hashCode( )) % data.length;
+      int i, j, index;
+
+      for (i = start; i < end; i++)
+         hashes[i - start] = hashFunction.hash(batch[i]);
+      for (j = 0; j < end - start; j++)
+      {
+         index = homeIndex(hashes[j]);
+         homes[j] = index;
+         loadedHashes[j] = slotHashes[index];
+         loaded[2 * j] = keys[index];
+         loaded[2 * j + 1] = data[index];
+      }
+   }
+
+
+   private int homeIndex(int h)
+   // The return value is the home index of a key whose hash is h: a valid
+   // index of the table's arrays, calculated by the hash function from h
+   // and the size of the arrays.
+   {
+      return hashFunction.index(h, data.length);
    }
    
    
@@ -153,44 +652,75 @@ public class Table< K , E >
    * @param <CODE>element</CODE>
    *   the new element that�s being added to this table
    * <dt><b>Precondition:</b><dd>
-   *   If there is not already an element with the specified <CODE>key</CODE>,
-   *   then this table�s size must be less than its capacity 
-   *   (i.e., <CODE>size() < capacity()</CODE>). Also, neither <CODE>key</CODE>
-   *   nor </CODE>element</CODE> is null.
+   *   Neither <CODE>key</CODE> nor </CODE>element</CODE> is null.
    * <dt><b>Postcondition:</b><dd>
    *   If this table already has an object with the specified <CODE>key</CODE>,
    *   then that object is replaced by </CODE>element</CODE>, and the return 
    *   value is a reference to the replaced object. Otherwise, the new 
    *   </CODE>element</CODE> is added with the specified <CODE>key</CODE>
-   *   and the return value is null.
+   *   and the return value is null. If adding the element would push the
+   *   table past its maximum load factor, the table first grows.
    * @exception IllegalStateException
-   *   Indicates that there is no room for a new object in this table.
+   *   Indicates that the table is full and has reached its largest
+   *   possible capacity.
    * @exception NullPointerException
    *   Indicates that <CODE>key</CODE> or <CODE>element</CODE> is null.   
    **/
    public E put(K key, E element)
-   {  
+   {
+      return put(key, element, hashFunction.hash(key));
+   }
+
+
+   private E put(Object key, Object element, int h)
+   // Precondition: h is hashFunction.hash(key).
+   // Postcondition: The same as for the public put.
+   {
       collisions = 0;
-      int index = findIndex(key);
+      int index = findIndex(key, h);
       E answer;
       
       if (index != -1)
       {  // The key is already in the table.
          answer = (E) data[index];
          data[index] = element;
+         countPut( );
          return answer;
       }
+      
+      if (manyItems + 1 > maxLoadFactor * data.length)
+         resize(Primes.growCapacity(data.length));
+
+      if (manyItems < data.length && robinHood)
+      {  // The key is not yet in this Table, and there are no tombstones.
+         collisions = insertRobinHood(key, element, h);
+         manyItems++;
+         countPut( );
+         return null;
+      }
       else if (manyItems < data.length)
       {  // The key is not yet in this Table.
-         index = hash(key);
-         while (keys[index] != null) {
-            index = nextIndex(index);
-            collisions++;
+         index = insertionIndex(h);
+         if (!hasBeenUsed[index]
+             && manyItems + tombstones + 1 > maxLoadFactor * data.length)
+         {  // Claiming a never-used slot would leave too few of them to end
+            // searches, so clear out the tombstones. If the table is more
+            // than half full even without them, grow it instead so that the
+            // next cleanup is still far away.
+            if (2 * (manyItems + 1) > maxLoadFactor * data.length)
+               resize(Primes.growCapacity(data.length));
+            else
+               resize(data.length);
+            index = insertionIndex(h);
          }
+         if (hasBeenUsed[index])
+            tombstones--;
          keys[index] = key;
          data[index] = element;
+         slotHashes[index] = h;
          hasBeenUsed[index] = true;
          manyItems++;
+         countPut( );
          return null;
       }
       else
@@ -221,17 +751,402 @@ public class Table< K , E >
       int index = findIndex(key);
       E answer = null;
       
-      if (index != -1)
+      if (index != -1 && robinHood)
+      {
+         answer = (E) data[index];
+         shiftBack(index);
+         manyItems--;
+      }
+      else if (index != -1)
       {
          answer = (E) data[index];
          keys[index] = null;
          data[index] = null;
+         tombstones++;
 	 manyItems--;
+         if (2 * tombstones > maxLoadFactor * data.length)
+            resize(data.length);
       }
       
       return answer;
    }
 
+
+   private int insertionIndex(int h)
+   // Precondition: manyItems < data.length, and h is the hash of a key.
+   // Postcondition: The return value is the first index on the key's probe
+   // sequence that holds no key, which is either never used or a tombstone.
+   // The collisions instance variable is the number of occupied slots that
+   // were passed over on the way.
+   {
+      int index = homeIndex(h);
+
+      collisions = 0;
+      while (keys[index] != null) {
+         index = nextIndex(index);
+         collisions++;
+      }
+      return index;
+   }
+
+
+   private int insertRobinHood(Object key, Object element, int h)
+   // Precondition: robinHood is true, the key is not in the table,
+   // manyItems < data.length, and h is hashFunction.hash(key).
+   // Postcondition: The key and element have been added. Whenever the entry
+   // being placed was further from home than the key in a slot, the two
+   // swapped places and the search went on with the displaced entry. The
+   // return value is the number of occupied slots the new key passed over
+   // before it took a slot.
+   {
+      int index = homeIndex(h);
+      int distance = 0;
+      int passed = -1;
+      int swapDistance, swapHash;
+      Object swap;
+
+      while (keys[index] != null)
+      {
+         if (probes[index] < distance)
+         {  // The key here is closer to home, so it gives up its slot.
+            if (passed == -1)
+               passed = distance;
+            swap = keys[index];
+            keys[index] = key;
+            key = swap;
+            swap = data[index];
+            data[index] = element;
+            element = swap;
+            swapHash = slotHashes[index];
+            slotHashes[index] = h;
+            h = swapHash;
+            swapDistance = probes[index];
+            probes[index] = distance;
+            distance = swapDistance;
+         }
+         distance++;
+         index = nextIndex(index);
+      }
+      keys[index] = key;
+      data[index] = element;
+      slotHashes[index] = h;
+      probes[index] = distance;
+      hasBeenUsed[index] = true;
+      if (passed == -1)
+         passed = distance;
+      return passed;
+   }
+
+
+   private void shiftBack(int index)
+   // Precondition: robinHood is true and keys[index] is not null.
+   // Postcondition: The element at index has been removed. Each element that
+   // followed it in the same run and was not in its home slot has moved back
+   // one slot, so the run stays ordered and no tombstone is needed.
+   {
+      int following = nextIndex(index);
+
+      while (keys[following] != null && probes[following] > 0)
+      {
+         keys[index] = keys[following];
+         data[index] = data[following];
+         slotHashes[index] = slotHashes[following];
+         probes[index] = probes[following] - 1;
+         index = following;
+         following = nextIndex(following);
+      }
+      keys[index] = null;
+      data[index] = null;
+      probes[index] = 0;
+      hasBeenUsed[index] = false;
+   }
+
+
+   private void resize(int newCapacity)
+   // Postcondition: If newCapacity is at least the current capacity, then
+   // the three arrays have been replaced by arrays of length newCapacity and
+   // every element has been rehashed into them. Tombstones are not carried
+   // over, so a newCapacity equal to the current capacity simply clears
+   // them out. Each key is placed by its stored hash, so hashCode is not
+   // called.
+   {
+      if (newCapacity < data.length)
+         return;
+
+      Object[ ] oldKeys = keys;
+      Object[ ] oldData = data;
+      int[ ] oldHashes = slotHashes;
+      long start = resizeStarted( );
+      int i, index;
+
+      keys = new Object[newCapacity];
+      data = new Object[newCapacity];
+      hasBeenUsed = new boolean[newCapacity];
+      slotHashes = new int[newCapacity];
+      tombstones = 0;
+      if (robinHood)
+         probes = new int[newCapacity];
+      for (i = 0; i < oldKeys.length; i++)
+      {
+         if (oldKeys[i] != null && robinHood)
+            insertRobinHood(oldKeys[i], oldData[i], oldHashes[i]);
+         else if (oldKeys[i] != null)
+         {
+            index = homeIndex(oldHashes[i]);
+            while (keys[index] != null)
+               index = nextIndex(index);
+            keys[index] = oldKeys[i];
+            data[index] = oldData[i];
+            slotHashes[index] = oldHashes[i];
+            hasBeenUsed[index] = true;
+         }
+      }
+      resizeFinished(start);
+   }
+
+
+   /**
+   * Determines the number of elements in this table.
+   * @param - none
+   * @return
+   *   the number of elements in this table
+   **/
+   public int size( )
+   {
+      return manyItems;
+   }
+
+
+   /**
+   * Determines the current capacity of this table.
+   * @param - none
+   * @return
+   *   the length of the table's arrays; this grows as elements are added
+   **/
+   public int capacity( )
+   {
+      return data.length;
+   }
+
+
+   /**
+   * Determines the number of tombstones in this table.
+   * @param - none
+   * @return
+   *   the number of slots that held an element which has since been removed
+   *   and that have not yet been reused or cleared by a rehash
+   **/
+   public int getTombstones( )
+   {
+      return tombstones;
+   }
+
+
+   private int probeDistance(int i)
+   // Precondition: keys[i] is not null.
+   // The return value is the number of slots between the home index of
+   // keys[i] and i, counting forward around the end of the arrays.
+   {
+      if (robinHood)
+         return probes[i];
+
+      int home = homeIndex(slotHashes[i]);
+
+      if (i >= home)
+         return i - home;
+      else
+         return i + data.length - home;
+   }
+
+
+   /**
+   * Determines the longest probe distance in this table.
+   * @param - none
+   * @return
+   *   the largest number of slots any element is stored past its home
+   *   index; this is how many occupied slots the slowest successful search
+   *   passes over
+   **/
+   public int getMaxProbeDistance( )
+   {
+      int i;
+      int answer = 0;
+
+      for (i = 0; i < keys.length; i++)
+      {
+         if (keys[i] != null)
+            answer = Math.max(answer, probeDistance(i));
+      }
+      return answer;
+   }
+
+
+   /**
+   * Determines the average probe distance in this table.
+   * @param - none
+   * @return
+   *   the mean number of slots the elements are stored past their home
+   *   indexes, or zero if the table is empty
+   **/
+   public double getAverageProbeDistance( )
+   {
+      int i;
+      long total = 0;
+
+      if (manyItems == 0)
+         return 0;
+      for (i = 0; i < keys.length; i++)
+      {
+         if (keys[i] != null)
+            total += probeDistance(i);
+      }
+      return (double) total / manyItems;
+   }
+
+
+   /**
+   * Makes an unchanging copy of this table for reading.
+   * @param - none
+   * @return
+   *   a <CODE>FrozenTable</CODE> with the same keys, elements and hash
+   *   function, which is smaller and faster to search than this table and
+   *   may be shared between threads; later changes to this table do not
+   *   affect it
+   **/
+   public FrozenTable< K , E > freeze( )
+   {
+      Object[ ] frozenKeys = new Object[manyItems];
+      Object[ ] frozenData = new Object[manyItems];
+      int i;
+      int n = 0;
+
+      for (i = 0; i < keys.length; i++)
+      {
+         if (keys[i] != null)
+         {
+            frozenKeys[n] = keys[i];
+            frozenData[n] = data[i];
+            n++;
+         }
+      }
+      return new FrozenTable< K , E >(frozenKeys, frozenData, hashFunction);
+   }
+
+
+   /**
+   * Starts keeping statistics for this table, if it is not already doing so.
+   * @param - none
+   * @return
+   *   the statistics, which are brought up to date by every later search,
+   *   <CODE>put</CODE> and rehash
+   * @exception IllegalStateException
+   *   Indicates that statistics have been turned off with
+   *   <CODE>-Dtable.statistics=false</CODE>.
+   **/
+   public TableStatistics enableStatistics( )
+   {
+      if (!TableStatistics.ENABLED)
+         throw new IllegalStateException("Table statistics are turned off");
+      if (stats == null)
+      {
+         stats = new TableStatistics(new TableStatistics.Gauges( )
+         {
+            public int size( )
+            {
+               return manyItems;
+            }
+
+            public int capacity( )
+            {
+               return data.length;
+            }
+
+            public int tombstones( )
+            {
+               return tombstones;
+            }
+
+            public long[ ] chainLengths( )
+            {
+               return null;
+            }
+         });
+      }
+      return stats;
+   }
+
+
+   /**
+   * Stops keeping statistics for this table.
+   * @param - none
+   * <dt><b>Postcondition:</b><dd>
+   *   The table no longer updates its statistics, and
+   *   <CODE>getStatistics</CODE> returns null until
+   *   <CODE>enableStatistics</CODE> is called again.
+   **/
+   public void disableStatistics( )
+   {
+      stats = null;
+   }
+
+
+   /**
+   * Gives the statistics this table is keeping.
+   * @param - none
+   * @return
+   *   the statistics, or null if this table is not keeping any
+   **/
+   public TableStatistics getStatistics( )
+   {
+      return stats;
+   }
+
+
+   private int searched(int i, int count)
+   // Postcondition: If statistics are being kept, a search that passed over
+   // count keys and ended at index i (or -1 if the key was not found) has
+   // been counted. The return value is i.
+   {
+      if (TableStatistics.ENABLED && stats != null)
+      {
+         if (i == -1)
+            stats.recordMiss(count);
+         else
+            stats.recordHit(count);
+      }
+      return i;
+   }
+
+
+   private void countPut( )
+   // Postcondition: If statistics are being kept, a put with the current
+   // number of collisions has been counted.
+   {
+      if (TableStatistics.ENABLED && stats != null)
+         stats.recordPut(collisions);
+   }
+
+
+   private long resizeStarted( )
+   // The return value is the current time in nanoseconds if statistics are
+   // being kept, and zero otherwise.
+   {
+      if (TableStatistics.ENABLED && stats != null)
+         return System.nanoTime( );
+      else
+         return 0;
+   }
+
+
+   private void resizeFinished(long start)
+   // Postcondition: If statistics are being kept, a rehash that started at
+   // time start has been counted.
+   {
+      if (TableStatistics.ENABLED && stats != null)
+         stats.recordResize(System.nanoTime( ) - start);
+   }
+
+
    /**
    * returns the number of collisions from put method.
    * @param
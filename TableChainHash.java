@@ -4,11 +4,64 @@
 
 
 /******************************************************************************
-* A <CODE>Table</CODE> is an open-address hash table with a fixed capacity.
-* The purpose is to show students how an open-address hash table is
+* A <CODE>TableChainHash</CODE> is a chained hash table that grows as needed.
+* The purpose is to show students how a chained hash table is
 * implemented. Programs should generally use java.util.Hashtable
 * rather than this hash table.
 *
+* When the number of items would exceed the maximum load factor times the
+* number of buckets, the table grows to a prime roughly twice its size and
+* relinks every entry into the new buckets. Since a chain never runs out of
+* room, <CODE>put</CODE> never fails for lack of space.
+*
+* The entries are not linked node objects. Each one lives in a
+* slot of a pool of parallel arrays (the key, the element, and the index of
+* the next entry of the same chain in an <CODE>int[ ]</CODE>), and a
+* bucket holds the index of the first entry of its chain. Removed slots go
+* on a free list and are reused by later insertions, so a table that is not
+* growing allocates nothing, and walking a chain reads one key per entry
+* instead of stepping through two lists in lockstep.
+*
+* A chain that grows past <CODE>SORT_THRESHOLD</CODE> entries, which only
+* happens when many keys share a bucket (by accident, or because someone
+* chose them to), is turned into a sorted bucket: an array of its pool
+* slots ordered by hash, and among equal hashes by <CODE>compareTo</CODE>
+* when the keys are <CODE>Comparable</CODE>, so that it is searched by
+* binary search in logarithmic time, as <CODE>java.util.HashMap</CODE>
+* does with its tree bins. Keys with equal hashes that are not comparable
+* can still only be searched one by one. A sorted bucket that shrinks to
+* <CODE>UNSORT_THRESHOLD</CODE> entries becomes a chain again.
+*
+* <CODE>build</CODE> makes a table from arrays of keys and elements on
+* several threads, as described in <CODE>ParallelBuild</CODE>. Each thread
+* fills its own range of buckets and its own range of pool slots.
+*
+* <CODE>getAll</CODE> hashes <CODE>BATCH</CODE> keys at a time. It reads
+* the bucket of every key in the batch, and then the first entry of every
+* chain, before searching for any of the keys, so the cache misses of a
+* batch overlap. A key that is the first entry of its chain, or whose
+* bucket is empty, is settled from what was read; only the others are
+* searched again. <CODE>putAll</CODE> hashes all of its keys before
+* putting any of them, and grows the bucket array once, up front, instead
+* of doubling it step by step as the batch goes in.
+*
+* Keys are placed by a <CODE>HashFunction</CODE>, which may be given to the
+* constructor; the default uses each key's hash code as it is.
+*
+* Each pool slot also keeps the full 32-bit hash of its key. A chain walk
+* compares those <CODE>int</CODE>s first and only calls <CODE>equals</CODE>
+* on a key whose hash matches, and a rehash relinks every entry by its
+* stored hash without calling <CODE>hashCode</CODE> again, which pays off
+* for long strings and other keys that are slow to hash or compare.
+*
+* <CODE>freeze</CODE> makes a compact, unchanging copy for tables that
+* are only read from then on (see <CODE>FrozenTable</CODE>).
+*
+* Calling <CODE>enableStatistics</CODE> makes the table keep cumulative
+* <CODE>TableStatistics</CODE>: probe-length histograms for searches that
+* hit and miss, the distribution of chain lengths, total collisions, and
+* the number and duration of rehashes.
+*
 * <dt><b>Java Source Code for this class:</b><dd>
 *   <A HREF="../../../../edu/colorado/collections/Table.java">
 *   http://www.cs.colorado.edu/~main/edu/colorado/collections/Table.java
@@ -18,50 +71,325 @@
 *   <A HREF="mailto:main@colorado.edu"> (main@colorado.edu) </A>
 *
 ******************************************************************************/
-public class TableChainHash< K , E >
+public class TableChainHash< K , E > implements HashTable< K , E >
 {
-   // Invariant of the Table class:
+   // Invariant of the TableChainHash class:
    //   1. The number of items in the table is in the instance variable manyItems.
-   //   2. The preferred location for an element with a given key is at index
-   //      hash(key). If a collision occurs, then next-Index is used to search
-   //      forward to find the next open address. When an open address is found
-   //      at an index i, then the element itself is placed in data[i] and the
-   //      element�s key is placed at keys[i].
-   //   3. An index i that is not currently used has data[i] and key[i] set to
-   //      null.
-   //   4. If an index i has been used at some point (now or in the past), then
-   //      hasBeenUsed[i] is true; otherwise it is false.
+   //   2. An element with a given key is stored in some pool slot e with
+   //      keys[e] equal to the key and data[e] equal to the element. Slot e
+   //      is on the chain for bucket hash(key): the chain starts at
+   //      table[hash(key)] and continues through next[e], ending with -1.
+   //   3. A bucket i that holds no elements has table[i] set to -1. A bucket
+   //      i whose elements are in a sorted bucket has table[i] set to SORTED
+   //      and sorted[i] is that sorted bucket; for any other bucket, sorted
+   //      is null or sorted[i] is null.
+   //   4. The pool slots 0 through poolUsed-1 have been handed out at some
+   //      point. Those that are not currently on a chain form the free list,
+   //      which starts at freeSlot and continues through next[e], and have
+   //      keys[e] and data[e] set to null. Slots from poolUsed on have never
+   //      been used.
+   //   5. Before a new key is added, manyItems + 1 is at most
+   //      maxLoadFactor * table.length, unless the table cannot grow any more.
+   //   6. A sorted bucket b holds its elements' pool slots in b.slots[0]
+   //      through b.slots[b.count-1], with b.hashes[j] equal to
+   //      hashFunction.hash(keys[b.slots[j]]) and b.classes[j] equal to
+   //      comparableClass(keys[b.slots[j]]), in the order given by compare.
+   //      Its slots are not on any chain, and b.count is more than
+   //      UNSORT_THRESHOLD. A chain has at most SORT_THRESHOLD entries.
+   //   7. For every pool slot e that holds a key, slotHashes[e] is
+   //      hashFunction.hash(keys[e]).
    private int manyItems;
-   private boolean[ ] hasBeenUsed;
+   private double maxLoadFactor;
+   private final HashFunction hashFunction;
 
-   private Node<E>[] table;
-   private Node<K>[] keys;
+   private int[ ] table;
+   private Object[ ] keys;
+   private Object[ ] data;
+   private int[ ] next;
+   private int[ ] slotHashes;
+   private int poolUsed;
+   private int freeSlot;
+   private SortedBucket[ ] sorted;
    private int collisions;
 
+   // statistics about the searches, puts and rehashes, or null if none are
+   // being kept
+   private TableStatistics stats;
+
+   /**
+   * The maximum load factor used when none is given to the constructor.
+   **/   
+   public static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+   /**
+   * The number of keys that <CODE>getAll</CODE> hashes, and whose buckets
+   * it loads, before searching for any of them.
+   **/
+   public static final int BATCH = 16;
+
    /**
-   * Initialize an empty table with a specified capacity.
+   * The longest a chain may be; one more entry turns it into a sorted
+   * bucket.
+   **/
+   public static final int SORT_THRESHOLD = 8;
+
+   /**
+   * The size at which a sorted bucket turns back into a chain.
+   **/
+   public static final int UNSORT_THRESHOLD = 6;
+
+   // the value of table[i] for a bucket that is sorted
+   private static final int SORTED = -2;
+
+   /**
+   * Initialize an empty table with a specified capacity and the default
+   * maximum load factor.
    * @param <CODE>capacity</CODE>
-   *   the capacity for this new open-address hash table
+   *   the number of buckets for this new chained hash table
    * <dt><b>Postcondition:</b><dd>
    *   This table is empty and has the specified capacity.
    * @exception OutOfMemoryError
    *   Indicates insufficient memory for the specified capacity. 
    **/   
    public TableChainHash(int capacity)
+   {
+      this(capacity, DEFAULT_LOAD_FACTOR);
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity and maximum load
+   * factor.
+   * @param <CODE>capacity</CODE>
+   *   the initial number of buckets for this new chained hash table
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest average chain length allowed before the table grows; it
+   *   may be larger than 1.0
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has the specified capacity. The entry pool
+   *   has room for as many entries as the table can hold before it grows.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> or <CODE>maxLoadFactor</CODE> is
+   *   not positive.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity. 
+   **/   
+   public TableChainHash(int capacity, double maxLoadFactor)
+   {
+      this(capacity, maxLoadFactor, HashFunction.DEFAULT);
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity, maximum load
+   * factor and hash function.
+   * @param <CODE>capacity</CODE>
+   *   the initial number of buckets for this new chained hash table
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest average chain length allowed before the table grows; it
+   *   may be larger than 1.0
+   * @param <CODE>hashFunction</CODE>
+   *   the hash function that picks each key's place in the table
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has the specified capacity.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> or <CODE>maxLoadFactor</CODE> is
+   *   not positive.
+   * @exception NullPointerException
+   *   Indicates that <CODE>hashFunction</CODE> is null.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public TableChainHash(int capacity, double maxLoadFactor,
+                         HashFunction hashFunction)
    {
       // The manyItems instance variable is automatically set to zero.
-      // which is the correct initial value. The three arrays are allocated to
-      // be the specified capacity. The boolean array is automatically
-      // initialized to falses, and the other two arrays are automatically
-      // initialized to all null.
+      // which is the correct initial value. The bucket array is allocated to
+      // be the specified capacity and filled with -1, and the pool is sized
+      // for the elements the table can hold before it grows.
       if (capacity <= 0)
          throw new IllegalArgumentException("Capacity is negative");
-         table = (Node<E>[]) new Node[capacity];
-         keys = (Node<K>[]) new Node[capacity];
-         hasBeenUsed = new boolean[capacity];
+      if (!(maxLoadFactor > 0))
+         throw new IllegalArgumentException("Load factor must be positive");
+      if (hashFunction == null)
+         throw new NullPointerException("Hash function is null");
+      this.maxLoadFactor = maxLoadFactor;
+      this.hashFunction = hashFunction;
+      table = new int[capacity];
+      java.util.Arrays.fill(table, -1);
+      allocatePool(poolCapacity(capacity));
+      freeSlot = -1;
    }
-   
-   
+
+
+   /**
+   * Builds a table from arrays of keys and elements, using several threads.
+   * The table has the default maximum load factor and hash function.
+   * @param <CODE>keys</CODE>
+   *   the non-null keys
+   * @param <CODE>elements</CODE>
+   *   the non-null elements, where <CODE>elements[i]</CODE> goes with
+   *   <CODE>keys[i]</CODE>
+   * @param <CODE>parallelism</CODE>
+   *   the number of threads to use
+   * @return
+   *   a table with the smallest prime number of buckets that holds the keys
+   *   within the default maximum load factor. It is as if
+   *   <CODE>put(keys[i], elements[i])</CODE> had been called for each
+   *   <CODE>i</CODE> in increasing order, so for a key given more than once
+   *   the last element is kept.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>keys</CODE> and <CODE>elements</CODE> have
+   *   different lengths, or that <CODE>parallelism</CODE> is not positive.
+   * @exception IllegalStateException
+   *   Indicates that there are too many keys for one table.
+   * @exception NullPointerException
+   *   Indicates that one of the keys or elements is null.
+   **/
+   public static < K , E > TableChainHash< K , E > build(K[ ] keys,
+                                                        E[ ] elements,
+                                                        int parallelism)
+   {
+      return build(keys, elements, parallelism, DEFAULT_LOAD_FACTOR,
+                   HashFunction.DEFAULT);
+   }
+
+
+   /**
+   * Builds a table from arrays of keys and elements, using several threads
+   * and a specified maximum load factor and hash function.
+   * @param <CODE>keys</CODE>
+   *   the non-null keys
+   * @param <CODE>elements</CODE>
+   *   the non-null elements, where <CODE>elements[i]</CODE> goes with
+   *   <CODE>keys[i]</CODE>
+   * @param <CODE>parallelism</CODE>
+   *   the number of threads to use
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the maximum load factor of the table
+   * @param <CODE>hashFunction</CODE>
+   *   the hash function that picks each key's bucket
+   * @return
+   *   a table with the smallest prime number of buckets that holds the keys
+   *   within <CODE>maxLoadFactor</CODE>. It is as if
+   *   <CODE>put(keys[i], elements[i])</CODE> had been called for each
+   *   <CODE>i</CODE> in increasing order, so for a key given more than once
+   *   the last element is kept.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>keys</CODE> and <CODE>elements</CODE> have
+   *   different lengths, that <CODE>parallelism</CODE> is not positive, or
+   *   that <CODE>maxLoadFactor</CODE> is not positive.
+   * @exception IllegalStateException
+   *   Indicates that there are too many keys for one table.
+   * @exception NullPointerException
+   *   Indicates that one of the keys or elements, or
+   *   <CODE>hashFunction</CODE>, is null.
+   **/
+   public static < K , E > TableChainHash< K , E > build(K[ ] keys,
+                                                        E[ ] elements,
+                                                        int parallelism,
+                                                        double maxLoadFactor,
+                                                        HashFunction hashFunction)
+   {
+      if (keys.length != elements.length)
+         throw new IllegalArgumentException("Keys and elements differ in length");
+      if (parallelism <= 0)
+         throw new IllegalArgumentException("Parallelism must be positive");
+      if (!(maxLoadFactor > 0))
+         throw new IllegalArgumentException("Load factor must be positive");
+
+      TableChainHash< K , E > answer =
+         new TableChainHash< K , E >(ParallelBuild.capacity(keys.length, maxLoadFactor),
+                                     maxLoadFactor, hashFunction);
+
+      answer.fill(keys, elements, parallelism);
+      return answer;
+   }
+
+
+   private void fill(final Object[ ] sourceKeys, final Object[ ] sourceElements,
+                     int parallelism)
+   // Precondition: The table is empty.
+   // Postcondition: The keys and elements have been added as by put, on
+   // parallelism threads. The key at position j of ParallelBuild's order
+   // went into pool slot j, so each thread has its own range of slots as
+   // well as of buckets; the slots of keys that turned out to be copies of
+   // earlier ones are on the free list. A chain that grew too long was
+   // sorted, with the table locked while the sorted array was set up.
+   {
+      int e;
+
+      allocatePool(sourceKeys.length);
+      manyItems = ParallelBuild.fill(sourceKeys, hashFunction, table.length,
+                                     parallelism, new ParallelBuild.Filler( )
+      {
+         public int fill(int[ ] hashes, int[ ] order, int from, int to)
+         {
+            int j, i, h, index, e, length, position;
+            SortedBucket bucket;
+            int added = 0;
+
+            for (j = from; j < to; j++)
+            {
+               i = order[j];
+               h = hashes[i];
+               index = hashFunction.index(h, table.length);
+               if (sourceElements[i] == null)
+                  throw new NullPointerException("Key or Element is null");
+               if (table[index] == SORTED)
+               {
+                  bucket = sorted[index];
+                  position = sortedFind(bucket, h, sourceKeys[i]);
+                  if (position != -1) {
+                     data[bucket.slots[position]] = sourceElements[i];
+                     continue;
+                  }
+                  keys[j] = sourceKeys[i];
+                  data[j] = sourceElements[i];
+                  slotHashes[j] = h;
+                  sortedInsert(bucket, h, j);
+               }
+               else
+               {
+                  length = 0;
+                  for (e = table[index];
+                       e != -1 && !(slotHashes[e] == h && sourceKeys[i].equals(keys[e]));
+                       e = next[e])
+                     length++;
+                  if (e != -1) {
+                     data[e] = sourceElements[i];
+                     continue;
+                  }
+                  keys[j] = sourceKeys[i];
+                  data[j] = sourceElements[i];
+                  slotHashes[j] = h;
+                  next[j] = table[index];
+                  table[index] = j;
+                  if (length + 1 > SORT_THRESHOLD) {
+                     synchronized (TableChainHash.this) {
+                        sortBucket(index);
+                     }
+                  }
+               }
+               added++;
+            }
+            return added;
+         }
+      });
+
+      // every key has a slot; the slots of repeated keys are free again
+      poolUsed = sourceKeys.length;
+      if (manyItems < poolUsed) {
+         for (e = poolUsed - 1; e >= 0; e--) {
+            if (keys[e] == null) {
+               next[e] = freeSlot;
+               freeSlot = e;
+            }
+         }
+      }
+   }
+
+
    /**
    * Determines whether a specified key is in this table.
    * @param <CODE>key</CODE>
@@ -75,32 +403,44 @@ public class TableChainHash< K , E >
    *   table.
    * @exception NullPointerException
    *   Indicates that <CODE>key</CODE> is null.
-   **/
+   **/   
    public boolean containsKey(K key)
    {
-      return findIndex(key) != -1;
+      return findSlot(key) != -1;
    }
-   
-   
-   private int findIndex(K key)
+
+
+   private int findSlot(Object key)
    // Postcondition: If the specified key is found in the table, then the return
-   // value is the index of the specified key. Otherwise, the return value is -1.
+   // value is the pool slot that holds it. Otherwise, the return value is -1.
    {
+      return findSlot(key, hashFunction.hash(key));
+   }
+
+
+   private int findSlot(Object key, int h)
+   // Precondition: h is the hash of key.
+   // Postcondition: If the specified key is found in the table, then the return
+   // value is the pool slot that holds it. Otherwise, the return value is -1.
+   // Only keys whose stored hash is h are compared with equals.
+   {
+      int index = hashFunction.index(h, table.length);
+      int e = table[index];
       int count = 0;
-      int i = hash(key);
-      
-      while (count < table.length && hasBeenUsed[i])
-      {
-         if (key.equals(keys[i]))
-            return i;
+      int position;
+
+      if (e == SORTED) {
+         position = sortedFind(sorted[index], h, key);
+         return position == -1 ? -1 : sorted[index].slots[position];
+      }
+      while (e != -1 && !(slotHashes[e] == h && key.equals(keys[e]))) {
+         e = next[e];
          count++;
-         i = nextIndex(i);
       }
-      
-      return -1;
+      return searched(e, count);
    }
-      
-   
+
+
    /** Retrieves an object for a specified key.
    * @param <CODE>key</CODE>
    *   the non-null key to look for
@@ -113,50 +453,165 @@ public class TableChainHash< K , E >
    *   to the keys that are in the table.
    * @exception NullPointerException
    *   Indicates that <CODE>key</CODE> is null.
-   **/
+   **/   
    public E get(K key)
    {
-      int index = hash(key);
-      // cursor nodes to find our desired data
-      Node<E> tableCursor = null;
-      Node<K> keyCursor = null;
-      
-      if (keys[index] == null)
+      int e = findSlot(key);
+
+      if (e == -1)
          return null;
-      else {
-         // create cursor nodes to find where to place new Node
-         tableCursor = table[index];
-         keyCursor = keys[index];
+      else
+         return (E) data[e];
+   }
+
 
-         while(!keyCursor.getData().equals(key)) {
-            tableCursor = tableCursor.getLink();
-            keyCursor = keyCursor.getLink();
+   /**
+   * Retrieves the objects for a batch of keys.
+   * @param <CODE>keys</CODE>
+   *   the non-null keys to look for
+   * @param <CODE>elements</CODE>
+   *   the array that receives the objects
+   * <dt><b>Postcondition:</b><dd>
+   *   <CODE>elements[i]</CODE> is <CODE>get(keys[i])</CODE> for each
+   *   index <CODE>i</CODE> of <CODE>keys</CODE>. Any further entries of
+   *   <CODE>elements</CODE> are unchanged.
+   * @return
+   *   the number of keys that were found
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>elements</CODE> is shorter than
+   *   <CODE>keys</CODE>.
+   * @exception NullPointerException
+   *   Indicates that one of the keys is null.
+   **/
+   public int getAll(K[ ] keys, E[ ] elements)
+   {
+      if (elements.length < keys.length)
+         throw new IllegalArgumentException("Elements array is shorter than keys");
+
+      int[ ] hashes = new int[BATCH];
+      int[ ] heads = new int[BATCH];
+      int[ ] loadedHashes = new int[BATCH];
+      Object[ ] loaded = new Object[2 * BATCH];
+      int start, end, i, j, e;
+      int found = 0;
+
+      for (start = 0; start < keys.length; start += BATCH)
+      {
+         end = Math.min(start + BATCH, keys.length);
+         for (i = start; i < end; i++)
+            hashes[i - start] = hashFunction.hash(keys[i]);
+         loadBatch(start, end, hashes, heads, loadedHashes, loaded);
+         for (i = start; i < end; i++)
+         {
+            j = i - start;
+            e = heads[j];
+            if (e >= 0 && loadedHashes[j] == hashes[j]
+                && keys[i].equals(loaded[2 * j]))
+            {  // The key is the first entry of its chain.
+               searched(e, 0);
+               elements[i] = (E) loaded[2 * j + 1];
+               found++;
+            }
+            else if (e == -1)
+            {  // The bucket is empty.
+               searched(-1, 0);
+               elements[i] = null;
+            }
+            else
+            {
+               e = findSlot(keys[i], hashes[j]);
+               if (e == -1)
+                  elements[i] = null;
+               else
+               {
+                  elements[i] = (E) data[e];
+                  found++;
+               }
+            }
          }
-         return tableCursor.getData();
       }
+      return found;
    }
-   
-   
-   private int hash(Object key)
-   // The return value is a valid index of the table�s arrays. The index is
-   // calculated as the remainder when the absolute value of the key�s
-   // hash code is divided by the size of the table�s arrays.
+
+
+   /**
+   * Add a batch of new elements to this table. This has the same effect as
+   * calling <CODE>put</CODE> for each pair in turn, but every key is hashed
+   * before any is put, and the table grows at most once, up front, to the
+   * number of buckets the whole batch would need if none of its keys were in the
+   * table already.
+   * @param <CODE>keys</CODE>
+   *   the keys to use for the new elements
+   * @param <CODE>elements</CODE>
+   *   the new elements, where <CODE>elements[i]</CODE> goes with
+   *   <CODE>keys[i]</CODE>
+   * <dt><b>Postcondition:</b><dd>
+   *   The table is as if <CODE>put(keys[i], elements[i])</CODE> had been
+   *   called for each <CODE>i</CODE> in increasing order, and
+   *   <CODE>getCollisions</CODE> reports the last of those puts.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>keys</CODE> and <CODE>elements</CODE> have
+   *   different lengths.
+   **/
+   public void putAll(K[ ] keys, E[ ] elements)
    {
-      return Math.abs(key.hashCode( )) % table.length;
+      if (keys.length != elements.length)
+         throw new IllegalArgumentException("Keys and elements differ in length");
+
+      int[ ] hashes = new int[keys.length];
+      int i;
+
+      for (i = 0; i < keys.length; i++)
+         hashes[i] = (keys[i] == null) ? 0 : hashFunction.hash(keys[i]);
+      growFor((long) manyItems + keys.length);
+      for (i = 0; i < keys.length; i++)
+         put(keys[i], elements[i], hashes[i]);
    }
-   
-   
-   private int nextIndex(int i)
-   // The return value is normally i+1. But if i+1 is data.length, then the 
-   // return value is zero instead.
+
+
+   private void growFor(long items)
+   // Postcondition: If items would push the table past its maximum load
+   // factor, then it has grown, through the same capacities that one put
+   // after another would have taken it, to the first that holds that many
+   // items (or the largest there is), with a single rehash.
    {
-      if (i+1 == table.length)
-         return 0;
-      else
-         return i+1;
+      int capacity = table.length;
+
+      while (items > maxLoadFactor * capacity && capacity < Primes.MAX_CAPACITY)
+         capacity = Primes.growCapacity(capacity);
+      if (capacity > table.length)
+         resize(capacity);
    }
-   
-   
+
+
+   private void loadBatch(int start, int end, int[ ] hashes, int[ ] heads,
+                          int[ ] loadedHashes, Object[ ] loaded)
+   // Precondition: hashes[i - start] is the hash of a key for each i from
+   // start to end - 1.
+   // Postcondition: The bucket of each of those keys has been read into
+   // heads[i - start], and then the stored hash, key and element of the
+   // first entry of each chain into loadedHashes[i - start],
+   // loaded[2 * (i - start)] and the entry after it. The reads at each step
+   // do not depend on each other, so the processor can wait for all of
+   // their cache misses at the same time, and getAll settles most keys from
+   // them without reading the table again.
+   {
+      int i, e;
+
+      for (i = start; i < end; i++)
+         heads[i - start] = table[hashFunction.index(hashes[i - start], table.length)];
+      for (i = start; i < end; i++)
+      {
+         e = heads[i - start];
+         if (e >= 0) {
+            loadedHashes[i - start] = slotHashes[e];
+            loaded[2 * (i - start)] = keys[e];
+            loaded[2 * (i - start) + 1] = data[e];
+         }
+      }
+   }
+
+
    /**
    * Add a new element to this table, using the specified key.
    * @param <CODE>key</CODE>
@@ -164,81 +619,95 @@ public class TableChainHash< K , E >
    * @param <CODE>element</CODE>
    *   the new element that�s being added to this table
    * <dt><b>Precondition:</b><dd>
-   *   If there is not already an element with the specified <CODE>key</CODE>,
-   *   then this table�s size must be less than its capacity 
-   *   (i.e., <CODE>size() < capacity()</CODE>). Also, neither <CODE>key</CODE>
-   *   nor </CODE>element</CODE> is null.
+   *   Neither <CODE>key</CODE> nor </CODE>element</CODE> is null.
    * <dt><b>Postcondition:</b><dd>
    *   If this table already has an object with the specified <CODE>key</CODE>,
    *   then that object is replaced by </CODE>element</CODE>, and the return 
    *   value is a reference to the replaced object. Otherwise, the new 
    *   </CODE>element</CODE> is added with the specified <CODE>key</CODE>
-   *   and the return value is null.
-   * @exception IllegalStateException
-   *   Indicates that there is no room for a new object in this table.
-   * @exception NullPointerException
-   *   Indicates that <CODE>key</CODE> or <CODE>element</CODE> is null.   
-   **/
+   *   and the return value is null. If adding the element would push the
+   *   table past its maximum load factor, the table first grows.
+   **/   
    public E put(K key, E element)
-   {  
+   {
+      if (key == null)
+         return put(key, element, 0);
+      else
+         return put(key, element, hashFunction.hash(key));
+   }
+
+
+   private E put(Object key, Object element, int h)
+   // Precondition: h is the hash of key, if key is not null.
+   // Postcondition: The same as for the public put.
+   {
       collisions = 0;
-      Node<E> tableCursor = null;
-      Node<K> keyCursor = null;
-      Node<E> dataNode = new Node<E>(element, null);
-      Node<K> keyNode = new Node<K>(key, null);
-      
-      int index = findIndex(key);
-      E answer = null;
-      
+      E answer;
+      int index, e, position;
+
       if (key == null || element == null) {
          System.out.println("Key or Element is null");
          return null;
       }
-      if (manyItems < table.length) {
-         // The key is not yet in this Table.
-         index = hash(key);
-         // the current indexes have nodes
-         if(table[index] != null) {
-            // create cursor nodes to find where to place new Node
-            tableCursor = table[index];
-            keyCursor = keys[index];
-            while (tableCursor != null) {
-               collisions++;
-               tableCursor = tableCursor.getLink();
-               keyCursor = keyCursor.getLink();
-            }
-         }
-         else {
-            tableCursor = null;
-            keyCursor = null;
-         }
 
-         if (tableCursor == null) {
-            // add a node at the front of the list of table
-            index = hash(key);
-            tableCursor = new Node<E>(null, null);
-            keyCursor = new Node<K>(null, null);
-            tableCursor.setData(element);
-            keyCursor.setData(key);
-            tableCursor.setLink(table[index]);
-            keyCursor.setLink(keys[index]);
-            table[index] = tableCursor;
-            keys[index] = keyCursor;
+      index = hashFunction.index(h, table.length);
+      if (table[index] == SORTED) {
+         // binary search, counting every comparison as a collision
+         position = sortedFind(sorted[index], h, key);
+         collisions = probes(sorted[index]);
+         if (position != -1) {
+            e = sorted[index].slots[position];
+            answer = (E) data[e];
+            data[e] = element;
+            countPut( );
+            return answer;
          }
-         else {
-            // new element replaces old
-            answer = tableCursor.getData();
-            tableCursor.setData(element);
+      }
+      else {
+         // walk the chain, counting every entry we pass as a collision
+         for (e = table[index]; e != -1; e = next[e]) {
+            if (slotHashes[e] == h && key.equals(keys[e])) {
+               // new element replaces old
+               answer = (E) data[e];
+               data[e] = element;
+               searched(e, collisions);
+               countPut( );
+               return answer;
+            }
+            collisions++;
          }
-         return answer;
+         searched(-1, collisions);
       }
-      else
-      {  // The table is full.
-         throw new IllegalStateException("Table is full.");
+
+      // The key is not yet in this Table.
+      if (manyItems + 1 > maxLoadFactor * table.length) {
+         resize(Primes.growCapacity(table.length));
+         index = hashFunction.index(h, table.length);
+         collisions = 0;
+         if (table[index] == SORTED)
+            collisions = probes(sorted[index]);
+         for (e = table[index]; e >= 0; e = next[e])
+            collisions++;
       }
 
+      // take a slot from the pool and add it to the bucket
+      e = takeSlot( );
+      keys[e] = key;
+      data[e] = element;
+      slotHashes[e] = h;
+      if (table[index] == SORTED)
+         sortedInsert(sorted[index], h, e);
+      else {
+         next[e] = table[index];
+         table[index] = e;
+         if (collisions + 1 > SORT_THRESHOLD)
+            sortBucket(index);
+      }
+      manyItems++;
+      countPut( );
+      return null;
    }
-   
+
    /**
    * Removes an object for a specified key.
    * @param <CODE>key</CODE>
@@ -254,50 +723,512 @@ public class TableChainHash< K , E >
    *   to the keys that are in the table.
    * @exception NullPointerException
    *   Indicates that </CODE>key</CODE> is null.
-   **/
+   **/   
    public E remove(K key)
    {
-      int index = hash(key);
+      int h = hashFunction.hash(key);
+      int index = hashFunction.index(h, table.length);
+      int parent = -1;
+      int e = table[index];
+      int count = 0;
+      int position;
+      SortedBucket bucket;
+      E answer;
+
+      if (e == SORTED) {
+         // take the entry out of the sorted bucket
+         bucket = sorted[index];
+         position = sortedFind(bucket, h, key);
+         if (position == -1)
+            return null;
+         e = bucket.slots[position];
+         bucket.count--;
+         System.arraycopy(bucket.hashes, position + 1, bucket.hashes, position,
+                          bucket.count - position);
+         System.arraycopy(bucket.slots, position + 1, bucket.slots, position,
+                          bucket.count - position);
+         System.arraycopy(bucket.classes, position + 1, bucket.classes, position,
+                          bucket.count - position);
+         bucket.classes[bucket.count] = null;
+         if (bucket.count <= UNSORT_THRESHOLD)
+            unsortBucket(index);
+      }
+      else {
+         // search for the given key, remembering the entry before it
+         while (e != -1 && !(slotHashes[e] == h && key.equals(keys[e]))) {
+            parent = e;
+            e = next[e];
+            count++;
+         }
+         if (searched(e, count) == -1)
+            return null;
+
+         // unlink the entry
+         if (parent == -1)
+            table[index] = next[e];
+         else
+            next[parent] = next[e];
+      }
+
+      // put its slot on the free list
+      answer = (E) data[e];
+      keys[e] = null;
+      data[e] = null;
+      next[e] = freeSlot;
+      freeSlot = e;
+      manyItems--;
+      return answer;
+   }
 
-      // Create a parent and current cursor for key and table nodes
-      Node<E> tableParent = null;
-      Node<K> keyParent = null;
-      Node<E> tableCursor = null;
-      Node<K> keyCursor = null;
 
-      if(keys[index] == null) {
+   private int sortedFind(SortedBucket bucket, int h, Object key)
+   // Postcondition: If the specified key, whose hash is h, is in the sorted
+   // bucket, then the return value is its position there. Otherwise, the
+   // return value is -1. The search has been counted in the statistics.
+   {
+      Class<?> c = comparableClass(key);
+      int position = position(bucket, h, c, key);
+      int count = probes(bucket);
+
+      while (position < bucket.count
+             && compare(bucket.hashes[position], bucket.classes[position],
+                        keys[bucket.slots[position]], h, c, key) == 0)
+      {
+         if (key.equals(keys[bucket.slots[position]]))
+            return searched(position, count);
+         position++;
+         count++;
+      }
+      return searched(-1, count);
+   }
+
+
+   private int position(SortedBucket bucket, int h, Class<?> c, Object key)
+   // Precondition: c is comparableClass(key).
+   // The return value is the first position in the sorted bucket whose
+   // entry does not come before a key with hash h in the order of compare,
+   // found by binary search.
+   {
+      int low = 0;
+      int high = bucket.count;
+      int middle;
+
+      while (low < high)
+      {
+         middle = (low + high) >>> 1;
+         if (compare(bucket.hashes[middle], bucket.classes[middle],
+                     keys[bucket.slots[middle]], h, c, key) < 0)
+            low = middle + 1;
+         else
+            high = middle;
+      }
+      return low;
+   }
+
+
+   private static int probes(SortedBucket bucket)
+   // The return value is the number of comparisons a binary search of the
+   // sorted bucket makes.
+   {
+      return 32 - Integer.numberOfLeadingZeros(bucket.count);
+   }
+
+
+   private static int compare(int h, Class<?> c, Object key,
+                              int otherHash, Class<?> d, Object other)
+   // Precondition: c is comparableClass(key) and d is comparableClass(other).
+   // The return value is negative, zero or positive as a key with hash h
+   // comes before, ties with, or comes after another key with hash
+   // otherHash. Keys are ordered by hash; keys with equal hashes are
+   // ordered by the name of their comparable class, with keys that are not
+   // comparable first, and keys of the same comparable class by compareTo.
+   // Keys with equal hashes that are not comparable all tie. The classes
+   // are passed in because finding them takes reflection, which would
+   // otherwise be done on every step of a binary search.
+   {
+      if (h != otherHash)
+         return (h < otherHash) ? -1 : 1;
+      else if (c == null && d == null)
+         return 0;
+      else if (c == null)
+         return -1;
+      else if (d == null)
+         return 1;
+      else if (c != d)
+         return c.getName( ).compareTo(d.getName( ));
+      else
+         return ((Comparable<Object>) key).compareTo(other);
+   }
+
+
+   private static Class<?> comparableClass(Object key)
+   // The return value is the class of key if that class implements
+   // Comparable of itself (as String and Integer do), and null otherwise.
+   {
+      Class<?> c = key.getClass( );
+      java.lang.reflect.Type[ ] interfaces;
+      java.lang.reflect.ParameterizedType type;
+      int i;
+
+      if (c == String.class || c == Integer.class)
+         return c;
+      if (!(key instanceof Comparable))
          return null;
+      interfaces = c.getGenericInterfaces( );
+      for (i = 0; i < interfaces.length; i++)
+      {
+         if (interfaces[i] instanceof java.lang.reflect.ParameterizedType)
+         {
+            type = (java.lang.reflect.ParameterizedType) interfaces[i];
+            if (type.getRawType( ) == Comparable.class
+                && type.getActualTypeArguments( )[0] == c)
+               return c;
+         }
       }
-      else {
-         // search for the given key;
-         tableCursor = table[index];
-         keyCursor = keys[index];
-
-         while(keyCursor != null) {
-            if (keyCursor.getData().equals(key)) {
-               if (keyParent != null) {
-                  // remove the desired key
-                  keyParent.setLink(keyCursor.getLink());
-                  tableParent.setLink(tableCursor.getLink());
-               } 
-               else {
-                  table[index] = tableParent;
-                  keys[index] = keyParent;
-               }
-               manyItems--;
-               return tableCursor.getData();
-            }
-            else {
-               // update the parent cursors
-               tableParent = tableCursor;
-               keyParent = keyCursor;
-               tableCursor = tableCursor.getLink();
-               keyCursor = keyCursor.getLink();
+      return null;
+   }
+
+
+   private void sortedInsert(SortedBucket bucket, int h, int e)
+   // Precondition: keys[e] is set and has hash h, and is not in the bucket.
+   // Postcondition: Pool slot e has been added to the sorted bucket in its
+   // place in the order, together with its key's comparable class.
+   {
+      Class<?> c = comparableClass(keys[e]);
+      int position = position(bucket, h, c, keys[e]);
+
+      if (bucket.count == bucket.slots.length) {
+         bucket.hashes = java.util.Arrays.copyOf(bucket.hashes, 2 * bucket.count);
+         bucket.slots = java.util.Arrays.copyOf(bucket.slots, 2 * bucket.count);
+         bucket.classes = java.util.Arrays.copyOf(bucket.classes, 2 * bucket.count);
+      }
+      System.arraycopy(bucket.hashes, position, bucket.hashes, position + 1,
+                       bucket.count - position);
+      System.arraycopy(bucket.slots, position, bucket.slots, position + 1,
+                       bucket.count - position);
+      System.arraycopy(bucket.classes, position, bucket.classes, position + 1,
+                       bucket.count - position);
+      bucket.hashes[position] = h;
+      bucket.slots[position] = e;
+      bucket.classes[position] = c;
+      bucket.count++;
+   }
+
+
+   private void sortBucket(int index)
+   // Precondition: Bucket index is a chain.
+   // Postcondition: The entries of the chain are in a new sorted bucket.
+   {
+      SortedBucket bucket = new SortedBucket(2 * SORT_THRESHOLD);
+      int e;
+
+      for (e = table[index]; e != -1; e = next[e])
+         sortedInsert(bucket, slotHashes[e], e);
+      if (sorted == null)
+         sorted = new SortedBucket[table.length];
+      sorted[index] = bucket;
+      table[index] = SORTED;
+   }
+
+
+   private void unsortBucket(int index)
+   // Precondition: Bucket index is sorted.
+   // Postcondition: The entries of the sorted bucket are on a chain, in the
+   // same order.
+   {
+      SortedBucket bucket = sorted[index];
+      int j, e;
+
+      table[index] = -1;
+      for (j = bucket.count - 1; j >= 0; j--)
+      {
+         e = bucket.slots[j];
+         next[e] = table[index];
+         table[index] = e;
+      }
+      sorted[index] = null;
+   }
+
+
+   private int takeSlot( )
+   // Postcondition: The return value is a pool slot that is not on any chain.
+   // It comes from the free list if that is not empty; otherwise it is the
+   // next never-used slot, and the pool has been enlarged if necessary.
+   {
+      int e;
+
+      if (freeSlot != -1) {
+         e = freeSlot;
+         freeSlot = next[e];
+         return e;
+      }
+      if (poolUsed == keys.length)
+         allocatePool(Math.max(poolCapacity(table.length), keys.length + 1));
+      return poolUsed++;
+   }
+
+
+   private int poolCapacity(int buckets)
+   // The return value is the number of entries the table can hold with the
+   // given number of buckets before it has to grow.
+   {
+      return (int) Math.min(Primes.MAX_CAPACITY,
+                            Math.max(1, (long) (maxLoadFactor * buckets) + 1));
+   }
+
+
+   private void allocatePool(int poolCapacity)
+   // Postcondition: The four pool arrays have length poolCapacity (which is
+   // at least their current length) and keep their current contents.
+   {
+      if (keys == null) {
+         keys = new Object[poolCapacity];
+         data = new Object[poolCapacity];
+         next = new int[poolCapacity];
+         slotHashes = new int[poolCapacity];
+      }
+      else if (poolCapacity > keys.length) {
+         keys = java.util.Arrays.copyOf(keys, poolCapacity);
+         data = java.util.Arrays.copyOf(data, poolCapacity);
+         next = java.util.Arrays.copyOf(next, poolCapacity);
+         slotHashes = java.util.Arrays.copyOf(slotHashes, poolCapacity);
+      }
+   }
+
+
+   private void resize(int newCapacity)
+   // Postcondition: If newCapacity is larger than the current number of
+   // buckets, then the bucket array has been replaced by an array of length
+   // newCapacity and every entry has been linked into the front of its new
+   // bucket, found from its stored hash. The entries stay in their pool
+   // slots.
+   {
+      if (newCapacity <= table.length)
+         return;
+
+      int[ ] oldTable = table;
+      SortedBucket[ ] oldSorted = sorted;
+      long start = resizeStarted( );
+      int i, j, e, following, index, length;
+
+      table = new int[newCapacity];
+      java.util.Arrays.fill(table, -1);
+      sorted = null;
+      for (i = 0; i < oldTable.length; i++)
+      {
+         if (oldTable[i] == SORTED)
+         {
+            for (j = 0; j < oldSorted[i].count; j++)
+            {
+               e = oldSorted[i].slots[j];
+               index = hashFunction.index(slotHashes[e], newCapacity);
+               next[e] = table[index];
+               table[index] = e;
             }
          }
+         for (e = oldTable[i]; e >= 0; e = following)
+         {
+            following = next[e];
+            index = hashFunction.index(slotHashes[e], newCapacity);
+            next[e] = table[index];
+            table[index] = e;
+         }
       }
-      return null;
+
+      // sort any chain that is still too long
+      for (i = 0; i < newCapacity; i++)
+      {
+         length = 0;
+         for (e = table[i]; e != -1 && length <= SORT_THRESHOLD; e = next[e])
+            length++;
+         if (length > SORT_THRESHOLD)
+            sortBucket(i);
+      }
+      allocatePool(poolCapacity(newCapacity));
+      resizeFinished(start);
+   }
+
+
+   /**
+   * Determines the number of elements in this table.
+   * @param - none
+   * @return
+   *   the number of elements in this table
+   **/   
+   public int size( )
+   {
+      return manyItems;
+   }
+
+
+   /**
+   * Determines the current number of buckets in this table.
+   * @param - none
+   * @return
+   *   the length of the table's bucket array; this grows as elements are
+   *   added
+   **/   
+   public int capacity( )
+   {
+      return table.length;
+   }
+
+
+   /**
+   * Makes an unchanging copy of this table for reading.
+   * @param - none
+   * @return
+   *   a <CODE>FrozenTable</CODE> with the same keys, elements and hash
+   *   function, which is smaller and faster to search than this table and
+   *   may be shared between threads; later changes to this table do not
+   *   affect it
+   **/
+   public FrozenTable< K , E > freeze( )
+   {
+      Object[ ] frozenKeys = new Object[manyItems];
+      Object[ ] frozenData = new Object[manyItems];
+      int i;
+      int n = 0;
+
+      for (i = 0; i < poolUsed; i++)
+      {
+         if (keys[i] != null)
+         {
+            frozenKeys[n] = keys[i];
+            frozenData[n] = data[i];
+            n++;
+         }
+      }
+      return new FrozenTable< K , E >(frozenKeys, frozenData, hashFunction);
    }
+
+
+   /**
+   * Starts keeping statistics for this table, if it is not already doing so.
+   * @param - none
+   * @return
+   *   the statistics, which are brought up to date by every later search,
+   *   <CODE>put</CODE> and rehash
+   * @exception IllegalStateException
+   *   Indicates that statistics have been turned off with
+   *   <CODE>-Dtable.statistics=false</CODE>.
+   **/
+   public TableStatistics enableStatistics( )
+   {
+      if (!TableStatistics.ENABLED)
+         throw new IllegalStateException("Table statistics are turned off");
+      if (stats == null)
+      {
+         stats = new TableStatistics(new TableStatistics.Gauges( )
+         {
+            public int size( )
+            {
+               return manyItems;
+            }
+
+            public int capacity( )
+            {
+               return table.length;
+            }
+
+            public int tombstones( )
+            {
+               return 0;
+            }
+
+            public long[ ] chainLengths( )
+            {
+               long[ ] answer = new long[TableStatistics.BUCKETS];
+               int i, e, length;
+
+               for (i = 0; i < table.length; i++)
+               {
+                  length = 0;
+                  if (table[i] == SORTED)
+                     length = sorted[i].count;
+                  for (e = table[i]; e >= 0; e = next[e])
+                     length++;
+                  answer[TableStatistics.bucket(length)]++;
+               }
+               return answer;
+            }
+         });
+      }
+      return stats;
+   }
+
+
+   /**
+   * Stops keeping statistics for this table.
+   * @param - none
+   * <dt><b>Postcondition:</b><dd>
+   *   The table no longer updates its statistics, and
+   *   <CODE>getStatistics</CODE> returns null until
+   *   <CODE>enableStatistics</CODE> is called again.
+   **/
+   public void disableStatistics( )
+   {
+      stats = null;
+   }
+
+
+   /**
+   * Gives the statistics this table is keeping.
+   * @param - none
+   * @return
+   *   the statistics, or null if this table is not keeping any
+   **/
+   public TableStatistics getStatistics( )
+   {
+      return stats;
+   }
+
+
+   private int searched(int i, int count)
+   // Postcondition: If statistics are being kept, a search that passed over
+   // count keys and ended at index i (or -1 if the key was not found) has
+   // been counted. The return value is i.
+   {
+      if (TableStatistics.ENABLED && stats != null)
+      {
+         if (i == -1)
+            stats.recordMiss(count);
+         else
+            stats.recordHit(count);
+      }
+      return i;
+   }
+
+
+   private void countPut( )
+   // Postcondition: If statistics are being kept, a put with the current
+   // number of collisions has been counted.
+   {
+      if (TableStatistics.ENABLED && stats != null)
+         stats.recordPut(collisions);
+   }
+
+
+   private long resizeStarted( )
+   // The return value is the current time in nanoseconds if statistics are
+   // being kept, and zero otherwise.
+   {
+      if (TableStatistics.ENABLED && stats != null)
+         return System.nanoTime( );
+      else
+         return 0;
+   }
+
+
+   private void resizeFinished(long start)
+   // Postcondition: If statistics are being kept, a rehash that started at
+   // time start has been counted.
+   {
+      if (TableStatistics.ENABLED && stats != null)
+         stats.recordResize(System.nanoTime( ) - start);
+   }
+
+
    /**
    * returns the number of collisions from put method.
    * @param
@@ -305,10 +1236,31 @@ public class TableChainHash< K , E >
    * @return
    *     collisions - integer storing number of collisions 
    *                   from placing current element
-   **/
+   **/   
    public int getCollisions() {
       return collisions;
    }
-        
+
+
+
+   /***************************************************************************
+   * A <CODE>SortedBucket</CODE> holds the pool slots of a bucket with too
+   * many entries for a chain, together with their keys' hashes and
+   * comparable classes, in order.
+   ***************************************************************************/
+   private static class SortedBucket
+   {
+      int[ ] hashes;
+      int[ ] slots;
+      Class<?>[ ] classes;
+      int count;
+
+      SortedBucket(int capacity)
+      {
+         hashes = new int[capacity];
+         slots = new int[capacity];
+         classes = new Class<?>[capacity];
+      }
+   }
+
 }
-           
@@ -0,0 +1,554 @@
+// File: TableCuckooHash.java
+
+
+/******************************************************************************
+* A <CODE>TableCuckooHash</CODE> is a hash table in which every key can only
+* be in one of two buckets of four slots, so a search looks at no more than
+* eight slots (two cache lines of keys) however full the table is. The two
+* buckets come from two hash functions; both are taken from one 64-bit mix
+* of the key's hash code and a seed.
+*
+* When a new key finds both of its buckets full, it takes a slot from a key
+* already in one of them, and that key moves to its other bucket, possibly
+* evicting another key in turn. If the chain of evictions goes on too long
+* (it may be going round a cycle), the key left without a slot goes in a
+* small stash, which every search also checks while it is not empty. Only
+* when the stash is full is the whole table rehashed with a new seed, and if
+* several seeds in a row fail, the table grows. A table that is still less
+* than half full enlarges its stash instead, since there the failure means
+* that many keys share a hash code, which no seed or size can fix; only
+* searches for such keys pay for the longer stash. Removal simply clears the
+* slot, so there are no tombstones, and gives stashed keys a chance to move
+* back into the table.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class TableCuckooHash< K , E > implements HashTable< K , E >
+{
+   // Invariant of the TableCuckooHash class:
+   //   1. The number of items in the table is in the instance variable
+   //      manyItems, and the number of buckets is in buckets. Bucket b is the
+   //      slots b * SLOTS through b * SLOTS + SLOTS - 1.
+   //   2. An element with a given key is either in a slot i of bucket
+   //      first(mix(key)) or bucket second(mix(key)), with the key in
+   //      keys[i] and the element in data[i], or in the stash. A slot that
+   //      holds no element has keys[i] and data[i] set to null.
+   //   3. The stash holds stashCount elements, with their keys in
+   //      stashKeys[0] through stashKeys[stashCount-1] and the elements at
+   //      the same indexes of stashData. The stash arrays start with
+   //      STASH_SIZE slots and only grow while the table is under half full.
+   //   4. No key appears more than once.
+   //   5. Before a new key is added, manyItems + 1 is at most
+   //      maxLoadFactor * capacity( ), unless the table cannot grow any more.
+   private int manyItems;
+   private int buckets;
+   private Object[ ] keys;
+   private Object[ ] data;
+   private Object[ ] stashKeys;
+   private Object[ ] stashData;
+   private int stashCount;
+   private double maxLoadFactor;
+   private long seed;
+   private int random = 0x2545F491;
+
+   // the element a failed insertion could not place, kept for the rehash
+   private Object spareKey;
+   private Object spareElement;
+
+   /**
+   * The number of slots in each bucket.
+   **/
+   public static final int SLOTS = 4;
+
+   /**
+   * The number of elements the stash can hold before the table is rehashed.
+   **/
+   public static final int STASH_SIZE = 4;
+
+   /**
+   * The maximum load factor used when none is given to the constructor.
+   **/
+   public static final double DEFAULT_LOAD_FACTOR = 0.9;
+
+   // how many keys one insertion may evict before it gives up, and how many
+   // seeds are tried at one capacity before the table grows instead
+   private static final int MAX_KICKS = 500;
+   private static final int MAX_REHASHES = 4;
+   private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+   private static final int MAX_BUCKETS = (Integer.MAX_VALUE - 8) / SLOTS;
+
+   // instance variables to calculate collision frequency
+   private int collisions;
+
+   /**
+   * Initialize an empty table with a specified capacity and the default
+   * maximum load factor.
+   * @param <CODE>capacity</CODE>
+   *   the least capacity for this new hash table
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has at least the specified capacity.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public TableCuckooHash(int capacity)
+   {
+      this(capacity, DEFAULT_LOAD_FACTOR);
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity and maximum load
+   * factor.
+   * @param <CODE>capacity</CODE>
+   *   the least initial capacity for this new hash table; it is rounded up
+   *   to a prime number of whole buckets
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest fraction of the capacity that may be filled before the
+   *   table grows; above about 0.95, insertions start to need rehashes
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has at least the specified capacity.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is not positive or that
+   *   <CODE>maxLoadFactor</CODE> is not in the range (0, 1].
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public TableCuckooHash(int capacity, double maxLoadFactor)
+   {
+      if (capacity <= 0)
+         throw new IllegalArgumentException("Capacity is negative");
+      if (!(maxLoadFactor > 0 && maxLoadFactor <= 1))
+         throw new IllegalArgumentException("Load factor must be in (0, 1]");
+      this.maxLoadFactor = maxLoadFactor;
+      allocate(Math.min(Primes.nextPrime((capacity - 1) / SLOTS + 1),
+                        MAX_BUCKETS));
+   }
+
+
+   private void allocate(int newBuckets)
+   // Postcondition: The table has newBuckets empty buckets and an empty
+   // stash. The elements are not carried over.
+   {
+      buckets = newBuckets;
+      keys = new Object[newBuckets * SLOTS];
+      data = new Object[newBuckets * SLOTS];
+      stashKeys = new Object[STASH_SIZE];
+      stashData = new Object[STASH_SIZE];
+      stashCount = 0;
+   }
+
+
+   /**
+   * Determines whether a specified key is in this table.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * <dt><b>Precondition:</b><dd>
+   *   <CODE>key</CODE> cannot be null.
+   * @return
+   *   <CODE>true</CODE> (if this table contains an object with the specified
+   *   key); <CODE>false</CODE> otherwise. Note that <CODE>key.equals( )</CODE>
+   *   is used to compare the <CODE>key</CODE> to the keys that are in the
+   *   table.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public boolean containsKey(K key)
+   {
+      return findIndex(key) != -1;
+   }
+
+
+   private int findIndex(Object key)
+   // Postcondition: If the specified key is in one of its buckets, then the
+   // return value is the index of its slot. If it is in the stash at index s,
+   // the return value is keys.length + s. Otherwise, the return value is -1.
+   {
+      long h = mix(key.hashCode( ));
+      int b = first(h) * SLOTS;
+      int i;
+
+      for (i = b; i < b + SLOTS; i++) {
+         if (key.equals(keys[i]))
+            return i;
+      }
+      b = second(h) * SLOTS;
+      for (i = b; i < b + SLOTS; i++) {
+         if (key.equals(keys[i]))
+            return i;
+      }
+      for (i = 0; i < stashCount; i++) {
+         if (key.equals(stashKeys[i]))
+            return keys.length + i;
+      }
+
+      return -1;
+   }
+
+
+   /** Retrieves an object for a specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * <dt><b>Precondition:</b><dd>
+   *   <CODE>key</CODE> cannot be null.
+   * @return
+   *   a reference to the object with the specified <CODE>key</CODE> (if this
+   *   table contains an such an object);  null otherwise. Note that
+   *   <CODE>key.equals( )</CODE> is used to compare the <CODE>key</CODE>
+   *   to the keys that are in the table.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E get(K key)
+   {
+      int index = findIndex(key);
+
+      if (index == -1)
+         return null;
+      else if (index < keys.length)
+         return (E) data[index];
+      else
+         return (E) stashData[index - keys.length];
+   }
+
+
+   private long mix(int code)
+   // The return value is the hash code combined with the seed and mixed by
+   // the finalizer of MurmurHash3, so that every bit of the result depends
+   // on every bit of the code.
+   {
+      long h = (code & 0xFFFFFFFFL) ^ seed;
+
+      h ^= h >>> 33;
+      h *= 0xFF51AFD7ED558CCDL;
+      h ^= h >>> 33;
+      h *= 0xC4CEB9FE1A85EC53L;
+      h ^= h >>> 33;
+      return h;
+   }
+
+
+   private int first(long h)
+   // The return value is the first bucket for a mixed hash code h, taken
+   // from its low half.
+   {
+      return ((int) h & 0x7FFFFFFF) % buckets;
+   }
+
+
+   private int second(long h)
+   // The return value is the second bucket for a mixed hash code h, taken
+   // from its high half.
+   {
+      return ((int) (h >>> 32) & 0x7FFFFFFF) % buckets;
+   }
+
+
+   private int nextRandom(int n)
+   // The return value is a pseudorandom number from 0 to n-1, from an
+   // xorshift generator, used to pick which key to evict.
+   {
+      random ^= random << 13;
+      random ^= random >>> 17;
+      random ^= random << 5;
+      return (random >>> 1) % n;
+   }
+
+
+   /**
+   * Add a new element to this table, using the specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to use for the new element
+   * @param <CODE>element</CODE>
+   *   the new element that's being added to this table
+   * <dt><b>Precondition:</b><dd>
+   *   Neither <CODE>key</CODE> nor <CODE>element</CODE> is null.
+   * <dt><b>Postcondition:</b><dd>
+   *   If this table already has an object with the specified <CODE>key</CODE>,
+   *   then that object is replaced by <CODE>element</CODE>, and the return
+   *   value is a reference to the replaced object. Otherwise, the new
+   *   <CODE>element</CODE> is added with the specified <CODE>key</CODE>
+   *   and the return value is null. If adding the element would push the
+   *   table past its maximum load factor, the table first grows.
+   * @exception IllegalStateException
+   *   Indicates that the table is full and has reached its largest
+   *   possible capacity.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> or <CODE>element</CODE> is null.
+   **/
+   public E put(K key, E element)
+   {
+      collisions = 0;
+      int index = findIndex(key);
+      E answer;
+
+      if (index != -1 && index < keys.length)
+      {  // The key is already in one of its buckets.
+         answer = (E) data[index];
+         data[index] = element;
+         return answer;
+      }
+      else if (index != -1)
+      {  // The key is already in the stash.
+         answer = (E) stashData[index - keys.length];
+         stashData[index - keys.length] = element;
+         return answer;
+      }
+
+      if (manyItems + 1 > maxLoadFactor * capacity( ))
+         rehash(Math.min(Primes.growCapacity(buckets), MAX_BUCKETS), null, null);
+      if (manyItems >= capacity( ))
+         throw new IllegalStateException("Table is full.");
+
+      // The key is not yet in this Table.
+      if (!place(key, element))
+         rehash(buckets, spareKey, spareElement);
+      manyItems++;
+      return null;
+   }
+
+
+   private boolean place(Object key, Object element)
+   // Precondition: The key is not in the table.
+   // Postcondition: If the return value is true, the key and element have
+   // been added, possibly after evicting other keys to their other buckets
+   // or to the stash. Each eviction adds one to collisions. If the return
+   // value is false, every element but one is in the table, and that one
+   // (which may not be the new one) is in spareKey and spareElement.
+   {
+      long h = mix(key.hashCode( ));
+      int b = first(h);
+      int alternate, victim, count;
+      Object swap;
+
+      if (store(b, key, element) || store(second(h), key, element))
+         return true;
+
+      for (count = 0; count < MAX_KICKS; count++)
+      {  // Both buckets are full: take a slot and move its key along.
+         victim = b * SLOTS + nextRandom(SLOTS);
+         swap = keys[victim];
+         keys[victim] = key;
+         key = swap;
+         swap = data[victim];
+         data[victim] = element;
+         element = swap;
+         collisions++;
+
+         h = mix(key.hashCode( ));
+         alternate = first(h);
+         if (alternate == b)
+            alternate = second(h);
+         if (store(alternate, key, element))
+            return true;
+         b = alternate;
+      }
+
+      if (stashCount == stashKeys.length && 2 * manyItems < capacity( ))
+      {  // The table is sparse, so many keys must share a hash code.
+         stashKeys = java.util.Arrays.copyOf(stashKeys, 2 * stashCount);
+         stashData = java.util.Arrays.copyOf(stashData, 2 * stashCount);
+      }
+      if (stashCount < stashKeys.length)
+      {
+         stashKeys[stashCount] = key;
+         stashData[stashCount] = element;
+         stashCount++;
+         return true;
+      }
+      spareKey = key;
+      spareElement = element;
+      return false;
+   }
+
+
+   private boolean store(int b, Object key, Object element)
+   // Postcondition: If bucket b had an empty slot, then the key and element
+   // are in the first such slot and the return value is true. Otherwise,
+   // the table is unchanged and the return value is false.
+   {
+      int i;
+
+      for (i = b * SLOTS; i < b * SLOTS + SLOTS; i++) {
+         if (keys[i] == null) {
+            keys[i] = key;
+            data[i] = element;
+            return true;
+         }
+      }
+      return false;
+   }
+
+
+   private void rehash(int newBuckets, Object extraKey, Object extraElement)
+   // Precondition: newBuckets is at least the current number of buckets.
+   // Postcondition: Every element, together with extraKey and extraElement
+   // if extraKey is not null, has been placed again in newBuckets buckets
+   // with a new seed. If that fails, further seeds are tried, and after
+   // MAX_REHASHES of them the number of buckets grows. The collisions
+   // instance variable is unchanged.
+   {
+      Object[ ] oldKeys = keys;
+      Object[ ] oldData = data;
+      Object[ ] oldStashKeys = stashKeys;
+      Object[ ] oldStashData = stashData;
+      int oldStashCount = stashCount;
+      int saved = collisions;
+      int attempts = 0;
+      int i;
+      boolean placed;
+
+      spareKey = null;
+      spareElement = null;
+      while (true)
+      {
+         allocate(newBuckets);
+         seed += SEED_STEP;
+         placed = extraKey == null || place(extraKey, extraElement);
+         for (i = 0; placed && i < oldKeys.length; i++) {
+            if (oldKeys[i] != null)
+               placed = place(oldKeys[i], oldData[i]);
+         }
+         for (i = 0; placed && i < oldStashCount; i++)
+            placed = place(oldStashKeys[i], oldStashData[i]);
+         if (placed)
+            break;
+
+         spareKey = null;
+         spareElement = null;
+         attempts++;
+         if (attempts == MAX_REHASHES && newBuckets == MAX_BUCKETS)
+            throw new IllegalStateException("Table is full.");
+         if (attempts == MAX_REHASHES)
+         {
+            newBuckets = Math.min(Primes.growCapacity(newBuckets), MAX_BUCKETS);
+            attempts = 0;
+         }
+      }
+      collisions = saved;
+   }
+
+
+   /**
+   * Removes an object for a specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * <dt><b>Precondition:</b><dd>
+   *   <CODE>key</CODE> cannot be null.
+   * <dt><b>Postcondition:</b><dd>
+   *   If an object was found with the specified <CODE>key</CODE>, then that
+   *   object has been removed from this table and a copy of the removed object
+   *   is returned; otherwise, this table is unchanged and the null reference
+   *   is returned.  Note that
+   *   <CODE>key.equals( )</CODE> is used to compare the <CODE>key</CODE>
+   *   to the keys that are in the table.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E remove(K key)
+   {
+      int index = findIndex(key);
+      int s;
+      E answer;
+
+      if (index == -1)
+         return null;
+
+      if (index < keys.length)
+      {
+         answer = (E) data[index];
+         keys[index] = null;
+         data[index] = null;
+         if (stashCount > 0)
+            drainStash( );
+      }
+      else
+      {  // Fill the hole in the stash with its last element.
+         s = index - keys.length;
+         answer = (E) stashData[s];
+         stashCount--;
+         stashKeys[s] = stashKeys[stashCount];
+         stashData[s] = stashData[stashCount];
+         stashKeys[stashCount] = null;
+         stashData[stashCount] = null;
+      }
+      manyItems--;
+      return answer;
+   }
+
+
+   private void drainStash( )
+   // Postcondition: Every stashed element that has an empty slot in one of
+   // its buckets has been moved there.
+   {
+      int s = 0;
+      long h;
+
+      while (s < stashCount)
+      {
+         h = mix(stashKeys[s].hashCode( ));
+         if (store(first(h), stashKeys[s], stashData[s])
+             || store(second(h), stashKeys[s], stashData[s]))
+         {
+            stashCount--;
+            stashKeys[s] = stashKeys[stashCount];
+            stashData[s] = stashData[stashCount];
+            stashKeys[stashCount] = null;
+            stashData[stashCount] = null;
+         }
+         else
+            s++;
+      }
+   }
+
+
+   /**
+   * Determines the number of elements in this table.
+   * @param - none
+   * @return
+   *   the number of elements in this table
+   **/
+   public int size( )
+   {
+      return manyItems;
+   }
+
+
+   /**
+   * Determines the current capacity of this table.
+   * @param - none
+   * @return
+   *   the number of slots in the buckets, not counting the stash; this grows
+   *   as elements are added
+   **/
+   public int capacity( )
+   {
+      return keys.length;
+   }
+
+
+   /**
+   * Determines the number of elements in the stash.
+   * @param - none
+   * @return
+   *   the number of elements that are in neither of their buckets
+   **/
+   public int getStashSize( )
+   {
+      return stashCount;
+   }
+
+
+   /**
+   * returns the number of collisions from put method.
+   * @param
+   *     none
+   * @return
+   *     collisions - integer storing number of keys that were evicted
+   *                   to make room for the current element
+   **/
+   public int getCollisions() {
+      return collisions;
+   }
+
+}
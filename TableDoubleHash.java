@@ -4,11 +4,53 @@
 
 
 /******************************************************************************
-* A <CODE>Table</CODE> is an open-address hash table with a fixed capacity.
+* A <CODE>Table</CODE> is an open-address hash table that grows as needed.
 * The purpose is to show students how an open-address hash table is
 * implemented. Programs should generally use java.util.Hashtable
 * rather than this hash table.
 *
+* The capacity given to the constructor is rounded up to a prime. When the
+* number of items would exceed the maximum load factor times the
+* capacity, the table grows to a prime roughly twice its size and rehashes
+* every element, so <CODE>put</CODE> only fails once the table has reached
+* the largest capacity an array can have. Keeping the capacity prime keeps
+* every <CODE>doubleHash</CODE> step relatively prime to the table size.
+*
+* Keys are placed by a <CODE>HashFunction</CODE>, which may be given to the
+* constructor; the default uses each key's hash code as it is. The first
+* index and the step both come from the same hash.
+*
+* Each slot also keeps the full 32-bit hash of its key. A search compares
+* those <CODE>int</CODE>s first and only calls <CODE>equals</CODE> on a key
+* whose hash matches, and a rehash finds each key's new probe sequence from
+* its stored hash without calling <CODE>hashCode</CODE> again, which saves
+* the most for long strings and other keys that are slow to hash or compare.
+*
+* <CODE>build</CODE> makes a table from arrays of keys and elements on
+* several threads, as described in <CODE>ParallelBuild</CODE>. The table
+* is just large enough for the keys and has no tombstones.
+*
+* <CODE>getAll</CODE> hashes <CODE>BATCH</CODE> keys at a time and reads
+* each key's first slot before searching for any of them, so the cache
+* misses of a batch overlap. A key found in that slot is settled from
+* what was read; only the others are searched again. <CODE>putAll</CODE>
+* hashes all of its keys before putting any of them, and grows the table
+* once, up front, instead of doubling it step by step as the batch goes in.
+*
+* <CODE>freeze</CODE> makes a compact, unchanging copy for tables that
+* are only read from then on (see <CODE>FrozenTable</CODE>).
+*
+* Calling <CODE>enableStatistics</CODE> makes the table keep cumulative
+* <CODE>TableStatistics</CODE>: probe-length histograms for searches that
+* hit and miss, total collisions, and the number and duration of rehashes.
+*
+* Removing an element leaves a tombstone so that searches for other keys
+* keep probing past it. Tombstones are reused by later insertions and count
+* towards the load factor; once there are too many of them the table is
+* rehashed at its current capacity to clear them, so the cost of a search
+* for a missing key stays constant under a steady stream of puts and
+* removes.
+*
 * <dt><b>Java Source Code for this class:</b><dd>
 *   <A HREF="../../../../edu/colorado/collections/Table.java">
 *   http://www.cs.colorado.edu/~main/edu/colorado/collections/Table.java
@@ -18,7 +60,7 @@
 *   <A HREF="mailto:main@colorado.edu"> (main@colorado.edu) </A>
 *
 ******************************************************************************/
-public class TableDoubleHash< K , E >
+public class TableDoubleHash< K , E > implements HashTable< K , E >
 {
    // Invariant of the Table class:
    //   1. The number of items in the table is in the instance variable manyItems.
@@ -31,35 +73,262 @@ public class TableDoubleHash< K , E >
    //      null.
    //   4. If an index i has been used at some point (now or in the past), then
    //      hasBeenUsed[i] is true; otherwise it is false.
+   //   5. Before a new key is added, manyItems + 1 is at most
+   //      maxLoadFactor * data.length, unless the table cannot grow any more
+   //      (or grownCapacity, overridden, keeps the capacity as it is).
+   //   6. An index i with hasBeenUsed[i] true but keys[i] null is a tombstone
+   //      left behind by remove. The number of tombstones is in the instance
+   //      variable tombstones, and manyItems + tombstones is at most
+   //      maxLoadFactor * data.length (or data.length if the table cannot
+   //      grow), so every search for a missing key ends at a never-used slot.
+   //   7. For every index i that holds a key, slotHashes[i] is
+   //      hashFunction.hash(keys[i]).
    private int manyItems;
+   private int tombstones;
    private Object[ ] keys;
    private Object[ ] data;
    private boolean[ ] hasBeenUsed;
+   private int[ ] slotHashes;
+   private double maxLoadFactor;
+   private final HashFunction hashFunction;
+
+   /**
+   * The maximum load factor used when none is given to the constructor.
+   **/
+   public static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+   /**
+   * The number of keys that <CODE>getAll</CODE> hashes, and whose first
+   * slots it loads, before searching for any of them.
+   **/
+   public static final int BATCH = 16;
 
    // instance variables to calculate collision frequency
    private int collisions;
 
+   // statistics about the searches, puts and rehashes, or null if none are
+   // being kept
+   private TableStatistics stats;
+
    /**
-   * Initialize an empty table with a specified capacity.
+   * Initialize an empty table with a specified capacity and the default
+   * maximum load factor.
    * @param <CODE>capacity</CODE>
-   *   the capacity for this new open-address hash table
+   *   the capacity for this new open-address hash table, rounded up to a
+   *   prime of at least 3
    * <dt><b>Postcondition:</b><dd>
-   *   This table is empty and has the specified capacity.
+   *   This table is empty, and its capacity is the smallest prime that is at
+   *   least <CODE>capacity</CODE> and at least 3.
    * @exception OutOfMemoryError
    *   Indicates insufficient memory for the specified capacity. 
    **/   
    public TableDoubleHash(int capacity)
+   {
+      this(capacity, DEFAULT_LOAD_FACTOR);
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity and maximum load
+   * factor.
+   * @param <CODE>capacity</CODE>
+   *   the initial capacity for this new open-address hash table, rounded
+   *   up to a prime of at least 3
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest fraction of the capacity that may be filled before the
+   *   table grows; 1.0 means the table only grows when it is full
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty, and its capacity is the smallest prime that is at
+   *   least <CODE>capacity</CODE> and at least 3.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is not positive or that
+   *   <CODE>maxLoadFactor</CODE> is not in the range (0, 1].
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity. 
+   **/   
+   public TableDoubleHash(int capacity, double maxLoadFactor)
+   {
+      this(capacity, maxLoadFactor, HashFunction.DEFAULT);
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity, maximum load
+   * factor and hash function.
+   * @param <CODE>capacity</CODE>
+   *   the initial capacity for this new open-address hash table, rounded
+   *   up to a prime of at least 3
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest fraction of the capacity that may be filled before the
+   *   table grows; 1.0 means the table only grows when it is full
+   * @param <CODE>hashFunction</CODE>
+   *   the hash function that picks each key's place in the table
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty, and its capacity is the smallest prime that is at
+   *   least <CODE>capacity</CODE> and at least 3.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is not positive or that
+   *   <CODE>maxLoadFactor</CODE> is not in the range (0, 1].
+   * @exception NullPointerException
+   *   Indicates that <CODE>hashFunction</CODE> is null.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public TableDoubleHash(int capacity, double maxLoadFactor,
+                          HashFunction hashFunction)
    {
       // The manyItems instance variable is automatically set to zero.
-      // which is the correct initial value. The three arrays are allocated to
-      // be the specified capacity. The boolean array is automatically
+      // which is the correct initial value. The four arrays are allocated to
+      // be the specified capacity, rounded up to a prime. The boolean array is automatically
       // initialized to falses, and the other two arrays are automatically
       // initialized to all null.
       if (capacity <= 0)
          throw new IllegalArgumentException("Capacity is negative");
+      if (!(maxLoadFactor > 0 && maxLoadFactor <= 1))
+         throw new IllegalArgumentException("Load factor must be in (0, 1]");
+      if (hashFunction == null)
+         throw new NullPointerException("Hash function is null");
+      this.maxLoadFactor = maxLoadFactor;
+      this.hashFunction = hashFunction;
+      capacity = Primes.nextPrime(Math.max(3, capacity));
       keys = new Object[capacity];
       data = new Object[capacity];
       hasBeenUsed = new boolean[capacity];
+      slotHashes = new int[capacity];
+   }
+
+
+   /**
+   * Builds a table from arrays of keys and elements, using several threads.
+   * The table has the default maximum load factor and hash function.
+   * @param <CODE>keys</CODE>
+   *   the non-null keys
+   * @param <CODE>elements</CODE>
+   *   the elements, where <CODE>elements[i]</CODE> goes with
+   *   <CODE>keys[i]</CODE>
+   * @param <CODE>parallelism</CODE>
+   *   the number of threads to use
+   * @return
+   *   a table with the smallest prime capacity that holds the keys within
+   *   the default maximum load factor. It is as if
+   *   <CODE>put(keys[i], elements[i])</CODE> had been called for each
+   *   <CODE>i</CODE> in increasing order, so for a key given more than once
+   *   the last element is kept.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>keys</CODE> and <CODE>elements</CODE> have
+   *   different lengths, or that <CODE>parallelism</CODE> is not positive.
+   * @exception IllegalStateException
+   *   Indicates that there are too many keys for one table.
+   * @exception NullPointerException
+   *   Indicates that one of the keys is null.
+   **/
+   public static < K , E > TableDoubleHash< K , E > build(K[ ] keys,
+                                                         E[ ] elements,
+                                                         int parallelism)
+   {
+      return build(keys, elements, parallelism, DEFAULT_LOAD_FACTOR,
+                   HashFunction.DEFAULT);
+   }
+
+
+   /**
+   * Builds a table from arrays of keys and elements, using several threads
+   * and a specified maximum load factor and hash function.
+   * @param <CODE>keys</CODE>
+   *   the non-null keys
+   * @param <CODE>elements</CODE>
+   *   the elements, where <CODE>elements[i]</CODE> goes with
+   *   <CODE>keys[i]</CODE>
+   * @param <CODE>parallelism</CODE>
+   *   the number of threads to use
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the maximum load factor of the table
+   * @param <CODE>hashFunction</CODE>
+   *   the hash function that picks each key's place in the table
+   * @return
+   *   a table with the smallest prime capacity that holds the keys within
+   *   <CODE>maxLoadFactor</CODE>. It is as if
+   *   <CODE>put(keys[i], elements[i])</CODE> had been called for each
+   *   <CODE>i</CODE> in increasing order, so for a key given more than once
+   *   the last element is kept.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>keys</CODE> and <CODE>elements</CODE> have
+   *   different lengths, that <CODE>parallelism</CODE> is not positive, or
+   *   that <CODE>maxLoadFactor</CODE> is not in the range (0, 1].
+   * @exception IllegalStateException
+   *   Indicates that there are too many keys for one table.
+   * @exception NullPointerException
+   *   Indicates that one of the keys, or <CODE>hashFunction</CODE>, is null.
+   **/
+   public static < K , E > TableDoubleHash< K , E > build(K[ ] keys,
+                                                         E[ ] elements,
+                                                         int parallelism,
+                                                         double maxLoadFactor,
+                                                         HashFunction hashFunction)
+   {
+      if (keys.length != elements.length)
+         throw new IllegalArgumentException("Keys and elements differ in length");
+      if (parallelism <= 0)
+         throw new IllegalArgumentException("Parallelism must be positive");
+      if (!(maxLoadFactor > 0 && maxLoadFactor <= 1))
+         throw new IllegalArgumentException("Load factor must be in (0, 1]");
+
+      TableDoubleHash< K , E > answer =
+         new TableDoubleHash< K , E >(ParallelBuild.capacity(keys.length, maxLoadFactor),
+                                      maxLoadFactor, hashFunction);
+
+      answer.fill(keys, elements, parallelism);
+      return answer;
+   }
+
+
+   private void fill(final Object[ ] sourceKeys, final Object[ ] sourceElements,
+                     int parallelism)
+   // Precondition: The table is empty, and its capacity is at least the
+   // number of keys.
+   // Postcondition: The keys and elements have been added as by put, on
+   // parallelism threads. Each thread claims the slots it fills with a
+   // compare-and-set, since a probe may land in a range of slots that
+   // another thread is filling.
+   {
+      manyItems = ParallelBuild.fill(sourceKeys, hashFunction, data.length,
+                                     parallelism, new ParallelBuild.Filler( )
+      {
+         public int fill(int[ ] hashes, int[ ] order, int from, int to)
+         {
+            int j, i, index, step;
+            Object existing;
+            int added = 0;
+
+            for (j = from; j < to; j++)
+            {
+               i = order[j];
+               step = 0;
+               for (index = hash(hashes[i]); ; index = nextIndex(index, step))
+               {
+                  existing = keys[index];
+                  if (existing == null)
+                     existing = ParallelBuild.claim(keys, index, sourceKeys[i]);
+                  if (existing == null)
+                  {  // The slot is now this key's.
+                     data[index] = sourceElements[i];
+                     slotHashes[index] = hashes[i];
+                     hasBeenUsed[index] = true;
+                     added++;
+                     break;
+                  }
+                  if (sourceKeys[i].equals(existing))
+                  {  // An earlier copy of the key, which only this thread adds
+                     data[index] = sourceElements[i];
+                     break;
+                  }
+                  if (step == 0)
+                     step = doubleHash(hashes[i]);
+               }
+            }
+            return added;
+         }
+      });
    }
    
    
@@ -86,19 +355,33 @@ public class TableDoubleHash< K , E >
    private int findIndex(K key)
    // Postcondition: If the specified key is found in the table, then the return
    // value is the index of the specified key. Otherwise, the return value is -1.
+   {
+      return findIndex(key, hashFunction.hash(key));
+   }
+
+
+   int findIndex(Object key, int h)
+   // Precondition: h is the hash of key.
+   // Postcondition: If the specified key is found in the table, then the return
+   // value is the index of the specified key. Otherwise, the return value is -1.
+   // Only keys whose stored hash is h are compared with equals, and the
+   // step is only computed once the first slot has been passed.
    {
       int count = 0;
-      int i = hash(key);
+      int i = hash(h);
+      int step = 0;
       
       while (count < data.length && hasBeenUsed[i])
       {
-         if (key.equals(keys[i]))
-            return i;
+         if (slotHashes[i] == h && key.equals(keys[i]))
+            return searched(i, count);
          count++;
-         i = nextIndex(i, key);
+         if (step == 0)
+            step = doubleHash(h);
+         i = nextIndex(i, step);
       }
       
-      return -1;
+      return searched(-1, count);
    }
       
    
@@ -126,29 +409,172 @@ public class TableDoubleHash< K , E >
    }
    
    
-   private int hash(Object key)
+   /**
+   * Retrieves the objects for a batch of keys.
+   * @param <CODE>keys</CODE>
+   *   the non-null keys to look for
+   * @param <CODE>elements</CODE>
+   *   the array that receives the objects
+   * <dt><b>Postcondition:</b><dd>
+   *   <CODE>elements[i]</CODE> is <CODE>get(keys[i])</CODE> for each
+   *   index <CODE>i</CODE> of <CODE>keys</CODE>. Any further entries of
+   *   <CODE>elements</CODE> are unchanged.
+   * @return
+   *   the number of keys that were found
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>elements</CODE> is shorter than
+   *   <CODE>keys</CODE>.
+   * @exception NullPointerException
+   *   Indicates that one of the keys is null.
+   **/
+   public int getAll(K[ ] keys, E[ ] elements)
+   {
+      if (elements.length < keys.length)
+         throw new IllegalArgumentException("Elements array is shorter than keys");
+
+      int[ ] hashes = new int[BATCH];
+      int[ ] homes = new int[BATCH];
+      int[ ] loadedHashes = new int[BATCH];
+      Object[ ] loaded = new Object[2 * BATCH];
+      int start, end, i, j, index;
+      int found = 0;
+
+      for (start = 0; start < keys.length; start += BATCH)
+      {
+         end = Math.min(start + BATCH, keys.length);
+         loadBatch(keys, start, end, hashes, homes, loadedHashes, loaded);
+         for (i = start; i < end; i++)
+         {
+            j = i - start;
+            if (loaded[2 * j] != null && loadedHashes[j] == hashes[j]
+                && keys[i].equals(loaded[2 * j]))
+            {  // The key is in its home slot.
+               searched(homes[j], 0);
+               elements[i] = (E) loaded[2 * j + 1];
+               found++;
+            }
+            else
+            {
+               index = findIndex(keys[i], hashes[j]);
+               if (index == -1)
+                  elements[i] = null;
+               else
+               {
+                  elements[i] = (E) data[index];
+                  found++;
+               }
+            }
+         }
+      }
+      return found;
+   }
+
+
+   /**
+   * Add a batch of new elements to this table. This has the same effect as
+   * calling <CODE>put</CODE> for each pair in turn, but every key is hashed
+   * before any is put, and the table grows at most once, up front, to the
+   * capacity the whole batch would need if none of its keys were in the
+   * table already.
+   * @param <CODE>keys</CODE>
+   *   the non-null keys to use for the new elements
+   * @param <CODE>elements</CODE>
+   *   the new elements, where <CODE>elements[i]</CODE> goes with
+   *   <CODE>keys[i]</CODE>
+   * <dt><b>Postcondition:</b><dd>
+   *   The table is as if <CODE>put(keys[i], elements[i])</CODE> had been
+   *   called for each <CODE>i</CODE> in increasing order, and
+   *   <CODE>getCollisions</CODE> reports the last of those puts.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>keys</CODE> and <CODE>elements</CODE> have
+   *   different lengths.
+   * @exception IllegalStateException
+   *   Indicates that the table is full and has reached its largest
+   *   possible capacity.
+   * @exception NullPointerException
+   *   Indicates that one of the keys is null.
+   **/
+   public void putAll(K[ ] keys, E[ ] elements)
+   {
+      if (keys.length != elements.length)
+         throw new IllegalArgumentException("Keys and elements differ in length");
+
+      int[ ] hashes = new int[keys.length];
+      int i;
+
+      for (i = 0; i < keys.length; i++)
+         hashes[i] = hashFunction.hash(keys[i]);
+      growFor((long) manyItems + keys.length);
+      for (i = 0; i < keys.length; i++)
+         put(keys[i], elements[i], hashes[i]);
+   }
+
+
+   private void growFor(long items)
+   // Postcondition: If items would push the table past its maximum load
+   // factor, then it has grown, through the same capacities that one put
+   // after another would have taken it, to the first that holds that many
+   // items (or the largest there is), with a single rehash.
+   {
+      int capacity = data.length;
+
+      while (items > maxLoadFactor * capacity && capacity < Primes.MAX_CAPACITY)
+         capacity = Primes.growCapacity(capacity);
+      if (capacity > data.length)
+         resize(capacity);
+   }
+
+
+   private void loadBatch(Object[ ] batch, int start, int end, int[ ] hashes,
+                          int[ ] homes, int[ ] loadedHashes, Object[ ] loaded)
+   // Postcondition: For each i from start to end - 1, with j = i - start,
+   // hashes[j] is the hash of batch[i] and homes[j] is the first slot of its
+   // probe sequence, and that slot's stored hash, key and element have been
+   // read into loadedHashes[j], loaded[2j] and loaded[2j + 1]. The reads for
+   // different keys do not depend on each other, so the processor can wait
+   // for all of their cache misses at the same time, and getAll settles a
+   // key found in its home slot without reading the table again.
+   {
+      int i, j, index;
+
+      for (i = start; i < end; i++)
+         hashes[i - start] = hashFunction.hash(batch[i]);
+      for (j = 0; j < end - start; j++)
+      {
+         index = hash(hashes[j]);
+         homes[j] = index;
+         loadedHashes[j] = slotHashes[index];
+         loaded[2 * j] = keys[index];
+         loaded[2 * j + 1] = data[index];
+      }
+   }
+
+
+   private int hash(int h)
    // The return value is a valid index of the table�s arrays. The index is
-   // calculated as the remainder when the absolute value of the key�s
-   // hash code is divided by the size of the table�s arrays.
+   // calculated by the hash function from the key�s hash h and the size of
+   // the table�s arrays.
    {
-      return Math.abs(key.hashCode( )) % data.length;
+      return hashFunction.index(h, data.length);
    }
 
-   private int doubleHash(Object key)
+   private int doubleHash(int h)
+   // Precondition: data.length is at least 3.
    // This method is a second hash function. This function
    // is called if a collision occurs from placing an element
    // in the table. Method returns int calculated by 1 + mod data.length - 2
+   // of the key's hash h with its sign bit cleared
    {
-      return 1 + Math.abs(key.hashCode( )) % (data.length - 2);
+      return 1 + (h & 0x7FFFFFFF) % (data.length - 2);
    }
    
    
-   private int nextIndex(int i, K key)
+   private int nextIndex(int i, int step)
    // determine where to place the next element based
-   // on the value returned by the second hash function
+   // on the step returned by the second hash function
    {
       // ensure that index does not exceed length
-      return (i + doubleHash(key)) % data.length;
+      return (int) (((long) i + step) % data.length);
    }
    
    
@@ -159,46 +585,111 @@ public class TableDoubleHash< K , E >
    * @param <CODE>element</CODE>
    *   the new element that�s being added to this table
    * <dt><b>Precondition:</b><dd>
-   *   If there is not already an element with the specified <CODE>key</CODE>,
-   *   then this table�s size must be less than its capacity 
-   *   (i.e., <CODE>size() < capacity()</CODE>). Also, neither <CODE>key</CODE>
-   *   nor </CODE>element</CODE> is null.
+   *   Neither <CODE>key</CODE> nor </CODE>element</CODE> is null.
    * <dt><b>Postcondition:</b><dd>
    *   If this table already has an object with the specified <CODE>key</CODE>,
    *   then that object is replaced by </CODE>element</CODE>, and the return 
    *   value is a reference to the replaced object. Otherwise, the new 
    *   </CODE>element</CODE> is added with the specified <CODE>key</CODE>
-   *   and the return value is null.
+   *   and the return value is null. If adding the element would push the
+   *   table past its maximum load factor, the table first grows.
    * @exception IllegalStateException
-   *   Indicates that there is no room for a new object in this table.
+   *   Indicates that the table is full and has reached its largest
+   *   possible capacity.
    * @exception NullPointerException
    *   Indicates that <CODE>key</CODE> or <CODE>element</CODE> is null.   
    **/
    public E put(K key, E element)
    {
-      collisions = 0;
-      int index = findIndex(key);
-      E answer;
+      return put(key, element, hashFunction.hash(key));
+   }
+
+
+   private E put(Object key, Object element, int h)
+   // Precondition: h is the hash of key.
+   // Postcondition: The same as for the public put.
+   {
+      int index = findIndex(key, h);
       
       if (index != -1)
-      {  // The key is already in the table.
-         answer = (E) data[index];
-         data[index] = element;
-         return answer;
-      }
-      else if (manyItems < data.length)
+         return replace(index, element);   // The key is already in the table.
+      insert(key, element, h);
+      return null;
+   }
+
+
+   int hashOf(Object key)
+   // The return value is the hash of key under this table's hash function.
+   {
+      return hashFunction.hash(key);
+   }
+
+
+   E elementAt(int index)
+   // Precondition: Index index holds a key.
+   // The return value is the element of that key.
+   {
+      return (E) data[index];
+   }
+
+
+   boolean isOccupied(int index)
+   // The return value is true if index index holds a key.
+   {
+      return keys[index] != null;
+   }
+
+
+   E replace(int index, Object element)
+   // Precondition: Index index holds a key.
+   // Postcondition: The key's element is element, the put has been counted
+   // with no collisions, and the return value is the element it replaced.
+   {
+      E answer = (E) data[index];
+
+      collisions = 0;
+      data[index] = element;
+      countPut( );
+      return answer;
+   }
+
+
+   int insert(Object key, Object element, int h)
+   // Precondition: The key is not in the table, and h is its hash.
+   // Postcondition: The key and element have been added, the table having
+   // first grown or been rehashed if it was too full, and the return value
+   // is the index that holds them.
+   // Throws: IllegalStateException if the table is full and cannot grow.
+   {
+      int index;
+
+      if (manyItems + 1 > maxLoadFactor * data.length)
+         resize(grownCapacity( ));
+
+      if (manyItems < data.length)
       {  // The key is not yet in this Table.
-         index = hash(key);
-         while (keys[index] != null) {
-            // collision has occurred, find new index
-            index = nextIndex(index, key);
-            collisions++;
+         index = insertionIndex(h);
+         if (!hasBeenUsed[index]
+             && manyItems + tombstones + 1 > maxLoadFactor * data.length)
+         {  // Claiming a never-used slot would leave too few of them to end
+            // searches, so clear out the tombstones. If the table is more
+            // than half full even without them, grow it instead so that the
+            // next cleanup is still far away.
+            if (2 * (manyItems + 1) > maxLoadFactor * data.length)
+               resize(grownCapacity( ));
+            else
+               resize(data.length);
+            index = insertionIndex(h);
          }
+         if (hasBeenUsed[index])
+            tombstones--;
          keys[index] = key;
          data[index] = element;
+         slotHashes[index] = h;
          hasBeenUsed[index] = true;
          manyItems++;
-         return null;
+         countPut( );
+         return index;
       }
       else
       {  // The table is full.
@@ -229,17 +720,312 @@ public class TableDoubleHash< K , E >
       E answer = null;
       
       if (index != -1)
-      {
-         answer = (E) data[index];
-         keys[index] = null;
-         data[index] = null;
-	      manyItems--;
-      }
+         answer = removeAt(index);
       
       return answer;
    }
 
 
+   E removeAt(int index)
+   // Precondition: Index index holds a key.
+   // Postcondition: The key and its element have been removed, leaving a
+   // tombstone, and the return value is the element. If that made too many
+   // tombstones, the table has been rehashed at the same capacity.
+   {
+      E answer = (E) data[index];
+
+      keys[index] = null;
+      data[index] = null;
+      tombstones++;
+      manyItems--;
+      if (2 * tombstones > maxLoadFactor * data.length)
+         resize(data.length);
+      return answer;
+   }
+
+
+   private int insertionIndex(int h)
+   // Precondition: manyItems < data.length, and h is the hash of a key.
+   // Postcondition: The return value is the first index on the key's probe
+   // sequence that holds no key, which is either never used or a tombstone.
+   // The collisions instance variable is the number of occupied slots that
+   // were passed over on the way.
+   {
+      int index = hash(h);
+      int step = 0;
+
+      collisions = 0;
+      while (keys[index] != null) {
+         if (step == 0)
+            step = doubleHash(h);
+         index = nextIndex(index, step);
+         collisions++;
+      }
+      return index;
+   }
+
+
+   private void resize(int newCapacity)
+   // Postcondition: If newCapacity is at least the current capacity, then
+   // the three arrays have been replaced by arrays of length newCapacity and
+   // every element has been rehashed into them. Tombstones are not carried
+   // over, so a newCapacity equal to the current capacity simply clears
+   // them out. Each key is placed by its stored hash, so hashCode is not
+   // called.
+   {
+      if (newCapacity < data.length)
+         return;
+
+      Object[ ] oldKeys = keys;
+      Object[ ] oldData = data;
+      int[ ] oldHashes = slotHashes;
+      long start = resizeStarted( );
+      int i, h, index, step;
+
+      keys = new Object[newCapacity];
+      data = new Object[newCapacity];
+      hasBeenUsed = new boolean[newCapacity];
+      slotHashes = new int[newCapacity];
+      tombstones = 0;
+      rehashStarted(newCapacity);
+      for (i = 0; i < oldKeys.length; i++)
+      {
+         if (oldKeys[i] != null)
+         {
+            h = oldHashes[i];
+            index = hash(h);
+            step = 0;
+            while (keys[index] != null)
+            {
+               if (step == 0)
+                  step = doubleHash(h);
+               index = nextIndex(index, step);
+            }
+            keys[index] = oldKeys[i];
+            data[index] = oldData[i];
+            slotHashes[index] = h;
+            hasBeenUsed[index] = true;
+            slotMoved(i, index);
+         }
+      }
+      rehashFinished( );
+      resizeFinished(start);
+   }
+
+
+   int grownCapacity( )
+   // The return value is the capacity the table grows to when it is too
+   // full: a prime roughly twice the current one. A subclass whose capacity
+   // is fixed returns the current capacity, so that the table is only
+   // rehashed to clear its tombstones.
+   {
+      return Primes.growCapacity(data.length);
+   }
+
+
+   void rehashStarted(int capacity)
+   // Postcondition: None in this class. A rehash calls this once its new
+   // arrays of length capacity are made, then slotMoved for each key, then
+   // rehashFinished, so that a subclass which keeps arrays of its own beside
+   // the slots can move their entries along with the keys.
+   {
+   }
+
+
+   void slotMoved(int from, int to)
+   // Postcondition: None in this class. A rehash calls this after it moves
+   // the key at index from of the old arrays to index to of the new ones.
+   {
+   }
+
+
+   void rehashFinished( )
+   // Postcondition: None in this class. A rehash calls this once every key
+   // has been moved.
+   {
+   }
+
+
+   /**
+   * Determines the number of elements in this table.
+   * @param - none
+   * @return
+   *   the number of elements in this table
+   **/
+   public int size( )
+   {
+      return manyItems;
+   }
+
+
+   /**
+   * Determines the current capacity of this table.
+   * @param - none
+   * @return
+   *   the length of the table's arrays; this grows as elements are added
+   **/
+   public int capacity( )
+   {
+      return data.length;
+   }
+
+
+   /**
+   * Determines the number of tombstones in this table.
+   * @param - none
+   * @return
+   *   the number of slots that held an element which has since been removed
+   *   and that have not yet been reused or cleared by a rehash
+   **/
+   public int getTombstones( )
+   {
+      return tombstones;
+   }
+
+
+   /**
+   * Makes an unchanging copy of this table for reading.
+   * @param - none
+   * @return
+   *   a <CODE>FrozenTable</CODE> with the same keys, elements and hash
+   *   function, which is smaller and faster to search than this table and
+   *   may be shared between threads; later changes to this table do not
+   *   affect it
+   **/
+   public FrozenTable< K , E > freeze( )
+   {
+      Object[ ] frozenKeys = new Object[manyItems];
+      Object[ ] frozenData = new Object[manyItems];
+      int i;
+      int n = 0;
+
+      for (i = 0; i < keys.length; i++)
+      {
+         if (keys[i] != null)
+         {
+            frozenKeys[n] = keys[i];
+            frozenData[n] = data[i];
+            n++;
+         }
+      }
+      return new FrozenTable< K , E >(frozenKeys, frozenData, hashFunction);
+   }
+
+
+   /**
+   * Starts keeping statistics for this table, if it is not already doing so.
+   * @param - none
+   * @return
+   *   the statistics, which are brought up to date by every later search,
+   *   <CODE>put</CODE> and rehash
+   * @exception IllegalStateException
+   *   Indicates that statistics have been turned off with
+   *   <CODE>-Dtable.statistics=false</CODE>.
+   **/
+   public TableStatistics enableStatistics( )
+   {
+      if (!TableStatistics.ENABLED)
+         throw new IllegalStateException("Table statistics are turned off");
+      if (stats == null)
+      {
+         stats = new TableStatistics(new TableStatistics.Gauges( )
+         {
+            public int size( )
+            {
+               return manyItems;
+            }
+
+            public int capacity( )
+            {
+               return data.length;
+            }
+
+            public int tombstones( )
+            {
+               return tombstones;
+            }
+
+            public long[ ] chainLengths( )
+            {
+               return null;
+            }
+         });
+      }
+      return stats;
+   }
+
+
+   /**
+   * Stops keeping statistics for this table.
+   * @param - none
+   * <dt><b>Postcondition:</b><dd>
+   *   The table no longer updates its statistics, and
+   *   <CODE>getStatistics</CODE> returns null until
+   *   <CODE>enableStatistics</CODE> is called again.
+   **/
+   public void disableStatistics( )
+   {
+      stats = null;
+   }
+
+
+   /**
+   * Gives the statistics this table is keeping.
+   * @param - none
+   * @return
+   *   the statistics, or null if this table is not keeping any
+   **/
+   public TableStatistics getStatistics( )
+   {
+      return stats;
+   }
+
+
+   private int searched(int i, int count)
+   // Postcondition: If statistics are being kept, a search that passed over
+   // count keys and ended at index i (or -1 if the key was not found) has
+   // been counted. The return value is i.
+   {
+      if (TableStatistics.ENABLED && stats != null)
+      {
+         if (i == -1)
+            stats.recordMiss(count);
+         else
+            stats.recordHit(count);
+      }
+      return i;
+   }
+
+
+   private void countPut( )
+   // Postcondition: If statistics are being kept, a put with the current
+   // number of collisions has been counted.
+   {
+      if (TableStatistics.ENABLED && stats != null)
+         stats.recordPut(collisions);
+   }
+
+
+   private long resizeStarted( )
+   // The return value is the current time in nanoseconds if statistics are
+   // being kept, and zero otherwise.
+   {
+      if (TableStatistics.ENABLED && stats != null)
+         return System.nanoTime( );
+      else
+         return 0;
+   }
+
+
+   private void resizeFinished(long start)
+   // Postcondition: If statistics are being kept, a rehash that started at
+   // time start has been counted.
+   {
+      if (TableStatistics.ENABLED && stats != null)
+         stats.recordResize(System.nanoTime( ) - start);
+   }
+
+
    /**
    * returns the number of collisions from put method.
    * @param
@@ -0,0 +1,69 @@
+/*
+ * Author: Ammaad Denmark, Tim Tabachuk
+ * Filename: TableDoubleHashTest.java
+ *
+ * Regression tests for the double-hashing tables. Run with
+ *     java TableDoubleHashTest
+ * which prints "ok" or stops with the first failure.
+ *
+*/
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class TableDoubleHashTest {
+    public static void main(String[] args) {
+        tinyCapacity();
+        compositeCapacity();
+        System.out.println("ok");
+    }
+
+    // A table of 1 or 2 slots once divided by data.length - 2 when it
+    // worked out the probe step, even for the first put.
+    static void tinyCapacity() {
+        for (int capacity = 1; capacity <= 2; capacity++) {
+            TableDoubleHash<Integer, String> table = new TableDoubleHash<Integer, String>(capacity);
+
+            check(table.put(1, "a") == null, "first put with capacity " + capacity);
+            check("a".equals(table.get(1)), "get with capacity " + capacity);
+            check("a".equals(table.put(1, "b")), "replace with capacity " + capacity);
+            for (int key = 2; key <= 10; key++)
+                table.put(key, "k" + key);
+            check(table.size() == 10 && "b".equals(table.get(1)) && "k10".equals(table.get(10)),
+                  "growth from capacity " + capacity);
+            check(table.get(11) == null && "b".equals(table.remove(1)) && !table.containsKey(1),
+                  "remove with capacity " + capacity);
+        }
+    }
+
+    // A composite capacity used to be kept as given, so a key whose step
+    // shared a factor with it probed only a few slots; with 100 slots the
+    // 35th of these keys cycled through 4 full slots forever.
+    static void compositeCapacity() {
+        for (int capacity : new int[] {4, 9, 100, 1000, 4096}) {
+            TableDoubleHash<Integer, Integer> table = new TableDoubleHash<Integer, Integer>(capacity, 1.0);
+            IntTableDoubleHash<Integer> intTable = new IntTableDoubleHash<Integer>(capacity, 1.0);
+            Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+            Random random = new Random(1);
+
+            check(Primes.isPrime(table.capacity()) && table.capacity() >= capacity,
+                  "capacity " + capacity + " became " + table.capacity());
+            for (int i = 0; i < 3 * capacity; i++) {
+                int key = random.nextInt();
+                table.put(key, i);
+                intTable.put(key, i);
+                expected.put(key, i);
+            }
+            check(table.size() == expected.size(), "size with capacity " + capacity);
+            for (Map.Entry<Integer, Integer> e : expected.entrySet()) {
+                check(e.getValue().equals(table.get(e.getKey())), "get with capacity " + capacity);
+                check(e.getValue().equals(intTable.get(e.getKey())), "int get with capacity " + capacity);
+            }
+        }
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
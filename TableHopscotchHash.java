@@ -0,0 +1,531 @@
+// File: TableHopscotchHash.java
+
+import java.util.Arrays;
+
+
+/******************************************************************************
+* A <CODE>TableHopscotchHash</CODE> is an open-address hash table that uses
+* hopscotch hashing (Herlihy, Shavit and Tzafrir). Every key is kept within
+* <CODE>NEIGHBORHOOD</CODE> slots of its home index, so a search never looks
+* further than that, even when the table is 90% full or more.
+*
+* Each home index has a hop bitmap: bit <I>j</I> of <CODE>hops[i]</CODE>
+* is set when slot <I>i + j</I> holds a key whose home is <I>i</I>. A
+* search reads the bitmap of the key's home and compares only the slots
+* whose bits are set, which lie within a cache line or two of the home, and
+* stops when the bits run out instead of at an empty slot. As in
+* <CODE>Table</CODE>, each slot keeps its key's full hash, and
+* <CODE>equals</CODE> is only called when the hash matches.
+*
+* An insertion probes forward linearly for a free slot, as
+* <CODE>Table</CODE> does, and <CODE>getCollisions</CODE> reports the number
+* of occupied slots it passed, so the two tables can be compared directly.
+* If the free slot is too far from home, an earlier key whose own
+* neighborhood still covers the free slot is moved into it, and the slot it
+* left is tried instead, hopping the free slot back until it is close
+* enough. If no key can move, the table grows, unless it is less than half
+* full: then the neighborhood is crowded by keys that share a home or a
+* hash, which growing would not separate, and the key goes into a small
+* overflow stash that a search looks through after the neighborhood. Keys
+* with equal hash codes thus cost time, as in any hash table, but never
+* make the table grow. A removal simply empties its slot and clears its
+* bit, so there are no tombstones.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class TableHopscotchHash< K , E > implements HashTable< K , E >
+{
+   // Invariant of the TableHopscotchHash class:
+   //   1. The number of items in the table is in the instance variable
+   //      manyItems.
+   //   2. A key whose hash is h has home index hashFunction.index(h,
+   //      keys.length) and is kept at a slot i that is fewer than
+   //      NEIGHBORHOOD slots past its home (wrapping around the end of the
+   //      arrays), with its element at data[i] and its hash at
+   //      slotHashes[i].
+   //   3. Bit j of hops[home] is set exactly when slot home + j (wrapping
+   //      around) holds a key whose home index is home.
+   //   4. A slot i that holds no key has keys[i] and data[i] set to null.
+   //   5. The keys that could not be brought into their neighborhoods are
+   //      in stashKeys[0] through stashKeys[stashSize - 1], with their
+   //      elements and hashes at the same indexes of stashData and
+   //      stashHashes. manyItems counts them too.
+   //   6. Before a new key is added, manyItems + 1 is at most
+   //      maxLoadFactor * keys.length, unless the table cannot grow any more.
+   private int manyItems;
+   private Object[ ] keys;
+   private Object[ ] data;
+   private int[ ] slotHashes;
+   private int[ ] hops;
+   private Object[ ] stashKeys;
+   private Object[ ] stashData;
+   private int[ ] stashHashes;
+   private int stashSize;
+   private double maxLoadFactor;
+   private final HashFunction hashFunction;
+
+   /**
+   * The number of slots, starting with its home index, that may hold a
+   * key. It is the number of bits in a hop bitmap.
+   **/
+   public static final int NEIGHBORHOOD = 32;
+
+   /**
+   * The maximum load factor used when none is given to the constructor.
+   * Since a search never passes more than <CODE>NEIGHBORHOOD</CODE> slots,
+   * the table can be kept fuller than a <CODE>Table</CODE>.
+   **/
+   public static final double DEFAULT_LOAD_FACTOR = 0.9;
+
+   // instance variables to calculate collision frequency
+   private int collisions;
+
+   /**
+   * Initialize an empty table with a specified capacity and the default
+   * maximum load factor.
+   * @param <CODE>capacity</CODE>
+   *   the capacity for this new open-address hash table
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has the specified capacity.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is not positive.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public TableHopscotchHash(int capacity)
+   {
+      this(capacity, DEFAULT_LOAD_FACTOR);
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity and maximum load
+   * factor.
+   * @param <CODE>capacity</CODE>
+   *   the initial capacity for this new open-address hash table
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest fraction of the capacity that may be filled before the
+   *   table grows; 1.0 means the table only grows when it is full or a key
+   *   cannot be brought into its neighborhood
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has the specified capacity.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is not positive or that
+   *   <CODE>maxLoadFactor</CODE> is not in the range (0, 1].
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public TableHopscotchHash(int capacity, double maxLoadFactor)
+   {
+      this(capacity, maxLoadFactor, HashFunction.DEFAULT);
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity, maximum load
+   * factor and hash function.
+   * @param <CODE>capacity</CODE>
+   *   the initial capacity for this new open-address hash table
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest fraction of the capacity that may be filled before the
+   *   table grows; 1.0 means the table only grows when it is full or a key
+   *   cannot be brought into its neighborhood
+   * @param <CODE>hashFunction</CODE>
+   *   the hash function that picks each key's home index
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has the specified capacity.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is not positive or that
+   *   <CODE>maxLoadFactor</CODE> is not in the range (0, 1].
+   * @exception NullPointerException
+   *   Indicates that <CODE>hashFunction</CODE> is null.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public TableHopscotchHash(int capacity, double maxLoadFactor,
+                             HashFunction hashFunction)
+   {
+      if (capacity <= 0)
+         throw new IllegalArgumentException("Capacity is negative");
+      if (!(maxLoadFactor > 0 && maxLoadFactor <= 1))
+         throw new IllegalArgumentException("Load factor must be in (0, 1]");
+      if (hashFunction == null)
+         throw new NullPointerException("Hash function is null");
+      this.maxLoadFactor = maxLoadFactor;
+      this.hashFunction = hashFunction;
+      allocate(capacity);
+   }
+
+
+   private void allocate(int capacity)
+   // Postcondition: The four arrays have been replaced by empty arrays of
+   // length capacity, and the stash is empty.
+   {
+      keys = new Object[capacity];
+      data = new Object[capacity];
+      slotHashes = new int[capacity];
+      hops = new int[capacity];
+      stashKeys = new Object[0];
+      stashData = new Object[0];
+      stashHashes = new int[0];
+      stashSize = 0;
+   }
+
+
+   /**
+   * Determines whether a specified key is in this table.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   <CODE>true</CODE> (if this table contains an object with the specified
+   *   key); <CODE>false</CODE> otherwise.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public boolean containsKey(K key)
+   {
+      int h = hashFunction.hash(key);
+
+      return findIndex(key, h) != -1 || findStashIndex(key, h) != -1;
+   }
+
+
+   private int findIndex(Object key, int h)
+   // Precondition: h is hashFunction.hash(key).
+   // Postcondition: If the specified key is found in the table, then the return
+   // value is the index of its slot. Otherwise, the return value is -1. Only
+   // the slots in the hop bitmap of the key's home are looked at.
+   {
+      int home = hashFunction.index(h, keys.length);
+      int bits = hops[home];
+      int i;
+
+      while (bits != 0)
+      {
+         i = wrap(home + Integer.numberOfTrailingZeros(bits));
+         if (slotHashes[i] == h && key.equals(keys[i]))
+            return i;
+         bits &= bits - 1;
+      }
+      return -1;
+   }
+
+
+   private int findStashIndex(Object key, int h)
+   // Precondition: h is hashFunction.hash(key).
+   // Postcondition: If the specified key is in the stash, then the return
+   // value is its index there. Otherwise, the return value is -1.
+   {
+      int s;
+
+      for (s = 0; s < stashSize; s++)
+      {
+         if (stashHashes[s] == h && key.equals(stashKeys[s]))
+            return s;
+      }
+      return -1;
+   }
+
+
+   private int wrap(int i)
+   // Precondition: -keys.length <= i < 2 * keys.length.
+   // The return value is i moved into the range of the arrays' indexes by
+   // adding or subtracting keys.length.
+   {
+      if (i >= keys.length)
+         return i - keys.length;
+      else if (i < 0)
+         return i + keys.length;
+      else
+         return i;
+   }
+
+
+   /**
+   * Retrieves an object for a specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   a reference to the object with the specified <CODE>key</CODE> (if this
+   *   table contains an such an object);  null otherwise.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E get(K key)
+   {
+      int h = hashFunction.hash(key);
+      int index = findIndex(key, h);
+
+      if (index != -1)
+         return (E) data[index];
+      index = findStashIndex(key, h);
+      if (index != -1)
+         return (E) stashData[index];
+      else
+         return null;
+   }
+
+
+   /**
+   * Add a new element to this table, using the specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to use for the new element
+   * @param <CODE>element</CODE>
+   *   the new element that's being added to this table
+   * <dt><b>Postcondition:</b><dd>
+   *   If this table already has an object with the specified
+   *   <CODE>key</CODE>, then that object is replaced by
+   *   <CODE>element</CODE>, and the return value is a reference to the
+   *   replaced object. Otherwise, the new <CODE>element</CODE> is added
+   *   with the specified <CODE>key</CODE> and the return value is null. If
+   *   adding the element would push the table past its maximum load
+   *   factor, the table first grows. If the key cannot be brought within
+   *   its neighborhood, the table grows when it is at least half full, and
+   *   otherwise the key is put in the overflow stash.
+   * @exception IllegalStateException
+   *   Indicates that the table is full and has reached its largest
+   *   possible capacity.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> or <CODE>element</CODE> is null.
+   **/
+   public E put(K key, E element)
+   {
+      int h;
+      int index;
+      E answer;
+
+      if (key == null || element == null)
+         throw new NullPointerException("Key or Element is null");
+      h = hashFunction.hash(key);
+      collisions = 0;
+      index = findIndex(key, h);
+      if (index != -1)
+      {  // The key is already in the table.
+         answer = (E) data[index];
+         data[index] = element;
+         return answer;
+      }
+      index = findStashIndex(key, h);
+      if (index != -1)
+      {  // The key is already in the stash.
+         answer = (E) stashData[index];
+         stashData[index] = element;
+         return answer;
+      }
+
+      if (manyItems + 1 > maxLoadFactor * keys.length)
+         resize(Primes.growCapacity(keys.length));
+      while (!place(key, element, h))
+      {
+         if (manyItems < keys.length / 2)
+         {
+            stash(key, element, h);
+            break;
+         }
+         if (keys.length == Primes.MAX_CAPACITY)
+            throw new IllegalStateException("Table is full.");
+         resize(Primes.growCapacity(keys.length));
+      }
+      manyItems++;
+      return null;
+   }
+
+
+   private boolean place(Object key, Object element, int h)
+   // Precondition: The key is not in the table, and h is its hash.
+   // Postcondition: If a free slot could be found and hopped back to within
+   // NEIGHBORHOOD slots of the key's home, then the key and element are in
+   // it and the return value is true. Otherwise the return value is false;
+   // some keys may have moved, but the table holds the same keys as before.
+   // Either way, the collisions instance variable is the number of occupied
+   // slots passed over while looking for a free slot.
+   {
+      int home = hashFunction.index(h, keys.length);
+      int free = home;
+      int distance = 0;
+      int back, bucket, bits, j, from;
+
+      collisions = 0;
+      while (keys[free] != null)
+      {
+         distance++;
+         if (distance == keys.length)
+            return false;
+         free = wrap(free + 1);
+         collisions++;
+      }
+
+      while (distance >= NEIGHBORHOOD)
+      {  // Move the key nearest its own home, among those whose neighborhood
+         // reaches the free slot, into it. The furthest home is tried first
+         // so that the free slot hops back as far as possible.
+         from = -1;
+         for (back = NEIGHBORHOOD - 1; back > 0 && from == -1; back--)
+         {
+            bucket = wrap(free - back);
+            bits = hops[bucket] & ((1 << back) - 1);
+            if (bits != 0)
+            {
+               j = Integer.numberOfTrailingZeros(bits);
+               from = wrap(bucket + j);
+               keys[free] = keys[from];
+               data[free] = data[from];
+               slotHashes[free] = slotHashes[from];
+               hops[bucket] = (hops[bucket] & ~(1 << j)) | (1 << back);
+               keys[from] = null;
+               data[from] = null;
+               distance -= back - j;
+               free = from;
+            }
+         }
+         if (from == -1)
+            return false;
+      }
+
+      keys[free] = key;
+      data[free] = element;
+      slotHashes[free] = h;
+      hops[home] |= 1 << distance;
+      return true;
+   }
+
+
+   private void stash(Object key, Object element, int h)
+   // Precondition: The key is not in the table, and h is its hash.
+   // Postcondition: The key, element and hash have been added to the end of
+   // the stash, whose arrays are doubled in length when they are full.
+   {
+      int length;
+
+      if (stashSize == stashKeys.length)
+      {
+         length = Math.max(4, 2 * stashSize);
+         stashKeys = Arrays.copyOf(stashKeys, length);
+         stashData = Arrays.copyOf(stashData, length);
+         stashHashes = Arrays.copyOf(stashHashes, length);
+      }
+      stashKeys[stashSize] = key;
+      stashData[stashSize] = element;
+      stashHashes[stashSize] = h;
+      stashSize++;
+   }
+
+
+   /**
+   * Removes an object for a specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * <dt><b>Postcondition:</b><dd>
+   *   If an object was found with the specified <CODE>key</CODE>, then that
+   *   object has been removed from this table and is returned; otherwise,
+   *   this table is unchanged and the null reference is returned.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E remove(K key)
+   {
+      int h = hashFunction.hash(key);
+      int index = findIndex(key, h);
+      int home;
+      E answer = null;
+
+      if (index != -1)
+      {
+         home = hashFunction.index(h, keys.length);
+         answer = (E) data[index];
+         keys[index] = null;
+         data[index] = null;
+         hops[home] &= ~(1 << wrap(index - home));
+         manyItems--;
+         return answer;
+      }
+      index = findStashIndex(key, h);
+      if (index != -1)
+      {  // Move the last stashed key into the emptied place.
+         answer = (E) stashData[index];
+         stashSize--;
+         stashKeys[index] = stashKeys[stashSize];
+         stashData[index] = stashData[stashSize];
+         stashHashes[index] = stashHashes[stashSize];
+         stashKeys[stashSize] = null;
+         stashData[stashSize] = null;
+         manyItems--;
+      }
+      return answer;
+   }
+
+
+   private void resize(int newCapacity)
+   // Postcondition: If newCapacity is larger than the current capacity, then
+   // the arrays have been replaced by arrays of that length and every
+   // element, stashed ones included, has been placed in them by its stored
+   // hash. A key that does not fit in its neighborhood goes into the new
+   // stash. The entries are placed in a separate table whose arrays are
+   // only taken over at the end, so if memory runs out this table is left
+   // as it was.
+   {
+      if (newCapacity <= keys.length)
+         return;
+
+      TableHopscotchHash< K , E > bigger =
+         new TableHopscotchHash< K , E >(newCapacity, maxLoadFactor, hashFunction);
+      int i;
+
+      for (i = 0; i < keys.length; i++)
+      {
+         if (keys[i] != null && !bigger.place(keys[i], data[i], slotHashes[i]))
+            bigger.stash(keys[i], data[i], slotHashes[i]);
+      }
+      for (i = 0; i < stashSize; i++)
+      {
+         if (!bigger.place(stashKeys[i], stashData[i], stashHashes[i]))
+            bigger.stash(stashKeys[i], stashData[i], stashHashes[i]);
+      }
+      keys = bigger.keys;
+      data = bigger.data;
+      slotHashes = bigger.slotHashes;
+      hops = bigger.hops;
+      stashKeys = bigger.stashKeys;
+      stashData = bigger.stashData;
+      stashHashes = bigger.stashHashes;
+      stashSize = bigger.stashSize;
+   }
+
+
+   /**
+   * Determines the number of elements in this table.
+   * @param - none
+   * @return
+   *   the number of elements in this table
+   **/
+   public int size( )
+   {
+      return manyItems;
+   }
+
+
+   /**
+   * Determines the current capacity of this table.
+   * @param - none
+   * @return
+   *   the length of the table's arrays; this grows as elements are added
+   **/
+   public int capacity( )
+   {
+      return keys.length;
+   }
+
+
+   /**
+   * Method returns the number of collisions when attempting to place an
+   * object in the table
+   * @return
+   *   the number of occupied slots the last put passed over while looking
+   *   for a free slot
+   **/
+   public int getCollisions( )
+   {
+      return collisions;
+   }
+}
@@ -0,0 +1,455 @@
+// File: TableInterleaved.java
+
+
+/******************************************************************************
+* A <CODE>TableInterleaved</CODE> is an open-address hash table with the
+* same behavior as <CODE>Table</CODE> (linear probing) or
+* <CODE>TableDoubleHash</CODE> (double hashing), but a different memory
+* layout. Those tables keep keys, elements and <CODE>hasBeenUsed</CODE>
+* flags in three arrays, so a successful search touches three cache lines.
+* Here every slot is a pair of neighbouring entries in a single
+* <CODE>Object[ ]</CODE>, the key at <CODE>2*i</CODE> and its element at
+* <CODE>2*i + 1</CODE>, and the state of a slot is kept in the key entry
+* itself: null for a slot that has never been used, and the private
+* <CODE>TOMBSTONE</CODE> object for one whose element was removed. A hit
+* therefore reads one cache line (unless the pair straddles two), and a
+* linear probe walks along the same lines it has just loaded.
+*
+* The table grows, reuses tombstones and clears them by rehashing exactly
+* as <CODE>TableDoubleHash</CODE> does. Linear probing is the default;
+* double hashing is chosen with a constructor argument.
+* <CODE>HashBenchmark</CODE> measures both layouts side by side
+* (<CODE>interleaved-linear</CODE> and <CODE>interleaved-double</CODE>).
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class TableInterleaved< K , E > implements HashTable< K , E >
+{
+   // Invariant of the TableInterleaved class:
+   //   1. The number of items in the table is in the instance variable
+   //      manyItems, and the capacity is slots.length / 2.
+   //   2. The preferred slot for an element with a given key is hash(key).
+   //      If a collision occurs, then nextIndex steps forward by step(key),
+   //      which is 1 for linear probing, to find the next open slot. An
+   //      element in slot i is at slots[2*i + 1], and its key at slots[2*i].
+   //   3. A slot i that has never been used has slots[2*i] and
+   //      slots[2*i + 1] null. A slot whose element was removed is a
+   //      tombstone: slots[2*i] is TOMBSTONE and slots[2*i + 1] is null. The
+   //      number of tombstones is in tombstones.
+   //   4. Before a new key is added, manyItems + 1 is at most
+   //      maxLoadFactor * capacity, and manyItems + tombstones is at most
+   //      that too (or the capacity if the table cannot grow), so every
+   //      search for a missing key ends at a never-used slot.
+   private int manyItems;
+   private int tombstones;
+   private Object[ ] slots;
+   private double maxLoadFactor;
+   private final boolean doubleHashing;
+   private final HashFunction hashFunction;
+
+   /**
+   * The maximum load factor used when none is given to the constructor.
+   **/
+   public static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+   // the key entry of a tombstone; it equals no key
+   private static final Object TOMBSTONE = new Object( );
+
+   // the largest prime capacity whose pairs fit in one array
+   private static final int MAX_SLOTS = 1073741789;
+
+   // instance variables to calculate collision frequency
+   private int collisions;
+
+   /**
+   * Initialize an empty table with linear probing, a specified capacity and
+   * the default maximum load factor.
+   * @param <CODE>capacity</CODE>
+   *   the capacity for this new open-address hash table
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has the specified capacity.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is not positive.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public TableInterleaved(int capacity)
+   {
+      this(capacity, DEFAULT_LOAD_FACTOR, false, HashFunction.DEFAULT);
+   }
+
+
+   /**
+   * Initialize an empty table with linear probing, a specified capacity and
+   * maximum load factor.
+   * @param <CODE>capacity</CODE>
+   *   the initial capacity for this new open-address hash table
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest fraction of the capacity that may be filled before the
+   *   table grows; 1.0 means the table only grows when it is full
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has the specified capacity.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is not positive or that
+   *   <CODE>maxLoadFactor</CODE> is not in the range (0, 1].
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public TableInterleaved(int capacity, double maxLoadFactor)
+   {
+      this(capacity, maxLoadFactor, false, HashFunction.DEFAULT);
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity, maximum load
+   * factor, probing method and hash function.
+   * @param <CODE>capacity</CODE>
+   *   the initial capacity for this new open-address hash table; with
+   *   double hashing it is rounded up to a prime
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest fraction of the capacity that may be filled before the
+   *   table grows; 1.0 means the table only grows when it is full
+   * @param <CODE>doubleHashing</CODE>
+   *   <CODE>true</CODE> to step through the table by a second hash of the
+   *   key, as <CODE>TableDoubleHash</CODE> does; <CODE>false</CODE> for
+   *   linear probing
+   * @param <CODE>hashFunction</CODE>
+   *   the hash function that picks each key's place in the table
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has the specified capacity, or with double
+   *   hashing the smallest prime that is at least that capacity.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is not positive or too large,
+   *   that it is less than 3 with double hashing, or that
+   *   <CODE>maxLoadFactor</CODE> is not in the range (0, 1].
+   * @exception NullPointerException
+   *   Indicates that <CODE>hashFunction</CODE> is null.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public TableInterleaved(int capacity, double maxLoadFactor,
+                           boolean doubleHashing, HashFunction hashFunction)
+   {
+      if (capacity <= 0)
+         throw new IllegalArgumentException("Capacity is negative");
+      if (capacity > MAX_SLOTS)
+         throw new IllegalArgumentException("Capacity is too large");
+      if (doubleHashing && capacity < 3)
+         throw new IllegalArgumentException("Double hashing needs a capacity of at least 3");
+      if (!(maxLoadFactor > 0 && maxLoadFactor <= 1))
+         throw new IllegalArgumentException("Load factor must be in (0, 1]");
+      if (hashFunction == null)
+         throw new NullPointerException("Hash function is null");
+      this.maxLoadFactor = maxLoadFactor;
+      this.doubleHashing = doubleHashing;
+      this.hashFunction = hashFunction;
+      if (doubleHashing)
+         capacity = Primes.nextPrime(capacity);
+      slots = new Object[2 * capacity];
+   }
+
+
+   /**
+   * Determines whether a specified key is in this table.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   <CODE>true</CODE> (if this table contains an object with the specified
+   *   key); <CODE>false</CODE> otherwise.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public boolean containsKey(K key)
+   {
+      return findIndex(key) != -1;
+   }
+
+
+   private int findIndex(Object key)
+   // Postcondition: If the specified key is found in the table, then the return
+   // value is the index of its slot. Otherwise, the return value is -1.
+   {
+      int h = hashFunction.hash(key);
+      int capacity = slots.length / 2;
+      int i = hash(h, capacity);
+      int step = step(h, capacity);
+      int count = 0;
+      Object candidate;
+
+      while (count < capacity && (candidate = slots[2 * i]) != null)
+      {
+         if (key.equals(candidate))
+            return i;
+         count++;
+         i = nextIndex(i, step, capacity);
+      }
+      return -1;
+   }
+
+
+   /**
+   * Retrieves an object for a specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * @return
+   *   a reference to the object with the specified <CODE>key</CODE> (if this
+   *   table contains an such an object);  null otherwise.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E get(K key)
+   {
+      int index = findIndex(key);
+
+      if (index == -1)
+         return null;
+      else
+         return (E) slots[2 * index + 1];
+   }
+
+
+   private int hash(int h, int capacity)
+   // The return value is the home slot of a key with hash h in a table of
+   // the given capacity.
+   {
+      return hashFunction.index(h, capacity);
+   }
+
+
+   private int step(int h, int capacity)
+   // The return value is the distance between probes for a key with hash h:
+   // 1 for linear probing, or from 1 to capacity - 2 for double hashing.
+   {
+      if (doubleHashing)
+         return 1 + (h & 0x7FFFFFFF) % (capacity - 2);
+      else
+         return 1;
+   }
+
+
+   private static int nextIndex(int i, int step, int capacity)
+   // Precondition: 0 <= i < capacity and 0 < step < capacity.
+   // The return value is the slot step places after i, wrapping around the
+   // end of the table.
+   {
+      i += step;
+      if (i >= capacity || i < 0)
+         i -= capacity;
+      return i;
+   }
+
+
+   /**
+   * Add a new element to this table, using the specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to use for the new element
+   * @param <CODE>element</CODE>
+   *   the new element that's being added to this table
+   * <dt><b>Postcondition:</b><dd>
+   *   If this table already has an object with the specified
+   *   <CODE>key</CODE>, then that object is replaced by
+   *   <CODE>element</CODE>, and the return value is a reference to the
+   *   replaced object. Otherwise, the new <CODE>element</CODE> is added
+   *   with the specified <CODE>key</CODE> and the return value is null. If
+   *   adding the element would push the table past its maximum load
+   *   factor, the table first grows.
+   * @exception IllegalStateException
+   *   Indicates that the table is full and has reached its largest
+   *   possible capacity.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> or <CODE>element</CODE> is null.
+   **/
+   public E put(K key, E element)
+   {
+      int index;
+      int capacity;
+      E answer;
+
+      if (element == null)
+         throw new NullPointerException("Key or Element is null");
+      collisions = 0;
+      index = findIndex(key);
+      if (index != -1)
+      {  // The key is already in the table.
+         answer = (E) slots[2 * index + 1];
+         slots[2 * index + 1] = element;
+         return answer;
+      }
+
+      capacity = slots.length / 2;
+      if (manyItems + 1 > maxLoadFactor * capacity)
+         resize(grownCapacity(capacity));
+      capacity = slots.length / 2;
+
+      if (manyItems < capacity)
+      {  // The key is not yet in this table.
+         index = insertionIndex(key);
+         if (slots[2 * index] == null
+             && manyItems + tombstones + 1 > maxLoadFactor * capacity)
+         {  // Claiming a never-used slot would leave too few of them to end
+            // searches, so clear out the tombstones, growing the table if
+            // it is more than half full even without them.
+            if (2 * (manyItems + 1) > maxLoadFactor * capacity)
+               resize(grownCapacity(capacity));
+            else
+               resize(capacity);
+            index = insertionIndex(key);
+         }
+         if (slots[2 * index] == TOMBSTONE)
+            tombstones--;
+         slots[2 * index] = key;
+         slots[2 * index + 1] = element;
+         manyItems++;
+         return null;
+      }
+      else
+      {  // The table is full.
+         throw new IllegalStateException("Table is full.");
+      }
+   }
+
+
+   private static int grownCapacity(int capacity)
+   // The return value is the capacity to grow to: a prime roughly twice the
+   // current capacity, but no more than MAX_SLOTS.
+   {
+      return Math.min(Primes.growCapacity(capacity), MAX_SLOTS);
+   }
+
+
+   /**
+   * Removes an object for a specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * <dt><b>Postcondition:</b><dd>
+   *   If an object was found with the specified <CODE>key</CODE>, then that
+   *   object has been removed from this table and is returned; otherwise,
+   *   this table is unchanged and the null reference is returned.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E remove(K key)
+   {
+      int index = findIndex(key);
+      E answer = null;
+
+      if (index != -1)
+      {
+         answer = (E) slots[2 * index + 1];
+         slots[2 * index] = TOMBSTONE;
+         slots[2 * index + 1] = null;
+         tombstones++;
+         manyItems--;
+         if (2 * tombstones > maxLoadFactor * (slots.length / 2))
+            resize(slots.length / 2);
+      }
+      return answer;
+   }
+
+
+   private int insertionIndex(Object key)
+   // Precondition: manyItems < capacity, and key is not in the table.
+   // Postcondition: The return value is the first slot on the key's probe
+   // sequence that holds no key, which is either never used or a tombstone.
+   // The collisions instance variable is the number of occupied slots that
+   // were passed over on the way.
+   {
+      int h = hashFunction.hash(key);
+      int capacity = slots.length / 2;
+      int index = hash(h, capacity);
+      int step = step(h, capacity);
+      Object candidate;
+
+      collisions = 0;
+      while ((candidate = slots[2 * index]) != null && candidate != TOMBSTONE)
+      {
+         index = nextIndex(index, step, capacity);
+         collisions++;
+      }
+      return index;
+   }
+
+
+   private void resize(int newCapacity)
+   // Postcondition: If newCapacity is at least the current capacity, then
+   // the pair array has been replaced by one for newCapacity slots and
+   // every element has been rehashed into it. Tombstones are not carried
+   // over, so a newCapacity equal to the current capacity simply clears
+   // them out.
+   {
+      if (2 * newCapacity < slots.length)
+         return;
+
+      Object[ ] oldSlots = slots;
+      int i, h, index, step;
+      Object key;
+
+      slots = new Object[2 * newCapacity];
+      tombstones = 0;
+      for (i = 0; i < oldSlots.length; i += 2)
+      {
+         key = oldSlots[i];
+         if (key != null && key != TOMBSTONE)
+         {
+            h = hashFunction.hash(key);
+            index = hash(h, newCapacity);
+            step = step(h, newCapacity);
+            while (slots[2 * index] != null)
+               index = nextIndex(index, step, newCapacity);
+            slots[2 * index] = key;
+            slots[2 * index + 1] = oldSlots[i + 1];
+         }
+      }
+   }
+
+
+   /**
+   * Determines the number of elements in this table.
+   * @param - none
+   * @return
+   *   the number of elements in this table
+   **/
+   public int size( )
+   {
+      return manyItems;
+   }
+
+
+   /**
+   * Determines the capacity of this table.
+   * @param - none
+   * @return
+   *   the number of slots, which grows as elements are added
+   **/
+   public int capacity( )
+   {
+      return slots.length / 2;
+   }
+
+
+   /**
+   * Determines the number of tombstones in this table.
+   * @param - none
+   * @return
+   *   the number of slots whose elements have been removed but which have
+   *   not yet been reused or cleared by a rehash
+   **/
+   public int getTombstones( )
+   {
+      return tombstones;
+   }
+
+
+   /**
+   * Method returns the number of collisions when attempting to place an
+   * object in the table
+   * @return
+   *   the number of occupied slots the last put passed over
+   **/
+   public int getCollisions( )
+   {
+      return collisions;
+   }
+}
@@ -0,0 +1,415 @@
+// File: TableStatistics.java
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+
+/******************************************************************************
+* A <CODE>TableStatistics</CODE> collects running statistics for one hash
+* table: how many slots each successful and unsuccessful search passed
+* over, how many collisions the puts met, and how often and for how long
+* the table was rehashed. It also reads the table's size, capacity,
+* tombstones and (for a chained table) chain lengths whenever they are
+* asked for. <CODE>Table</CODE>, <CODE>TableDoubleHash</CODE> and
+* <CODE>TableChainHash</CODE> create one when their
+* <CODE>enableStatistics</CODE> method is called; <CODE>snapshot</CODE>
+* gives a consistent copy of everything, and <CODE>register</CODE> makes
+* the statistics visible over JMX.
+*
+* Probe lengths and chain lengths are counted in histograms of
+* <CODE>BUCKETS</CODE> buckets whose sizes double: bucket 0 counts lengths
+* of 0, bucket 1 lengths of 1, bucket 2 lengths of 2 and 3, bucket 3
+* lengths of 4 to 7, and so on, so that finding a bucket costs one
+* instruction and a few long searches still show up.
+*
+* A table without statistics only tests a field for null on each
+* operation. Running with <CODE>-Dtable.statistics=false</CODE> sets
+* <CODE>ENABLED</CODE> to false; since it is a constant, the just-in-time
+* compiler then removes even that test, and <CODE>enableStatistics</CODE>
+* refuses to start collecting. A table is not thread-safe, and neither are
+* its statistics, though a JMX reader only ever sees slightly stale counts.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class TableStatistics implements TableStatisticsMBean
+{
+   // Invariant of the TableStatistics class:
+   //   1. hitProbes[b] is the number of successful searches since the last
+   //      reset whose probe length fell in bucket b, hits is their number
+   //      and hitProbeTotal the sum of their probe lengths. The miss
+   //      variables count unsuccessful searches in the same way.
+   //   2. puts is the number of calls to put since the last reset and
+   //      putCollisions the sum of the collisions they reported.
+   //   3. resizes is the number of rehashes since the last reset and
+   //      resizeNanos the time they took.
+   //   4. name is the name this object is registered under, or null.
+
+   /**
+   * Whether statistics can be collected at all. It is false when the
+   * system property <CODE>table.statistics</CODE> is <CODE>false</CODE>.
+   **/
+   public static final boolean ENABLED =
+      !"false".equals(System.getProperty("table.statistics"));
+
+   /**
+   * The number of buckets in each histogram.
+   **/
+   public static final int BUCKETS = 33;
+
+   /**
+   * The live values of the table the statistics belong to.
+   **/
+   interface Gauges
+   {
+      int size( );
+      int capacity( );
+      int tombstones( );
+      long[ ] chainLengths( );
+   }
+
+   private final Gauges gauges;
+   private long[ ] hitProbes = new long[BUCKETS];
+   private long[ ] missProbes = new long[BUCKETS];
+   private long hits;
+   private long misses;
+   private long hitProbeTotal;
+   private long missProbeTotal;
+   private long puts;
+   private long putCollisions;
+   private long resizes;
+   private long resizeNanos;
+   private ObjectName name;
+
+   TableStatistics(Gauges gauges)
+   // Postcondition: Every counter is zero, and the size, capacity,
+   // tombstones and chain lengths are read from gauges.
+   {
+      this.gauges = gauges;
+   }
+
+
+   /**
+   * Finds the histogram bucket for a length.
+   * @param <CODE>length</CODE>
+   *   a probe length or chain length
+   * <dt><b>Precondition:</b><dd>
+   *   <CODE>length</CODE> is not negative.
+   * @return
+   *   the bucket that counts <CODE>length</CODE>
+   **/
+   public static int bucket(int length)
+   {
+      return 32 - Integer.numberOfLeadingZeros(length);
+   }
+
+
+   /**
+   * Finds the shortest length counted in a histogram bucket.
+   * @param <CODE>bucket</CODE>
+   *   a bucket from 0 to <CODE>BUCKETS - 1</CODE>
+   * @return
+   *   the least length that falls in <CODE>bucket</CODE>
+   **/
+   public static long bucketStart(int bucket)
+   {
+      if (bucket == 0)
+         return 0;
+      else
+         return 1L << (bucket - 1);
+   }
+
+
+   void recordHit(int probes)
+   // Postcondition: A successful search that passed over probes slots has
+   // been counted.
+   {
+      hitProbes[bucket(probes)]++;
+      hits++;
+      hitProbeTotal += probes;
+   }
+
+
+   void recordMiss(int probes)
+   // Postcondition: An unsuccessful search that passed over probes slots has
+   // been counted.
+   {
+      missProbes[bucket(probes)]++;
+      misses++;
+      missProbeTotal += probes;
+   }
+
+
+   void recordPut(int collisions)
+   // Postcondition: A put that reported the given collisions has been
+   // counted.
+   {
+      puts++;
+      putCollisions += collisions;
+   }
+
+
+   void recordResize(long nanos)
+   // Postcondition: A rehash that took the given time has been counted.
+   {
+      resizes++;
+      resizeNanos += nanos;
+   }
+
+
+   /**
+   * Takes a consistent copy of the statistics.
+   * @param - none
+   * @return
+   *   a snapshot of every counter and of the table's current size,
+   *   capacity, tombstones and chain lengths
+   **/
+   public Snapshot snapshot( )
+   {
+      return new Snapshot(this);
+   }
+
+
+   /**
+   * Registers these statistics with the platform MBean server.
+   * @param <CODE>tableName</CODE>
+   *   a name that tells this table apart from others in the same program
+   * <dt><b>Postcondition:</b><dd>
+   *   The statistics are visible over JMX as
+   *   <CODE>HashTable:type=TableStatistics,name=</CODE><I>tableName</I>.
+   *   If they were registered under another name, that name is dropped.
+   * @exception JMException
+   *   Indicates that the name is not valid or is already in use.
+   **/
+   public void register(String tableName) throws JMException
+   {
+      ObjectName newName = new ObjectName("HashTable:type=TableStatistics,name="
+                                          + ObjectName.quote(tableName));
+
+      unregister( );
+      ManagementFactory.getPlatformMBeanServer( ).registerMBean(this, newName);
+      name = newName;
+   }
+
+
+   /**
+   * Removes these statistics from the platform MBean server.
+   * @param - none
+   * <dt><b>Postcondition:</b><dd>
+   *   The statistics are no longer visible over JMX. Nothing happens if
+   *   they were not registered.
+   * @exception JMException
+   *   Indicates that the MBean server could not unregister them.
+   **/
+   public void unregister( ) throws JMException
+   {
+      if (name != null) {
+         ManagementFactory.getPlatformMBeanServer( ).unregisterMBean(name);
+         name = null;
+      }
+   }
+
+
+   public int getSize( )
+   {
+      return gauges.size( );
+   }
+
+
+   public int getCapacity( )
+   {
+      return gauges.capacity( );
+   }
+
+
+   public double getLoadFactor( )
+   {
+      return (double) gauges.size( ) / gauges.capacity( );
+   }
+
+
+   public int getTombstones( )
+   {
+      return gauges.tombstones( );
+   }
+
+
+   public long getHits( )
+   {
+      return hits;
+   }
+
+
+   public long getMisses( )
+   {
+      return misses;
+   }
+
+
+   public double getAverageHitProbes( )
+   {
+      return hits == 0 ? 0 : (double) hitProbeTotal / hits;
+   }
+
+
+   public double getAverageMissProbes( )
+   {
+      return misses == 0 ? 0 : (double) missProbeTotal / misses;
+   }
+
+
+   public long[ ] getHitProbeHistogram( )
+   {
+      return hitProbes.clone( );
+   }
+
+
+   public long[ ] getMissProbeHistogram( )
+   {
+      return missProbes.clone( );
+   }
+
+
+   public long[ ] getChainLengthHistogram( )
+   {
+      return gauges.chainLengths( );
+   }
+
+
+   public long getPuts( )
+   {
+      return puts;
+   }
+
+
+   public long getPutCollisions( )
+   {
+      return putCollisions;
+   }
+
+
+   public long getResizes( )
+   {
+      return resizes;
+   }
+
+
+   public double getResizeMillis( )
+   {
+      return resizeNanos / 1e6;
+   }
+
+
+   public void reset( )
+   {
+      hitProbes = new long[BUCKETS];
+      missProbes = new long[BUCKETS];
+      hits = 0;
+      misses = 0;
+      hitProbeTotal = 0;
+      missProbeTotal = 0;
+      puts = 0;
+      putCollisions = 0;
+      resizes = 0;
+      resizeNanos = 0;
+   }
+
+
+   /***************************************************************************
+   * A <CODE>Snapshot</CODE> is an unchanging copy of a table's statistics at
+   * one moment.
+   ***************************************************************************/
+   public static class Snapshot
+   {
+      private final int size;
+      private final int capacity;
+      private final int tombstones;
+      private final long hits;
+      private final long misses;
+      private final double averageHitProbes;
+      private final double averageMissProbes;
+      private final long[ ] hitProbes;
+      private final long[ ] missProbes;
+      private final long[ ] chainLengths;
+      private final long puts;
+      private final long putCollisions;
+      private final long resizes;
+      private final double resizeMillis;
+
+      private Snapshot(TableStatistics source)
+      {
+         size = source.getSize( );
+         capacity = source.getCapacity( );
+         tombstones = source.getTombstones( );
+         hits = source.getHits( );
+         misses = source.getMisses( );
+         averageHitProbes = source.getAverageHitProbes( );
+         averageMissProbes = source.getAverageMissProbes( );
+         hitProbes = source.getHitProbeHistogram( );
+         missProbes = source.getMissProbeHistogram( );
+         chainLengths = source.getChainLengthHistogram( );
+         puts = source.getPuts( );
+         putCollisions = source.getPutCollisions( );
+         resizes = source.getResizes( );
+         resizeMillis = source.getResizeMillis( );
+      }
+
+      public int getSize( ) { return size; }
+      public int getCapacity( ) { return capacity; }
+      public double getLoadFactor( ) { return (double) size / capacity; }
+      public int getTombstones( ) { return tombstones; }
+      public long getHits( ) { return hits; }
+      public long getMisses( ) { return misses; }
+      public double getAverageHitProbes( ) { return averageHitProbes; }
+      public double getAverageMissProbes( ) { return averageMissProbes; }
+      public long[ ] getHitProbeHistogram( ) { return hitProbes.clone( ); }
+      public long[ ] getMissProbeHistogram( ) { return missProbes.clone( ); }
+      public long getPuts( ) { return puts; }
+      public long getPutCollisions( ) { return putCollisions; }
+      public long getResizes( ) { return resizes; }
+      public double getResizeMillis( ) { return resizeMillis; }
+
+      public long[ ] getChainLengthHistogram( )
+      {
+         return chainLengths == null ? null : chainLengths.clone( );
+      }
+
+
+      /**
+      * Describes the snapshot in a few lines, followed by a table of the
+      * non-empty histogram buckets.
+      * @param - none
+      * @return
+      *   a printable summary of this snapshot
+      **/
+      public String toString( )
+      {
+         StringBuilder answer = new StringBuilder( );
+         int b, last = 0;
+
+         answer.append(String.format("size %d, capacity %d, load %.3f, tombstones %d%n",
+                                     size, capacity, getLoadFactor( ), tombstones));
+         answer.append(String.format("puts %d, collisions %d; resizes %d, %.3f ms%n",
+                                     puts, putCollisions, resizes, resizeMillis));
+         answer.append(String.format("hits %d, %.3f probes; misses %d, %.3f probes%n",
+                                     hits, averageHitProbes, misses, averageMissProbes));
+         for (b = 0; b < BUCKETS; b++) {
+            if (hitProbes[b] != 0 || missProbes[b] != 0
+                || (chainLengths != null && chainLengths[b] != 0))
+               last = b;
+         }
+         answer.append(chainLengths == null ? String.format("%-12s %12s %12s%n", "length", "hits", "misses")
+                       : String.format("%-12s %12s %12s %12s%n", "length", "hits", "misses", "chains"));
+         for (b = 0; b <= last; b++) {
+            String range = b < 2 ? Long.toString(bucketStart(b))
+                                 : bucketStart(b) + "-" + (bucketStart(b + 1) - 1);
+            answer.append(String.format("%-12s %12d %12d", range, hitProbes[b], missProbes[b]));
+            if (chainLengths != null)
+               answer.append(String.format(" %12d", chainLengths[b]));
+            answer.append(String.format("%n"));
+         }
+         return answer.toString( );
+      }
+   }
+}
@@ -0,0 +1,98 @@
+// File: TableStatisticsMBean.java
+
+
+/******************************************************************************
+* A <CODE>TableStatisticsMBean</CODE> is the management interface of a
+* <CODE>TableStatistics</CODE>, through which a JMX console such as
+* <CODE>jconsole</CODE> reads the statistics of a running table. Every
+* histogram has <CODE>TableStatistics.BUCKETS</CODE> entries, as described
+* in <CODE>TableStatistics</CODE>.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public interface TableStatisticsMBean
+{
+   /**
+   * @return the number of elements in the table
+   **/
+   int getSize( );
+
+   /**
+   * @return the number of slots or buckets in the table
+   **/
+   int getCapacity( );
+
+   /**
+   * @return the number of elements divided by the capacity
+   **/
+   double getLoadFactor( );
+
+   /**
+   * @return the number of tombstones in the table; zero for a table that
+   * does not leave any
+   **/
+   int getTombstones( );
+
+   /**
+   * @return the number of searches that found their key
+   **/
+   long getHits( );
+
+   /**
+   * @return the number of searches that did not find their key
+   **/
+   long getMisses( );
+
+   /**
+   * @return the mean number of other keys a successful search passed over
+   **/
+   double getAverageHitProbes( );
+
+   /**
+   * @return the mean number of keys an unsuccessful search passed over
+   **/
+   double getAverageMissProbes( );
+
+   /**
+   * @return the number of successful searches in each probe-length bucket
+   **/
+   long[ ] getHitProbeHistogram( );
+
+   /**
+   * @return the number of unsuccessful searches in each probe-length bucket
+   **/
+   long[ ] getMissProbeHistogram( );
+
+   /**
+   * @return the number of buckets in each chain-length bucket, or null for a
+   * table without chains
+   **/
+   long[ ] getChainLengthHistogram( );
+
+   /**
+   * @return the number of calls to <CODE>put</CODE>
+   **/
+   long getPuts( );
+
+   /**
+   * @return the sum of <CODE>getCollisions( )</CODE> over every
+   * <CODE>put</CODE>
+   **/
+   long getPutCollisions( );
+
+   /**
+   * @return the number of times the table has been rehashed
+   **/
+   long getResizes( );
+
+   /**
+   * @return the total time spent rehashing, in milliseconds
+   **/
+   double getResizeMillis( );
+
+   /**
+   * Sets every counter back to zero.
+   **/
+   void reset( );
+}
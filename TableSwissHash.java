@@ -0,0 +1,536 @@
+// File: TableSwissHash.java
+
+
+/******************************************************************************
+* A <CODE>TableSwissHash</CODE> is an open-address hash table that probes
+* whole groups of slots at a time, in the style of Google's SwissTable and
+* Facebook's F14. Beside its keys and elements it keeps one control byte
+* per slot: either <CODE>EMPTY</CODE>, <CODE>DELETED</CODE> (a tombstone),
+* or seven bits of the key's hash code, its fingerprint. A search reads the
+* sixteen control bytes of a group as two <CODE>long</CODE>s and finds every
+* slot whose fingerprint matches with a few word-wide arithmetic operations,
+* so it only calls <CODE>equals</CODE> on the one or two keys that are
+* likely to match instead of on every key it passes, and it only touches
+* the key array at those slots.
+*
+* A key's home is a group rather than a slot. If the key is not found
+* there and the group has no empty slot, the search moves on to the next
+* group, wrapping around at the end. Growth and tombstones are handled as
+* in <CODE>Table</CODE>, except that a removal from a group that still has
+* an empty slot needs no tombstone, since no search has ever gone on past
+* such a group.
+*
+* @author Ammaad Denmark, Tim Tabachuk
+*
+******************************************************************************/
+public class TableSwissHash< K , E > implements HashTable< K , E >
+{
+   // Invariant of the TableSwissHash class:
+   //   1. The number of items in the table is in the instance variable
+   //      manyItems, and the number of groups is in groups. Slot i belongs
+   //      to group i / GROUP_SIZE.
+   //   2. The preferred group for an element with a given key is
+   //      hash(key). If that group has no free slot, then nextGroup is used
+   //      to search forward for one. When the element is placed at a slot i,
+   //      the element is in data[i], its key in keys[i], and the control
+   //      byte of slot i is fingerprint(key.hashCode( )).
+   //   3. The control byte of slot i is byte i % 8 (counting from the low
+   //      end) of control[i / 8]. It is EMPTY for a slot that has never been
+   //      used and DELETED for a tombstone; in both cases keys[i] and data[i]
+   //      are null. A fingerprint is in the range 0 to 127.
+   //   4. A group that has an EMPTY slot has never been full since the last
+   //      rehash, so no element was placed beyond it while searching from an
+   //      earlier group.
+   //   5. The number of tombstones is in tombstones. Before a new key is
+   //      added, manyItems + 1 is at most maxLoadFactor * capacity( ), and
+   //      manyItems + tombstones is at most that too (unless the table cannot
+   //      grow any more), so some group always has an EMPTY slot.
+   private int manyItems;
+   private int tombstones;
+   private int groups;
+   private long[ ] control;
+   private Object[ ] keys;
+   private Object[ ] data;
+   private double maxLoadFactor;
+
+   /**
+   * The number of slots in each group.
+   **/
+   public static final int GROUP_SIZE = 16;
+
+   /**
+   * The maximum load factor used when none is given to the constructor.
+   * Since a search checks a whole group at once, the table can be kept
+   * fuller than a <CODE>Table</CODE>.
+   **/
+   public static final double DEFAULT_LOAD_FACTOR = 0.875;
+
+   private static final byte EMPTY = (byte) 0x80;
+   private static final byte DELETED = (byte) 0xFE;
+
+   // control words per group, and a byte of ones or high bits in every lane
+   private static final int WORDS = GROUP_SIZE / 8;
+   private static final long LSBS = 0x0101010101010101L;
+   private static final long MSBS = 0x8080808080808080L;
+
+   private static final int MAX_GROUPS = (Integer.MAX_VALUE - 8) / GROUP_SIZE;
+
+   // instance variables to calculate collision frequency
+   private int collisions;
+
+   /**
+   * Initialize an empty table with a specified capacity and the default
+   * maximum load factor.
+   * @param <CODE>capacity</CODE>
+   *   the least capacity for this new hash table
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has at least the specified capacity.
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public TableSwissHash(int capacity)
+   {
+      this(capacity, DEFAULT_LOAD_FACTOR);
+   }
+
+
+   /**
+   * Initialize an empty table with a specified capacity and maximum load
+   * factor.
+   * @param <CODE>capacity</CODE>
+   *   the least initial capacity for this new hash table; it is rounded up
+   *   to a prime number of whole groups
+   * @param <CODE>maxLoadFactor</CODE>
+   *   the largest fraction of the capacity that may be filled before the
+   *   table grows; 1.0 means the table only grows when it is full
+   * <dt><b>Postcondition:</b><dd>
+   *   This table is empty and has at least the specified capacity.
+   * @exception IllegalArgumentException
+   *   Indicates that <CODE>capacity</CODE> is not positive or that
+   *   <CODE>maxLoadFactor</CODE> is not in the range (0, 1].
+   * @exception OutOfMemoryError
+   *   Indicates insufficient memory for the specified capacity.
+   **/
+   public TableSwissHash(int capacity, double maxLoadFactor)
+   {
+      if (capacity <= 0)
+         throw new IllegalArgumentException("Capacity is negative");
+      if (!(maxLoadFactor > 0 && maxLoadFactor <= 1))
+         throw new IllegalArgumentException("Load factor must be in (0, 1]");
+      this.maxLoadFactor = maxLoadFactor;
+      allocate(Math.min(Primes.nextPrime((capacity - 1) / GROUP_SIZE + 1),
+                        MAX_GROUPS));
+   }
+
+
+   private void allocate(int newGroups)
+   // Postcondition: The table has newGroups groups, every slot is EMPTY, and
+   // there are no tombstones. The elements are not carried over.
+   {
+      groups = newGroups;
+      control = new long[newGroups * WORDS];
+      java.util.Arrays.fill(control, MSBS);
+      keys = new Object[newGroups * GROUP_SIZE];
+      data = new Object[newGroups * GROUP_SIZE];
+      tombstones = 0;
+   }
+
+
+   /**
+   * Determines whether a specified key is in this table.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * <dt><b>Precondition:</b><dd>
+   *   <CODE>key</CODE> cannot be null.
+   * @return
+   *   <CODE>true</CODE> (if this table contains an object with the specified
+   *   key); <CODE>false</CODE> otherwise. Note that <CODE>key.equals( )</CODE>
+   *   is used to compare the <CODE>key</CODE> to the keys that are in the
+   *   table.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public boolean containsKey(K key)
+   {
+      return findIndex(key) != -1;
+   }
+
+
+   private int findIndex(Object key)
+   // Postcondition: If the specified key is found in the table, then the return
+   // value is the index of the specified key. Otherwise, the return value is -1.
+   {
+      int code = key.hashCode( );
+      long pattern = LSBS * fingerprint(code);
+      int g = hash(code);
+      int count, w, i;
+      long word, matches;
+
+      for (count = 0; count < groups; count++)
+      {
+         for (w = 0; w < WORDS; w++)
+         {
+            word = control[g * WORDS + w];
+            matches = matchByte(word, pattern);
+            while (matches != 0)
+            {
+               i = g * GROUP_SIZE + w * 8 + (Long.numberOfTrailingZeros(matches) >>> 3);
+               if (key.equals(keys[i]))
+                  return i;
+               matches &= matches - 1;
+            }
+         }
+         if (hasEmpty(g))
+            return -1;
+         g = nextGroup(g);
+      }
+
+      return -1;
+   }
+
+
+   /** Retrieves an object for a specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * <dt><b>Precondition:</b><dd>
+   *   <CODE>key</CODE> cannot be null.
+   * @return
+   *   a reference to the object with the specified <CODE>key</CODE> (if this
+   *   table contains an such an object);  null otherwise. Note that
+   *   <CODE>key.equals( )</CODE> is used to compare the <CODE>key</CODE>
+   *   to the keys that are in the table.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E get(K key)
+   {
+      int index = findIndex(key);
+
+      if (index == -1)
+         return null;
+      else
+         return (E) data[index];
+   }
+
+
+   private int hash(int code)
+   // The return value is a valid group number. The group is calculated as
+   // the remainder when the hash code with its sign bit cleared is divided
+   // by the number of groups.
+   {
+      return (code & 0x7FFFFFFF) % groups;
+   }
+
+
+   private static int fingerprint(int code)
+   // The return value is the top seven bits of the hash code multiplied by
+   // the golden ratio, which do not depend on the group the code selects.
+   {
+      return (code * 0x9E3779B9) >>> 25;
+   }
+
+
+   private int nextGroup(int g)
+   // The return value is normally g+1. But if g+1 is groups, then the
+   // return value is zero instead.
+   {
+      if (g+1 == groups)
+         return 0;
+      else
+         return g+1;
+   }
+
+
+   private static long matchByte(long word, long pattern)
+   // Precondition: pattern holds the same fingerprint in each of its bytes.
+   // Postcondition: The return value has the high bit set in every byte
+   // where word holds that fingerprint. It may also set it in a byte just
+   // above a match that holds the fingerprint plus one, but never in a byte
+   // that is EMPTY or DELETED.
+   {
+      long x = word ^ pattern;
+      return (x - LSBS) & ~x & MSBS;
+   }
+
+
+   private static long matchEmpty(long word)
+   // The return value has the high bit set in exactly the bytes of word that
+   // are EMPTY: those whose high bit is set and whose bit 1 is clear.
+   {
+      return word & ~(word << 6) & MSBS;
+   }
+
+
+   private static long matchFree(long word)
+   // The return value has the high bit set in exactly the bytes of word that
+   // are EMPTY or DELETED: those whose high bit is set and whose bit 0 is
+   // clear.
+   {
+      return word & ~(word << 7) & MSBS;
+   }
+
+
+   private boolean hasEmpty(int g)
+   // The return value is true if group g has an EMPTY slot.
+   {
+      int w;
+
+      for (w = 0; w < WORDS; w++) {
+         if (matchEmpty(control[g * WORDS + w]) != 0)
+            return true;
+      }
+      return false;
+   }
+
+
+   private byte controlByte(int i)
+   // The return value is the control byte of slot i.
+   {
+      return (byte) (control[i >>> 3] >>> ((i & 7) << 3));
+   }
+
+
+   private void setControl(int i, int value)
+   // Postcondition: The control byte of slot i is the low byte of value.
+   {
+      int shift = (i & 7) << 3;
+
+      control[i >>> 3] = (control[i >>> 3] & ~(0xFFL << shift))
+                         | ((value & 0xFFL) << shift);
+   }
+
+
+   /**
+   * Add a new element to this table, using the specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to use for the new element
+   * @param <CODE>element</CODE>
+   *   the new element that's being added to this table
+   * <dt><b>Precondition:</b><dd>
+   *   Neither <CODE>key</CODE> nor <CODE>element</CODE> is null.
+   * <dt><b>Postcondition:</b><dd>
+   *   If this table already has an object with the specified <CODE>key</CODE>,
+   *   then that object is replaced by <CODE>element</CODE>, and the return
+   *   value is a reference to the replaced object. Otherwise, the new
+   *   <CODE>element</CODE> is added with the specified <CODE>key</CODE>
+   *   and the return value is null. If adding the element would push the
+   *   table past its maximum load factor, the table first grows.
+   * @exception IllegalStateException
+   *   Indicates that the table is full and has reached its largest
+   *   possible capacity.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> or <CODE>element</CODE> is null.
+   **/
+   public E put(K key, E element)
+   {
+      collisions = 0;
+      int index = findIndex(key);
+      E answer;
+
+      if (index != -1)
+      {  // The key is already in the table.
+         answer = (E) data[index];
+         data[index] = element;
+         return answer;
+      }
+
+      if (manyItems + 1 > maxLoadFactor * capacity( ))
+         resize(growGroups( ));
+
+      if (manyItems < capacity( ))
+      {  // The key is not yet in this Table.
+         index = insertionIndex(key.hashCode( ));
+         if (controlByte(index) == EMPTY
+             && manyItems + tombstones + 1 > maxLoadFactor * capacity( ))
+         {  // Claiming an empty slot would leave too few of them to end
+            // searches, so clear out the tombstones, or grow if the table
+            // is more than half full even without them.
+            if (2 * (manyItems + 1) > maxLoadFactor * capacity( ))
+               resize(growGroups( ));
+            else
+               resize(groups);
+            index = insertionIndex(key.hashCode( ));
+         }
+         if (controlByte(index) == DELETED)
+            tombstones--;
+         keys[index] = key;
+         data[index] = element;
+         setControl(index, fingerprint(key.hashCode( )));
+         manyItems++;
+         return null;
+      }
+      else
+      {  // The table is full.
+         throw new IllegalStateException("Table is full.");
+      }
+   }
+
+
+   /**
+   * Removes an object for a specified key.
+   * @param <CODE>key</CODE>
+   *   the non-null key to look for
+   * <dt><b>Precondition:</b><dd>
+   *   <CODE>key</CODE> cannot be null.
+   * <dt><b>Postcondition:</b><dd>
+   *   If an object was found with the specified <CODE>key</CODE>, then that
+   *   object has been removed from this table and a copy of the removed object
+   *   is returned; otherwise, this table is unchanged and the null reference
+   *   is returned.  Note that
+   *   <CODE>key.equals( )</CODE> is used to compare the <CODE>key</CODE>
+   *   to the keys that are in the table.
+   * @exception NullPointerException
+   *   Indicates that <CODE>key</CODE> is null.
+   **/
+   public E remove(K key)
+   {
+      int index = findIndex(key);
+      E answer = null;
+
+      if (index != -1)
+      {
+         answer = (E) data[index];
+         keys[index] = null;
+         data[index] = null;
+         manyItems--;
+         if (hasEmpty(index / GROUP_SIZE))
+            setControl(index, EMPTY);
+         else
+         {
+            setControl(index, DELETED);
+            tombstones++;
+            if (2 * tombstones > maxLoadFactor * capacity( ))
+               resize(groups);
+         }
+      }
+
+      return answer;
+   }
+
+
+   private int insertionIndex(int code)
+   // Precondition: manyItems < capacity( ).
+   // Postcondition: The return value is the first slot, in the groups
+   // searched for a key with this hash code, that holds no key; it is
+   // either EMPTY or a tombstone. The collisions instance variable is the
+   // number of occupied slots that were passed over on the way.
+   {
+      int g = hash(code);
+      int w, i;
+      long word, free;
+
+      collisions = 0;
+      while (true)
+      {
+         for (w = 0; w < WORDS; w++)
+         {
+            word = control[g * WORDS + w];
+            free = matchFree(word);
+            if (free != 0)
+            {
+               i = Long.numberOfTrailingZeros(free) >>> 3;
+               collisions += i;
+               return g * GROUP_SIZE + w * 8 + i;
+            }
+            collisions += 8;
+         }
+         g = nextGroup(g);
+      }
+   }
+
+
+   private int growGroups( )
+   // The return value is the number of groups to grow to: a prime roughly
+   // twice the current number, but no more than MAX_GROUPS.
+   {
+      return Math.min(Primes.growCapacity(groups), MAX_GROUPS);
+   }
+
+
+   private void resize(int newGroups)
+   // Postcondition: If newGroups is at least the current number of groups,
+   // then the arrays have been replaced by arrays for newGroups groups and
+   // every element has been rehashed into them. Tombstones are not carried
+   // over, so newGroups equal to the current number simply clears them out.
+   {
+      if (newGroups < groups)
+         return;
+
+      Object[ ] oldKeys = keys;
+      Object[ ] oldData = data;
+      int i, g, w, index, code;
+      long free;
+
+      allocate(newGroups);
+      for (i = 0; i < oldKeys.length; i++)
+      {
+         if (oldKeys[i] != null)
+         {
+            code = oldKeys[i].hashCode( );
+            g = hash(code);
+            while (!hasEmpty(g))
+               g = nextGroup(g);
+            w = 0;
+            free = matchEmpty(control[g * WORDS]);
+            while (free == 0)
+               free = matchEmpty(control[g * WORDS + ++w]);
+            index = g * GROUP_SIZE + w * 8 + (Long.numberOfTrailingZeros(free) >>> 3);
+            keys[index] = oldKeys[i];
+            data[index] = oldData[i];
+            setControl(index, fingerprint(code));
+         }
+      }
+   }
+
+
+   /**
+   * Determines the number of elements in this table.
+   * @param - none
+   * @return
+   *   the number of elements in this table
+   **/
+   public int size( )
+   {
+      return manyItems;
+   }
+
+
+   /**
+   * Determines the current capacity of this table.
+   * @param - none
+   * @return
+   *   the number of slots, a whole number of groups; this grows as elements
+   *   are added
+   **/
+   public int capacity( )
+   {
+      return keys.length;
+   }
+
+
+   /**
+   * Determines the number of tombstones in this table.
+   * @param - none
+   * @return
+   *   the number of slots that held an element which has since been removed
+   *   and that have not yet been reused or cleared by a rehash
+   **/
+   public int getTombstones( )
+   {
+      return tombstones;
+   }
+
+
+   /**
+   * returns the number of collisions from put method.
+   * @param
+   *     none
+   * @return
+   *     collisions - integer storing number of collisions
+   *                   from placing current element
+   **/
+   public int getCollisions() {
+      return collisions;
+   }
+
+}